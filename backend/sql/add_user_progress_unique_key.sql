@@ -0,0 +1,47 @@
+-- Script để thêm unique (enrollment_id, lesson_id) cho bảng user_progress trên DB cũ
+-- ddl-auto=update không thêm được constraint khi đã có dòng trùng
+-- (heartbeat xem video và hoàn thành bài từng ghi song song), nên cần gộp dòng trùng trước.
+-- Chạy 1 lần trước khi deploy bản có WatchTimeBuffer (upsert theo khóa này)
+
+-- Bước 1: Tắt safe update mode
+SET SQL_SAFE_UPDATES = 0;
+
+-- Bước 2: Sao lưu bảng trước khi gộp
+CREATE TABLE IF NOT EXISTS user_progress_backup AS SELECT * FROM user_progress;
+
+-- Bước 3: Gộp tiến độ vào dòng có id nhỏ nhất của mỗi cặp (enrollment, lesson)
+-- Lấy MAX vị trí xem, thời lượng và trạng thái hoàn thành; completed_at lấy lần hoàn thành sớm nhất
+UPDATE user_progress p
+JOIN (
+    SELECT MIN(id) AS keep_id,
+           MAX(last_watched_time) AS last_watched_time,
+           MAX(total_duration) AS total_duration,
+           MAX(is_completed) AS is_completed,
+           MIN(completed_at) AS completed_at
+    FROM user_progress
+    GROUP BY enrollment_id, lesson_id
+    HAVING COUNT(*) > 1
+) merged ON merged.keep_id = p.id
+SET p.last_watched_time = merged.last_watched_time,
+    p.total_duration = merged.total_duration,
+    p.is_completed = merged.is_completed,
+    p.completed_at = merged.completed_at;
+
+-- Bước 4: Xóa các dòng trùng còn lại (đã gộp vào dòng giữ lại)
+-- Bọc trong bảng dẫn xuất: MySQL không cho DELETE đọc trực tiếp từ chính bảng đang xóa
+DELETE FROM user_progress
+WHERE id NOT IN (
+    SELECT keep_id FROM (
+        SELECT MIN(id) AS keep_id FROM user_progress GROUP BY enrollment_id, lesson_id
+    ) kept
+);
+
+-- Bước 5: Thêm unique constraint
+ALTER TABLE user_progress
+    ADD CONSTRAINT uk_user_progress_enrollment_lesson UNIQUE (enrollment_id, lesson_id);
+
+-- Bước 6: Bật lại safe update mode
+SET SQL_SAFE_UPDATES = 1;
+
+-- Xác nhận
+SELECT 'Đã gộp dòng trùng và thêm uk_user_progress_enrollment_lesson cho user_progress!' AS message;
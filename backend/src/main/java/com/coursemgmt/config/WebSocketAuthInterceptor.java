@@ -1,7 +1,10 @@
 package com.coursemgmt.config;
 
 import com.coursemgmt.security.jwt.JwtUtils;
+import com.coursemgmt.security.jwt.TokenVersionCache;
+import com.coursemgmt.security.services.UserDetailsImpl;
 import com.coursemgmt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
@@ -22,6 +25,7 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtUtils jwtUtils;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenVersionCache tokenVersionCache;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -35,10 +39,19 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                 String token = authToken.substring(7);
                 
                 try {
-                    if (jwtUtils.validateJwtToken(token)) {
-                        String username = jwtUtils.getUserNameFromJwtToken(token);
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                        
+                    Claims claims = jwtUtils.parseClaims(token);
+                    UserDetails userDetails = null;
+                    if (claims != null) {
+                        // Principal lấy từ claims của JWT; token cũ (không có uid) thì load từ DB
+                        UserDetailsImpl fromClaims = jwtUtils.getUserDetailsFromClaims(claims);
+                        if (fromClaims == null) {
+                            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                        } else if (tokenVersionCache.isCurrent(fromClaims.getId(), fromClaims.getTokenVersion())) {
+                            userDetails = fromClaims;
+                        }
+                    }
+                    if (userDetails != null) {
+                        String username = userDetails.getUsername();
                         UsernamePasswordAuthenticationToken authentication =
                                 new UsernamePasswordAuthenticationToken(
                                         userDetails,
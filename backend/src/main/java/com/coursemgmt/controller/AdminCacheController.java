@@ -0,0 +1,206 @@
+package com.coursemgmt.controller;
+
+import com.coursemgmt.security.jwt.TokenVersionCache;
+import com.coursemgmt.security.services.CourseAccessCache;
+import com.coursemgmt.service.CatalogPageCache;
+import com.coursemgmt.service.CourseContentCache;
+import com.coursemgmt.service.CourseSearchIndex;
+import com.coursemgmt.service.CourseStatsRollupJob;
+import com.coursemgmt.service.DashboardSnapshotCache;
+import com.coursemgmt.service.UnreadCounterStore;
+import com.coursemgmt.service.WatchTimeBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/v1/admin/cache")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCacheController {
+
+    @Autowired
+    private CatalogPageCache catalogPageCache;
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+
+    @Autowired
+    private CourseContentCache courseContentCache;
+
+    @Autowired
+    private CourseStatsRollupJob courseStatsRollupJob;
+
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+
+    @Autowired
+    private UnreadCounterStore unreadCounterStore;
+
+    /**
+     * GET /api/v1/admin/cache/catalog
+     * Trả về số liệu của cache trang catalog (hits, misses, evictions, invalidations...)
+     */
+    @GetMapping("/catalog")
+    public ResponseEntity<Map<String, Object>> getCatalogCacheStats() {
+        return ResponseEntity.ok(catalogPageCache.getStats());
+    }
+
+    /**
+     * DELETE /api/v1/admin/cache/catalog
+     * Xóa toàn bộ cache trang catalog
+     */
+    @DeleteMapping("/catalog")
+    public ResponseEntity<Map<String, Object>> clearCatalogCache() {
+        catalogPageCache.clear();
+        return ResponseEntity.ok(catalogPageCache.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/search-index
+     * Trả về số liệu của chỉ mục tìm kiếm khóa học (số doc, tombstone, số term)
+     */
+    @GetMapping("/search-index")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStats() {
+        return ResponseEntity.ok(courseSearchIndex.getStats());
+    }
+
+    /**
+     * POST /api/v1/admin/cache/search-index/rebuild
+     * Build lại chỉ mục tìm kiếm từ DB
+     */
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        courseSearchIndex.rebuild();
+        return ResponseEntity.ok(courseSearchIndex.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/token-versions
+     * Trả về số liệu của cache token version (hits, misses, số token bị từ chối)
+     */
+    @GetMapping("/token-versions")
+    public ResponseEntity<Map<String, Object>> getTokenVersionCacheStats() {
+        return ResponseEntity.ok(tokenVersionCache.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/access-decisions
+     * Trả về số liệu của cache quyết định phân quyền (hit/miss và độ trễ trung bình theo từng loại kiểm tra)
+     */
+    @GetMapping("/access-decisions")
+    public ResponseEntity<Map<String, Object>> getAccessDecisionCacheStats() {
+        return ResponseEntity.ok(courseAccessCache.getStats());
+    }
+
+    /**
+     * DELETE /api/v1/admin/cache/access-decisions
+     * Xóa toàn bộ cache quyết định phân quyền
+     */
+    @DeleteMapping("/access-decisions")
+    public ResponseEntity<Map<String, Object>> clearAccessDecisionCache() {
+        courseAccessCache.clear();
+        return ResponseEntity.ok(courseAccessCache.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/watch-time
+     * Trả về số liệu của bộ đệm heartbeat xem video (số entry chờ, số heartbeat được gộp, thời gian flush)
+     */
+    @GetMapping("/watch-time")
+    public ResponseEntity<Map<String, Object>> getWatchTimeBufferStats() {
+        return ResponseEntity.ok(watchTimeBuffer.getStats());
+    }
+
+    /**
+     * POST /api/v1/admin/cache/watch-time/flush
+     * Ghi ngay các vị trí xem đang chờ xuống DB
+     */
+    @PostMapping("/watch-time/flush")
+    public ResponseEntity<Map<String, Object>> flushWatchTimeBuffer() {
+        watchTimeBuffer.flush();
+        return ResponseEntity.ok(watchTimeBuffer.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/course-content
+     * Trả về số liệu của cache nội dung khóa học (snapshot và lớp phủ tiến độ theo user)
+     */
+    @GetMapping("/course-content")
+    public ResponseEntity<Map<String, Object>> getCourseContentCacheStats() {
+        return ResponseEntity.ok(courseContentCache.getStats());
+    }
+
+    /**
+     * DELETE /api/v1/admin/cache/course-content
+     * Xóa toàn bộ cache nội dung khóa học
+     */
+    @DeleteMapping("/course-content")
+    public ResponseEntity<Map<String, Object>> clearCourseContentCache() {
+        courseContentCache.clear();
+        return ResponseEntity.ok(courseContentCache.getStats());
+    }
+
+    /**
+     * POST /api/v1/admin/cache/rollups/rebuild
+     * Tính lại toàn bộ bảng rollup thống kê theo ngày (course_daily_stats) từ dữ liệu nguồn
+     */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDailyRollups() {
+        long start = System.currentTimeMillis();
+        int buckets = courseStatsRollupJob.rebuildAll();
+        return ResponseEntity.ok(Map.<String, Object>of(
+                "rebuiltBuckets", buckets,
+                "durationMs", System.currentTimeMillis() - start));
+    }
+
+    /**
+     * GET /api/v1/admin/cache/dashboard-snapshot
+     * Trả về số liệu của snapshot dashboard admin (asOf, thời gian tính, số lần làm mới)
+     */
+    @GetMapping("/dashboard-snapshot")
+    public ResponseEntity<Map<String, Object>> getDashboardSnapshotStats() {
+        return ResponseEntity.ok(dashboardSnapshotCache.getStats());
+    }
+
+    /**
+     * POST /api/v1/admin/cache/dashboard-snapshot/refresh
+     * Tính lại ngay snapshot dashboard admin
+     */
+    @PostMapping("/dashboard-snapshot/refresh")
+    public ResponseEntity<Map<String, Object>> refreshDashboardSnapshot() {
+        dashboardSnapshotCache.refresh();
+        return ResponseEntity.ok(dashboardSnapshotCache.getStats());
+    }
+
+    /**
+     * GET /api/v1/admin/cache/unread-counters
+     * Trả về số liệu bộ đếm chưa đọc (chat, thông báo) trong bộ nhớ
+     */
+    @GetMapping("/unread-counters")
+    public ResponseEntity<Map<String, Object>> getUnreadCounterStats() {
+        return ResponseEntity.ok(unreadCounterStore.getStats());
+    }
+
+    /**
+     * DELETE /api/v1/admin/cache/unread-counters
+     * Xóa bộ đếm chưa đọc (lần đọc sau đếm lại từ DB)
+     */
+    @DeleteMapping("/unread-counters")
+    public ResponseEntity<Map<String, Object>> clearUnreadCounters() {
+        unreadCounterStore.clear();
+        return ResponseEntity.ok(unreadCounterStore.getStats());
+    }
+}
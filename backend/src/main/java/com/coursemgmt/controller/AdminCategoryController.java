@@ -2,6 +2,7 @@ package com.coursemgmt.controller;
 
 import com.coursemgmt.model.Category;
 import com.coursemgmt.repository.CategoryRepository;
+import com.coursemgmt.service.CatalogPageCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +22,9 @@ public class AdminCategoryController {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CatalogPageCache catalogPageCache;
+
     /**
      * GET /api/v1/admin/categories
      * Lấy tất cả danh mục
@@ -100,6 +104,8 @@ public class AdminCategoryController {
                 }
                 
                 Category savedCategory = categoryRepository.save(category);
+                // Tên danh mục được hiển thị trong các trang catalog đã cache
+                catalogPageCache.clear();
                 return ResponseEntity.ok(savedCategory);
             })
             .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
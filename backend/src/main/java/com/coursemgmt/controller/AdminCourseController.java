@@ -2,6 +2,7 @@ package com.coursemgmt.controller;
 
 import com.coursemgmt.dto.AdminUserDTO;
 import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.dto.CursorPage;
 import com.coursemgmt.model.Course;
 import com.coursemgmt.model.ERole;
 import com.coursemgmt.model.User;
@@ -60,6 +61,23 @@ public class AdminCourseController {
         return ResponseEntity.ok(courseResponses);
     }
 
+    /**
+     * GET /api/v1/admin/courses/cursor
+     * Lấy khóa học theo cursor (mới nhất trước), dùng nextCursor của trang trước để lấy trang tiếp theo.
+     * Tổng số bản ghi chỉ được đếm khi includeTotal=true.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<CourseResponse>> getCoursesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        return ResponseEntity.ok(courseService.getCoursesForAdminByCursor(cursor, pageSize, search, status, includeTotal));
+    }
+
     /**
      * GET /api/v1/admin/courses/{id}
      * Lấy chi tiết khóa học
@@ -1,5 +1,6 @@
 package com.coursemgmt.controller;
 
+import com.coursemgmt.dto.CursorPage;
 import com.coursemgmt.dto.TransactionDTO;
 import com.coursemgmt.service.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,5 +40,19 @@ public class AdminTransactionController {
         Page<TransactionDTO> transactions = transactionService.getAllTransactions(pageable);
         return ResponseEntity.ok(transactions);
     }
+
+    /**
+     * GET /api/v1/admin/transactions/cursor
+     * Lấy giao dịch theo cursor (mới nhất trước), tổng số chỉ được đếm khi includeTotal=true
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<TransactionDTO>> getAllTransactionsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        return ResponseEntity.ok(transactionService.getAllTransactionsByCursor(cursor, pageSize, includeTotal));
+    }
 }
 
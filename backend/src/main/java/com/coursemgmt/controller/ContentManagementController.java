@@ -7,6 +7,7 @@ import com.coursemgmt.dto.MessageResponse;
 import com.coursemgmt.model.Chapter;
 import com.coursemgmt.model.Lesson;
 import com.coursemgmt.service.ContentService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -14,12 +15,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import com.coursemgmt.service.ExcelService; // Thêm import
-import org.springframework.core.io.InputStreamResource; // Thêm import
-import org.springframework.core.io.Resource; // Thêm import
-import org.springframework.http.HttpHeaders; // Thêm import
 import org.springframework.http.MediaType; // Thêm import
 import org.springframework.web.multipart.MultipartFile; // Thêm import
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -103,17 +100,10 @@ public class ContentManagementController {
      */
     @GetMapping("/courses/{courseId}/export")
     @PreAuthorize("hasRole('ADMIN') or @courseSecurityService.isInstructor(authentication, #courseId)")
-    public ResponseEntity<Resource> exportLessons(@PathVariable Long courseId) throws IOException {
-        ByteArrayInputStream in = excelService.exportLessons(courseId);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=NoiDungKhoaHoc_" + courseId + ".xlsx");
-
-        return ResponseEntity
-                .ok()
-                .headers(headers)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new InputStreamResource(in));
+    public void exportLessons(@PathVariable Long courseId, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("Content-Disposition", "attachment; filename=NoiDungKhoaHoc_" + courseId + ".xlsx");
+        excelService.exportLessons(courseId, response.getOutputStream());
     }
 
     /**
@@ -122,11 +112,10 @@ public class ContentManagementController {
      */
     @PostMapping("/courses/{courseId}/import")
     @PreAuthorize("hasRole('ADMIN') or @courseSecurityService.isInstructor(authentication, #courseId)")
-    public ResponseEntity<MessageResponse> importLessons(@PathVariable Long courseId,
-                                                         @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> importLessons(@PathVariable Long courseId,
+                                           @RequestParam("file") MultipartFile file) {
         try {
-            excelService.importLessons(courseId, file);
-            return ResponseEntity.ok(new MessageResponse("Import nội dung thành công!"));
+            return ResponseEntity.ok(excelService.importLessons(courseId, file));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new MessageResponse("Lỗi khi import: " + e.getMessage()));
         }
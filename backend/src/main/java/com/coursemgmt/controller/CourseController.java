@@ -48,12 +48,14 @@ public class CourseController {
     // Valid sort fields for Course entity
     private static final Set<String> VALID_SORT_FIELDS = new HashSet<>(Arrays.asList(
             "id", "title", "description", "price", "imageUrl", "totalDurationInHours",
-            "status", "createdAt", "updatedAt"
+            "status", "createdAt", "updatedAt",
+            "enrollmentCount", "reviewCount", "averageRating", // Bộ đếm denormalized trên Course
+            "relevance" // Điểm tìm kiếm BM25 (CourseSearchIndex)
     ));
 
     /**
      * Sanitize sort parameter to prevent 400 errors from invalid field names
-     * @param sort Original sort string (e.g., "enrollmentCount,desc")
+     * @param sort Original sort string (e.g., "studentCount,desc")
      * @return Sanitized sort string with valid field name (e.g., "createdAt,desc")
      */
     private String sanitizeSort(String sort) {
@@ -65,6 +67,11 @@ public class CourseController {
         String fieldName = parts[0].trim();
         String direction = parts.length > 1 ? parts[1].trim() : "desc";
 
+        // Frontend gửi "rating" - map sang cột averageRating
+        if ("rating".equals(fieldName)) {
+            fieldName = "averageRating";
+        }
+
         // Check if field name is valid
         if (!VALID_SORT_FIELDS.contains(fieldName)) {
             // Replace invalid field with default (createdAt)
@@ -203,8 +210,11 @@ public class CourseController {
             @RequestParam(required = false) Double minRating, // Đánh giá tối thiểu
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "createdAt,desc") String sort // Sắp xếp
+            @RequestParam(required = false) String sort // Sắp xếp (mặc định: relevance khi có keyword, createdAt,desc nếu không)
     ) {
+        if (sort == null || sort.isEmpty()) {
+            sort = keyword != null && !keyword.trim().isEmpty() ? "relevance,desc" : "createdAt,desc";
+        }
         // Sanitize sort parameter to prevent 400 errors from invalid field names
         String sanitizedSort = sanitizeSort(sort);
         Page<CourseResponse> courses = courseService.getAllPublishedCourses(keyword, categoryId, minPrice, maxPrice, isFree, isPaid, level, minRating, page, size, sanitizedSort);
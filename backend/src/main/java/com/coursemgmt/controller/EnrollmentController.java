@@ -39,6 +39,26 @@ public class EnrollmentController {
         return ResponseEntity.ok(enrollments);
     }
 
+    /**
+     * 1.1. Lấy danh sách enrollment theo course bằng cursor (mới nhất trước)
+     * GET /api/v1/enrollments/course/{courseId}/cursor?cursor=...&size=20&includeTotal=false
+     * Security: Only Admin or Course Owner (Instructor) can access
+     */
+    @GetMapping("/course/{courseId}/cursor")
+    @PreAuthorize("hasRole('ADMIN') or @courseSecurityService.isInstructor(authentication, #courseId)")
+    public ResponseEntity<CursorPage<EnrollmentDTO>> getEnrollmentsByCourseCursor(
+        @PathVariable Long courseId,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size,
+        @RequestParam(defaultValue = "false") boolean includeTotal,
+        @AuthenticationPrincipal UserDetailsImpl userDetails
+    ) {
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        CursorPage<EnrollmentDTO> enrollments = enrollmentService.getEnrollmentsByCourseCursor(
+            courseId, userDetails.getId(), cursor, pageSize, includeTotal);
+        return ResponseEntity.ok(enrollments);
+    }
+
     /**
      * 2. Lấy danh sách enrollment theo student
      * GET /api/v1/enrollments/student/{studentId}
@@ -126,12 +146,16 @@ public class EnrollmentController {
     @PreAuthorize("hasRole('LECTURER')")
     public ResponseEntity<Page<EnrollmentDTO>> getMyStudents(
         @RequestParam(required = false) Long courseId,
+        @RequestParam(required = false) String search,
         @RequestParam(defaultValue = "0") int page,
         @RequestParam(defaultValue = "20") int size,
+        @RequestParam(defaultValue = "enrolledAt") String sortBy,
+        @RequestParam(defaultValue = "DESC") String sortDir,
         @AuthenticationPrincipal UserDetailsImpl userDetails
     ) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<EnrollmentDTO> enrollments = enrollmentService.getMyStudents(userDetails.getId(), courseId, pageable);
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        Page<EnrollmentDTO> enrollments = enrollmentService.getMyStudents(
+            userDetails.getId(), courseId, search, Math.max(page, 0), pageSize, sortBy, sortDir);
         return ResponseEntity.ok(enrollments);
     }
 
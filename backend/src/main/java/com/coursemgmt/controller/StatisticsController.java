@@ -3,11 +3,9 @@ package com.coursemgmt.controller;
 import com.coursemgmt.dto.*;
 import com.coursemgmt.service.ExcelService;
 import com.coursemgmt.service.StatisticsService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -113,25 +111,19 @@ public class StatisticsController {
      */
     @GetMapping("/revenue/export")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Resource> exportRevenueReport(
+    public void exportRevenueReport(
         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) 
         LocalDateTime startDate,
         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) 
-        LocalDateTime endDate
+        LocalDateTime endDate,
+        HttpServletResponse response
     ) throws IOException {
-        var inputStream = excelService.exportRevenueReport(startDate, endDate);
-        
         String filename = "BaoCaoDoanhThu_" + 
             startDate.format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd")) + "_" +
             endDate.format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd")) + ".xlsx";
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=" + filename);
-        
-        return ResponseEntity
-            .ok()
-            .headers(headers)
-            .contentType(MediaType.APPLICATION_OCTET_STREAM)
-            .body(new InputStreamResource(inputStream));
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + filename);
+        excelService.exportRevenueReport(startDate, endDate, response.getOutputStream());
     }
 }
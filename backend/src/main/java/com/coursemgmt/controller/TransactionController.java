@@ -74,6 +74,21 @@ public class TransactionController {
         return ResponseEntity.ok(transactions);
     }
 
+    /**
+     * 3.1. Lấy tất cả giao dịch theo cursor (mới nhất trước) - Admin only
+     * GET /api/v1/transactions/cursor
+     */
+    @GetMapping("/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPage<TransactionDTO>> getAllTransactionsByCursor(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "10") int size,
+        @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        return ResponseEntity.ok(transactionService.getAllTransactionsByCursor(cursor, pageSize, includeTotal));
+    }
+
     /**
      * 4. Lấy giao dịch theo ID
      * GET /api/v1/transactions/{id}
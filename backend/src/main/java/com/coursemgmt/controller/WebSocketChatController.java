@@ -100,7 +100,8 @@ public class WebSocketChatController {
             }
             
             Long userId = ((UserDetailsImpl) auth.getPrincipal()).getId();
-            chatService.markAsRead(read.getConversationId(), userId);
+            // Mốc đã đọc mới (id tin nhắn cuối đã đọc) gửi kèm cho các participant khác
+            read.setMessageId(chatService.markAsRead(read.getConversationId(), userId));
             
             // Notify other participants
             messagingTemplate.convertAndSend("/topic/conversation/" + read.getConversationId() + "/read", read);
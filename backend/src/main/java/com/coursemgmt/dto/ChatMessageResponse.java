@@ -1,6 +1,8 @@
 package com.coursemgmt.dto;
 
+import com.coursemgmt.model.Conversation;
 import com.coursemgmt.model.Message;
+import com.coursemgmt.model.User;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -71,5 +73,42 @@ public class ChatMessageResponse {
                 .readAt(readAt)
                 .build();
     }
+    
+    /**
+     * Tin nhắn cuối dựng từ preview denormalized trên Conversation (không đọc bảng messages).
+     * content là preview đã cắt ngắn; có isEdited và fileName, không có fileUrl / fileSize / editedAt
+     * (mở hội thoại để lấy tin đầy đủ). Trả về null nếu chưa có tin nhắn.
+     */
+    public static ChatMessageResponse lastMessageOf(Conversation conversation, Boolean isRead, LocalDateTime readAt) {
+        if (conversation == null || conversation.getLastMessageId() == null) {
+            return null;
+        }
+        
+        User sender = conversation.getLastMessageSender();
+        String senderName = null;
+        if (sender != null) {
+            senderName = sender.getFullName();
+            if (senderName == null || senderName.trim().isEmpty()) {
+                senderName = sender.getUsername();
+            }
+        }
+        
+        return ChatMessageResponse.builder()
+                .id(conversation.getLastMessageId())
+                .conversationId(conversation.getId())
+                .senderId(sender != null ? sender.getId() : null)
+                .senderName(senderName)
+                .senderAvatar(sender != null ? sender.getAvatarUrl() : null)
+                .content(conversation.getLastMessagePreview())
+                .messageType(conversation.getLastMessageType() != null
+                        ? conversation.getLastMessageType().name()
+                        : "TEXT")
+                .fileName(conversation.getLastMessageFileName())
+                .isEdited(Boolean.TRUE.equals(conversation.getLastMessageEdited()))
+                .isDeleted(Boolean.TRUE.equals(conversation.getLastMessageDeleted()))
+                .createdAt(conversation.getLastMessageAt())
+                .isRead(isRead != null ? isRead : false)
+                .readAt(readAt)
+                .build();
+    }
 }
-
@@ -74,8 +74,10 @@ public class CourseResponse {
             dto.setInstructor(insInfo);
         }
 
-        // Note: enrollmentCount sẽ được set trong Service layer để tránh LAZY loading issue
-        // Default value là 0L, sẽ được override trong service
+        // Số liệu tổng hợp lấy từ các cột denormalized trên Course (không cần query aggregate)
+        dto.setEnrollmentCount(course.getEnrollmentCount() != null ? course.getEnrollmentCount() : 0L);
+        dto.setRating(course.getAverageRating() != null ? course.getAverageRating() : 0.0);
+        dto.setReviewCount(course.getReviewCount() != null ? course.getReviewCount() : 0L);
 
         return dto;
     }
@@ -0,0 +1,37 @@
+package com.coursemgmt.dto;
+
+import com.coursemgmt.util.KeysetCursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Kết quả phân trang keyset (cursor).
+ * nextCursor = null khi đã hết dữ liệu; totalElements chỉ có khi client yêu cầu (includeTotal=true).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long totalElements;
+
+    /**
+     * Tạo trang từ kết quả query đã lấy dư 1 dòng (LIMIT size + 1) để biết còn trang sau hay không.
+     */
+    public static <E, T> CursorPage<T> fromRows(List<E> rows, int size, Function<E, KeysetCursor> cursorOf,
+                                                Function<E, T> mapper, Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<E> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(pageRows.get(pageRows.size() - 1)).encode() : null;
+        List<T> content = pageRows.stream().map(mapper).collect(Collectors.toList());
+        return new CursorPage<>(content, content.size(), nextCursor, hasNext, totalElements);
+    }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 /**
  * DTO cho tổng quan dashboard
  */
@@ -37,5 +39,8 @@ public class DashboardStatsDTO {
     private Double averageCompletionRate;
     private Long completedEnrollments;
     private Long inProgressEnrollments;
+    
+    // Thời điểm tính snapshot (số liệu được phục vụ từ DashboardSnapshotCache)
+    private LocalDateTime asOf;
 }
 
@@ -0,0 +1,23 @@
+package com.coursemgmt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả import lessons từ file Excel.
+ * Dòng lỗi không làm dừng import; errors chỉ giữ tối đa một số lỗi đầu tiên, errorRows là tổng số dòng lỗi.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonImportResult {
+    private String message;
+    private int importedLessons;
+    private int createdChapters;
+    private int skippedRows;
+    private int errorRows;
+    private List<String> errors;
+}
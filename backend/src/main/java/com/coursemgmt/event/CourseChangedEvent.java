@@ -0,0 +1,56 @@
+package com.coursemgmt.event;
+
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện thay đổi khóa học, được publish từ CourseService / CourseCounterService.
+ * Các cache/index đọc dữ liệu khóa học (catalog cache, search index...) lắng nghe sự kiện này
+ * sau khi transaction commit để cập nhật hoặc vô hiệu hóa dữ liệu của mình.
+ */
+@Getter
+@AllArgsConstructor
+public class CourseChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, PUBLISHED, UNPUBLISHED, APPROVED, FEATURED, OWNERSHIP_TRANSFERRED, DELETED,
+        STATS // enrollmentCount / rating thay đổi (không có snapshot)
+    }
+
+    private final Long courseId;
+    private final Type type;
+    private final Snapshot before; // null khi CREATED hoặc STATS
+    private final Snapshot after;  // null khi DELETED hoặc STATS
+
+    public static CourseChangedEvent stats(Long courseId) {
+        return new CourseChangedEvent(courseId, Type.STATS, null, null);
+    }
+
+    /**
+     * Bản chụp các trường của Course dùng cho lọc, sắp xếp và tìm kiếm.
+     */
+    public record Snapshot(Long id, String title, String description, Double price, ECourseStatus status,
+                           Long categoryId, String categoryName, String instructorName,
+                           Double averageRating, LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+        public static Snapshot of(Course course) {
+            return new Snapshot(
+                    course.getId(),
+                    course.getTitle(),
+                    course.getDescription(),
+                    course.getPrice(),
+                    course.getStatus(),
+                    course.getCategory() != null ? course.getCategory().getId() : null,
+                    course.getCategory() != null ? course.getCategory().getName() : null,
+                    course.getInstructor() != null ? course.getInstructor().getFullName() : null,
+                    course.getAverageRating(),
+                    course.getCreatedAt(),
+                    course.getUpdatedAt()
+            );
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.coursemgmt.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Sự kiện số liệu thống kê thay đổi (ghi danh, hoàn thành, giao dịch), được publish từ CourseStatsRollupService.
+ * Các snapshot thống kê (dashboard admin...) lắng nghe sự kiện này sau khi transaction commit để làm mới dữ liệu.
+ */
+@Getter
+@AllArgsConstructor
+public class StatsChangedEvent {
+
+    public enum Type {
+        ENROLLMENT, COMPLETION, TRANSACTION, COURSE_DELETED
+    }
+
+    private final Long courseId;
+    private final Type type;
+}
@@ -0,0 +1,25 @@
+package com.coursemgmt.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Sự kiện số tin nhắn / thông báo chưa đọc của 1 user thay đổi, được publish từ ChatService / NotificationService.
+ * UnreadCounterStore lắng nghe sự kiện này sau khi transaction commit để cập nhật bộ đếm và đẩy số mới cho user.
+ */
+@Getter
+@AllArgsConstructor
+public class UnreadChangedEvent {
+
+    public enum Type {
+        CHAT_MESSAGE,          // có tin nhắn mới trong hội thoại
+        CHAT_READ,             // user dời mốc đã đọc của hội thoại
+        NOTIFICATION_CREATED,
+        NOTIFICATION_READ,
+        NOTIFICATIONS_ALL_READ
+    }
+
+    private final Type type;
+    private final Long userId;         // user có bộ đếm thay đổi
+    private final Long conversationId; // null với thông báo
+}
@@ -3,7 +3,9 @@ package com.coursemgmt.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -30,9 +32,38 @@ public class Conversation {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt = LocalDateTime.now();
     
-    @Column(name = "last_message_at")
+    // Tin nhắn cuối (denormalized) - danh sách hội thoại đọc từ đây thay vì bảng messages.
+    // Chỉ ghi bằng UPDATE có điều kiện (ConversationRepository.applyLastMessage) khi gửi / sửa / xóa tin nhắn cuối,
+    // updatable = false để save() entity cũ không ghi đè tin nhắn mới hơn
+    @Column(name = "last_message_at", updatable = false)
     private LocalDateTime lastMessageAt;
     
+    @Column(name = "last_message_id", updatable = false)
+    private Long lastMessageId;
+    
+    @Column(name = "last_message_preview", length = LAST_MESSAGE_PREVIEW_LENGTH, updatable = false)
+    private String lastMessagePreview;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type", length = 20, updatable = false)
+    private Message.MessageType lastMessageType;
+    
+    @Column(name = "last_message_deleted", updatable = false)
+    private Boolean lastMessageDeleted = false;
+    
+    @Column(name = "last_message_edited", updatable = false)
+    private Boolean lastMessageEdited = false;
+    
+    // Tên file của tin FILE / IMAGE (preview hiển thị tên file khi không có nội dung)
+    @Column(name = "last_message_file_name", length = 255, updatable = false)
+    private String lastMessageFileName;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "last_message_sender_id", updatable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User lastMessageSender;
+    
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ConversationParticipant> participants = new ArrayList<>();
     
@@ -40,10 +71,21 @@ public class Conversation {
     @OrderBy("createdAt DESC")
     private List<Message> messages = new ArrayList<>();
     
+    public static final int LAST_MESSAGE_PREVIEW_LENGTH = 255;
+    
     public enum ConversationType {
         DIRECT, GROUP
     }
     
+    /**
+     * Preview của nội dung tin nhắn (cắt còn LAST_MESSAGE_PREVIEW_LENGTH ký tự)
+     */
+    public static String previewOf(String content) {
+        return content != null && content.length() > LAST_MESSAGE_PREVIEW_LENGTH
+                ? content.substring(0, LAST_MESSAGE_PREVIEW_LENGTH)
+                : content;
+    }
+    
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
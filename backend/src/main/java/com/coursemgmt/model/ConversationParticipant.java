@@ -34,9 +34,14 @@ public class ConversationParticipant {
     @Column(name = "joined_at", nullable = false, updatable = false)
     private LocalDateTime joinedAt = LocalDateTime.now();
     
-    @Column(name = "last_read_at")
+    @Column(name = "last_read_at", updatable = false)
     private LocalDateTime lastReadAt;
     
+    // Mốc đã đọc: mọi tin nhắn có id <= lastReadMessageId được coi là đã đọc (chỉ tăng, không giảm).
+    // Chỉ ghi qua ConversationParticipantRepository.advanceReadWatermark
+    @Column(name = "last_read_message_id", updatable = false)
+    private Long lastReadMessageId;
+    
     @Column(name = "is_muted", nullable = false)
     private Boolean isMuted = false;
     
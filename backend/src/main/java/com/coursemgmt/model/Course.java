@@ -2,11 +2,15 @@ package com.coursemgmt.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "courses")
+@Table(name = "courses", indexes = {
+    @Index(name = "idx_courses_status_rating", columnList = "status, average_rating"),
+    @Index(name = "idx_courses_created_at_id", columnList = "created_at, id") // Phân trang keyset (cursor)
+})
 @Data
 public class Course {
 
@@ -40,6 +44,25 @@ public class Course {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Số liệu tổng hợp (denormalized) - chỉ được cập nhật bằng UPDATE tăng/giảm trong CourseRepository
+    // (updatable = false để việc save() entity không ghi đè giá trị cũ lên bộ đếm).
+    // CourseCounterReconciliationJob đối soát lại định kỳ từ bảng enrollments/reviews.
+    @ColumnDefault("0")
+    @Column(name = "enrollment_count", nullable = false, updatable = false)
+    private Long enrollmentCount = 0L;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    private Long ratingSum = 0L; // Tổng số sao của tất cả review
+
+    @ColumnDefault("0")
+    @Column(name = "review_count", nullable = false, updatable = false)
+    private Long reviewCount = 0L;
+
+    @ColumnDefault("0")
+    @Column(name = "average_rating", nullable = false, updatable = false)
+    private Double averageRating = 0.0; // = ratingSum / reviewCount, lưu sẵn để lọc/sắp xếp theo index
+
     // (n-1) Nhiều Course thuộc 1 Giảng viên (User)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "instructor_id")
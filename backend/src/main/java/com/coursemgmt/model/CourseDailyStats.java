@@ -0,0 +1,55 @@
+package com.coursemgmt.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDate;
+
+/**
+ * Bucket thống kê theo ngày cho từng khóa học (rollup).
+ * Được cộng dồn khi có ghi danh / hoàn thành / thanh toán (CourseStatsRollupService)
+ * và được tính lại định kỳ từ bảng nguồn (CourseStatsRollupJob).
+ * Các biểu đồ theo tháng / năm đọc từ bảng này thay vì aggregate trực tiếp enrollments / transactions.
+ */
+@Entity
+@Table(name = "course_daily_stats",
+    uniqueConstraints = @UniqueConstraint(name = "uk_course_daily_stats_course_date", columnNames = {"course_id", "stat_date"}),
+    indexes = @Index(name = "idx_course_daily_stats_date", columnList = "stat_date"))
+@Data
+public class CourseDailyStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    // Số ghi danh mới trong ngày (theo enrolledAt)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long enrollments = 0L;
+
+    // Số ghi danh chuyển sang COMPLETED trong ngày (theo completedAt)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long completions = 0L;
+
+    // Doanh thu từ giao dịch SUCCESS (theo createdAt của giao dịch)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Double revenue = 0.0;
+
+    @ColumnDefault("0")
+    @Column(name = "successful_transactions", nullable = false)
+    private Long successfulTransactions = 0L;
+
+    // Số tiền của giao dịch SUCCESS bị chuyển sang trạng thái khác trong ngày (hoàn tiền / hủy)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Double refunds = 0.0;
+}
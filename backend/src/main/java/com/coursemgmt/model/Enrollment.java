@@ -2,11 +2,15 @@ package com.coursemgmt.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "enrollments")
+@Table(name = "enrollments", indexes = {
+    @Index(name = "idx_enrollments_course_enrolled_at", columnList = "course_id, enrolled_at, id"), // Phân trang keyset theo course
+    @Index(name = "idx_enrollments_enrolled_at_status", columnList = "enrolled_at, status, user_id") // Thống kê theo tháng (covering)
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -23,10 +27,19 @@ public class Enrollment {
 
     private Double progress = 0.0; // Mặc định là 0%
 
+    // Số bài học đã hoàn thành (denormalized) - chỉ cập nhật bằng UPDATE tăng/giảm trong EnrollmentRepository
+    // (updatable = false để save() entity không ghi đè). EnrollmentProgressRepairJob tính lại từ user_progress.
+    @ColumnDefault("0")
+    @Column(name = "completed_lessons", nullable = false, updatable = false)
+    private Long completedLessons = 0L;
+
     @Enumerated(EnumType.STRING)
     @Column(length = 20)
     private EEnrollmentStatus status; // Enum: IN_PROGRESS, COMPLETED
 
+    // Thời điểm chuyển sang COMPLETED (null nếu chưa hoàn thành), dùng cho rollup completions theo ngày
+    private LocalDateTime completedAt;
+
     // (n-1) Nhiều Ghi danh thuộc 1 User
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -8,7 +8,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_conversation_created_at", columnList = "conversation_id, created_at") // Lịch sử chat, đếm tin chưa đọc
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
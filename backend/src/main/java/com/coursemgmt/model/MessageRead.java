@@ -7,6 +7,11 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/**
+ * Bản ghi đã đọc theo từng tin nhắn (cách lưu cũ). Trạng thái đọc hiện dùng mốc
+ * ConversationParticipant.lastReadMessageId; bảng này không còn được ghi, chỉ giữ để
+ * ChatReadWatermarkMigration chuyển dữ liệu cũ sang mốc đã đọc.
+ */
 @Entity
 @Table(name = "message_reads",
        uniqueConstraints = @UniqueConstraint(columnNames = {"message_id", "user_id"}))
@@ -5,7 +5,10 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_created_at_id", columnList = "created_at, id"), // Phân trang keyset (cursor)
+    @Index(name = "idx_transactions_status_created_at", columnList = "status, created_at") // Đếm / tính tổng theo status trong khoảng thời gian
+})
 @Data
 public class Transaction {
 
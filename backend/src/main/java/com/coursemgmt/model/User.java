@@ -2,6 +2,7 @@ package com.coursemgmt.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
@@ -51,6 +52,12 @@ public class User {
     @Column(length = 500)
     private String lockReason; // Lý do khóa tài khoản
 
+    // Phiên bản token: được ghi vào JWT khi đăng nhập, tăng lên khi khóa/mở khóa tài khoản
+    // để các JWT đã cấp trước đó không còn hợp lệ (xem TokenVersionCache)
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private Integer tokenVersion = 0;
+
     // (n-n) User có nhiều Role
     @ManyToMany(fetch = FetchType.EAGER) // Tải Role ngay khi tải User
     @JoinTable(name = "user_roles",
@@ -4,8 +4,11 @@ import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
 
+// Mỗi (enrollment, lesson) chỉ có 1 dòng tiến độ: WatchTimeBuffer upsert theo khóa này
 @Entity
-@Table(name = "user_progress")
+@Table(name = "user_progress",
+       uniqueConstraints = @UniqueConstraint(name = "uk_user_progress_enrollment_lesson",
+                                             columnNames = {"enrollment_id", "lesson_id"}))
 @Data
 public class User_Progress {
 
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChapterRepository extends JpaRepository<Chapter, Long> {
@@ -15,4 +16,11 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
     // Fetch chapters with lessons using JOIN FETCH to avoid LAZY loading issues
     @Query("SELECT DISTINCT c FROM Chapter c LEFT JOIN FETCH c.lessons WHERE c.course.id = :courseId ORDER BY c.position ASC")
     List<Chapter> findByCourseIdWithLessons(@Param("courseId") Long courseId);
+
+    @Query("SELECT c.course.id FROM Chapter c WHERE c.id = :chapterId")
+    Optional<Long> findCourseIdByChapterId(@Param("chapterId") Long chapterId);
+
+    // [id, position] của các chapter trong khóa học (kiểm tra trùng thứ tự khi reorder)
+    @Query("SELECT c.id, c.position FROM Chapter c WHERE c.course.id = :courseId")
+    List<Object[]> findPositionsByCourseId(@Param("courseId") Long courseId);
 }
\ No newline at end of file
@@ -2,10 +2,13 @@ package com.coursemgmt.repository;
 
 import com.coursemgmt.model.ConversationParticipant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,5 +26,19 @@ public interface ConversationParticipantRepository extends JpaRepository<Convers
            "WHERE cp.conversation.id = :conversationId AND cp.user.id != :userId")
     List<ConversationParticipant> findOtherParticipants(@Param("conversationId") Long conversationId, 
                                                         @Param("userId") Long userId);
+    
+    // Toàn bộ participant (kèm user + roles) của nhiều hội thoại trong 1 query - dùng cho danh sách hội thoại
+    @Query("SELECT cp FROM ConversationParticipant cp " +
+           "JOIN FETCH cp.user u LEFT JOIN FETCH u.roles " +
+           "WHERE cp.conversation.id IN :conversationIds " +
+           "ORDER BY cp.id")
+    List<ConversationParticipant> findByConversationIdsWithUser(@Param("conversationIds") Collection<Long> conversationIds);
+    
+    // Dời mốc đã đọc tới messageId, chỉ khi mốc hiện tại nhỏ hơn (đánh dấu đọc song song không kéo mốc lùi lại)
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE ConversationParticipant cp SET cp.lastReadMessageId = :messageId, cp.lastReadAt = :readAt " +
+           "WHERE cp.id = :participantId AND (cp.lastReadMessageId IS NULL OR cp.lastReadMessageId < :messageId)")
+    int advanceReadWatermark(@Param("participantId") Long participantId,
+                             @Param("messageId") Long messageId,
+                             @Param("readAt") LocalDateTime readAt);
 }
-
@@ -1,20 +1,26 @@
 package com.coursemgmt.repository;
 
 import com.coursemgmt.model.Conversation;
+import com.coursemgmt.model.Message;
+import com.coursemgmt.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     
-    @Query("SELECT DISTINCT c FROM Conversation c " +
-           "JOIN c.participants p " +
-           "WHERE p.user.id = :userId " +
+    // Kèm người gửi tin nhắn cuối (preview denormalized) và roles của người đó (User.roles là EAGER,
+    // không fetch cùng thì mỗi user tốn thêm 1 select), không đọc bảng messages
+    @Query("SELECT c FROM Conversation c " +
+           "LEFT JOIN FETCH c.lastMessageSender s LEFT JOIN FETCH s.roles " +
+           "WHERE EXISTS (SELECT 1 FROM ConversationParticipant p WHERE p.conversation = c AND p.user.id = :userId) " +
            "ORDER BY CASE WHEN c.lastMessageAt IS NULL THEN 1 ELSE 0 END, c.lastMessageAt DESC, c.updatedAt DESC")
     List<Conversation> findByUserIdOrderByLastMessageAtDesc(@Param("userId") Long userId);
     
@@ -34,5 +40,23 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
            "WHERE c.id = :conversationId AND p.user.id = :userId")
     Optional<Conversation> findByIdAndUserId(@Param("conversationId") Long conversationId, 
                                              @Param("userId") Long userId);
+    
+    // Ghi tin nhắn cuối (denormalized) nếu messageId không cũ hơn tin nhắn cuối hiện tại:
+    // tin gửi song song commit sau không bị tin cũ hơn ghi đè; sửa / xóa đúng tin cuối (cùng id) vẫn cập nhật
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Conversation c SET c.lastMessageId = :messageId, c.lastMessagePreview = :preview, " +
+           "c.lastMessageType = :messageType, c.lastMessageDeleted = :deleted, c.lastMessageEdited = :edited, " +
+           "c.lastMessageFileName = :fileName, c.lastMessageSender = :sender, c.lastMessageAt = :sentAt, " +
+           "c.updatedAt = :updatedAt " +
+           "WHERE c.id = :conversationId AND (c.lastMessageId IS NULL OR c.lastMessageId <= :messageId)")
+    int applyLastMessage(@Param("conversationId") Long conversationId,
+                         @Param("messageId") Long messageId,
+                         @Param("preview") String preview,
+                         @Param("messageType") Message.MessageType messageType,
+                         @Param("deleted") boolean deleted,
+                         @Param("edited") boolean edited,
+                         @Param("fileName") String fileName,
+                         @Param("sender") User sender,
+                         @Param("sentAt") LocalDateTime sentAt,
+                         @Param("updatedAt") LocalDateTime updatedAt);
 }
-
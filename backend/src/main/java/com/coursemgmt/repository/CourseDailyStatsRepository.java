@@ -0,0 +1,49 @@
+package com.coursemgmt.repository;
+
+import com.coursemgmt.model.CourseDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CourseDailyStatsRepository extends JpaRepository<CourseDailyStats, Long> {
+
+    // Tổng theo tháng trên toàn hệ thống:
+    // [year, month, enrollments, completions, revenue, successfulTransactions, refunds]
+    @Query("SELECT YEAR(s.statDate), MONTH(s.statDate), SUM(s.enrollments), SUM(s.completions), " +
+           "SUM(s.revenue), SUM(s.successfulTransactions), SUM(s.refunds) " +
+           "FROM CourseDailyStats s WHERE s.statDate BETWEEN :fromDate AND :toDate " +
+           "GROUP BY YEAR(s.statDate), MONTH(s.statDate)")
+    List<Object[]> sumByMonth(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // Tổng theo tháng của 1 khóa học (cùng thứ tự cột như sumByMonth)
+    @Query("SELECT YEAR(s.statDate), MONTH(s.statDate), SUM(s.enrollments), SUM(s.completions), " +
+           "SUM(s.revenue), SUM(s.successfulTransactions), SUM(s.refunds) " +
+           "FROM CourseDailyStats s WHERE s.courseId = :courseId AND s.statDate BETWEEN :fromDate AND :toDate " +
+           "GROUP BY YEAR(s.statDate), MONTH(s.statDate)")
+    List<Object[]> sumByMonthForCourse(@Param("courseId") Long courseId,
+                                       @Param("fromDate") LocalDate fromDate,
+                                       @Param("toDate") LocalDate toDate);
+
+    // Tổng theo tháng trên các khóa học của 1 giảng viên (cùng thứ tự cột như sumByMonth)
+    @Query("SELECT YEAR(s.statDate), MONTH(s.statDate), SUM(s.enrollments), SUM(s.completions), " +
+           "SUM(s.revenue), SUM(s.successfulTransactions), SUM(s.refunds) " +
+           "FROM CourseDailyStats s WHERE s.statDate BETWEEN :fromDate AND :toDate " +
+           "AND s.courseId IN (SELECT c.id FROM Course c WHERE c.instructor.id = :instructorId) " +
+           "GROUP BY YEAR(s.statDate), MONTH(s.statDate)")
+    List<Object[]> sumByMonthForInstructor(@Param("instructorId") Long instructorId,
+                                           @Param("fromDate") LocalDate fromDate,
+                                           @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT COALESCE(SUM(s.revenue), 0) FROM CourseDailyStats s WHERE s.statDate BETWEEN :fromDate AND :toDate")
+    Double sumRevenue(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    @Modifying
+    @Query("DELETE FROM CourseDailyStats s WHERE s.courseId = :courseId")
+    void deleteByCourseId(@Param("courseId") Long courseId);
+}
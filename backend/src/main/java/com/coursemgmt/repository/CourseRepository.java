@@ -3,12 +3,17 @@ package com.coursemgmt.repository;
 import com.coursemgmt.model.Course;
 import com.coursemgmt.model.ECourseStatus;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,12 +22,34 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
 
     Optional<Course> findByTitle(String title);
 
+    // [id, title, tên giảng viên] (không load entity Course/User)
+    @Query("SELECT c.id, c.title, i.fullName FROM Course c LEFT JOIN c.instructor i WHERE c.id = :courseId")
+    List<Object[]> findTitleAndInstructorNameById(@Param("courseId") Long courseId);
+
+    @Query("SELECT c.instructor.id FROM Course c WHERE c.id = :courseId")
+    Optional<Long> findInstructorIdById(@Param("courseId") Long courseId);
+
     List<Course> findByInstructorId(Long instructorId);
+
+    boolean existsByIdAndInstructorId(Long id, Long instructorId);
+
+    // Số khóa học theo giảng viên: [instructorId, tổng số khóa học, số khóa học PUBLISHED]
+    @Query("SELECT c.instructor.id, COUNT(c), SUM(CASE WHEN c.status = 'PUBLISHED' THEN 1 ELSE 0 END) " +
+           "FROM Course c WHERE c.instructor.id IN :instructorIds GROUP BY c.instructor.id")
+    List<Object[]> countCoursesByInstructorIds(@Param("instructorIds") Collection<Long> instructorIds);
     
     Long countByStatus(ECourseStatus status);
     
     @Query("SELECT COUNT(DISTINCT c.instructor.id) FROM Course c")
     Long countDistinctInstructors();
+
+    // Dashboard admin: [tổng khóa học, PUBLISHED, PENDING_APPROVAL, DRAFT, số giảng viên khác nhau]
+    @Query("SELECT COUNT(c), " +
+           "SUM(CASE WHEN c.status = 'PUBLISHED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN c.status = 'PENDING_APPROVAL' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN c.status = 'DRAFT' THEN 1 ELSE 0 END), " +
+           "COUNT(DISTINCT c.instructor.id) FROM Course c")
+    List<Object[]> aggregateDashboardStats();
     
     // Tìm các khóa học nổi bật (featured) và đã published - sử dụng @Query explicit để tránh naming convention issues
     @Query("SELECT c FROM Course c WHERE c.isFeatured = true AND c.isPublished = true AND c.status = 'PUBLISHED' ORDER BY c.createdAt DESC")
@@ -32,6 +59,65 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
     @Query("SELECT c FROM Course c WHERE c.isPublished = true AND c.status = 'PUBLISHED' ORDER BY c.createdAt DESC")
     List<Course> findLatestPublishedCourses(Pageable pageable);
 
+    // Danh sách có lọc (Specification) - load sẵn instructor + category để không bị N+1 khi convert sang DTO
+    @Override
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    Page<Course> findAll(Specification<Course> spec, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"instructor", "category"})
+    List<Course> findAll(Specification<Course> spec);
+
+    // ===== Bộ đếm denormalized (enrollmentCount, ratingSum, reviewCount, averageRating) =====
+    // Dùng UPDATE tăng/giảm trực tiếp trên DB để không bị lost update khi nhiều request cùng ghi
+
+    @Modifying
+    @Query("UPDATE Course c SET c.enrollmentCount = c.enrollmentCount + :delta WHERE c.id = :courseId")
+    int incrementEnrollmentCount(@Param("courseId") Long courseId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE Course c SET c.ratingSum = c.ratingSum + :ratingDelta, " +
+           "c.reviewCount = c.reviewCount + :countDelta WHERE c.id = :courseId")
+    int incrementRatingStats(@Param("courseId") Long courseId,
+                             @Param("ratingDelta") long ratingDelta,
+                             @Param("countDelta") long countDelta);
+
+    // Tính lại averageRating từ ratingSum/reviewCount (chạy sau incrementRatingStats trong cùng transaction)
+    @Modifying
+    @Query("UPDATE Course c SET c.averageRating = " +
+           "CASE WHEN c.reviewCount > 0 THEN (c.ratingSum * 1.0) / c.reviewCount ELSE 0.0 END " +
+           "WHERE c.id = :courseId")
+    int refreshAverageRating(@Param("courseId") Long courseId);
+
+    // Đối soát: tính lại toàn bộ bộ đếm từ bảng nguồn cho 1 khoảng id
+    @Modifying
+    @Query("UPDATE Course c SET " +
+           "c.enrollmentCount = (SELECT COUNT(e) FROM Enrollment e WHERE e.course.id = c.id), " +
+           "c.ratingSum = (SELECT COALESCE(SUM(r.rating), 0) FROM Review r WHERE r.course.id = c.id), " +
+           "c.reviewCount = (SELECT COUNT(r) FROM Review r WHERE r.course.id = c.id) " +
+           "WHERE c.id BETWEEN :fromId AND :toId")
+    int recomputeCounters(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Modifying
+    @Query("UPDATE Course c SET c.averageRating = " +
+           "CASE WHEN c.reviewCount > 0 THEN (c.ratingSum * 1.0) / c.reviewCount ELSE 0.0 END " +
+           "WHERE c.id BETWEEN :fromId AND :toId")
+    int refreshAverageRatings(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT MIN(c.id), MAX(c.id) FROM Course c")
+    List<Object[]> findIdRange();
+
+    // Dữ liệu cho CourseSearchIndex: [id, title, description, status, tên danh mục, tên giảng viên, createdAt], theo lô id tăng dần
+    @Query("SELECT c.id, c.title, c.description, c.status, cat.name, i.fullName, c.createdAt FROM Course c " +
+           "LEFT JOIN c.category cat LEFT JOIN c.instructor i " +
+           "WHERE c.id > :afterId ORDER BY c.id")
+    List<Object[]> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Lọc theo danh sách id (ứng viên từ CourseSearchIndex)
+    static Specification<Course> idIn(Collection<Long> ids) {
+        return (course, cq, cb) -> course.get("id").in(ids);
+    }
+
     // Tạo Specification để lọc theo tiêu đề (keyword)
     static Specification<Course> titleContains(String keyword) {
         return (course, cq, cb) -> cb.like(course.get("title"), "%" + keyword + "%");
@@ -71,6 +157,11 @@ public interface CourseRepository extends JpaRepository<Course, Long>, JpaSpecif
         return (course, cq, cb) -> cb.greaterThan(course.get("price"), 0.0);
     }
 
+    // Tạo Specification để lọc theo rating tối thiểu (dùng cột averageRating đã denormalize, có index)
+    static Specification<Course> minRating(Double minRating) {
+        return (course, cq, cb) -> cb.greaterThanOrEqualTo(course.get("averageRating"), minRating);
+    }
+
     // Tạo Specification để lọc theo level
     // Note: Course entity currently doesn't have a 'level' field
     // This specification will be implemented when level field is added to Course entity
@@ -6,12 +6,14 @@ import com.coursemgmt.model.EEnrollmentStatus;
 import com.coursemgmt.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -26,6 +28,45 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
     
     // Check if enrollment exists (for duplicate prevention)
     boolean existsByUserIdAndCourseId(Long userId, Long courseId);
+
+    // Id enrollment của user trong khóa học chứa bài học (chỉ lấy id, không load entity)
+    @Query("SELECT e.id FROM Enrollment e, Lesson l " +
+           "WHERE l.id = :lessonId AND e.course.id = l.chapter.course.id AND e.user.id = :userId")
+    Optional<Long> findIdByUserIdAndLessonId(@Param("userId") Long userId, @Param("lessonId") Long lessonId);
+
+    // --- Bộ đếm completedLessons ---
+
+    @Modifying
+    @Query("UPDATE Enrollment e SET e.completedLessons = e.completedLessons + 1 WHERE e.id = :enrollmentId")
+    int incrementCompletedLessons(@Param("enrollmentId") Long enrollmentId);
+
+    @Query("SELECT e.completedLessons FROM Enrollment e WHERE e.id = :enrollmentId")
+    Long findCompletedLessonsById(@Param("enrollmentId") Long enrollmentId);
+
+    // Trừ bộ đếm của các enrollment đã hoàn thành bài học sắp bị xóa
+    @Modifying
+    @Query("UPDATE Enrollment e SET e.completedLessons = e.completedLessons - 1 " +
+           "WHERE e.id IN (SELECT up.enrollment.id FROM User_Progress up " +
+           "WHERE up.lesson.id = :lessonId AND up.isCompleted = true)")
+    int decrementCompletedLessonsForLesson(@Param("lessonId") Long lessonId);
+
+    // Trừ bộ đếm theo số bài đã hoàn thành trong chapter sắp bị xóa
+    @Modifying
+    @Query("UPDATE Enrollment e SET e.completedLessons = e.completedLessons - " +
+           "(SELECT COUNT(up) FROM User_Progress up WHERE up.enrollment.id = e.id " +
+           "AND up.lesson.chapter.id = :chapterId AND up.isCompleted = true) " +
+           "WHERE e.course.id = :courseId")
+    int decrementCompletedLessonsForChapter(@Param("courseId") Long courseId, @Param("chapterId") Long chapterId);
+
+    // Tính lại bộ đếm từ bảng user_progress (EnrollmentProgressRepairJob)
+    @Modifying
+    @Query("UPDATE Enrollment e SET e.completedLessons = " +
+           "(SELECT COUNT(up) FROM User_Progress up WHERE up.enrollment.id = e.id AND up.isCompleted = true) " +
+           "WHERE e.id BETWEEN :fromId AND :toId")
+    int recomputeCompletedLessons(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT MIN(e.id), MAX(e.id) FROM Enrollment e")
+    List<Object[]> findIdRange();
     
     // Fetch all enrolled course IDs for a user efficiently (for batch checking)
     @Query("SELECT e.course.id FROM Enrollment e WHERE e.user.id = :userId")
@@ -42,6 +83,51 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
            "WHERE e.user.id = :userId")
     List<Enrollment> findByUserIdWithCourse(@Param("userId") Long userId);
     
+    // My Students: mỗi học viên 1 dòng (ghi danh mới nhất vào các khóa học của giảng viên),
+    // lọc theo khóa học / tên, email (search đã lower-case, dạng %term% với %, _, ! escape bằng '!'), sắp xếp + phân trang theo Pageable.
+    // certificate là phía mappedBy của quan hệ 1-1 (Hibernate không nạp lazy được) -> fetch cùng để tránh 1 select mỗi dòng
+    @EntityGraph(attributePaths = {"user", "course", "course.instructor", "certificate"})
+    @Query(value = "SELECT e FROM Enrollment e " +
+           "WHERE e.course.instructor.id = :instructorId " +
+           "AND (:courseId IS NULL OR e.course.id = :courseId) " +
+           "AND (:search IS NULL OR LOWER(e.user.fullName) LIKE :search ESCAPE '!' OR LOWER(e.user.email) LIKE :search ESCAPE '!') " +
+           "AND NOT EXISTS (SELECT 1 FROM Enrollment e2 WHERE e2.user.id = e.user.id " +
+           "AND e2.course.instructor.id = :instructorId AND (:courseId IS NULL OR e2.course.id = :courseId) " +
+           "AND (e2.enrolledAt > e.enrolledAt OR (e2.enrolledAt = e.enrolledAt AND e2.id > e.id)))",
+           countQuery = "SELECT COUNT(e) FROM Enrollment e " +
+           "WHERE e.course.instructor.id = :instructorId " +
+           "AND (:courseId IS NULL OR e.course.id = :courseId) " +
+           "AND (:search IS NULL OR LOWER(e.user.fullName) LIKE :search ESCAPE '!' OR LOWER(e.user.email) LIKE :search ESCAPE '!') " +
+           "AND NOT EXISTS (SELECT 1 FROM Enrollment e2 WHERE e2.user.id = e.user.id " +
+           "AND e2.course.instructor.id = :instructorId AND (:courseId IS NULL OR e2.course.id = :courseId) " +
+           "AND (e2.enrolledAt > e.enrolledAt OR (e2.enrolledAt = e.enrolledAt AND e2.id > e.id)))")
+    Page<Enrollment> findLatestByInstructorStudents(@Param("instructorId") Long instructorId,
+                                                    @Param("courseId") Long courseId,
+                                                    @Param("search") String search,
+                                                    Pageable pageable);
+    
+    // Dashboard học viên - 1 dòng / enrollment của user:
+    // [enrollmentId, status, progress, số bài đã hoàn thành, tổng giây đã học, giây đã học từ :since,
+    //  lần hoạt động cuối (completedAt mới nhất), có chứng chỉ (0/1)]
+    // Giây đã học của 1 bài = lastWatchedTime nếu > 0, nếu không thì durationInMinutes của bài (khi đã hoàn thành)
+    @Query("SELECT e.id, e.status, e.progress, " +
+           "SUM(CASE WHEN up.isCompleted = true THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN up.lastWatchedTime > 0 THEN up.lastWatchedTime " +
+           "WHEN up.isCompleted = true THEN COALESCE(l.durationInMinutes, 0) * 60 ELSE 0 END), " +
+           "SUM(CASE WHEN up.completedAt >= :since THEN " +
+           "(CASE WHEN up.lastWatchedTime > 0 THEN up.lastWatchedTime ELSE COALESCE(l.durationInMinutes, 0) * 60 END) " +
+           "ELSE 0 END), " +
+           "MAX(up.completedAt), " +
+           "COUNT(DISTINCT cert.id) " +
+           "FROM Enrollment e LEFT JOIN e.progresses up LEFT JOIN up.lesson l LEFT JOIN e.certificate cert " +
+           "WHERE e.user.id = :userId " +
+           "GROUP BY e.id, e.status, e.progress")
+    List<Object[]> aggregateProgressByUserId(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    // Dashboard admin: [tổng ghi danh, số ghi danh COMPLETED]
+    @Query("SELECT COUNT(e), SUM(CASE WHEN e.status = 'COMPLETED' THEN 1 ELSE 0 END) FROM Enrollment e")
+    List<Object[]> aggregateDashboardStats();
+    
     // Count enrollments by course and status
     @Query("SELECT COUNT(e) FROM Enrollment e WHERE e.course.id = :courseId AND e.status = :status")
     Long countByCourseIdAndStatus(@Param("courseId") Long courseId, @Param("status") EEnrollmentStatus status);
@@ -49,6 +135,25 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
     // Get enrollments by course
     List<Enrollment> findByCourseId(Long courseId);
     
+    // Thống kê 1 khóa học: [tổng ghi danh, số hoàn thành (progress >= 100), tiến độ trung bình, số chứng chỉ]
+    @Query("SELECT COUNT(e), SUM(CASE WHEN e.progress >= 100 THEN 1 ELSE 0 END), AVG(e.progress), COUNT(cert) " +
+           "FROM Enrollment e LEFT JOIN e.certificate cert WHERE e.course.id = :courseId")
+    List<Object[]> aggregateStatsByCourseId(@Param("courseId") Long courseId);
+    
+    // Thống kê trên tất cả khóa học của giảng viên: [số học viên khác nhau, số chứng chỉ]
+    @Query("SELECT COUNT(DISTINCT e.user.id), COUNT(cert) " +
+           "FROM Enrollment e LEFT JOIN e.certificate cert WHERE e.course.instructor.id = :instructorId")
+    List<Object[]> aggregateStatsByInstructorId(@Param("instructorId") Long instructorId);
+    
+    // Thống kê ghi danh toàn hệ thống theo tháng ghi danh trong [startDate, endDate):
+    // [month, số ghi danh, số học viên khác nhau, số ghi danh đã hoàn thành]
+    @Query("SELECT MONTH(e.enrolledAt), COUNT(e), COUNT(DISTINCT e.user.id), " +
+           "SUM(CASE WHEN e.status = com.coursemgmt.model.EEnrollmentStatus.COMPLETED THEN 1 ELSE 0 END) " +
+           "FROM Enrollment e WHERE e.enrolledAt >= :startDate AND e.enrolledAt < :endDate " +
+           "GROUP BY MONTH(e.enrolledAt)")
+    List<Object[]> aggregateMonthlyStats(@Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
+    
     // Get monthly enrollment count for a course
     @Query("SELECT MONTH(e.enrolledAt) as month, " +
            "YEAR(e.enrolledAt) as year, " +
@@ -2,13 +2,35 @@ package com.coursemgmt.repository;
 
 import com.coursemgmt.model.Lesson;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LessonRepository extends JpaRepository<Lesson, Long> {
     long countByChapter_Course_Id(Long courseId);
     List<Lesson> findByChapterIdOrderByPositionAsc(Long chapterId);
     List<Lesson> findByChapterId(Long chapterId);
+
+    @Query("SELECT l.chapter.course.id FROM Lesson l WHERE l.id = :lessonId")
+    Optional<Long> findCourseIdByLessonId(@Param("lessonId") Long lessonId);
+
+    // [id, position] của các lesson trong chapter (kiểm tra trùng thứ tự khi reorder)
+    @Query("SELECT l.id, l.position FROM Lesson l WHERE l.chapter.id = :chapterId")
+    List<Object[]> findPositionsByChapterId(@Param("chapterId") Long chapterId);
+
+    // Dòng export Excel: [chapterTitle, title, position, contentType, durationInMinutes, videoUrl, content]
+    // Đọc dạng stream (không đưa entity vào persistence context), phải gọi trong transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c.title, l.title, l.position, l.contentType, l.durationInMinutes, l.videoUrl, l.content " +
+           "FROM Lesson l JOIN l.chapter c WHERE c.course.id = :courseId " +
+           "ORDER BY c.position ASC, c.id ASC, l.position ASC, l.id ASC")
+    Stream<Object[]> streamExportRowsByCourseId(@Param("courseId") Long courseId);
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,16 +30,29 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            "ORDER BY m.createdAt ASC")
     List<Message> findByConversationIdOrderByCreatedAtAsc(@Param("conversationId") Long conversationId);
     
-    @Query("SELECT COUNT(m) FROM Message m " +
-           "JOIN m.conversation c " +
-           "JOIN c.participants p " +
-           "WHERE c.id = :conversationId " +
+    // Tin chưa đọc: tin của người khác có id lớn hơn mốc đã đọc của userId
+    @Query("SELECT COUNT(m) FROM Message m, ConversationParticipant p " +
+           "WHERE p.conversation.id = m.conversation.id " +
+           "AND m.conversation.id = :conversationId " +
            "AND p.user.id = :userId " +
-           "AND m.createdAt > COALESCE(p.lastReadAt, :defaultTime) " +
-           "AND m.sender.id != :userId")
+           "AND m.id > COALESCE(p.lastReadMessageId, 0) " +
+           "AND m.sender.id <> :userId")
     Long countUnreadMessages(@Param("conversationId") Long conversationId, 
-                            @Param("userId") Long userId,
-                            @Param("defaultTime") LocalDateTime defaultTime);
+                            @Param("userId") Long userId);
+    
+    /**
+     * Số tin chưa đọc của userId cho nhiều hội thoại trong 1 query: [conversationId, count].
+     * Hội thoại không có tin chưa đọc không có dòng.
+     */
+    @Query("SELECT m.conversation.id, COUNT(m) FROM Message m, ConversationParticipant p " +
+           "WHERE p.conversation.id = m.conversation.id " +
+           "AND p.user.id = :userId " +
+           "AND m.conversation.id IN :conversationIds " +
+           "AND m.sender.id <> :userId " +
+           "AND m.id > COALESCE(p.lastReadMessageId, 0) " +
+           "GROUP BY m.conversation.id")
+    List<Object[]> countUnreadMessagesByConversation(@Param("conversationIds") Collection<Long> conversationIds,
+                                                     @Param("userId") Long userId);
     
     @Query("SELECT m FROM Message m " +
            "WHERE m.conversation.id = :conversationId " +
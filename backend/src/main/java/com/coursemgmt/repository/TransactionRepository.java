@@ -36,6 +36,20 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     @Query("SELECT COUNT(t) FROM Transaction t WHERE t.status = :status")
     Long countByStatus(@Param("status") ETransactionStatus status);
     
+    // Đếm giao dịch theo status trong [startDate, endDate) - dùng index (status, created_at)
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.status = :status " +
+           "AND t.createdAt >= :startDate AND t.createdAt < :endDate")
+    long countByStatusAndCreatedAtRange(
+        @Param("status") ETransactionStatus status,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+    
+    // Dashboard admin: [status, số giao dịch, tổng tiền] theo từng status (đọc được từ index status trước)
+    @Query("SELECT t.status, COUNT(t), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.status IN ('SUCCESS', 'PENDING', 'FAILED') GROUP BY t.status")
+    List<Object[]> aggregateDashboardStats();
+    
     // Tìm giao dịch của user cho 1 course cụ thể
     Optional<Transaction> findByUserIdAndCourseIdAndStatus(
         Long userId, 
@@ -94,6 +108,11 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
            "WHERE t.status = 'SUCCESS' AND t.course.id = :courseId")
     Double calculateRevenueByCourseId(@Param("courseId") Long courseId);
     
+    // Thống kê giao dịch 1 khóa học: [doanh thu từ giao dịch SUCCESS, tổng số giao dịch (mọi trạng thái)]
+    @Query("SELECT COALESCE(SUM(CASE WHEN t.status = 'SUCCESS' THEN t.amount ELSE 0 END), 0), COUNT(t) " +
+           "FROM Transaction t WHERE t.course.id = :courseId")
+    List<Object[]> aggregateStatsByCourseId(@Param("courseId") Long courseId);
+    
     // Doanh thu theo tháng cho một course cụ thể
     @Query("SELECT MONTH(t.createdAt) as month, " +
            "YEAR(t.createdAt) as year, " +
@@ -104,11 +123,17 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
            "ORDER BY month")
     List<Object[]> getMonthlyRevenueByCourse(@Param("courseId") Long courseId, @Param("year") int year);
     
-    // Lấy tất cả transactions của instructor (để lọc và sắp xếp)
-    @Query("SELECT t FROM Transaction t " +
-           "WHERE t.course.instructor.id = :instructorId " +
+    // Giao dịch mới nhất của các courses thuộc instructor (kèm course, user), giới hạn bằng Pageable
+    @Query("SELECT t FROM Transaction t JOIN FETCH t.course c JOIN FETCH t.user " +
+           "WHERE c.instructor.id = :instructorId " +
            "ORDER BY t.createdAt DESC")
-    List<Transaction> findByInstructorIdOrderByCreatedAtDesc(@Param("instructorId") Long instructorId);
+    List<Transaction> findByInstructorIdOrderByCreatedAtDesc(@Param("instructorId") Long instructorId, Pageable pageable);
+    
+    // Tổng tiền giao dịch theo status của các courses thuộc instructor
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+           "WHERE t.status = :status AND t.course.instructor.id = :instructorId")
+    Double sumAmountByInstructorAndStatus(@Param("instructorId") Long instructorId,
+                                          @Param("status") ETransactionStatus status);
     
     // Xóa tất cả transactions của một course
     @Modifying
@@ -13,6 +13,13 @@ import java.util.Set;
 public interface UserProgressRepository extends JpaRepository<User_Progress, Long> {
     Optional<User_Progress> findByEnrollmentAndLesson(Enrollment enrollment, Lesson lesson);
 
+    boolean existsByEnrollmentIdAndLessonIdAndIsCompletedTrue(Long enrollmentId, Long lessonId);
+
+    // Id các bài học đã hoàn thành của user trong 1 khóa học (lớp phủ tiến độ cho nội dung khóa học)
+    @Query("SELECT up.lesson.id FROM User_Progress up " +
+           "WHERE up.enrollment.user.id = :userId AND up.enrollment.course.id = :courseId AND up.isCompleted = true")
+    Set<Long> findCompletedLessonIds(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
     // Đếm số bài đã học trong 1 enrollment
     long countByEnrollmentAndIsCompleted(Enrollment enrollment, boolean isCompleted);
 
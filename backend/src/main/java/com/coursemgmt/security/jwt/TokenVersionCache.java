@@ -0,0 +1,110 @@
+package com.coursemgmt.security.jwt;
+
+import com.coursemgmt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache có giới hạn userId -> token version hiện tại, dùng để thu hồi JWT mà không truy vấn DB ở mỗi request.
+ *
+ * - JWT mang claim "tv" (token version lúc đăng nhập). Token có tv nhỏ hơn version hiện tại bị từ chối.
+ * - Khóa/mở khóa tài khoản tăng version trong DB và cập nhật cache sau khi commit.
+ * - Cache miss hoặc entry quá hạn (TTL) thì đọc lại version từ DB (chỉ 1 cột), nên eviction không làm
+ *   mất hiệu lực thu hồi; TTL giới hạn độ trễ khi chạy nhiều instance.
+ */
+@Component
+public class TokenVersionCache {
+
+    // User đã bị xóa: mọi token đều không hợp lệ
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${coursemgmt.app.tokenVersionCacheSize:10000}")
+    private int maxEntries;
+
+    @Value("${coursemgmt.app.tokenVersionCacheTtlMs:60000}")
+    private long ttlMs;
+
+    private record Entry(int version, long loadedAt) {
+    }
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        boolean current = tokenVersion >= getCurrentVersion(userId);
+        if (!current) {
+            rejected.increment();
+        }
+        return current;
+    }
+
+    private int getCurrentVersion(Long userId) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt() < ttlMs) {
+                hits.increment();
+                return entry.version();
+            }
+        }
+        misses.increment();
+        int version = userRepository.findTokenVersionById(userId).orElse(DELETED);
+        return put(userId, version);
+    }
+
+    // Không bao giờ hạ version đã biết (1 lần đọc DB cũ có thể chạy song song với lúc tăng version)
+    private int put(Long userId, int version) {
+        synchronized (entries) {
+            Entry existing = entries.get(userId);
+            int merged = existing != null ? Math.max(existing.version(), version) : version;
+            entries.put(userId, new Entry(merged, System.currentTimeMillis()));
+            return merged;
+        }
+    }
+
+    /**
+     * Gọi sau khi tăng token version của user (trong transaction): cache được cập nhật khi commit.
+     */
+    public void versionBumped(Long userId, int newVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(userId, newVersion);
+                }
+            });
+        } else {
+            put(userId, newVersion);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,218 @@
+package com.coursemgmt.security.services;
+
+import com.coursemgmt.event.CourseChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cache quyết định phân quyền cho CourseSecurityService (dùng trong @PreAuthorize).
+ *
+ * - Quyết định được lưu theo (userId, loại kiểm tra, id tài nguyên), có TTL và giới hạn số entry (LRU).
+ * - Map id gọn lesson -> course và chapter -> course để không phải đi lesson -> chapter -> course bằng entity.
+ * - Vô hiệu hóa khi ghi danh thay đổi, chuyển quyền sở hữu / xóa khóa học và khi xóa chapter/lesson.
+ *   Việc xóa chạy ngay và chạy lại sau khi transaction commit; quyết định được tính trước lúc vô hiệu hóa
+ *   (generation khác) sẽ không được lưu.
+ * - Đo thời gian mỗi lần kiểm tra (hit/miss) để so sánh trước/sau khi có cache.
+ */
+@Component
+public class CourseAccessCache {
+
+    public enum Check {
+        INSTRUCTOR, INSTRUCTOR_OF_CHAPTER, INSTRUCTOR_OF_LESSON, ENROLLED
+    }
+
+    private record Key(Long userId, Check check, Long resourceId) {
+    }
+
+    private record Decision(boolean allowed, Long courseId, long expiresAt) {
+    }
+
+    @Value("${access.cache.max-entries:20000}")
+    private int maxEntries;
+
+    @Value("${access.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${access.cache.max-id-mappings:200000}")
+    private int maxIdMappings;
+
+    private final LinkedHashMap<Key, Decision> decisions = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Decision> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // chapterId -> courseId, lessonId -> courseId (quan hệ gần như không đổi, chỉ xóa khi xóa nội dung/khóa học)
+    private final Map<Long, Long> chapterCourseIds = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lessonCourseIds = new ConcurrentHashMap<>();
+
+    private long generation = 0;
+
+    private final Map<Check, LatencyStats> latency = new EnumMap<>(Check.class);
+
+    private static final class LatencyStats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder hitNanos = new LongAdder();
+        final LongAdder missNanos = new LongAdder();
+    }
+
+    public CourseAccessCache() {
+        for (Check check : Check.values()) {
+            latency.put(check, new LatencyStats());
+        }
+    }
+
+    /**
+     * Trả về quyết định đã cache, null nếu chưa có hoặc đã hết hạn.
+     */
+    public synchronized Boolean get(Long userId, Check check, Long resourceId) {
+        Key key = new Key(userId, check, resourceId);
+        Decision decision = decisions.get(key);
+        if (decision == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() > decision.expiresAt()) {
+            decisions.remove(key);
+            return null;
+        }
+        return decision.allowed();
+    }
+
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    /**
+     * Lưu quyết định (kèm courseId để vô hiệu hóa theo khóa học).
+     * Bỏ qua nếu đã có vô hiệu hóa kể từ lúc bắt đầu tính (startGeneration khác).
+     */
+    public synchronized void put(Long userId, Check check, Long resourceId, Long courseId,
+                                 boolean allowed, long startGeneration) {
+        if (startGeneration != generation) {
+            return;
+        }
+        decisions.put(new Key(userId, check, resourceId),
+                new Decision(allowed, courseId, System.currentTimeMillis() + ttlSeconds * 1000));
+    }
+
+    public Long getCourseIdOfChapter(Long chapterId) {
+        return chapterCourseIds.get(chapterId);
+    }
+
+    public Long getCourseIdOfLesson(Long lessonId) {
+        return lessonCourseIds.get(lessonId);
+    }
+
+    public void putChapterCourseId(Long chapterId, Long courseId) {
+        if (chapterCourseIds.size() >= maxIdMappings) {
+            chapterCourseIds.clear();
+        }
+        chapterCourseIds.put(chapterId, courseId);
+    }
+
+    public void putLessonCourseId(Long lessonId, Long courseId) {
+        if (lessonCourseIds.size() >= maxIdMappings) {
+            lessonCourseIds.clear();
+        }
+        lessonCourseIds.put(lessonId, courseId);
+    }
+
+    public void recordLatency(Check check, boolean hit, long nanos) {
+        LatencyStats stats = latency.get(check);
+        if (hit) {
+            stats.hits.increment();
+            stats.hitNanos.add(nanos);
+        } else {
+            stats.misses.increment();
+            stats.missNanos.add(nanos);
+        }
+    }
+
+    // --- Vô hiệu hóa ---
+
+    /**
+     * Ghi danh của user vào khóa học vừa được tạo/xóa.
+     */
+    public void onEnrollmentChanged(Long userId, Long courseId) {
+        runNowAndAfterCommit(() -> evict(entry -> entry.getKey().check() == Check.ENROLLED
+                && Objects.equals(entry.getKey().userId(), userId)
+                && Objects.equals(entry.getValue().courseId(), courseId)));
+    }
+
+    /**
+     * Cấu trúc nội dung (chapter/lesson) hoặc chủ sở hữu của khóa học thay đổi:
+     * xóa mọi quyết định và map id liên quan đến khóa học.
+     */
+    public void evictCourse(Long courseId) {
+        runNowAndAfterCommit(() -> {
+            evict(entry -> Objects.equals(entry.getValue().courseId(), courseId));
+            chapterCourseIds.values().removeIf(courseId::equals);
+            lessonCourseIds.values().removeIf(courseId::equals);
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourseChanged(CourseChangedEvent event) {
+        if (event.getType() == CourseChangedEvent.Type.OWNERSHIP_TRANSFERRED
+                || event.getType() == CourseChangedEvent.Type.DELETED) {
+            evictCourse(event.getCourseId());
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        decisions.clear();
+        chapterCourseIds.clear();
+        lessonCourseIds.clear();
+    }
+
+    private synchronized void evict(Predicate<Map.Entry<Key, Decision>> filter) {
+        generation++;
+        decisions.entrySet().removeIf(filter);
+    }
+
+    private void runNowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", decisions.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("chapterMappings", chapterCourseIds.size());
+        stats.put("lessonMappings", lessonCourseIds.size());
+        Map<String, Object> checks = new LinkedHashMap<>();
+        latency.forEach((check, s) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            long hits = s.hits.sum();
+            long misses = s.misses.sum();
+            item.put("hits", hits);
+            item.put("misses", misses);
+            item.put("avgHitMicros", hits > 0 ? s.hitNanos.sum() / 1000.0 / hits : 0.0);
+            item.put("avgMissMicros", misses > 0 ? s.missNanos.sum() / 1000.0 / misses : 0.0);
+            checks.put(check.name(), item);
+        });
+        stats.put("checks", checks);
+        return stats;
+    }
+}
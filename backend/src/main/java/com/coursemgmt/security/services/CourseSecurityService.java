@@ -1,16 +1,15 @@
 package com.coursemgmt.security.services;
 
-import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Supplier;
 
 @Service("courseSecurityService")
-@Transactional(readOnly = true)
 public class CourseSecurityService {
 
     private static final Logger logger = LoggerFactory.getLogger(CourseSecurityService.class);
@@ -20,96 +19,97 @@ public class CourseSecurityService {
     @Autowired private ChapterRepository chapterRepository;
     @Autowired private LessonRepository lessonRepository;
     @Autowired private EnrollmentRepository enrollmentRepository;
-    @Autowired private UserRepository userRepository;
+    @Autowired private CourseAccessCache courseAccessCache;
 
     // Kiểm tra chủ khóa học
     public boolean isInstructor(Authentication authentication, Long courseId) {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-        Course course = courseRepository.findById(courseId).orElse(null);
-        if (course == null || course.getInstructor() == null) return false;
-        return course.getInstructor().getId().equals(userDetails.getId());
+        return check(userDetails.getId(), CourseAccessCache.Check.INSTRUCTOR, courseId, () -> courseId);
     }
 
     // Kiểm tra chủ chương
     public boolean isInstructorOfChapter(Authentication authentication, Long chapterId) {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-        Chapter chapter = chapterRepository.findById(chapterId).orElse(null);
-        if (chapter == null) return false;
-
-        // Truy cập LAZY sẽ hoạt động vì đã có @Transactional
-        return chapter.getCourse().getInstructor().getId().equals(userDetails.getId());
+        return check(userDetails.getId(), CourseAccessCache.Check.INSTRUCTOR_OF_CHAPTER, chapterId,
+                () -> getCourseIdOfChapter(chapterId));
     }
 
     // Kiểm tra chủ bài học
     public boolean isInstructorOfLesson(Authentication authentication, Long lessonId) {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-        Lesson lesson = lessonRepository.findById(lessonId).orElse(null);
-        if (lesson == null) return false;
-
-        return lesson.getChapter().getCourse().getInstructor().getId().equals(userDetails.getId());
+        return check(userDetails.getId(), CourseAccessCache.Check.INSTRUCTOR_OF_LESSON, lessonId,
+                () -> getCourseIdOfLesson(lessonId));
     }
 
 
     // Kiểm tra đã ghi danh (cho bài học)
     public boolean isEnrolled(Authentication authentication, Long lessonId) {
         try {
-            System.out.println("DEBUG isEnrolled: Checking enrollment for lessonId=" + lessonId);
-            
             if (authentication == null || authentication.getPrincipal() == null) {
                 logger.warn("isEnrolled: Authentication or principal is null");
-                System.out.println("DEBUG isEnrolled: Authentication or principal is null");
                 return false;
             }
-            
+
             UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            System.out.println("DEBUG isEnrolled: userId=" + userDetails.getId() + ", username=" + userDetails.getUsername());
-            
-            User user = userRepository.findById(userDetails.getId()).orElse(null);
-            Lesson lesson = lessonRepository.findById(lessonId).orElse(null);
+            return check(userDetails.getId(), CourseAccessCache.Check.ENROLLED, lessonId,
+                    () -> getCourseIdOfLesson(lessonId));
+        } catch (Exception e) {
+            logger.error("Error in isEnrolled for lessonId {}: {}", lessonId, e.getMessage(), e);
+            return false;
+        }
+    }
 
-            if (user == null) {
-                logger.warn("isEnrolled: User not found for ID: {}", userDetails.getId());
-                System.out.println("DEBUG isEnrolled: User not found for ID: " + userDetails.getId());
-                return false;
-            }
-            
-            if (lesson == null) {
-                logger.warn("isEnrolled: Lesson not found for ID: {}", lessonId);
-                System.out.println("DEBUG isEnrolled: Lesson not found for ID: " + lessonId);
-                return false;
-            }
-            
-            System.out.println("DEBUG isEnrolled: Found lesson '" + lesson.getTitle() + "'");
+    /**
+     * Kiểm tra qua cache quyết định; cache miss thì chỉ truy vấn id (course -> instructorId, enrollment exists).
+     * Tài nguyên không tồn tại trả về false và không cache (id mới tạo sau đó vẫn được kiểm tra đúng).
+     */
+    private boolean check(Long userId, CourseAccessCache.Check check, Long resourceId, Supplier<Long> courseIdResolver) {
+        long start = System.nanoTime();
+        Boolean cached = courseAccessCache.get(userId, check, resourceId);
+        if (cached != null) {
+            courseAccessCache.recordLatency(check, true, System.nanoTime() - start);
+            return cached;
+        }
 
-            // Load chapter and course to avoid LazyInitializationException
-            Chapter chapter = lesson.getChapter();
-            if (chapter == null) {
-                logger.warn("isEnrolled: Chapter not found for lesson ID: {}", lessonId);
-                System.out.println("DEBUG isEnrolled: Chapter not found for lesson");
-                return false;
+        long generation = courseAccessCache.currentGeneration();
+        boolean allowed = false;
+        Long courseId = resourceId != null ? courseIdResolver.get() : null;
+        if (courseId != null) {
+            if (check == CourseAccessCache.Check.ENROLLED) {
+                allowed = enrollmentRepository.existsByUserIdAndCourseId(userId, courseId);
+                courseAccessCache.put(userId, check, resourceId, courseId, allowed, generation);
+            } else {
+                Long instructorId = courseRepository.findInstructorIdById(courseId).orElse(null);
+                if (instructorId != null) {
+                    allowed = instructorId.equals(userId);
+                    courseAccessCache.put(userId, check, resourceId, courseId, allowed, generation);
+                }
             }
-            
-            System.out.println("DEBUG isEnrolled: Found chapter '" + chapter.getTitle() + "'");
-            
-            Course course = chapter.getCourse();
-            if (course == null) {
-                logger.warn("isEnrolled: Course not found for chapter ID: {}", chapter.getId());
-                System.out.println("DEBUG isEnrolled: Course not found for chapter");
-                return false;
+        }
+        courseAccessCache.recordLatency(check, false, System.nanoTime() - start);
+        return allowed;
+    }
+
+    private Long getCourseIdOfChapter(Long chapterId) {
+        Long courseId = courseAccessCache.getCourseIdOfChapter(chapterId);
+        if (courseId == null) {
+            courseId = chapterRepository.findCourseIdByChapterId(chapterId).orElse(null);
+            if (courseId != null) {
+                courseAccessCache.putChapterCourseId(chapterId, courseId);
             }
-            
-            System.out.println("DEBUG isEnrolled: Found course '" + course.getTitle() + "' (ID=" + course.getId() + ")");
+        }
+        return courseId;
+    }
 
-            boolean enrolled = enrollmentRepository.findByUserAndCourse(user, course).isPresent();
-            System.out.println("DEBUG isEnrolled: User " + user.getId() + " enrolled in course " + course.getId() + ": " + enrolled);
-            logger.debug("isEnrolled: User {} enrolled in course {}: {}", user.getId(), course.getId(), enrolled);
-            return enrolled;
-        } catch (Exception e) {
-            logger.error("Error in isEnrolled for lessonId {}: {}", lessonId, e.getMessage(), e);
-            System.out.println("DEBUG isEnrolled ERROR: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+    private Long getCourseIdOfLesson(Long lessonId) {
+        Long courseId = courseAccessCache.getCourseIdOfLesson(lessonId);
+        if (courseId == null) {
+            courseId = lessonRepository.findCourseIdByLessonId(lessonId).orElse(null);
+            if (courseId != null) {
+                courseAccessCache.putLessonCourseId(lessonId, courseId);
+            }
         }
+        return courseId;
     }
 
     // Kiểm tra học viên có phải là chính họ không (cho enrollment)
@@ -20,17 +20,25 @@ public class UserDetailsImpl implements UserDetails {
     @JsonIgnore
     private String password;
     private Boolean enabled;
+    private Integer tokenVersion;
 
     private Collection<? extends GrantedAuthority> authorities;
 
     public UserDetailsImpl(Long id, String username, String email, String password,
                            Boolean enabled,
                            Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, email, password, enabled, 0, authorities);
+    }
+
+    public UserDetailsImpl(Long id, String username, String email, String password,
+                           Boolean enabled, Integer tokenVersion,
+                           Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
         this.enabled = enabled != null ? enabled : true; // Default to true if null
+        this.tokenVersion = tokenVersion != null ? tokenVersion : 0;
         this.authorities = authorities;
     }
 
@@ -45,6 +53,7 @@ public class UserDetailsImpl implements UserDetails {
                 user.getEmail(),
                 user.getPassword(),
                 user.getIsEnabled(),
+                user.getTokenVersion(),
                 authorities);
     }
 
@@ -61,6 +70,10 @@ public class UserDetailsImpl implements UserDetails {
         return email;
     }
 
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
     @Override
     public String getPassword() {
         return password;
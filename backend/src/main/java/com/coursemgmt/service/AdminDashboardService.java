@@ -6,8 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.TemporalAdjusters;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +26,9 @@ public class AdminDashboardService {
     
     @Autowired
     private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
     
 
     /**
@@ -48,20 +52,13 @@ public class AdminDashboardService {
         );
         stats.put("totalRevenue", totalRevenue != null ? totalRevenue : 0.0);
         
-        // Số giao dịch trong tháng
-        LocalDateTime startOfMonth = LocalDateTime.now()
-            .with(TemporalAdjusters.firstDayOfMonth())
-            .withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfMonth = LocalDateTime.now();
-        
-        // Đếm số giao dịch thành công trong tháng hiện tại
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        long monthlyTransactions = allTransactions.stream()
-            .filter(t -> t.getStatus() == ETransactionStatus.SUCCESS)
-            .filter(t -> t.getCreatedAt() != null && 
-                        t.getCreatedAt().isAfter(startOfMonth) && 
-                        t.getCreatedAt().isBefore(endOfMonth.plusDays(1)))
-            .count();
+        // Số giao dịch thành công trong tháng hiện tại (COUNT theo index status, created_at)
+        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+        long monthlyTransactions = transactionRepository.countByStatusAndCreatedAtRange(
+            ETransactionStatus.SUCCESS,
+            startOfMonth,
+            startOfMonth.plusMonths(1)
+        );
         stats.put("monthlyTransactions", monthlyTransactions);
         
         return stats;
@@ -73,31 +70,20 @@ public class AdminDashboardService {
     public List<Map<String, Object>> getRevenueChart() {
         List<Map<String, Object>> chartData = new ArrayList<>();
         
-        LocalDateTime now = LocalDateTime.now();
-        int currentYear = now.getYear();
-        
-        // Lấy doanh thu theo tháng
-        List<Object[]> monthlyRevenue = transactionRepository.getMonthlyRevenue(currentYear);
-        
-        // Tạo map để dễ truy cập
-        Map<Integer, Double> revenueMap = new HashMap<>();
-        for (Object[] row : monthlyRevenue) {
-            Integer month = (Integer) row[0];
-            Double revenue = ((Number) row[2]).doubleValue();
-            revenueMap.put(month, revenue);
-        }
+        // Doanh thu theo tháng của 12 tháng gần nhất, đọc từ rollup theo ngày (course_daily_stats)
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth firstMonth = currentMonth.minusMonths(11);
+        Map<YearMonth, CourseStatsRollupService.MonthlyTotals> monthlyTotals = courseStatsRollupService
+                .monthlyTotals(firstMonth.atDay(1), currentMonth.atEndOfMonth());
         
-        // Tạo dữ liệu cho 12 tháng gần nhất
-        for (int i = 11; i >= 0; i--) {
-            LocalDateTime monthDate = now.minusMonths(i);
-            int month = monthDate.getMonthValue();
-            int year = monthDate.getYear();
+        for (YearMonth yearMonth = firstMonth; !yearMonth.isAfter(currentMonth); yearMonth = yearMonth.plusMonths(1)) {
+            int month = yearMonth.getMonthValue();
             
             Map<String, Object> monthData = new HashMap<>();
             monthData.put("month", month);
-            monthData.put("year", year);
+            monthData.put("year", yearMonth.getYear());
             monthData.put("monthName", getMonthName(month));
-            monthData.put("revenue", revenueMap.getOrDefault(month, 0.0));
+            monthData.put("revenue", monthlyTotals.getOrDefault(yearMonth, CourseStatsRollupService.MonthlyTotals.EMPTY).revenue());
             
             chartData.add(monthData);
         }
@@ -3,6 +3,7 @@ package com.coursemgmt.service;
 import com.coursemgmt.dto.AdminUserDTO;
 import com.coursemgmt.model.User;
 import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.security.jwt.TokenVersionCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -22,6 +23,9 @@ public class AdminUserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
     /**
      * Lấy danh sách users với phân trang và tìm kiếm
      */
@@ -64,6 +68,10 @@ public class AdminUserService {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
         
+        if (isEnabled != null && !isEnabled.equals(user.getIsEnabled())) {
+            // Khóa/mở khóa -> tăng token version để thu hồi các JWT đã cấp
+            user.setTokenVersion(user.getTokenVersion() + 1);
+        }
         user.setIsEnabled(isEnabled);
         if (isEnabled != null && !isEnabled) {
             // Khi khóa tài khoản, lưu lý do
@@ -76,6 +84,7 @@ public class AdminUserService {
         }
         
         User savedUser = userRepository.save(user);
+        tokenVersionCache.versionBumped(savedUser.getId(), savedUser.getTokenVersion());
         return AdminUserDTO.fromEntity(savedUser);
     }
 }
@@ -0,0 +1,231 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.ECourseStatus;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache trong bộ nhớ cho các trang catalog công khai (CourseService.getAllPublishedCourses).
+ *
+ * - Chỉ lưu phần không phụ thuộc người dùng của trang (CourseResponse chưa có isEnrolled/progress);
+ *   phần theo user được CourseService gắn lên bản copy sau khi đọc cache.
+ * - Giới hạn số entry (LRU) + thời gian sống tối đa, đếm hit/miss/eviction.
+ * - Vô hiệu hóa theo CourseChangedEvent sau khi transaction commit: chỉ xóa các trang chứa khóa học
+ *   thay đổi, hoặc các trang có bộ lọc khớp với khóa học trước/sau thay đổi mà tập kết quả
+ *   hoặc thứ tự sắp xếp có thể đã đổi.
+ */
+@Component
+public class CatalogPageCache {
+
+    // Các trường sắp xếp thay đổi khi có enrollment/review (sự kiện STATS)
+    private static final Set<String> COUNTER_SORT_FIELDS = Set.of("enrollmentCount", "reviewCount", "averageRating");
+
+    @Value("${catalog.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${catalog.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<CatalogQuery, CachedPage> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CatalogQuery, CachedPage> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Tăng mỗi lần vô hiệu hóa; trang được build trước đó sẽ không được put vào cache (tránh ghi dữ liệu cũ)
+    private long generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Khóa cache: toàn bộ tham số lọc/sắp xếp/phân trang của 1 request catalog.
+     */
+    public record CatalogQuery(String keyword, Long categoryId, Double minPrice, Double maxPrice,
+                               Boolean isFree, Boolean isPaid, Double minRating,
+                               String sort, int page, int size) {
+
+        public CatalogQuery {
+            keyword = keyword != null && !keyword.trim().isEmpty() ? keyword.trim() : null;
+        }
+
+        String sortField() {
+            return sort.split(",")[0].trim();
+        }
+
+        // Cùng logic với các Specification trong CourseService.getAllPublishedCourses
+        boolean matches(CourseChangedEvent.Snapshot course) {
+            if (course == null || course.status() != ECourseStatus.PUBLISHED) {
+                return false;
+            }
+            if (keyword != null && !CourseSearchIndex.matches(keyword, course)) {
+                return false;
+            }
+            if (categoryId != null && !categoryId.equals(course.categoryId())) {
+                return false;
+            }
+            double price = course.price() != null ? course.price() : 0.0;
+            if (Boolean.TRUE.equals(isFree)) {
+                if (price != 0.0) return false;
+            } else if (Boolean.TRUE.equals(isPaid)) {
+                if (price <= 0.0) return false;
+            } else {
+                if (minPrice != null && price < minPrice) return false;
+                if (maxPrice != null && price > maxPrice) return false;
+            }
+            if (minRating != null && (course.averageRating() == null || course.averageRating() < minRating)) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 1 trang đã cache. Nội dung chỉ được đọc qua copyContent() để overlay theo user không sửa bản gốc.
+     */
+    public static final class CachedPage {
+        private final List<CourseResponse> content;
+        private final long totalElements;
+        private final Set<Long> courseIds;
+        private final long createdAtMillis = System.currentTimeMillis();
+
+        private CachedPage(List<CourseResponse> content, long totalElements) {
+            this.content = List.copyOf(content);
+            this.totalElements = totalElements;
+            Set<Long> ids = new HashSet<>();
+            content.forEach(dto -> ids.add(dto.getId()));
+            this.courseIds = ids;
+        }
+
+        public long getTotalElements() {
+            return totalElements;
+        }
+
+        public List<CourseResponse> copyContent() {
+            List<CourseResponse> copies = new ArrayList<>(content.size());
+            for (CourseResponse template : content) {
+                CourseResponse copy = new CourseResponse();
+                BeanUtils.copyProperties(template, copy);
+                copies.add(copy);
+            }
+            return copies;
+        }
+    }
+
+    public synchronized CachedPage get(CatalogQuery query) {
+        CachedPage page = entries.get(query);
+        if (page != null && System.currentTimeMillis() - page.createdAtMillis > ttlSeconds * 1000) {
+            entries.remove(query);
+            evictions.increment();
+            page = null;
+        }
+        if (page == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return page;
+    }
+
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    /**
+     * Lưu trang vừa build. Nếu đã có vô hiệu hóa xảy ra kể từ lúc bắt đầu query (generation khác)
+     * thì không lưu, nhưng vẫn trả về CachedPage để request hiện tại dùng.
+     */
+    public synchronized CachedPage put(CatalogQuery query, List<CourseResponse> content, long totalElements,
+                                       long startGeneration) {
+        CachedPage page = new CachedPage(content, totalElements);
+        if (startGeneration == generation) {
+            entries.put(query, page);
+        }
+        return page;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onCourseChanged(CourseChangedEvent event) {
+        generation++;
+        Iterator<Map.Entry<CatalogQuery, CachedPage>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CatalogQuery, CachedPage> entry = it.next();
+            if (isAffected(entry.getKey(), entry.getValue(), event)) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    private boolean isAffected(CatalogQuery query, CachedPage page, CourseChangedEvent event) {
+        // Dữ liệu hiển thị của khóa học trong trang đã đổi
+        if (page.courseIds.contains(event.getCourseId())) {
+            return true;
+        }
+        if (event.getType() == CourseChangedEvent.Type.STATS) {
+            return query.minRating() != null || COUNTER_SORT_FIELDS.contains(query.sortField());
+        }
+        boolean matchedBefore = query.matches(event.getBefore());
+        boolean matchesAfter = query.matches(event.getAfter());
+        if (!matchedBefore && !matchesAfter) {
+            return false;
+        }
+        // Khóa học vào/ra khỏi tập kết quả -> tổng số và vị trí các trang đều đổi
+        if (matchedBefore != matchesAfter) {
+            return true;
+        }
+        // Vẫn thuộc tập kết quả: chỉ ảnh hưởng nếu giá trị của trường sắp xếp thay đổi
+        return !Objects.equals(sortValue(event.getBefore(), query.sortField()),
+                sortValue(event.getAfter(), query.sortField()));
+    }
+
+    private Object sortValue(CourseChangedEvent.Snapshot course, String field) {
+        return switch (field) {
+            case "id" -> course.id();
+            case "title" -> course.title();
+            case "description" -> course.description();
+            case "price" -> course.price();
+            case "status" -> course.status();
+            case "averageRating" -> course.averageRating();
+            case "createdAt" -> course.createdAt();
+            case "updatedAt" -> course.updatedAt();
+            case "enrollmentCount", "reviewCount" -> "unchanged"; // Chỉ đổi qua sự kiện STATS
+            default -> new Object(); // Không có trong snapshot -> coi như đã đổi
+        };
+    }
+
+    public synchronized void clear() {
+        generation++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        long lookups = hits.sum() + misses.sum();
+        stats.put("hitRate", lookups > 0 ? (double) hits.sum() / lookups : 0.0);
+        return stats;
+    }
+}
@@ -0,0 +1,46 @@
+package com.coursemgmt.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chuyển trạng thái đọc cũ (bảng message_reads + last_read_at) sang mốc ConversationParticipant.lastReadMessageId.
+ * Chạy 1 lần khi khởi động cho các participant chưa có mốc: mốc = id lớn nhất trong các tin nhắn của hội thoại
+ * đã có bản ghi message_reads của participant hoặc gửi trước last_read_at. Không có tin nào -> 0 (chưa đọc gì).
+ */
+@Component
+public class ChatReadWatermarkMigration {
+
+    private static final String MIGRATE_SQL =
+            "UPDATE conversation_participants p SET last_read_message_id = COALESCE(" +
+            "(SELECT MAX(m.id) FROM messages m WHERE m.conversation_id = p.conversation_id " +
+            "AND (m.created_at <= p.last_read_at " +
+            "OR EXISTS (SELECT 1 FROM message_reads mr WHERE mr.message_id = m.id AND mr.user_id = p.user_id))), 0) " +
+            "WHERE p.last_read_message_id IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        try {
+            migrate();
+        } catch (Exception e) {
+            System.err.println("ChatReadWatermarkMigration: Failed to migrate read state: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return số participant được gán mốc đã đọc
+     */
+    public int migrate() {
+        int migrated = jdbcTemplate.update(MIGRATE_SQL);
+        if (migrated > 0) {
+            System.out.println("ChatReadWatermarkMigration: Set read watermark for " + migrated + " participants");
+        }
+        return migrated;
+    }
+}
@@ -2,10 +2,12 @@ package com.coursemgmt.service;
 
 import com.coursemgmt.dto.*;
 import com.coursemgmt.dto.ChatMessageResponse;
+import com.coursemgmt.event.UnreadChangedEvent;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -14,7 +16,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,10 +31,11 @@ public class ChatService {
     private final ConversationRepository conversationRepository;
     private final ConversationParticipantRepository participantRepository;
     private final MessageRepository messageRepository;
-    private final MessageReadRepository messageReadRepository;
     private final UserRepository userRepository;
     private final EnrollmentRepository enrollmentRepository;
     private final CourseRepository courseRepository;
+    private final UnreadCounterStore unreadCounterStore;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Transactional
     public ConversationResponse createConversation(Long currentUserId, CreateConversationRequest request) {
@@ -108,17 +115,7 @@ public class ChatService {
             List<Conversation> conversations = conversationRepository
                     .findByUserIdOrderByLastMessageAtDesc(userId);
             
-            return conversations.stream()
-                    .map(conv -> {
-                        try {
-                            return getConversationResponse(conv, userId);
-                        } catch (Exception e) {
-                            log.error("Error processing conversation {}: {}", conv.getId(), e.getMessage(), e);
-                            // Return a minimal response to avoid breaking the entire list
-                            return ConversationResponse.fromEntity(conv, null, null, 0L);
-                        }
-                    })
-                    .collect(Collectors.toList());
+            return getConversationResponses(conversations, userId);
         } catch (Exception e) {
             log.error("Error getting user conversations for user {}: {}", userId, e.getMessage(), e);
             throw new RuntimeException("Error fetching conversations: " + e.getMessage(), e);
@@ -140,8 +137,10 @@ public class ChatService {
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
         
         // Verify sender is participant
-        participantRepository.findByConversationIdAndUserId(conversation.getId(), senderId)
-                .orElseThrow(() -> new RuntimeException("User is not a participant"));
+        List<ConversationParticipant> participants = participantRepository.findByConversationId(conversation.getId());
+        if (participants.stream().noneMatch(p -> p.getUser().getId().equals(senderId))) {
+            throw new RuntimeException("User is not a participant");
+        }
         
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
@@ -156,45 +155,41 @@ public class ChatService {
         message.setFileSize(request.getFileSize());
         
         message = messageRepository.save(message);
+        ChatMessageResponse response = ChatMessageResponse.fromEntity(message, false, null);
         
-        // Update conversation last message time
-        conversation.setLastMessageAt(LocalDateTime.now());
-        conversationRepository.save(conversation);
+        // Update conversation last message (time + preview cho danh sách hội thoại)
+        applyLastMessage(message);
+        
+        // Bộ đếm chưa đọc của những người nhận tăng sau khi commit
+        for (ConversationParticipant participant : participants) {
+            Long recipientId = participant.getUser().getId();
+            if (!recipientId.equals(senderId)) {
+                eventPublisher.publishEvent(new UnreadChangedEvent(
+                        UnreadChangedEvent.Type.CHAT_MESSAGE, recipientId, conversation.getId()));
+            }
+        }
         
-        return ChatMessageResponse.fromEntity(message, false, null);
+        return response;
     }
     
     @Transactional(readOnly = true)
     public Page<ChatMessageResponse> getMessages(Long conversationId, Long userId, int page, int size) {
-        // Verify user is participant
-        participantRepository.findByConversationIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new RuntimeException("User is not a participant"));
+        // Verify user is participant; trạng thái đọc suy ra từ mốc đã đọc của các participant
+        ReadWatermarks watermarks = ReadWatermarks.of(participantRepository.findByConversationId(conversationId), userId);
+        if (!watermarks.participant()) {
+            throw new RuntimeException("User is not a participant");
+        }
         
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         Page<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
         
-        // Get read status for each message
-        List<MessageRead> reads = messageReadRepository.findByConversationIdAndUserId(conversationId, userId);
-        
         return messages.map(msg -> {
-            MessageRead read = reads.stream()
-                    .filter(r -> {
-                        try {
-                            return r.getMessage() != null && r.getMessage().getId() != null && 
-                                   r.getMessage().getId().equals(msg.getId());
-                        } catch (Exception e) {
-                            log.warn("Error checking message read status: {}", e.getMessage());
-                            return false;
-                        }
-                    })
-                    .findFirst()
-                    .orElse(null);
-            
             try {
+                Long senderId = msg.getSender().getId();
                 return ChatMessageResponse.fromEntity(
                         msg,
-                        read != null,
-                        read != null ? read.getReadAt() : null
+                        watermarks.isRead(msg.getId(), senderId),
+                        watermarks.readAt(msg.getId(), senderId)
                 );
             } catch (Exception e) {
                 log.error("Error creating ChatMessageResponse for message {}: {}", msg.getId(), e.getMessage(), e);
@@ -214,8 +209,12 @@ public class ChatService {
         
         message = messageRepository.save(message);
         
-        MessageRead read = messageReadRepository.findByMessageIdAndUserId(messageId, userId).orElse(null);
-        return ChatMessageResponse.fromEntity(message, read != null, read != null ? read.getReadAt() : null);
+        ReadWatermarks watermarks = ReadWatermarks.of(
+                participantRepository.findByConversationId(message.getConversation().getId()), userId);
+        ChatMessageResponse response = ChatMessageResponse.fromEntity(message,
+                watermarks.isRead(messageId, userId), watermarks.readAt(messageId, userId));
+        applyLastMessage(message);
+        return response;
     }
     
     @Transactional
@@ -226,51 +225,48 @@ public class ChatService {
         message.setIsDeleted(true);
         message.setDeletedAt(LocalDateTime.now());
         messageRepository.save(message);
+        applyLastMessage(message);
     }
     
+    /**
+     * Ghi message làm tin nhắn cuối bằng UPDATE có điều kiện (không đọc - sửa - ghi entity Conversation):
+     * tin cũ hơn commit sau không ghi đè được tin mới hơn; sửa / xóa tin không phải tin cuối không đổi preview.
+     * Persistence context bị clear sau câu lệnh, nên dựng response trước khi gọi.
+     */
+    private void applyLastMessage(Message message) {
+        conversationRepository.applyLastMessage(message.getConversation().getId(), message.getId(),
+                Conversation.previewOf(message.getContent()), message.getMessageType(),
+                Boolean.TRUE.equals(message.getIsDeleted()), Boolean.TRUE.equals(message.getIsEdited()),
+                message.getFileName(), message.getSender(), message.getCreatedAt(), LocalDateTime.now());
+    }
+    
+    /**
+     * Đánh dấu đã đọc đến tin nhắn cuối hiện tại của hội thoại (dời mốc lastReadMessageId, không ghi từng tin).
+     *
+     * @return mốc đã đọc sau khi cập nhật (null nếu hội thoại chưa có tin nhắn)
+     */
     @Transactional
-    public void markAsRead(Long conversationId, Long userId) {
+    public Long markAsRead(Long conversationId, Long userId) {
         ConversationParticipant participant = participantRepository
                 .findByConversationIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> new RuntimeException("Participant not found"));
         
-        participant.setLastReadAt(LocalDateTime.now());
-        participantRepository.save(participant);
-        
-        // Mark all unread messages as read
-        List<Message> allMessages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
-        List<Message> unreadMessages = allMessages.stream()
-                .filter(msg -> {
-                    // Check if message is from other users
-                    try {
-                        Long senderId = msg.getSender().getId();
-                        if (senderId.equals(userId)) {
-                            return false; // Skip own messages
-                        }
-                    } catch (Exception e) {
-                        log.warn("Error getting sender ID: {}", e.getMessage());
-                        return false;
-                    }
-                    
-                    // Check if already read
-                    MessageRead existingRead = messageReadRepository
-                            .findByMessageIdAndUserId(msg.getId(), userId)
-                            .orElse(null);
-                    return existingRead == null;
-                })
-                .collect(Collectors.toList());
-        
-        for (Message msg : unreadMessages) {
-            MessageRead read = new MessageRead();
-            read.setMessage(msg);
-            read.setUser(participant.getUser());
-            messageReadRepository.save(read);
+        Long lastMessageId = participant.getConversation().getLastMessageId();
+        Long watermark = participant.getLastReadMessageId();
+        if (lastMessageId == null) {
+            return watermark;
         }
+        // Chỉ dời mốc tới trước (UPDATE có điều kiện); không dời được thì mốc hiện tại đã >= lastMessageId
+        if (participantRepository.advanceReadWatermark(participant.getId(), lastMessageId, LocalDateTime.now()) > 0) {
+            eventPublisher.publishEvent(new UnreadChangedEvent(
+                    UnreadChangedEvent.Type.CHAT_READ, userId, conversationId));
+        }
+        return watermark != null ? Math.max(watermark, lastMessageId) : lastMessageId;
     }
     
     @Transactional(readOnly = true)
     public Long getUnreadCount(Long conversationId, Long userId) {
-        return messageRepository.countUnreadMessages(conversationId, userId, LocalDateTime.MIN);
+        return unreadCounterStore.getChatUnread(conversationId, userId);
     }
     
     /**
@@ -301,49 +297,111 @@ public class ChatService {
     }
     
     private ConversationResponse getConversationResponse(Conversation conversation, Long currentUserId) {
-        try {
-            // Get other participant
-            List<ConversationParticipant> otherParticipants = participantRepository
-                    .findOtherParticipants(conversation.getId(), currentUserId);
-            
-            ConversationResponse.UserInfo otherParticipant = null;
-            if (!otherParticipants.isEmpty()) {
-                ConversationParticipant participant = otherParticipants.get(0);
-                User otherUser = participant.getUser();
-                if (otherUser != null) {
-                    otherParticipant = ConversationResponse.UserInfo.builder()
-                            .id(otherUser.getId())
-                            .fullName(otherUser.getFullName())
-                            .avatar(otherUser.getAvatarUrl())
-                            .role(participant.getRole() != null ? participant.getRole().name() : "STUDENT")
-                            .build();
-                }
+        return getConversationResponses(List.of(conversation), currentUserId).get(0);
+    }
+    
+    /**
+     * Dựng ConversationResponse cho nhiều hội thoại với số query cố định (không phụ thuộc số hội thoại / tin nhắn):
+     * participants (kèm user, mốc đã đọc) và số tin chưa đọc GROUP BY hội thoại.
+     * Tin nhắn cuối lấy từ preview denormalized trên Conversation.
+     */
+    private List<ConversationResponse> getConversationResponses(List<Conversation> conversations, Long currentUserId) {
+        if (conversations.isEmpty()) {
+            return List.of();
+        }
+        List<Long> conversationIds = conversations.stream()
+                .map(Conversation::getId)
+                .collect(Collectors.toList());
+        
+        // Người còn lại trong mỗi hội thoại (participant đầu tiên không phải currentUser)
+        Map<Long, ConversationParticipant> otherParticipants = new HashMap<>();
+        Map<Long, List<ConversationParticipant>> participantsByConversation = new HashMap<>();
+        for (ConversationParticipant participant : participantRepository.findByConversationIdsWithUser(conversationIds)) {
+            Long conversationId = participant.getConversation().getId();
+            participantsByConversation.computeIfAbsent(conversationId, id -> new ArrayList<>()).add(participant);
+            if (!participant.getUser().getId().equals(currentUserId)) {
+                otherParticipants.putIfAbsent(conversationId, participant);
             }
-            
-            // Get last message - query separately to avoid LAZY loading issues
-            ChatMessageResponse lastMessage = null;
-            List<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversation.getId());
-            if (!messages.isEmpty()) {
-                Message lastMsg = messages.get(messages.size() - 1); // Last message (most recent)
-                if (lastMsg != null && lastMsg.getSender() != null) {
-                    MessageRead read = messageReadRepository
-                            .findByMessageIdAndUserId(lastMsg.getId(), currentUserId)
-                            .orElse(null);
-                    lastMessage = ChatMessageResponse.fromEntity(
-                            lastMsg,
-                            read != null,
-                            read != null ? read.getReadAt() : null
-                    );
+        }
+        
+        Map<Long, Long> unreadCounts = new HashMap<>();
+        for (Object[] row : messageRepository.countUnreadMessagesByConversation(conversationIds, currentUserId)) {
+            unreadCounts.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        
+        return conversations.stream()
+                .map(conv -> {
+                    try {
+                        ConversationResponse.UserInfo otherParticipant = null;
+                        ConversationParticipant participant = otherParticipants.get(conv.getId());
+                        if (participant != null) {
+                            User otherUser = participant.getUser();
+                            otherParticipant = ConversationResponse.UserInfo.builder()
+                                    .id(otherUser.getId())
+                                    .fullName(otherUser.getFullName())
+                                    .avatar(otherUser.getAvatarUrl())
+                                    .role(participant.getRole() != null ? participant.getRole().name() : "STUDENT")
+                                    .build();
+                        }
+                        
+                        ReadWatermarks watermarks = ReadWatermarks.of(
+                                participantsByConversation.getOrDefault(conv.getId(), List.of()), currentUserId);
+                        Long lastSenderId = conv.getLastMessageSender() != null ? conv.getLastMessageSender().getId() : null;
+                        ChatMessageResponse lastMessage = ChatMessageResponse.lastMessageOf(conv,
+                                watermarks.isRead(conv.getLastMessageId(), lastSenderId),
+                                watermarks.readAt(conv.getLastMessageId(), lastSenderId));
+                        
+                        return ConversationResponse.fromEntity(conv, otherParticipant, lastMessage,
+                                unreadCounts.getOrDefault(conv.getId(), 0L));
+                    } catch (Exception e) {
+                        log.error("Error processing conversation {}: {}", conv.getId(), e.getMessage(), e);
+                        // Return a minimal response to avoid breaking the entire list
+                        return ConversationResponse.fromEntity(conv, null, null, 0L);
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Mốc đã đọc của 1 hội thoại nhìn từ userId: mốc của chính user (cho tin người khác gửi)
+     * và mốc cao nhất của những người còn lại (read receipt cho tin user gửi).
+     */
+    private record ReadWatermarks(Long userId, boolean participant,
+                                  long own, LocalDateTime ownReadAt,
+                                  long others, LocalDateTime othersReadAt) {
+        
+        static ReadWatermarks of(Collection<ConversationParticipant> participants, Long userId) {
+            boolean participant = false;
+            long own = 0;
+            long others = 0;
+            LocalDateTime ownReadAt = null;
+            LocalDateTime othersReadAt = null;
+            for (ConversationParticipant p : participants) {
+                long watermark = p.getLastReadMessageId() != null ? p.getLastReadMessageId() : 0L;
+                if (p.getUser().getId().equals(userId)) {
+                    participant = true;
+                    own = watermark;
+                    ownReadAt = p.getLastReadAt();
+                } else if (watermark > others) {
+                    others = watermark;
+                    othersReadAt = p.getLastReadAt();
                 }
             }
-            
-            // Get unread count
-            Long unreadCount = getUnreadCount(conversation.getId(), currentUserId);
-            
-            return ConversationResponse.fromEntity(conversation, otherParticipant, lastMessage, unreadCount);
-        } catch (Exception e) {
-            log.error("Error creating ConversationResponse for conversation {}: {}", conversation.getId(), e.getMessage(), e);
-            throw new RuntimeException("Error processing conversation: " + e.getMessage(), e);
+            return new ReadWatermarks(userId, participant, own, ownReadAt, others, othersReadAt);
+        }
+        
+        boolean isRead(Long messageId, Long senderId) {
+            if (messageId == null) {
+                return false;
+            }
+            return messageId <= (userId.equals(senderId) ? others : own);
+        }
+        
+        LocalDateTime readAt(Long messageId, Long senderId) {
+            if (!isRead(messageId, senderId)) {
+                return null;
+            }
+            return userId.equals(senderId) ? othersReadAt : ownReadAt;
         }
     }
     
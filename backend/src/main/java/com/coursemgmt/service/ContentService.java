@@ -8,18 +8,24 @@ import com.coursemgmt.dto.LessonResponse;
 import com.coursemgmt.exception.ResourceNotFoundException;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
+import com.coursemgmt.security.services.CourseAccessCache;
 import com.coursemgmt.security.services.UserDetailsImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class ContentService {
@@ -38,6 +44,21 @@ public class ContentService {
     private UserProgressRepository userProgressRepository;
     @Autowired
     private CertificateService certificateService;
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+    @Autowired
+    private CourseLessonCountCache courseLessonCountCache;
+    @Autowired
+    private CourseContentCache courseContentCache;
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Số chapter/lesson tối đa trong 1 câu UPDATE khi reorder (giới hạn số tham số)
+    private static final int REORDER_CHUNK_SIZE = 500;
 
     private static final Logger logger = Logger.getLogger(ContentService.class.getName());
 
@@ -52,7 +73,9 @@ public class ContentService {
         chapter.setTitle(request.getTitle());
         chapter.setPosition(request.getPosition());
         chapter.setCourse(course);
-        return chapterRepository.save(chapter);
+        Chapter saved = chapterRepository.save(chapter);
+        courseContentCache.bumpVersion(courseId);
+        return saved;
     }
 
     @Transactional
@@ -62,14 +85,21 @@ public class ContentService {
 
         chapter.setTitle(request.getTitle());
         chapter.setPosition(request.getPosition());
-        return chapterRepository.save(chapter);
+        Chapter saved = chapterRepository.save(chapter);
+        courseContentCache.bumpVersion(chapter.getCourse().getId());
+        return saved;
     }
 
     @Transactional
     public void deleteChapter(Long chapterId) {
         Chapter chapter = chapterRepository.findById(chapterId)
                 .orElseThrow(() -> new RuntimeException("Chapter not found!"));
+        Long courseId = chapter.getCourse().getId();
+        enrollmentRepository.decrementCompletedLessonsForChapter(courseId, chapterId);
         chapterRepository.delete(chapter);
+        courseAccessCache.evictCourse(courseId);
+        courseLessonCountCache.invalidate(courseId);
+        courseContentCache.bumpVersion(courseId);
     }
 
     // --- Quản lý Lesson ---
@@ -103,7 +133,10 @@ public class ContentService {
         lesson.setIsPreview(request.getIsPreview() != null ? request.getIsPreview() : false);
         lesson.setChapter(chapter);
 
-        return lessonRepository.save(lesson);
+        Lesson saved = lessonRepository.save(lesson);
+        courseLessonCountCache.invalidate(chapter.getCourse().getId());
+        courseContentCache.bumpVersion(chapter.getCourse().getId());
+        return saved;
     }
 
     @Transactional
@@ -132,7 +165,9 @@ public class ContentService {
         
         lesson.setIsPreview(request.getIsPreview() != null ? request.getIsPreview() : false);
 
-        return lessonRepository.save(lesson);
+        Lesson saved = lessonRepository.save(lesson);
+        courseContentCache.bumpVersion(lesson.getChapter().getCourse().getId());
+        return saved;
     }
 
     /**
@@ -169,7 +204,12 @@ public class ContentService {
     public void deleteLesson(Long lessonId) {
         Lesson lesson = lessonRepository.findById(lessonId)
                 .orElseThrow(() -> new RuntimeException("Lesson not found!"));
+        Long courseId = lesson.getChapter().getCourse().getId();
+        enrollmentRepository.decrementCompletedLessonsForLesson(lessonId);
         lessonRepository.delete(lesson);
+        courseAccessCache.evictCourse(courseId);
+        courseLessonCountCache.invalidate(courseId);
+        courseContentCache.bumpVersion(courseId);
     }
 
     // Helper method to get lessons for a chapter
@@ -190,233 +230,152 @@ public class ContentService {
      * @return LessonResponse của lesson đầu tiên, hoặc null nếu không có
      */
     public LessonResponse getPreviewLesson(Long courseId) {
-        Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
-        
-        // Chỉ cho phép preview với khóa học trả phí (price > 0)
-        if (course.getPrice() == null || course.getPrice() <= 0) {
-            return null; // Khóa học miễn phí không cần preview
-        }
-        
-        // Lấy chapters với lessons (sắp xếp theo position)
-        List<Chapter> chapters = chapterRepository.findByCourseIdWithLessons(courseId);
-        
-        if (chapters == null || chapters.isEmpty()) {
-            return null; // Không có chapter nào
-        }
-        
-        // Tìm chapter đầu tiên
-        Chapter firstChapter = chapters.stream()
-                .min((c1, c2) -> {
-                    int pos1 = c1.getPosition() != null ? c1.getPosition() : Integer.MAX_VALUE;
-                    int pos2 = c2.getPosition() != null ? c2.getPosition() : Integer.MAX_VALUE;
-                    return Integer.compare(pos1, pos2);
-                })
-                .orElse(null);
-        
-        if (firstChapter == null || firstChapter.getLessons() == null || firstChapter.getLessons().isEmpty()) {
-            return null; // Không có lesson nào trong chapter đầu tiên
-        }
-        
-        // Tìm lesson đầu tiên trong chapter đầu tiên (sắp xếp theo position)
-        Lesson firstLesson = firstChapter.getLessons().stream()
-                .min((l1, l2) -> {
-                    int pos1 = l1.getPosition() != null ? l1.getPosition() : Integer.MAX_VALUE;
-                    int pos2 = l2.getPosition() != null ? l2.getPosition() : Integer.MAX_VALUE;
-                    return Integer.compare(pos1, pos2);
-                })
-                .orElse(null);
-        
-        if (firstLesson == null) {
-            return null;
-        }
-        
-        // Chỉ trả về lesson có video (VIDEO content type) để preview
-        if ((firstLesson.getContentType() != EContentType.VIDEO && firstLesson.getContentType() != EContentType.YOUTUBE) || 
-            firstLesson.getVideoUrl() == null || firstLesson.getVideoUrl().isEmpty()) {
-            return null; // Không có video để preview
-        }
-        
+        // Bài preview được tính sẵn trong snapshot (khóa học miễn phí / không có video -> null)
+        CourseContentCache.LessonNode preview = getContentSnapshot(courseId).previewLesson();
         // Trả về LessonResponse (không cần isCompleted vì đây là preview)
-        return LessonResponse.fromEntity(firstLesson, false);
+        return preview != null ? preview.toResponse(false) : null;
     }
 
     // Reorder chapters
+    // Kiểm tra trong bộ nhớ rồi ghi bằng 1 câu UPDATE ... CASE, số round trip không phụ thuộc số chapter
     @Transactional
     public void reorderChapters(Long courseId, Map<Long, Integer> chapterPositions) {
-        for (Map.Entry<Long, Integer> entry : chapterPositions.entrySet()) {
-            Chapter chapter = chapterRepository.findById(entry.getKey())
-                    .orElseThrow(() -> new RuntimeException("Chapter not found: " + entry.getKey()));
-            if (chapter.getCourse().getId().equals(courseId)) {
-                chapter.setPosition(entry.getValue());
-                chapterRepository.save(chapter);
-            }
+        if (chapterPositions == null || chapterPositions.isEmpty()) {
+            return;
         }
+        Map<Long, Integer> currentPositions = toPositionMap(chapterRepository.findPositionsByCourseId(courseId));
+        validatePositions("Chapter", currentPositions, chapterPositions);
+        bulkUpdatePositions("chapters", "course_id", courseId, chapterPositions);
+        courseContentCache.bumpVersion(courseId);
     }
 
     // Reorder lessons in a chapter
     @Transactional
     public void reorderLessons(Long chapterId, Map<Long, Integer> lessonPositions) {
-        for (Map.Entry<Long, Integer> entry : lessonPositions.entrySet()) {
-            Lesson lesson = lessonRepository.findById(entry.getKey())
-                    .orElseThrow(() -> new RuntimeException("Lesson not found: " + entry.getKey()));
-            if (lesson.getChapter().getId().equals(chapterId)) {
-                lesson.setPosition(entry.getValue());
-                lessonRepository.save(lesson);
+        if (lessonPositions == null || lessonPositions.isEmpty()) {
+            return;
+        }
+        Long courseId = chapterRepository.findCourseIdByChapterId(chapterId)
+                .orElseThrow(() -> new RuntimeException("Chapter not found: " + chapterId));
+        Map<Long, Integer> currentPositions = toPositionMap(lessonRepository.findPositionsByChapterId(chapterId));
+        validatePositions("Lesson", currentPositions, lessonPositions);
+        bulkUpdatePositions("lessons", "chapter_id", chapterId, lessonPositions);
+        courseContentCache.bumpVersion(courseId);
+    }
+
+    private Map<Long, Integer> toPositionMap(List<Object[]> rows) {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (Object[] row : rows) {
+            positions.put((Long) row[0], (Integer) row[1]);
+        }
+        return positions;
+    }
+
+    // Mọi id phải thuộc course/chapter, thứ tự mới không được trùng nhau hoặc trùng với các mục không đổi
+    private void validatePositions(String type, Map<Long, Integer> currentPositions, Map<Long, Integer> newPositions) {
+        Map<Integer, Long> owners = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : currentPositions.entrySet()) {
+            if (!newPositions.containsKey(entry.getKey()) && entry.getValue() != null) {
+                owners.put(entry.getValue(), entry.getKey());
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : newPositions.entrySet()) {
+            if (!currentPositions.containsKey(entry.getKey())) {
+                throw new RuntimeException(type + " not found: " + entry.getKey());
+            }
+            if (entry.getValue() == null) {
+                throw new RuntimeException("Position is required for " + type.toLowerCase() + " " + entry.getKey());
+            }
+            Long owner = owners.putIfAbsent(entry.getValue(), entry.getKey());
+            if (owner != null) {
+                throw new RuntimeException("Duplicate position " + entry.getValue() + " for "
+                        + type.toLowerCase() + "s " + owner + " and " + entry.getKey());
+            }
+        }
+    }
+
+    // UPDATE <table> SET position = CASE id WHEN ? THEN ? ... END WHERE <parent> = ? AND id IN (...)
+    private void bulkUpdatePositions(String table, String parentColumn, Long parentId, Map<Long, Integer> positions) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(positions.entrySet());
+        for (int from = 0; from < entries.size(); from += REORDER_CHUNK_SIZE) {
+            List<Map.Entry<Long, Integer>> chunk = entries.subList(from, Math.min(from + REORDER_CHUNK_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET position = CASE id");
+            List<Object> args = new ArrayList<>(chunk.size() * 3 + 1);
+            for (Map.Entry<Long, Integer> entry : chunk) {
+                sql.append(" WHEN ? THEN ?");
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            sql.append(" END WHERE ").append(parentColumn).append(" = ? AND id IN (")
+                    .append(String.join(", ", Collections.nCopies(chunk.size(), "?"))).append(")");
+            args.add(parentId);
+            for (Map.Entry<Long, Integer> entry : chunk) {
+                args.add(entry.getKey());
             }
+            Query update = entityManager.createNativeQuery(sql.toString());
+            for (int i = 0; i < args.size(); i++) {
+                update.setParameter(i + 1, args.get(i));
+            }
+            update.executeUpdate();
         }
     }
 
     // --- Lấy nội dung (cho Học viên) ---
 
     // Lấy toàn bộ nội dung (chapters + lessons) của 1 khóa học
+    // Cây nội dung lấy từ snapshot dùng chung (CourseContentCache), trạng thái hoàn thành là lớp phủ theo user
     public List<ChapterResponse> getCourseContent(Long courseId, UserDetailsImpl userDetails) {
-        System.out.println("========================================");
-        System.out.println("ContentService.getCourseContent called");
-        System.out.println("Course ID: " + courseId);
-        System.out.println("User ID: " + (userDetails != null ? userDetails.getId() : "NULL"));
-        System.out.println("========================================");
-        
         if (userDetails == null) {
             throw new RuntimeException("User not authenticated");
         }
-        
-        User user = userRepository.findById(userDetails.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userDetails.getId()));
-        Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
 
-        System.out.println("User found: " + user.getUsername() + " (ID: " + user.getId() + ")");
-        System.out.println("Course found: " + course.getTitle() + " (ID: " + course.getId() + ")");
+        CourseContentCache.Snapshot snapshot = getContentSnapshot(courseId);
 
         // Kiểm tra xem user có phải là chủ khóa học không (chỉ khóa học của chính họ)
-        boolean isInstructor = course.getInstructor() != null && 
-                               course.getInstructor().getId().equals(user.getId());
-        System.out.println("Is Instructor (owner of this course): " + isInstructor);
-
-        // Lấy thông tin Enrollment - Try multiple methods
-        System.out.println("Attempting to find enrollment...");
-        System.out.println("Method 1: findByUserAndCourse");
-        Enrollment enrollment = enrollmentRepository.findByUserAndCourse(user, course).orElse(null);
-        
-        // Fallback: Try by userId and courseId
-        if (enrollment == null) {
-            System.out.println("Method 1 failed. Trying Method 2: findByUserIdAndCourseId");
-            enrollment = enrollmentRepository.findByUserIdAndCourseId(user.getId(), courseId).orElse(null);
-        }
-        
-        // Additional check: List all enrollments for this user to debug
-        if (enrollment == null) {
-            System.out.println("Method 2 also failed. Checking all enrollments for user...");
-            List<Enrollment> allUserEnrollments = enrollmentRepository.findByUserIdWithCourse(user.getId());
-            System.out.println("Total enrollments for user " + user.getId() + ": " + allUserEnrollments.size());
-            for (Enrollment e : allUserEnrollments) {
-                System.out.println("  - Enrollment ID: " + e.getId() + ", Course ID: " + e.getCourse().getId() + ", Course Title: " + e.getCourse().getTitle());
-            }
-        }
-        
-        System.out.println("Enrollment found: " + (enrollment != null ? "YES (ID: " + enrollment.getId() + ")" : "NO"));
-        
-        if (enrollment != null) {
-            System.out.println("Enrollment Status: " + enrollment.getStatus());
-            System.out.println("Enrollment Progress: " + enrollment.getProgress() + "%");
+        boolean isInstructor = userDetails.getId().equals(snapshot.instructorId());
+        if (isInstructor) {
+            return snapshot.toResponses(true, Set.of());
         }
 
         // Authorization logic:
         // - Cho phép nếu là instructor của khóa học này (chỉ khóa học của chính họ)
         // - Cho phép nếu đã enrolled (bất kỳ ai, kể cả giảng viên khác xem khóa học của giảng viên khác)
         // - Từ chối nếu không phải instructor và chưa enrolled
-        if (!isInstructor && enrollment == null) {
-            System.err.println("ERROR: User " + user.getId() + " is not the instructor of course " + courseId + " and is not enrolled");
+        Set<Long> completedLessonIds = getCompletedLessonIds(userDetails.getId(), courseId);
+        if (completedLessonIds == null) {
+            System.err.println("ERROR: User " + userDetails.getId() + " is not the instructor of course " + courseId + " and is not enrolled");
             // Throw AccessDeniedException instead of RuntimeException to return 403 instead of 400
             throw new AccessDeniedException("Bạn chưa đăng ký khóa học này! Vui lòng đăng ký để xem nội dung.");
         }
-        
-        System.out.println("Access granted - proceeding to fetch content");
-        System.out.println("========================================");
-        
-        // Lấy danh sách ID các bài học đã hoàn thành
-        Set<Long> completedLessonIds = Set.of();
-        if (enrollment != null) {
-            System.out.println("Fetching user progress for enrollment ID: " + enrollment.getId());
-            try {
-                // Sử dụng JOIN FETCH để load lesson cùng lúc, tránh LazyInitializationException
-                Set<User_Progress> progressSet = userProgressRepository.findByEnrollmentWithLesson(enrollment);
-                System.out.println("Found " + progressSet.size() + " progress records");
-                
-                completedLessonIds = progressSet.stream()
-                        .filter(progress -> {
-                            if (progress == null) return false;
-                            Boolean isCompleted = progress.getIsCompleted();
-                            return isCompleted != null && isCompleted;
-                        })
-                        .filter(progress -> {
-                            try {
-                                return progress.getLesson() != null && progress.getLesson().getId() != null;
-                            } catch (Exception e) {
-                                System.err.println("ERROR accessing lesson from progress: " + e.getMessage());
-                                e.printStackTrace();
-                                return false;
-                            }
-                        })
-                        .map(progress -> {
-                            try {
-                                return progress.getLesson().getId();
-                            } catch (Exception e) {
-                                System.err.println("ERROR getting lesson ID: " + e.getMessage());
-                                e.printStackTrace();
-                                return null;
-                            }
-                        })
-                        .filter(id -> id != null)
-                        .collect(Collectors.toSet());
-                System.out.println("Completed lesson IDs: " + completedLessonIds.size());
-            } catch (Exception e) {
-                System.err.println("ERROR fetching user progress: " + e.getMessage());
-                e.printStackTrace();
-                // Continue with empty set if progress fetch fails
-                completedLessonIds = Set.of();
-            }
-        }
-        
-        System.out.println("Final completed lesson IDs count: " + completedLessonIds.size());
-
-        final Set<Long> finalCompletedLessonIds = completedLessonIds; // Cần final để dùng trong lambda
+        return snapshot.toResponses(false, completedLessonIds);
+    }
 
-        // Lấy danh sách Chapters với lessons (sử dụng JOIN FETCH để tránh LazyInitializationException)
-        System.out.println("Fetching chapters for course ID: " + courseId);
-        List<Chapter> chapters;
-        try {
-            chapters = chapterRepository.findByCourseIdWithLessons(courseId);
-            System.out.println("Found " + chapters.size() + " chapters");
-            
-            if (chapters.isEmpty()) {
-                System.out.println("WARNING: No chapters found for course " + courseId);
-                return List.of(); // Return empty list instead of throwing error
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR fetching chapters: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể tải nội dung khóa học: " + e.getMessage(), e);
+    // Snapshot nội dung của khóa học: cache hit không truy vấn DB, miss thì load course + chapters (JOIN FETCH lessons)
+    private CourseContentCache.Snapshot getContentSnapshot(Long courseId) {
+        CourseContentCache.Snapshot snapshot = courseContentCache.get(courseId);
+        if (snapshot != null) {
+            return snapshot;
         }
+        long version = courseContentCache.currentVersion(courseId);
+        Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
+        List<Chapter> chapters = chapterRepository.findByCourseIdWithLessons(courseId);
+        return courseContentCache.put(course, chapters, version);
+    }
 
-        // Map sang DTO
-        System.out.println("Mapping chapters to DTOs...");
-        try {
-            return chapters.stream().map(chapter -> {
-                List<LessonResponse> lessonResponses = chapter.getLessons().stream()
-                        .map(lesson -> {
-                            boolean isCompleted = isInstructor || finalCompletedLessonIds.contains(lesson.getId());
-                            return LessonResponse.fromEntity(lesson, isCompleted);
-                        })
-                        .collect(Collectors.toList());
-                return ChapterResponse.fromEntity(chapter, lessonResponses);
-            }).collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("ERROR mapping chapters to DTOs: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể xử lý nội dung khóa học: " + e.getMessage(), e);
+    // Các lessonId đã hoàn thành của user trong khóa học; null nếu user chưa ghi danh
+    private Set<Long> getCompletedLessonIds(Long userId, Long courseId) {
+        Set<Long> completedLessonIds = courseContentCache.getCompletedLessonIds(userId, courseId);
+        if (completedLessonIds != null) {
+            return completedLessonIds;
         }
+        long generation = courseContentCache.currentOverlayGeneration();
+        if (!enrollmentRepository.existsByUserIdAndCourseId(userId, courseId)) {
+            return null;
+        }
+        completedLessonIds = userProgressRepository.findCompletedLessonIds(userId, courseId);
+        courseContentCache.putCompletedLessonIds(userId, courseId, completedLessonIds, generation);
+        return completedLessonIds;
     }
 
     // --- Chức năng: Theo dõi tiến độ ---
@@ -453,6 +412,7 @@ public class ContentService {
         User_Progress progress = userProgressRepository.findByEnrollmentAndLesson(enrollment, lesson)
                 .orElse(new User_Progress());
 
+        boolean newlyCompleted = !Boolean.TRUE.equals(progress.getIsCompleted());
         progress.setEnrollment(enrollment);
         progress.setLesson(lesson);
         progress.setIsCompleted(true);
@@ -462,60 +422,70 @@ public class ContentService {
         System.out.println("DEBUG: Marked lesson as completed, updating enrollment progress...");
 
         // Cập nhật lại % tiến độ tổng của Enrollment
-        updateEnrollmentProgress(enrollment);
+        updateEnrollmentProgress(enrollment, newlyCompleted);
+        courseContentCache.invalidateOverlay(user.getId(), course.getId());
         
         System.out.println("DEBUG: markLessonAsCompleted completed successfully");
     }
 
     // --- Chức năng: Cập nhật tiến độ xem video (Auto-Progress) ---
+    // Heartbeat của player: vị trí xem được gộp trong WatchTimeBuffer và ghi xuống DB theo batch.
+    // Chỉ lần heartbeat đạt >= 90% của bài chưa hoàn thành mới ghi trực tiếp (hoàn thành bài + cập nhật tiến độ/chứng chỉ).
     @Transactional
     public void updateLessonWatchTime(Long lessonId, Integer watchedTime, Integer totalDuration, UserDetailsImpl userDetails) {
-        User user = userRepository.findById(userDetails.getId())
-                .orElseThrow(() -> new RuntimeException("User not found!"));
-        Lesson lesson = lessonRepository.findById(lessonId)
-                .orElseThrow(() -> new RuntimeException("Lesson not found!"));
-        Course course = lesson.getChapter().getCourse();
+        Long enrollmentId = enrollmentRepository.findIdByUserIdAndLessonId(userDetails.getId(), lessonId)
+                .orElseThrow(() -> new RuntimeException("Bạn chưa đăng ký khóa học này!"));
 
-        // Tìm enrollment của user cho khóa học này
-        Enrollment enrollment = enrollmentRepository.findByUserAndCourse(user, course)
+        // Calculate watch percentage
+        double percent = (double) watchedTime / totalDuration;
+
+        // Crucial Check: IF watched >= 90% AND not already completed -> Auto-complete
+        if (percent >= 0.9
+                && !userProgressRepository.existsByEnrollmentIdAndLessonIdAndIsCompletedTrue(enrollmentId, lessonId)) {
+            watchTimeBuffer.discard(enrollmentId, lessonId);
+            completeLessonFromWatchTime(enrollmentId, lessonId, watchedTime, totalDuration);
+            return;
+        }
+
+        watchTimeBuffer.record(enrollmentId, lessonId, watchedTime, totalDuration);
+    }
+
+    private void completeLessonFromWatchTime(Long enrollmentId, Long lessonId, Integer watchedTime, Integer totalDuration) {
+        Enrollment enrollment = enrollmentRepository.findById(enrollmentId)
                 .orElseThrow(() -> new RuntimeException("Bạn chưa đăng ký khóa học này!"));
+        Lesson lesson = lessonRepository.findById(lessonId)
+                .orElseThrow(() -> new RuntimeException("Lesson not found!"));
 
         // Tìm hoặc tạo mới User_Progress
         User_Progress progress = userProgressRepository.findByEnrollmentAndLesson(enrollment, lesson)
                 .orElse(new User_Progress());
-
-        // Set enrollment and lesson if this is a new progress record
         if (progress.getEnrollment() == null) {
             progress.setEnrollment(enrollment);
             progress.setLesson(lesson);
         }
-
-        // Update watched time and total duration
         progress.setLastWatchedTime(watchedTime);
         progress.setTotalDuration(totalDuration);
-
-        // Calculate watch percentage
-        double percent = (double) watchedTime / totalDuration;
-
-        // Crucial Check: IF watched >= 90% AND not already completed -> Auto-complete
-        if (percent >= 0.9 && !Boolean.TRUE.equals(progress.getIsCompleted())) {
-            progress.setIsCompleted(true);
-            progress.setCompletedAt(LocalDateTime.now());
-            
-            // Trigger course-level progress recalculation
-            updateEnrollmentProgress(enrollment);
-        }
-
-        // Save progress (whether completed or not)
+        progress.setIsCompleted(true);
+        progress.setCompletedAt(LocalDateTime.now());
         userProgressRepository.save(progress);
+
+        // Trigger course-level progress recalculation
+        updateEnrollmentProgress(enrollment, true);
+        courseContentCache.invalidateOverlay(enrollment.getUser().getId(), enrollment.getCourse().getId());
     }
 
-    // Hàm private để tính toán lại tiến độ
-    private void updateEnrollmentProgress(Enrollment enrollment) {
-        long totalLessonsInCourse = lessonRepository.countByChapter_Course_Id(enrollment.getCourse().getId());
+    // Hàm private để tính toán lại tiến độ: O(1) từ bộ đếm completedLessons của enrollment
+    // và tổng số bài học đã cache của khóa học (không COUNT lại user_progress / lessons)
+    private void updateEnrollmentProgress(Enrollment enrollment, boolean newlyCompleted) {
+        EEnrollmentStatus previousStatus = enrollment.getStatus();
+        if (newlyCompleted) {
+            enrollmentRepository.incrementCompletedLessons(enrollment.getId());
+        }
+        long totalLessonsInCourse = courseLessonCountCache.getLessonCount(enrollment.getCourse().getId());
         if (totalLessonsInCourse == 0) {
             enrollment.setProgress(100.0);
             enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+            courseStatsRollupService.onEnrollmentStatusChanged(enrollment, previousStatus);
             enrollmentRepository.save(enrollment);
             
             // Auto-issue certificate for courses with no lessons
@@ -523,7 +493,8 @@ public class ContentService {
             return;
         }
 
-        long completedLessons = userProgressRepository.countByEnrollmentAndIsCompleted(enrollment, true);
+        long completedLessons = Math.min(enrollmentRepository.findCompletedLessonsById(enrollment.getId()),
+                totalLessonsInCourse);
 
         double progressPercentage = totalLessonsInCourse > 0 
             ? ((double) completedLessons / totalLessonsInCourse) * 100.0 
@@ -538,12 +509,14 @@ public class ContentService {
 
         if (progressPercentage >= 100.0) {
             enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+            courseStatsRollupService.onEnrollmentStatusChanged(enrollment, previousStatus);
             enrollmentRepository.save(enrollment);
             
             // Auto-issue certificate when course is completed
             autoIssueCertificate(enrollment);
         } else {
             enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+            courseStatsRollupService.onEnrollmentStatusChanged(enrollment, previousStatus);
             enrollmentRepository.save(enrollment);
         }
     }
@@ -0,0 +1,59 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Conversation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Điền preview tin nhắn cuối (Conversation.lastMessage*) cho các hội thoại có từ trước khi thêm cột.
+ * Chạy 1 lần khi khởi động; hội thoại mới được ChatService cập nhật khi gửi tin nên lần sau không còn dòng cần điền.
+ * Dòng đã điền trước khi có cột last_message_edited / last_message_file_name (edited NULL) được điền lại.
+ */
+@Component
+public class ConversationPreviewBackfill {
+
+    // Tin nhắn cuối = id lớn nhất của hội thoại (id tăng theo thời gian gửi)
+    private static final String FILL_LAST_MESSAGE_ID_SQL =
+            "UPDATE conversations c SET last_message_id = " +
+            "(SELECT MAX(m.id) FROM messages m WHERE m.conversation_id = c.id) " +
+            "WHERE c.last_message_id IS NULL " +
+            "AND EXISTS (SELECT 1 FROM messages m WHERE m.conversation_id = c.id)";
+
+    private static final String FILL_PREVIEW_SQL =
+            "UPDATE conversations c SET " +
+            "last_message_preview = (SELECT SUBSTRING(m.content, 1, " + Conversation.LAST_MESSAGE_PREVIEW_LENGTH + ") FROM messages m WHERE m.id = c.last_message_id), " +
+            "last_message_type = (SELECT m.message_type FROM messages m WHERE m.id = c.last_message_id), " +
+            "last_message_deleted = (SELECT m.is_deleted FROM messages m WHERE m.id = c.last_message_id), " +
+            "last_message_edited = (SELECT m.is_edited FROM messages m WHERE m.id = c.last_message_id), " +
+            "last_message_file_name = (SELECT m.file_name FROM messages m WHERE m.id = c.last_message_id), " +
+            "last_message_sender_id = (SELECT m.sender_id FROM messages m WHERE m.id = c.last_message_id) " +
+            "WHERE c.last_message_id IS NOT NULL " +
+            "AND (c.last_message_sender_id IS NULL OR c.last_message_edited IS NULL)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            backfill();
+        } catch (Exception e) {
+            System.err.println("ConversationPreviewBackfill: Failed to backfill last message previews: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return số hội thoại được điền preview
+     */
+    public int backfill() {
+        jdbcTemplate.update(FILL_LAST_MESSAGE_ID_SQL);
+        int filled = jdbcTemplate.update(FILL_PREVIEW_SQL);
+        if (filled > 0) {
+            System.out.println("ConversationPreviewBackfill: Filled last message preview for " + filled + " conversations");
+        }
+        return filled;
+    }
+}
@@ -0,0 +1,299 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChapterResponse;
+import com.coursemgmt.dto.LessonResponse;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.Chapter;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.EContentType;
+import com.coursemgmt.model.Lesson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache nội dung khóa học (cây chapter/lesson) dùng chung cho mọi học viên.
+ *
+ * - Mỗi khóa học có 1 snapshot bất biến kèm số version. Mọi thao tác create/update/delete/reorder
+ *   trong ContentService (và thay đổi khóa học qua CourseChangedEvent) tăng version; snapshot có
+ *   version cũ không được dùng nữa. Version được tăng cả lúc ghi và sau khi commit nên snapshot
+ *   build từ dữ liệu chưa commit không bao giờ được lưu với version mới.
+ * - Trạng thái hoàn thành theo user là 1 lớp phủ riêng (userId, courseId) -> tập lessonId đã hoàn thành,
+ *   vô hiệu hóa khi user hoàn thành bài học hoặc ghi danh thay đổi.
+ * - Cache hit (snapshot + lớp phủ) không truy vấn DB.
+ */
+@Component
+public class CourseContentCache {
+
+    @Value("${course.content.cache.max-entries:1000}")
+    private int maxSnapshots;
+
+    @Value("${course.content.cache.max-overlays:50000}")
+    private int maxOverlays;
+
+    @Value("${course.content.cache.overlay-ttl-seconds:600}")
+    private long overlayTtlSeconds;
+
+    /**
+     * Snapshot bất biến của nội dung 1 khóa học.
+     */
+    public record Snapshot(long version, Long courseId, Long instructorId, List<ChapterNode> chapters,
+                           LessonNode previewLesson) {
+
+        // Dựng DTO cho 1 user: lớp phủ hoàn thành áp lên cây dùng chung
+        public List<ChapterResponse> toResponses(boolean allCompleted, Set<Long> completedLessonIds) {
+            List<ChapterResponse> responses = new ArrayList<>(chapters.size());
+            for (ChapterNode chapter : chapters) {
+                List<LessonResponse> lessons = new ArrayList<>(chapter.lessons().size());
+                for (LessonNode lesson : chapter.lessons()) {
+                    lessons.add(lesson.toResponse(allCompleted || completedLessonIds.contains(lesson.id())));
+                }
+                ChapterResponse dto = new ChapterResponse();
+                dto.setId(chapter.id());
+                dto.setTitle(chapter.title());
+                dto.setPosition(chapter.position());
+                dto.setLessons(lessons);
+                responses.add(dto);
+            }
+            return responses;
+        }
+    }
+
+    public record ChapterNode(Long id, String title, Integer position, List<LessonNode> lessons) {
+    }
+
+    public record LessonNode(Long id, String title, EContentType contentType, String videoUrl, String documentUrl,
+                             String slideUrl, String content, Integer durationInMinutes, Integer position,
+                             Boolean isPreview) {
+
+        static LessonNode of(Lesson lesson) {
+            return new LessonNode(lesson.getId(), lesson.getTitle(), lesson.getContentType(), lesson.getVideoUrl(),
+                    lesson.getDocumentUrl(), lesson.getSlideUrl(), lesson.getContent(), lesson.getDurationInMinutes(),
+                    lesson.getPosition(), lesson.getIsPreview() != null ? lesson.getIsPreview() : false);
+        }
+
+        public LessonResponse toResponse(boolean isCompleted) {
+            LessonResponse dto = new LessonResponse();
+            dto.setId(id);
+            dto.setTitle(title);
+            dto.setContentType(contentType);
+            dto.setDurationInMinutes(durationInMinutes);
+            dto.setPosition(position);
+            dto.setIsPreview(isPreview);
+            dto.setCompleted(isCompleted);
+            dto.setVideoUrl(videoUrl);
+            dto.setDocumentUrl(documentUrl);
+            dto.setSlideUrl(slideUrl);
+            dto.setContent(content);
+            return dto;
+        }
+    }
+
+    private record OverlayKey(Long userId, Long courseId) {
+    }
+
+    private record Overlay(Set<Long> completedLessonIds, long expiresAt) {
+    }
+
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<Long, Snapshot> snapshots = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+            return size() > maxSnapshots;
+        }
+    };
+
+    private final LinkedHashMap<OverlayKey, Overlay> overlays = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<OverlayKey, Overlay> eldest) {
+            return size() > maxOverlays;
+        }
+    };
+
+    // Tăng mỗi lần vô hiệu hóa lớp phủ; lớp phủ đọc trước đó không được lưu
+    private long overlayGeneration = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder overlayHits = new LongAdder();
+    private final LongAdder overlayMisses = new LongAdder();
+
+    // --- Snapshot nội dung ---
+
+    public long currentVersion(Long courseId) {
+        AtomicLong version = versions.get(courseId);
+        return version != null ? version.get() : 0L;
+    }
+
+    public synchronized Snapshot get(Long courseId) {
+        Snapshot snapshot = snapshots.get(courseId);
+        if (snapshot != null && snapshot.version() != currentVersion(courseId)) {
+            snapshots.remove(courseId);
+            snapshot = null;
+        }
+        if (snapshot == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Dựng snapshot từ course + chapters (đã JOIN FETCH lessons) đọc ở version startVersion.
+     * Chỉ lưu nếu version chưa đổi kể từ lúc bắt đầu đọc.
+     */
+    public synchronized Snapshot put(Course course, List<Chapter> chapters, long startVersion) {
+        List<ChapterNode> chapterNodes = new ArrayList<>(chapters.size());
+        for (Chapter chapter : chapters) {
+            List<LessonNode> lessonNodes = new ArrayList<>();
+            if (chapter.getLessons() != null) {
+                for (Lesson lesson : chapter.getLessons()) {
+                    lessonNodes.add(LessonNode.of(lesson));
+                }
+            }
+            chapterNodes.add(new ChapterNode(chapter.getId(), chapter.getTitle(), chapter.getPosition(),
+                    List.copyOf(lessonNodes)));
+        }
+        Snapshot snapshot = new Snapshot(startVersion, course.getId(),
+                course.getInstructor() != null ? course.getInstructor().getId() : null,
+                List.copyOf(chapterNodes), findPreviewLesson(course, chapterNodes));
+        if (startVersion == currentVersion(course.getId())) {
+            snapshots.put(course.getId(), snapshot);
+        }
+        return snapshot;
+    }
+
+    // Bài học preview: bài đầu tiên (theo position) của chapter đầu tiên, chỉ với khóa trả phí và có video
+    private LessonNode findPreviewLesson(Course course, List<ChapterNode> chapters) {
+        if (course.getPrice() == null || course.getPrice() <= 0) {
+            return null;
+        }
+        Comparator<Integer> byPosition = Comparator.nullsLast(Comparator.naturalOrder());
+        ChapterNode firstChapter = chapters.stream()
+                .min(Comparator.comparing(ChapterNode::position, byPosition))
+                .orElse(null);
+        if (firstChapter == null || firstChapter.lessons().isEmpty()) {
+            return null;
+        }
+        LessonNode firstLesson = firstChapter.lessons().stream()
+                .min(Comparator.comparing(LessonNode::position, byPosition))
+                .orElse(null);
+        if (firstLesson == null
+                || (firstLesson.contentType() != EContentType.VIDEO && firstLesson.contentType() != EContentType.YOUTUBE)
+                || firstLesson.videoUrl() == null || firstLesson.videoUrl().isEmpty()) {
+            return null;
+        }
+        return firstLesson;
+    }
+
+    /**
+     * Nội dung khóa học vừa thay đổi: tăng version ngay và tăng lại sau khi transaction commit.
+     */
+    public void bumpVersion(Long courseId) {
+        runNowAndAfterCommit(() -> {
+            versions.computeIfAbsent(courseId, id -> new AtomicLong()).incrementAndGet();
+            synchronized (this) {
+                snapshots.remove(courseId);
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourseChanged(CourseChangedEvent event) {
+        if (event.getType() == CourseChangedEvent.Type.STATS) {
+            return;
+        }
+        // Giá (preview), giảng viên (quyền xem) hoặc khóa học bị xóa
+        versions.computeIfAbsent(event.getCourseId(), id -> new AtomicLong()).incrementAndGet();
+        synchronized (this) {
+            snapshots.remove(event.getCourseId());
+            if (event.getType() == CourseChangedEvent.Type.DELETED) {
+                overlayGeneration++;
+                overlays.keySet().removeIf(key -> key.courseId().equals(event.getCourseId()));
+            }
+        }
+    }
+
+    // --- Lớp phủ trạng thái hoàn thành theo user ---
+
+    public synchronized Set<Long> getCompletedLessonIds(Long userId, Long courseId) {
+        OverlayKey key = new OverlayKey(userId, courseId);
+        Overlay overlay = overlays.get(key);
+        if (overlay != null && System.currentTimeMillis() > overlay.expiresAt()) {
+            overlays.remove(key);
+            overlay = null;
+        }
+        if (overlay == null) {
+            overlayMisses.increment();
+            return null;
+        }
+        overlayHits.increment();
+        return overlay.completedLessonIds();
+    }
+
+    public synchronized long currentOverlayGeneration() {
+        return overlayGeneration;
+    }
+
+    public synchronized void putCompletedLessonIds(Long userId, Long courseId, Set<Long> completedLessonIds,
+                                                   long startGeneration) {
+        if (startGeneration == overlayGeneration) {
+            overlays.put(new OverlayKey(userId, courseId),
+                    new Overlay(Set.copyOf(completedLessonIds), System.currentTimeMillis() + overlayTtlSeconds * 1000));
+        }
+    }
+
+    /**
+     * Trạng thái hoàn thành / ghi danh của user trong khóa học vừa thay đổi.
+     */
+    public void invalidateOverlay(Long userId, Long courseId) {
+        runNowAndAfterCommit(() -> {
+            synchronized (this) {
+                overlayGeneration++;
+                overlays.remove(new OverlayKey(userId, courseId));
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        snapshots.clear();
+        overlayGeneration++;
+        overlays.clear();
+    }
+
+    private void runNowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("snapshots", snapshots.size());
+        stats.put("maxSnapshots", maxSnapshots);
+        stats.put("overlays", overlays.size());
+        stats.put("maxOverlays", maxOverlays);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("overlayHits", overlayHits.sum());
+        stats.put("overlayMisses", overlayMisses.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,58 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Đối soát bộ đếm denormalized của Course với bảng nguồn (enrollments, reviews).
+ * Chạy 1 lần khi khởi động (để điền giá trị cho DB cũ vừa thêm cột) và định kỳ theo cron,
+ * sửa các sai lệch do xóa dữ liệu trực tiếp trên DB hoặc cascade ngoài service.
+ * Mỗi khoảng id được xử lý trong 1 transaction riêng để không khóa toàn bộ bảng courses.
+ */
+@Component
+public class CourseCounterReconciliationJob {
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    @Value("${course.counters.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcileAll();
+    }
+
+    @Scheduled(cron = "${course.counters.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAll() {
+        List<Object[]> range = courseRepository.findIdRange();
+        if (range.isEmpty() || range.get(0)[0] == null) {
+            return;
+        }
+        long minId = ((Number) range.get(0)[0]).longValue();
+        long maxId = ((Number) range.get(0)[1]).longValue();
+
+        long start = System.currentTimeMillis();
+        int total = 0;
+        for (long from = minId; from <= maxId; from += batchSize) {
+            long to = Math.min(from + batchSize - 1, maxId);
+            try {
+                total += courseCounterService.reconcileRange(from, to);
+            } catch (Exception e) {
+                System.err.println("CourseCounterReconciliationJob: Failed to reconcile courses " + from + "-" + to + ": " + e.getMessage());
+            }
+        }
+        System.out.println("CourseCounterReconciliationJob: Reconciled counters for " + total + " courses in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -0,0 +1,76 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Cập nhật các bộ đếm denormalized trên Course (enrollmentCount, ratingSum, reviewCount, averageRating).
+ * Các hàm on* phải được gọi trong cùng transaction với thao tác ghi enrollment/review
+ * để bộ đếm và dữ liệu nguồn được commit (hoặc rollback) cùng nhau.
+ * Rating null (dữ liệu cũ) được tính là 0 điểm nhưng vẫn đếm 1 review, giống reconcileRange (SUM bỏ qua null, COUNT thì không).
+ */
+@Service
+public class CourseCounterService {
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public void onEnrollmentCreated(Long courseId) {
+        courseRepository.incrementEnrollmentCount(courseId, 1);
+        eventPublisher.publishEvent(CourseChangedEvent.stats(courseId));
+    }
+
+    @Transactional
+    public void onEnrollmentRemoved(Long courseId) {
+        courseRepository.incrementEnrollmentCount(courseId, -1);
+        eventPublisher.publishEvent(CourseChangedEvent.stats(courseId));
+    }
+
+    @Transactional
+    public void onReviewCreated(Long courseId, Integer rating) {
+        courseRepository.incrementRatingStats(courseId, points(rating), 1);
+        courseRepository.refreshAverageRating(courseId);
+        eventPublisher.publishEvent(CourseChangedEvent.stats(courseId));
+    }
+
+    @Transactional
+    public void onReviewUpdated(Long courseId, Integer oldRating, Integer newRating) {
+        int delta = points(newRating) - points(oldRating);
+        if (delta == 0) {
+            return;
+        }
+        courseRepository.incrementRatingStats(courseId, delta, 0);
+        courseRepository.refreshAverageRating(courseId);
+        eventPublisher.publishEvent(CourseChangedEvent.stats(courseId));
+    }
+
+    @Transactional
+    public void onReviewDeleted(Long courseId, Integer rating) {
+        courseRepository.incrementRatingStats(courseId, -points(rating), -1);
+        courseRepository.refreshAverageRating(courseId);
+        eventPublisher.publishEvent(CourseChangedEvent.stats(courseId));
+    }
+
+    private static int points(Integer rating) {
+        return rating != null ? rating : 0;
+    }
+
+    /**
+     * Tính lại bộ đếm từ bảng enrollments/reviews cho các course có id trong [fromId, toId].
+     * @return số course đã được cập nhật
+     */
+    @Transactional
+    public int reconcileRange(Long fromId, Long toId) {
+        int updated = courseRepository.recomputeCounters(fromId, toId);
+        courseRepository.refreshAverageRatings(fromId, toId);
+        return updated;
+    }
+}
@@ -0,0 +1,83 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.repository.LessonRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache tổng số bài học của mỗi khóa học (dùng để tính % tiến độ enrollment).
+ * Vô hiệu hóa khi tạo/xóa lesson hoặc chapter (ContentService) và khi xóa khóa học;
+ * việc xóa chạy ngay và chạy lại sau khi transaction commit để không giữ giá trị đọc trước lúc commit.
+ */
+@Component
+public class CourseLessonCountCache {
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Value("${course.lesson-count.cache.max-entries:20000}")
+    private int maxEntries;
+
+    private final Map<Long, Long> lessonCounts = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public long getLessonCount(Long courseId) {
+        Long count = lessonCounts.get(courseId);
+        if (count != null) {
+            hits.increment();
+            return count;
+        }
+        misses.increment();
+        count = lessonRepository.countByChapter_Course_Id(courseId);
+        if (lessonCounts.size() >= maxEntries) {
+            lessonCounts.clear();
+        }
+        lessonCounts.put(courseId, count);
+        return count;
+    }
+
+    public void invalidate(Long courseId) {
+        lessonCounts.remove(courseId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lessonCounts.remove(courseId);
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourseChanged(CourseChangedEvent event) {
+        if (event.getType() == CourseChangedEvent.Type.DELETED) {
+            lessonCounts.remove(event.getCourseId());
+        }
+    }
+
+    public void clear() {
+        lessonCounts.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", lessonCounts.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,508 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục đảo (inverted index) trong bộ nhớ cho tìm kiếm khóa học.
+ *
+ * - Đánh chỉ mục title, description, tên danh mục và tên giảng viên, sau khi bỏ dấu tiếng Việt
+ *   ("lập trình" và "lap trinh" cho cùng token).
+ * - Xếp hạng bằng BM25; trọng số field: title x3, danh mục/giảng viên x2, description x1.
+ * - Truy vấn: mọi từ đều phải xuất hiện (AND), từ cuối được match theo tiền tố ("lap tri" -> "trinh").
+ * - searchNewest: tập khớp sắp theo (createdAt DESC, id DESC) cho trang Admin khi tập khớp quá lớn cho mệnh đề IN.
+ * - Cập nhật tăng dần từ CourseChangedEvent sau khi commit; build lại toàn bộ khi khởi động và theo cron
+ *   (bắt các thay đổi không đi qua CourseService, VD: đổi tên giảng viên/danh mục).
+ *
+ * Doc bị xóa/cập nhật được đánh dấu tombstone và posting được nén lại khi tombstone vượt ngưỡng.
+ */
+@Component
+public class CourseSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int INSTRUCTOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Dữ liệu index (được bảo vệ bởi lock)
+    private TreeMap<String, PostingList> postings = new TreeMap<>();
+    private List<Doc> docs = new ArrayList<>();
+    private Map<Long, Integer> docIndexByCourseId = new HashMap<>();
+    private long totalLength = 0;
+    private int liveDocs = 0;
+    // Các thay đổi xảy ra trong lúc rebuild, được áp dụng lại lên index mới (null khi không rebuild)
+    private List<CourseChangedEvent.Snapshot> changedDuringRebuild = null;
+    private Set<Long> removedDuringRebuild = null;
+
+    private static final class Doc {
+        final long courseId;
+        final ECourseStatus status;
+        final LocalDateTime createdAt;
+        final String[] terms; // các term khác nhau trong doc
+        final int[] tfs;      // tần suất (đã nhân trọng số field) tương ứng với terms
+        final int length;
+        boolean live = true;
+
+        Doc(long courseId, ECourseStatus status, LocalDateTime createdAt, String[] terms, int[] tfs, int length) {
+            this.courseId = courseId;
+            this.status = status;
+            this.createdAt = createdAt;
+            this.terms = terms;
+            this.tfs = tfs;
+            this.length = length;
+        }
+    }
+
+    // Cùng thứ tự với danh sách Admin: createdAt DESC (NULL xếp cuối), id DESC
+    private static final Comparator<Doc> NEWEST_FIRST = Comparator
+            .comparing((Doc doc) -> doc.createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Comparator.comparingLong((Doc doc) -> doc.courseId).reversed());
+
+    // Danh sách (docIndex, tf) của 1 term, docIndex tăng dần vì doc chỉ được append
+    private static final class PostingList {
+        int[] docIdx = new int[2];
+        int[] tf = new int[2];
+        int size = 0;
+        int live = 0; // số posting của doc còn sống (df của BM25), size còn gồm cả tombstone
+
+        void add(int doc, int freq) {
+            if (size == docIdx.length) {
+                docIdx = Arrays.copyOf(docIdx, size * 2);
+                tf = Arrays.copyOf(tf, size * 2);
+            }
+            docIdx[size] = doc;
+            tf[size] = freq;
+            size++;
+            live++;
+        }
+    }
+
+    // ===================== Chuẩn hóa văn bản =====================
+
+    /**
+     * Bỏ dấu tiếng Việt và đưa về chữ thường: "Lập Trình Đa Nền Tảng" -> "lap trinh da nen tang"
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Kiểm tra khóa học có khớp từ khóa theo cùng quy tắc với search() hay không (dùng cho CatalogPageCache).
+     */
+    public static boolean matches(String keyword, CourseChangedEvent.Snapshot course) {
+        List<String> queryTokens = tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return true;
+        }
+        Set<String> courseTokens = new HashSet<>();
+        courseTokens.addAll(tokenize(course.title()));
+        courseTokens.addAll(tokenize(course.description()));
+        courseTokens.addAll(tokenize(course.categoryName()));
+        courseTokens.addAll(tokenize(course.instructorName()));
+        for (int i = 0; i < queryTokens.size(); i++) {
+            String token = queryTokens.get(i);
+            boolean found = i == queryTokens.size() - 1
+                    ? courseTokens.stream().anyMatch(t -> t.startsWith(token))
+                    : courseTokens.contains(token);
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ===================== Tìm kiếm =====================
+
+    /**
+     * Kết quả tìm kiếm: ids = tối đa limit khóa học (searchTop: điểm BM25 giảm dần, searchNewest: mới nhất trước),
+     * total = tổng số khóa học khớp
+     */
+    public record SearchHits(List<Long> ids, int total) {
+        static final SearchHits EMPTY = new SearchHits(Collections.emptyList(), 0);
+    }
+
+    /**
+     * Toàn bộ khóa học khớp từ khóa, sắp xếp theo điểm BM25 giảm dần (không cắt bớt)
+     */
+    public List<Long> searchAll(String keyword, boolean publishedOnly) {
+        return search(keyword, publishedOnly, Integer.MAX_VALUE);
+    }
+
+    public List<Long> search(String keyword, boolean publishedOnly, int limit) {
+        return searchTop(keyword, publishedOnly, limit).ids();
+    }
+
+    public SearchHits searchTop(String keyword, boolean publishedOnly, int limit) {
+        List<String> queryTokens = tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return SearchHits.EMPTY;
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = matchLocked(queryTokens, publishedOnly ? ECourseStatus.PUBLISHED : null);
+            if (scores.isEmpty()) {
+                return SearchHits.EMPTY;
+            }
+
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(
+                    Map.Entry.<Integer, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            Long[] ranked = new Long[top.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = docs.get(top.poll().getKey()).courseId;
+            }
+            return new SearchHits(Arrays.asList(ranked), scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Khóa học khớp từ khóa (status == null: mọi status) sắp theo (createdAt DESC, id DESC), bỏ qua offset dòng
+     * đầu tiên sau cursor (after == null: từ đầu danh sách), lấy tối đa limit id.
+     * total = tổng số khóa học khớp từ khóa và status (không phụ thuộc cursor/offset).
+     */
+    public SearchHits searchNewest(String keyword, ECourseStatus status, KeysetCursor after, int offset, int limit) {
+        List<String> queryTokens = tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return SearchHits.EMPTY;
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> matched = matchLocked(queryTokens, status);
+            if (matched.isEmpty()) {
+                return SearchHits.EMPTY;
+            }
+
+            // Chỉ giữ offset + limit doc đứng đầu (heap đảo thứ tự: phần tử đứng sau cùng nằm ở đỉnh)
+            int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+            PriorityQueue<Doc> top = new PriorityQueue<>(NEWEST_FIRST.reversed());
+            for (Integer docIndex : matched.keySet()) {
+                Doc doc = docs.get(docIndex);
+                if (after != null && !after.isFollowedBy(doc.createdAt, doc.courseId)) {
+                    continue;
+                }
+                top.offer(doc);
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            }
+            // Lấy ra từ cuối trang ngược lên; offset doc còn lại trong heap là phần bị bỏ qua
+            Long[] page = new Long[Math.max(top.size() - offset, 0)];
+            for (int i = page.length - 1; i >= 0; i--) {
+                page[i] = top.poll().courseId;
+            }
+            return new SearchHits(Arrays.asList(page), matched.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Điểm BM25 của các doc khớp mọi từ truy vấn (rỗng nếu không có doc nào khớp)
+    private Map<Integer, Double> matchLocked(List<String> queryTokens, ECourseStatus status) {
+        if (liveDocs == 0) {
+            return Collections.emptyMap();
+        }
+        double avgLength = (double) totalLength / liveDocs;
+
+        // Điểm của từng từ trong truy vấn, xử lý từ hiếm nhất trước để tập ứng viên nhỏ nhất
+        List<List<PostingList>> expansions = new ArrayList<>();
+        for (int i = 0; i < queryTokens.size(); i++) {
+            List<PostingList> lists = lookup(queryTokens.get(i), i == queryTokens.size() - 1);
+            if (lists.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            expansions.add(lists);
+        }
+        expansions.sort(Comparator.comparingInt(lists -> lists.stream().mapToInt(p -> p.live).sum()));
+
+        Map<Integer, Double> scores = null;
+        for (List<PostingList> lists : expansions) {
+            Map<Integer, Double> termScores = scoreTerm(lists, avgLength, scores, status);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<Integer, Double> merged = new HashMap<>(termScores.size() * 2);
+                for (Map.Entry<Integer, Double> entry : termScores.entrySet()) {
+                    merged.put(entry.getKey(), scores.get(entry.getKey()) + entry.getValue());
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private List<PostingList> lookup(String token, boolean prefix) {
+        if (!prefix) {
+            PostingList list = postings.get(token);
+            return list != null ? List.of(list) : Collections.emptyList();
+        }
+        List<PostingList> lists = new ArrayList<>();
+        for (PostingList list : postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+            lists.add(list);
+            if (lists.size() >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+        }
+        return lists;
+    }
+
+    // Điểm BM25 của 1 từ truy vấn (lấy max nếu từ được mở rộng theo tiền tố), chỉ xét doc còn trong candidates
+    private Map<Integer, Double> scoreTerm(List<PostingList> lists, double avgLength,
+                                           Map<Integer, Double> candidates, ECourseStatus status) {
+        Map<Integer, Double> result = new HashMap<>();
+        for (PostingList list : lists) {
+            double idf = Math.log(1 + (liveDocs - list.live + 0.5) / (list.live + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int docIndex = list.docIdx[i];
+                if (candidates != null && !candidates.containsKey(docIndex)) {
+                    continue;
+                }
+                Doc doc = docs.get(docIndex);
+                if (!doc.live || (status != null && doc.status != status)) {
+                    continue;
+                }
+                double tf = list.tf[i];
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length / avgLength));
+                result.merge(docIndex, score, Math::max);
+            }
+        }
+        return result;
+    }
+
+    // ===================== Cập nhật index =====================
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourseChanged(CourseChangedEvent event) {
+        if (event.getType() == CourseChangedEvent.Type.STATS) {
+            return;
+        }
+        if (event.getAfter() == null) {
+            remove(event.getCourseId());
+        } else {
+            index(event.getAfter());
+        }
+    }
+
+    public void index(CourseChangedEvent.Snapshot course) {
+        Doc doc = buildDoc(course);
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(course);
+                removedDuringRebuild.remove(course.id());
+            }
+            removeLocked(course.id());
+            addLocked(doc);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long courseId) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.removeIf(course -> course.id().equals(courseId));
+                removedDuringRebuild.add(courseId);
+            }
+            removeLocked(courseId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Doc buildDoc(CourseChangedEvent.Snapshot course) {
+        Map<String, Integer> freqs = new HashMap<>();
+        int length = 0;
+        length += addField(freqs, course.title(), TITLE_WEIGHT);
+        length += addField(freqs, course.categoryName(), CATEGORY_WEIGHT);
+        length += addField(freqs, course.instructorName(), INSTRUCTOR_WEIGHT);
+        length += addField(freqs, course.description(), DESCRIPTION_WEIGHT);
+
+        String[] terms = new String[freqs.size()];
+        int[] tfs = new int[freqs.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            terms[i] = entry.getKey();
+            tfs[i] = entry.getValue();
+            i++;
+        }
+        return new Doc(course.id(), course.status(), course.createdAt(), terms, tfs, length);
+    }
+
+    private int addField(Map<String, Integer> freqs, String text, int weight) {
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            freqs.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    private void addLocked(Doc doc) {
+        int docIndex = docs.size();
+        docs.add(doc);
+        docIndexByCourseId.put(doc.courseId, docIndex);
+        for (int i = 0; i < doc.terms.length; i++) {
+            postings.computeIfAbsent(doc.terms[i], t -> new PostingList()).add(docIndex, doc.tfs[i]);
+        }
+        totalLength += doc.length;
+        liveDocs++;
+    }
+
+    private void removeLocked(Long courseId) {
+        Integer docIndex = docIndexByCourseId.remove(courseId);
+        if (docIndex == null) {
+            return;
+        }
+        Doc doc = docs.get(docIndex);
+        doc.live = false;
+        for (String term : doc.terms) {
+            postings.get(term).live--;
+        }
+        totalLength -= doc.length;
+        liveDocs--;
+    }
+
+    // Nén lại khi số doc tombstone vượt quá số doc còn sống (giữ df của BM25 và bộ nhớ chính xác)
+    private void compactIfNeeded() {
+        int tombstones = docs.size() - liveDocs;
+        if (tombstones > 1000 && tombstones > liveDocs) {
+            List<Doc> live = new ArrayList<>(liveDocs);
+            for (Doc doc : docs) {
+                if (doc.live) {
+                    live.add(doc);
+                }
+            }
+            replaceAllLocked(live);
+        }
+    }
+
+    private void replaceAllLocked(List<Doc> liveDocList) {
+        postings = new TreeMap<>();
+        docs = new ArrayList<>(liveDocList.size());
+        docIndexByCourseId = new HashMap<>(liveDocList.size() * 2);
+        totalLength = 0;
+        liveDocs = 0;
+        for (Doc doc : liveDocList) {
+            addLocked(doc);
+        }
+    }
+
+    /**
+     * Build lại toàn bộ index từ DB theo từng lô id. Index cũ vẫn phục vụ tìm kiếm trong lúc build.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${course.search.rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new ArrayList<>();
+            removedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Doc> built = new ArrayList<>();
+        long afterId = 0L;
+        while (true) {
+            List<Object[]> rows = courseRepository.findSearchDocumentsAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            if (rows.isEmpty()) {
+                break;
+            }
+            for (Object[] row : rows) {
+                built.add(buildDoc(new CourseChangedEvent.Snapshot(
+                        (Long) row[0], (String) row[1], (String) row[2], null, (ECourseStatus) row[3],
+                        null, (String) row[4], (String) row[5], null, (LocalDateTime) row[6], null)));
+            }
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+
+        lock.writeLock().lock();
+        try {
+            replaceAllLocked(built);
+            for (CourseChangedEvent.Snapshot course : changedDuringRebuild) {
+                removeLocked(course.id());
+                addLocked(buildDoc(course));
+            }
+            removedDuringRebuild.forEach(this::removeLocked);
+            changedDuringRebuild = null;
+            removedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("CourseSearchIndex: Indexed " + built.size() + " courses in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", liveDocs);
+            stats.put("tombstones", docs.size() - liveDocs);
+            stats.put("terms", postings.size());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
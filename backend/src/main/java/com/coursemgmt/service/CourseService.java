@@ -4,6 +4,8 @@ import com.coursemgmt.dto.CourseRequest;
 import com.coursemgmt.dto.CourseResponse;
 import com.coursemgmt.dto.CourseStatisticsResponse;
 import com.coursemgmt.dto.CourseAnalyticsResponse;
+import com.coursemgmt.dto.CursorPage;
+import com.coursemgmt.event.CourseChangedEvent;
 import com.coursemgmt.exception.ResourceNotFoundException;
 import com.coursemgmt.model.*;
 import com.coursemgmt.model.EEnrollmentStatus;
@@ -18,13 +20,17 @@ import com.coursemgmt.repository.TransactionRepository;
 import com.coursemgmt.repository.CartItemRepository;
 import com.coursemgmt.repository.NotificationRepository;
 import com.coursemgmt.security.services.UserDetailsImpl;
+import com.coursemgmt.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -34,10 +40,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
@@ -81,6 +96,29 @@ public class CourseService {
     @Autowired
     private NewsletterService newsletterService;
 
+    @Autowired
+    private CatalogPageCache catalogPageCache;
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    // Tập id khớp từ khóa lớn hơn ngưỡng này thì lọc trong bộ nhớ thay vì đưa cả tập vào mệnh đề IN
+    @Value("${course.search.max-in-ids:1000}")
+    private int maxSearchIdsInQuery;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    // Publish sự kiện thay đổi khóa học (catalog cache, search index... xử lý sau khi commit)
+    private void publishCourseChanged(CourseChangedEvent.Type type, CourseChangedEvent.Snapshot before, Course after) {
+        Long courseId = after != null ? after.getId() : before.id();
+        eventPublisher.publishEvent(new CourseChangedEvent(courseId, type, before,
+                after != null ? CourseChangedEvent.Snapshot.of(after) : null));
+    }
+
     // Hàm chung để lấy User từ security context
     private User getCurrentUser(UserDetailsImpl userDetails) {
         return userRepository.findById(userDetails.getId())
@@ -97,6 +135,10 @@ public class CourseService {
             if (authentication == null || !(authentication.getPrincipal() instanceof UserDetails)) {
                 return null;
             }
+            // Principal dựng từ JWT đã có sẵn id -> không cần truy vấn DB
+            if (authentication.getPrincipal() instanceof UserDetailsImpl principal) {
+                return principal.getId();
+            }
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             String username = userDetails.getUsername();
             User user = userRepository.findByUsername(username).orElse(null);
@@ -186,6 +228,7 @@ public class CourseService {
         }
 
         Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.CREATED, null, savedCourse);
 
         // Gửi email thông báo khóa học mới nếu khóa học được publish ngay (Admin tạo)
         if (savedCourse.getStatus() == ECourseStatus.PUBLISHED) {
@@ -208,6 +251,7 @@ public class CourseService {
     public Course updateCourse(Long courseId, CourseRequest request) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found!"));
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new RuntimeException("Category not found!"));
@@ -222,7 +266,9 @@ public class CourseService {
         // Khi cập nhật, có thể reset status về PENDING để admin duyệt lại
         // course.setStatus(ECourseStatus.PENDING_APPROVAL);
 
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.UPDATED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng: Gửi yêu cầu phê duyệt (Giảng viên)
@@ -236,12 +282,15 @@ public class CourseService {
         if (course.getStatus() == ECourseStatus.PUBLISHED) {
             throw new RuntimeException("Khóa học đã được phê duyệt rồi!");
         }
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         // Đặt trạng thái về PENDING_APPROVAL để chờ Admin duyệt
         course.setStatus(ECourseStatus.PENDING_APPROVAL);
         course.setUpdatedAt(LocalDateTime.now());
 
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.UPDATED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 3: Xóa khóa học
@@ -249,6 +298,7 @@ public class CourseService {
     public void deleteCourse(Long courseId) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found!"));
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
         
         // Xóa các bản ghi liên quan trước khi xóa khóa học (để tránh foreign key constraint violation)
         
@@ -266,9 +316,11 @@ public class CourseService {
         
         // 5. Xóa transactions
         transactionRepository.deleteByCourseId(courseId);
+        courseStatsRollupService.onCourseDeleted(courseId);
         
         // 6. Xóa khóa học (chapters và lessons sẽ tự động xóa do cascade = CascadeType.ALL)
         courseRepository.delete(course);
+        publishCourseChanged(CourseChangedEvent.Type.DELETED, before, null);
     }
 
     // Chức năng 3.1: Chuyển quyền sở hữu khóa học (Admin only)
@@ -288,10 +340,13 @@ public class CourseService {
             throw new RuntimeException("User is not a lecturer!");
         }
         
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
         course.setInstructor(newInstructor);
         course.setUpdatedAt(LocalDateTime.now());
         
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.OWNERSHIP_TRANSFERRED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 4: Admin duyệt khóa học
@@ -299,28 +354,22 @@ public class CourseService {
     public Course approveCourse(Long courseId) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found!"));
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         course.setStatus(ECourseStatus.PUBLISHED);
         course.setUpdatedAt(LocalDateTime.now());
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.APPROVED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 5: Lấy 1 khóa học
     public CourseResponse getCourseById(Long courseId) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
+        // enrollmentCount + rating lấy từ bộ đếm denormalized trên Course
         CourseResponse dto = CourseResponse.fromEntity(course);
         
-        // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-        Long enrollmentCount = enrollmentRepository.countByCourseId(courseId);
-        dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-        
-        // Set rating info
-        Double avgRating = reviewRepository.getAverageRatingByCourseId(courseId);
-        Long reviewCount = reviewRepository.countByCourseId(courseId);
-        dto.setRating(avgRating != null ? avgRating : 0.0);
-        dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-        
         // Check if current user is enrolled
         Long currentUserId = getCurrentUserId();
         if (currentUserId != null) {
@@ -347,110 +396,169 @@ public class CourseService {
             featuredCourses = courseRepository.findLatestPublishedCourses(pageable);
         }
         
-        // Get enrolled course IDs and enrollment map for current user (if authenticated)
-        Long currentUserId = getCurrentUserId();
-        Set<Long> enrolledIds = getEnrolledCourseIds(currentUserId);
-        Map<Long, Enrollment> enrollmentMap = getEnrollmentMap(currentUserId);
-        
-        // Convert sang DTO và tính enrollmentCount + isEnrolled + enrollmentProgress + rating
-        return featuredCourses.stream()
-                .map(course -> {
-                    CourseResponse dto = CourseResponse.fromEntity(course);
-                    // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-                    Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                    dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                    
-                    // Set rating info
-                    Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                    Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                    dto.setRating(avgRating != null ? avgRating : 0.0);
-                    dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                    
-                    // Set isEnrolled status
-                    boolean isEnrolled = enrolledIds.contains(course.getId());
-                    dto.setIsEnrolled(isEnrolled);
-                    
-                    // If enrolled, set enrollment progress and status
-                    if (isEnrolled) {
-                        Enrollment enrollment = enrollmentMap.get(course.getId());
-                        if (enrollment != null) {
-                            if (enrollment.getProgress() != null) {
-                                dto.setEnrollmentProgress(enrollment.getProgress());
-                            } else {
-                                dto.setEnrollmentProgress(0.0);
-                            }
-                            if (enrollment.getStatus() != null) {
-                                dto.setEnrollmentStatus(enrollment.getStatus().name());
-                            } else {
-                                dto.setEnrollmentStatus("IN_PROGRESS");
-                            }
-                        }
-                    }
-                    
-                    return dto;
-                })
+        // Convert sang DTO (enrollmentCount + rating có sẵn trên Course) và tính isEnrolled + enrollmentProgress
+        List<CourseResponse> dtos = featuredCourses.stream()
+                .map(CourseResponse::fromEntity)
                 .collect(Collectors.toList());
+        applyEnrollmentOverlay(dtos);
+        return dtos;
     }
 
     // Chức năng 6.1: Lấy tất cả khóa học cho Admin (không filter theo published)
     @Transactional(readOnly = true)
     public Page<Course> getAllCoursesForAdmin(Pageable pageable, String search, String status) {
-        // Use custom query with JOIN FETCH to eager load instructor and category
-        // This avoids LAZY loading issues when converting to DTO
-        String baseQuery = "SELECT DISTINCT c FROM Course c LEFT JOIN FETCH c.instructor LEFT JOIN FETCH c.category WHERE 1=1";
-        String countQuery = "SELECT COUNT(DISTINCT c) FROM Course c WHERE 1=1";
-        
+        // Phân trang 2 pha:
+        // 1. Phân trang trên id (LIMIT/OFFSET chạy trong SQL, không JOIN FETCH)
+        // 2. Load đúng các khóa học của trang kèm instructor (+ roles) và category trong 1 query
+        // -> không bao giờ load toàn bộ các dòng khớp điều kiện vào bộ nhớ để phân trang
+        AdminCourseFilter filter = buildAdminCourseFilters(search, status);
+        if (filter.noMatch) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+
+        int offset = (int) pageable.getOffset();
+        Long total;
+        if (filter.indexKeyword != null) {
+            // Tập khớp từ khóa quá lớn cho IN: index sắp (createdAt DESC, id DESC) và cắt đúng trang,
+            // SQL chỉ còn đọc các id của trang đó
+            CourseSearchIndex.SearchHits hits = courseSearchIndex.searchNewest(
+                    filter.indexKeyword, filter.status, null, offset, pageable.getPageSize());
+            if (hits.ids().isEmpty()) {
+                return new PageImpl<>(Collections.emptyList(), pageable, hits.total());
+            }
+            filter.restrictToIds(hits.ids());
+            offset = 0;
+            total = (long) hits.total();
+        } else {
+            // Execute count query
+            TypedQuery<Long> countQuery = entityManager.createQuery("SELECT COUNT(c) FROM Course c WHERE 1=1" + filter.whereClause, Long.class);
+            filter.params.forEach(countQuery::setParameter);
+            total = countQuery.getSingleResult();
+        }
+
+        // Pha 1: id của trang hiện tại
+        TypedQuery<Long> idQuery = entityManager.createQuery(
+                "SELECT c.id FROM Course c WHERE 1=1" + filter.whereClause + " ORDER BY c.createdAt DESC, c.id DESC", Long.class);
+        filter.params.forEach(idQuery::setParameter);
+        idQuery.setFirstResult(offset);
+        idQuery.setMaxResults(pageable.getPageSize());
+        List<Long> pageIds = idQuery.getResultList();
+
+        // Pha 2: load entity + quan hệ cho các id đó
+        return new PageImpl<>(loadAdminCoursesInOrder(pageIds), pageable, total);
+    }
+
+    // Load khóa học theo danh sách id kèm instructor (+ roles) và category, giữ nguyên thứ tự của danh sách id
+    private List<Course> loadAdminCoursesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Course> loaded = entityManager.createQuery(
+                        "SELECT DISTINCT c FROM Course c LEFT JOIN FETCH c.instructor i LEFT JOIN FETCH i.roles " +
+                        "LEFT JOIN FETCH c.category WHERE c.id IN :ids", Course.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        Map<Long, Course> coursesById = loaded.stream().collect(Collectors.toMap(Course::getId, course -> course));
+        return ids.stream()
+                .map(coursesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Chức năng 6.1.1: Lấy khóa học cho Admin theo cursor (keyset trên createdAt, id) - không chậm dần ở trang sâu
+    @Transactional(readOnly = true)
+    public CursorPage<CourseResponse> getCoursesForAdminByCursor(String cursor, int size, String search, String status, boolean includeTotal) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        AdminCourseFilter filter = buildAdminCourseFilters(search, status);
+        if (filter.noMatch) {
+            return new CursorPage<>(Collections.emptyList(), 0, null, false, includeTotal ? 0L : null);
+        }
+
+        Long total = null;
+        if (filter.indexKeyword != null) {
+            // Tập khớp từ khóa quá lớn cho IN: index seek sau cursor và lấy size + 1 id, tổng số lấy luôn từ index
+            CourseSearchIndex.SearchHits hits = courseSearchIndex.searchNewest(filter.indexKeyword, filter.status, after, 0, size + 1);
+            if (hits.ids().isEmpty()) {
+                return new CursorPage<>(Collections.emptyList(), 0, null, false, includeTotal ? (long) hits.total() : null);
+            }
+            filter.restrictToIds(hits.ids());
+            if (includeTotal) {
+                total = (long) hits.total();
+            }
+        } else if (includeTotal) {
+            TypedQuery<Long> countQuery = entityManager.createQuery("SELECT COUNT(c) FROM Course c WHERE 1=1" + filter.whereClause, Long.class);
+            filter.params.forEach(countQuery::setParameter);
+            total = countQuery.getSingleResult();
+        }
+
+        // Cùng cách 2 pha như getAllCoursesForAdmin: seek trên id trước, sau đó mới load entity của trang
+        String jpql = "SELECT c.id FROM Course c WHERE 1=1"
+                + filter.whereClause
+                + (after != null ? " AND " + after.seekCondition("c", "createdAt") : "")
+                + " ORDER BY c.createdAt DESC, c.id DESC";
+        TypedQuery<Long> idQuery = entityManager.createQuery(jpql, Long.class);
+        filter.params.forEach(idQuery::setParameter);
+        if (after != null) {
+            after.bind(idQuery);
+        }
+        idQuery.setMaxResults(size + 1);
+        List<Long> pageIds = idQuery.getResultList();
+
+        return CursorPage.fromRows(loadAdminCoursesInOrder(pageIds), size,
+                course -> new KeysetCursor(course.getCreatedAt(), course.getId()),
+                CourseResponse::fromEntity, total);
+    }
+
+    // Điều kiện lọc của danh sách khóa học Admin (JPQL + tham số);
+    // indexKeyword != null khi tập khớp từ khóa quá lớn cho IN và trang phải được cắt từ CourseSearchIndex
+    private static final class AdminCourseFilter {
+        final Map<String, Object> params = new HashMap<>();
+        String whereClause = "";
+        String indexKeyword;
+        ECourseStatus status;
+        boolean noMatch;
+
+        void restrictToIds(List<Long> ids) {
+            whereClause += " AND c.id IN :searchIds";
+            params.put("searchIds", ids);
+        }
+    }
+
+    // Điều kiện lọc chung cho danh sách khóa học của Admin (tìm theo từ khóa, lọc theo status)
+    private AdminCourseFilter buildAdminCourseFilters(String search, String status) {
+        AdminCourseFilter filter = new AdminCourseFilter();
         List<String> conditions = new ArrayList<>();
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
         
-        // Search by title
+        // Search: cùng CourseSearchIndex với catalog (bỏ dấu, title/description/danh mục/giảng viên),
+        // gồm cả khóa học chưa publish
         if (search != null && !search.trim().isEmpty()) {
-            conditions.add("LOWER(c.title) LIKE LOWER(?" + paramIndex + ")");
-            params.add("%" + search.trim() + "%");
-            paramIndex++;
+            CourseSearchIndex.SearchHits hits = courseSearchIndex.searchTop(search, false, maxSearchIdsInQuery);
+            if (hits.total() == 0) {
+                filter.noMatch = true;
+                return filter;
+            }
+            if (hits.total() <= maxSearchIdsInQuery) {
+                conditions.add("c.id IN :searchIds");
+                filter.params.put("searchIds", hits.ids());
+            } else {
+                filter.indexKeyword = search;
+            }
         }
         
         // Filter by status
         if (status != null && !status.trim().isEmpty()) {
             try {
                 ECourseStatus courseStatus = ECourseStatus.valueOf(status.toUpperCase());
-                conditions.add("c.status = ?" + paramIndex);
-                params.add(courseStatus);
-                paramIndex++;
+                conditions.add("c.status = :status");
+                filter.params.put("status", courseStatus);
+                filter.status = courseStatus;
             } catch (IllegalArgumentException e) {
                 // Invalid status, ignore
             }
         }
         
-        // Build final queries
-        if (!conditions.isEmpty()) {
-            String whereClause = " AND " + String.join(" AND ", conditions);
-            baseQuery += whereClause;
-            countQuery += whereClause;
-        }
-        
-        baseQuery += " ORDER BY c.createdAt DESC";
-        
-        // Execute count query
-        jakarta.persistence.Query countQ = entityManager.createQuery(countQuery);
-        for (int i = 0; i < params.size(); i++) {
-            countQ.setParameter(i + 1, params.get(i));
-        }
-        Long total = (Long) countQ.getSingleResult();
-        
-        // Execute main query with pagination
-        jakarta.persistence.Query query = entityManager.createQuery(baseQuery, Course.class);
-        for (int i = 0; i < params.size(); i++) {
-            query.setParameter(i + 1, params.get(i));
-        }
-        query.setFirstResult((int) pageable.getOffset());
-        query.setMaxResults(pageable.getPageSize());
-        
-        @SuppressWarnings("unchecked")
-        List<Course> courses = query.getResultList();
-        
-        return new PageImpl<>(courses, pageable, total);
+        filter.whereClause = conditions.isEmpty() ? "" : " AND " + String.join(" AND ", conditions);
+        return filter;
     }
 
     // Chức năng 6: Tìm kiếm, lọc, sắp xếp (Public)
@@ -458,30 +566,61 @@ public class CourseService {
 
         // 1. Phân trang và Sắp xếp
         // 'sort' có dạng: "price,asc" hoặc "createdAt,desc"
+        // "relevance" = xếp theo điểm BM25 của CourseSearchIndex (chỉ có nghĩa khi có keyword)
+        boolean hasKeyword = keyword != null && !keyword.trim().isEmpty();
+        if (sort.startsWith("relevance") && !hasKeyword) {
+            sort = "createdAt,desc";
+        }
         String[] sortParams = sort.split(",");
         Sort.Direction direction = sortParams[1].equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortParams[0]));
+        Pageable pageable = "relevance".equals(sortParams[0])
+                ? PageRequest.of(page, size)
+                : PageRequest.of(page, size, Sort.by(direction, sortParams[0]));
+
+        // 2. Trang catalog (phần chung cho mọi user) lấy từ cache nếu có
+        CatalogPageCache.CatalogQuery cacheKey = new CatalogPageCache.CatalogQuery(
+                keyword, categoryId, minPrice, maxPrice, isFree, isPaid, minRating, sort, page, size);
+        CatalogPageCache.CachedPage cachedPage = catalogPageCache.get(cacheKey);
+        if (cachedPage == null) {
+            long cacheGeneration = catalogPageCache.currentGeneration();
+            Page<Course> coursePage = findPublishedCourses(keyword, categoryId, minPrice, maxPrice, isFree, isPaid, minRating, pageable);
+            // Convert sang DTO (enrollmentCount + rating có sẵn trên Course)
+            List<CourseResponse> baseDtos = coursePage.getContent().stream()
+                    .map(CourseResponse::fromEntity)
+                    .collect(Collectors.toList());
+            cachedPage = catalogPageCache.put(cacheKey, baseDtos, coursePage.getTotalElements(), cacheGeneration);
+        }
+
+        // 3. Gắn isEnrolled + enrollmentProgress của user hiện tại lên bản copy
+        List<CourseResponse> dtos = cachedPage.copyContent();
+        applyEnrollmentOverlay(dtos);
+
+        return new PageImpl<>(dtos, pageable, cachedPage.getTotalElements());
+    }
 
-        // 2. Tạo Specification (bộ lọc động)
+    private Page<Course> findPublishedCourses(String keyword, Long categoryId, Double minPrice, Double maxPrice, Boolean isFree, Boolean isPaid, Double minRating, Pageable pageable) {
+        // Tạo Specification (bộ lọc động)
         Specification<Course> spec = CourseRepository.isPublished();
+        boolean hasFilters = false;
 
-        if (keyword != null && !keyword.isEmpty()) {
-            spec = spec.and(CourseRepository.titleContains(keyword));
-        }
         if (categoryId != null) {
             spec = spec.and(CourseRepository.hasCategory(categoryId));
+            hasFilters = true;
         }
         
         // Price filtering - Priority: isFree/isPaid > minPrice/maxPrice
         if (isFree != null && isFree) {
             // Free courses: price = 0 (use isFree specification)
             spec = spec.and(CourseRepository.isFree());
+            hasFilters = true;
         } else if (isPaid != null && isPaid) {
             // Paid courses: price > 0 (use isPaid specification)
             spec = spec.and(CourseRepository.isPaid());
+            hasFilters = true;
         } else if (minPrice != null || maxPrice != null) {
             // Use price range if minPrice or maxPrice is provided (but not isFree/isPaid)
             spec = spec.and(CourseRepository.priceRange(minPrice, maxPrice));
+            hasFilters = true;
         }
         
         // Level filtering
@@ -491,60 +630,121 @@ public class CourseService {
         //     spec = spec.and(CourseRepository.hasLevel(level));
         // }
         
-        // Rating filtering (if Course entity has rating field)
-        // Note: This will be implemented when rating field is added to Course entity
-        // if (minRating != null) {
-        //     spec = spec.and(CourseRepository.minRating(minRating));
-        // }
+        // Rating filtering - dùng cột averageRating (denormalized, có index theo status + average_rating)
+        if (minRating != null) {
+            spec = spec.and(CourseRepository.minRating(minRating));
+            hasFilters = true;
+        }
+
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return courseRepository.findAll(spec, pageable);
+        }
+
+        // Keyword: khớp theo CourseSearchIndex (bỏ dấu, title/description/danh mục/giảng viên, BM25)
+        // - Chỉ xếp theo độ liên quan, không lọc thêm: lấy đúng các id tới hết trang từ index, tổng = số khóa học khớp
+        // - Có bộ lọc hoặc sắp xếp khác: dùng toàn bộ tập khớp (không cắt theo điểm) rồi lọc / sắp xếp trên DB
+        if (!hasFilters && pageable.getSort().isUnsorted()) {
+            CourseSearchIndex.SearchHits hits = courseSearchIndex.searchTop(
+                    keyword, true, (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize()));
+            int from = (int) Math.min(pageable.getOffset(), hits.ids().size());
+            return new PageImpl<>(loadCoursesInOrder(spec, hits.ids().subList(from, hits.ids().size())), pageable, hits.total());
+        }
+        List<Long> rankedIds = courseSearchIndex.searchAll(keyword, true);
+        if (rankedIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        Set<Long> keywordIds = null;
+        if (rankedIds.size() <= maxSearchIdsInQuery) {
+            spec = spec.and(CourseRepository.idIn(rankedIds));
+        } else {
+            keywordIds = new HashSet<>(rankedIds);
+        }
+
+        if (pageable.getSort().isUnsorted()) {
+            return findByRelevance(spec, rankedIds, pageable);
+        }
+        if (keywordIds == null) {
+            return courseRepository.findAll(spec, pageable);
+        }
+        return findSortedWithin(spec, keywordIds, pageable);
+    }
+
+    // Phân trang theo thứ tự điểm BM25: lọc id trên DB, cắt trang theo thứ tự của index rồi mới load entity
+    private Page<Course> findByRelevance(Specification<Course> spec, List<Long> rankedIds, Pageable pageable) {
+        Set<Long> matchingIds = new HashSet<>(findIds(spec, Sort.unsorted()));
+        List<Long> orderedIds = rankedIds.stream().filter(matchingIds::contains).collect(Collectors.toList());
+        return pageInOrder(spec, orderedIds, pageable);
+    }
+
+    // Sắp xếp theo field khi tập khớp từ khóa quá lớn cho mệnh đề IN: duyệt id đã lọc theo thứ tự trên DB,
+    // giữ các id khớp từ khóa (chỉ đọc id, entity chỉ load cho trang hiện tại)
+    private Page<Course> findSortedWithin(Specification<Course> spec, Set<Long> keywordIds, Pageable pageable) {
+        List<Long> orderedIds = findIds(spec, pageable.getSort()).stream()
+                .filter(keywordIds::contains)
+                .collect(Collectors.toList());
+        return pageInOrder(spec, orderedIds, pageable);
+    }
 
-        // 3. Truy vấn
-        Page<Course> coursePage = courseRepository.findAll(spec, pageable);
+    private List<Long> findIds(Specification<Course> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> idQuery = cb.createQuery(Long.class);
+        Root<Course> root = idQuery.from(Course.class);
+        idQuery.select(root.get("id")).where(spec.toPredicate(root, idQuery, cb));
+        if (sort.isSorted()) {
+            idQuery.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(idQuery).getResultList();
+    }
 
-        // 4. Get enrolled course IDs and enrollment map for current user (if authenticated)
+    private Page<Course> pageInOrder(Specification<Course> spec, List<Long> orderedIds, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), orderedIds.size());
+        int to = Math.min(from + pageable.getPageSize(), orderedIds.size());
+        return new PageImpl<>(loadCoursesInOrder(spec, orderedIds.subList(from, to)), pageable, orderedIds.size());
+    }
+
+    // Load các khóa học của trang (vẫn áp dụng spec), giữ nguyên thứ tự của danh sách id
+    private List<Course> loadCoursesInOrder(Specification<Course> spec, List<Long> pageIds) {
+        if (pageIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Course> coursesById = courseRepository.findAll(spec.and(CourseRepository.idIn(pageIds))).stream()
+                .collect(Collectors.toMap(Course::getId, course -> course));
+        return pageIds.stream()
+                .map(coursesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gắn isEnrolled + enrollmentProgress/enrollmentStatus của user hiện tại (nếu đã đăng nhập) lên danh sách DTO
+     */
+    private void applyEnrollmentOverlay(List<CourseResponse> dtos) {
         Long currentUserId = getCurrentUserId();
         Set<Long> enrolledIds = getEnrolledCourseIds(currentUserId);
         Map<Long, Enrollment> enrollmentMap = getEnrollmentMap(currentUserId);
 
-        // 5. Convert sang DTO và tính enrollmentCount + isEnrolled + enrollmentProgress + rating
-        List<CourseResponse> dtos = coursePage.getContent().stream()
-                .map(course -> {
-                    CourseResponse dto = CourseResponse.fromEntity(course);
-                    // Tính enrollmentCount từ repository (tránh LAZY loading issue)
-                    Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                    dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                    
-                    // Set rating info
-                    Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                    Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                    dto.setRating(avgRating != null ? avgRating : 0.0);
-                    dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                    
-                    // Set isEnrolled status
-                    boolean isEnrolled = enrolledIds.contains(course.getId());
-                    dto.setIsEnrolled(isEnrolled);
-                    
-                    // If enrolled, set enrollment progress and status
-                    if (isEnrolled) {
-                        Enrollment enrollment = enrollmentMap.get(course.getId());
-                        if (enrollment != null) {
-                            if (enrollment.getProgress() != null) {
-                                dto.setEnrollmentProgress(enrollment.getProgress());
-                            } else {
-                                dto.setEnrollmentProgress(0.0);
-                            }
-                            if (enrollment.getStatus() != null) {
-                                dto.setEnrollmentStatus(enrollment.getStatus().name());
-                            } else {
-                                dto.setEnrollmentStatus("IN_PROGRESS");
-                            }
-                        }
-                    }
-                    
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        for (CourseResponse dto : dtos) {
+            // Set isEnrolled status
+            boolean isEnrolled = enrolledIds.contains(dto.getId());
+            dto.setIsEnrolled(isEnrolled);
 
-        return new PageImpl<>(dtos, pageable, coursePage.getTotalElements());
+            // If enrolled, set enrollment progress and status
+            if (isEnrolled) {
+                Enrollment enrollment = enrollmentMap.get(dto.getId());
+                if (enrollment != null) {
+                    if (enrollment.getProgress() != null) {
+                        dto.setEnrollmentProgress(enrollment.getProgress());
+                    } else {
+                        dto.setEnrollmentProgress(0.0);
+                    }
+                    if (enrollment.getStatus() != null) {
+                        dto.setEnrollmentStatus(enrollment.getStatus().name());
+                    } else {
+                        dto.setEnrollmentStatus("IN_PROGRESS");
+                    }
+                }
+            }
+        }
     }
 
     // Chức năng 7: Thống kê
@@ -581,35 +781,31 @@ public class CourseService {
             completionRate = (completedEnrollments * 100.0) / totalEnrollments;
         }
         
-        // Average rating (not implemented yet, set to null)
-        Double averageRating = null;
+        // Average rating (bộ đếm denormalized trên Course, null nếu chưa có review)
+        Double averageRating = course.getReviewCount() != null && course.getReviewCount() > 0
+                ? course.getAverageRating()
+                : null;
         
-        // Get current year for monthly data
-        int currentYear = LocalDateTime.now().getYear();
-        
-        // Monthly enrollments
-        List<Object[]> monthlyEnrollmentData = enrollmentRepository.getMonthlyEnrollmentsByCourse(courseId, currentYear);
+        // Monthly enrollments / revenue của năm hiện tại: đọc từ rollup theo ngày (course_daily_stats)
+        LocalDate today = LocalDate.now();
+        Map<YearMonth, CourseStatsRollupService.MonthlyTotals> monthlyTotals = courseStatsRollupService
+                .monthlyTotalsForCourse(courseId, today.withDayOfYear(1), today);
         List<CourseAnalyticsResponse.MonthlyEnrollmentData> monthlyEnrollments = new ArrayList<>();
-        for (Object[] data : monthlyEnrollmentData) {
-            Integer month = (Integer) data[0];
-            Long count = ((Number) data[2]).longValue();
-            monthlyEnrollments.add(new CourseAnalyticsResponse.MonthlyEnrollmentData(
-                "Tháng " + month,
-                count
-            ));
-        }
-        
-        // Monthly revenue
-        List<Object[]> monthlyRevenueData = transactionRepository.getMonthlyRevenueByCourse(courseId, currentYear);
         List<CourseAnalyticsResponse.MonthlyRevenueData> monthlyRevenue = new ArrayList<>();
-        for (Object[] data : monthlyRevenueData) {
-            Integer month = (Integer) data[0];
-            Double revenue = ((Number) data[2]).doubleValue();
-            monthlyRevenue.add(new CourseAnalyticsResponse.MonthlyRevenueData(
-                "Tháng " + month,
-                revenue
-            ));
-        }
+        monthlyTotals.forEach((month, totals) -> {
+            if (totals.enrollments() > 0) {
+                monthlyEnrollments.add(new CourseAnalyticsResponse.MonthlyEnrollmentData(
+                    "Tháng " + month.getMonthValue(),
+                    totals.enrollments()
+                ));
+            }
+            if (totals.successfulTransactions() > 0) {
+                monthlyRevenue.add(new CourseAnalyticsResponse.MonthlyRevenueData(
+                    "Tháng " + month.getMonthValue(),
+                    totals.revenue()
+                ));
+            }
+        });
         
         return new CourseAnalyticsResponse(
             courseId,
@@ -628,11 +824,14 @@ public class CourseService {
     public Course toggleFeatured(Long courseId, Boolean isFeatured) {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
         
         course.setIsFeatured(isFeatured != null ? isFeatured : true);
         course.setUpdatedAt(LocalDateTime.now());
         
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.FEATURED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 8: Giảng viên gửi yêu cầu phê duyệt khóa học
@@ -650,10 +849,13 @@ public class CourseService {
         if (ECourseStatus.PUBLISHED.equals(course.getStatus())) {
             throw new RuntimeException("Course is already published and cannot be sent for re-approval.");
         }
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         course.setStatus(ECourseStatus.PENDING_APPROVAL);
         course.setUpdatedAt(LocalDateTime.now());
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.UPDATED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 9: Giảng viên tự publish khóa học (Marketplace Model - Self-Publish)
@@ -713,6 +915,7 @@ public class CourseService {
         }
         
         System.out.println("Validation passed: Course has " + chapters.size() + " chapter(s) with lessons");
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         // Action: Update status to PUBLISHED
         course.setStatus(ECourseStatus.PUBLISHED);
@@ -720,6 +923,7 @@ public class CourseService {
         course.setUpdatedAt(LocalDateTime.now());
         
         Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.PUBLISHED, before, savedCourse);
         System.out.println("Course published successfully. New status: " + savedCourse.getStatus());
         System.out.println("========================================");
 
@@ -756,12 +960,15 @@ public class CourseService {
         if (course.getStatus() != ECourseStatus.PUBLISHED) {
             throw new RuntimeException("Only PUBLISHED courses can be unpublished. Current status: " + course.getStatus());
         }
+        CourseChangedEvent.Snapshot before = CourseChangedEvent.Snapshot.of(course);
 
         // Action: Update status to DRAFT
         course.setStatus(ECourseStatus.DRAFT);
         course.setIsPublished(false);
         course.setUpdatedAt(LocalDateTime.now());
-        return courseRepository.save(course);
+        Course savedCourse = courseRepository.save(course);
+        publishCourseChanged(CourseChangedEvent.Type.UNPUBLISHED, before, savedCourse);
+        return savedCourse;
     }
 
     // Chức năng 10: Lấy danh sách khóa học của học viên (My Courses)
@@ -787,16 +994,6 @@ public class CourseService {
                             
                             CourseResponse dto = CourseResponse.fromEntity(course);
                             
-                            // Set enrollment info
-                            Long enrollmentCount = enrollmentRepository.countByCourseId(course.getId());
-                            dto.setEnrollmentCount(enrollmentCount != null ? enrollmentCount : 0L);
-                            
-                            // Set rating info
-                            Double avgRating = reviewRepository.getAverageRatingByCourseId(course.getId());
-                            Long reviewCount = reviewRepository.countByCourseId(course.getId());
-                            dto.setRating(avgRating != null ? avgRating : 0.0);
-                            dto.setReviewCount(reviewCount != null ? reviewCount : 0L);
-                            
                             // All courses in "My Courses" are enrolled by definition
                             dto.setIsEnrolled(true);
                             
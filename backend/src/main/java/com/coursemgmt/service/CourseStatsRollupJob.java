@@ -0,0 +1,77 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.CourseDailyStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Backfill bảng rollup course_daily_stats từ enrollments / certificates / transactions.
+ * Khi khởi động: nếu bảng rollup còn trống thì tính lại toàn bộ lịch sử, ngược lại chỉ tính lại vài ngày gần nhất.
+ * Định kỳ theo cron: tính lại backfill-days ngày gần nhất, sửa các sai lệch do ghi trực tiếp trên DB
+ * hoặc thao tác không đi qua service.
+ * Mỗi tháng được xử lý trong 1 transaction riêng.
+ */
+@Component
+public class CourseStatsRollupJob {
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private CourseDailyStatsRepository courseDailyStatsRepository;
+
+    @Value("${stats.rollup.backfill-days:3}")
+    private int backfillDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (courseDailyStatsRepository.count() == 0) {
+            rebuildAll();
+        } else {
+            backfillRecent();
+        }
+    }
+
+    @Scheduled(cron = "${stats.rollup.backfill-cron:0 15 4 * * *}")
+    public void backfillRecent() {
+        LocalDate today = LocalDate.now();
+        rebuild(today.minusDays(backfillDays), today.plusDays(1));
+    }
+
+    public int rebuildAll() {
+        LocalDate earliest = courseStatsRollupService.findEarliestActivityDate();
+        if (earliest == null) {
+            return 0;
+        }
+        return rebuild(earliest, LocalDate.now().plusDays(1));
+    }
+
+    /**
+     * Tính lại các bucket cho [fromDate, toDate), chia theo từng tháng.
+     * @return số dòng nguồn (khóa học + ngày) đã ghi
+     */
+    public int rebuild(LocalDate fromDate, LocalDate toDate) {
+        long start = System.currentTimeMillis();
+        int total = 0;
+        LocalDate windowStart = fromDate;
+        while (windowStart.isBefore(toDate)) {
+            LocalDate nextMonth = windowStart.withDayOfMonth(1).plusMonths(1);
+            LocalDate windowEnd = nextMonth.isBefore(toDate) ? nextMonth : toDate;
+            try {
+                total += courseStatsRollupService.rebuild(windowStart, windowEnd);
+            } catch (Exception e) {
+                System.err.println("CourseStatsRollupJob: Failed to rebuild " + windowStart + " - " + windowEnd + ": " + e.getMessage());
+            }
+            windowStart = windowEnd;
+        }
+        System.out.println("CourseStatsRollupJob: Rebuilt " + total + " daily buckets for " + fromDate + " - " + toDate
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+        return total;
+    }
+}
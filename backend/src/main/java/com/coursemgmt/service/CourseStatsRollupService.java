@@ -0,0 +1,258 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.event.StatsChangedEvent;
+import com.coursemgmt.model.EEnrollmentStatus;
+import com.coursemgmt.model.ETransactionStatus;
+import com.coursemgmt.model.Enrollment;
+import com.coursemgmt.model.Transaction;
+import com.coursemgmt.repository.CourseDailyStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rollup thống kê theo ngày cho từng khóa học (bảng course_daily_stats).
+ *
+ * - Các hàm on* cộng dồn vào bucket của ngày tương ứng, phải được gọi trong cùng transaction
+ *   với thao tác ghi enrollment/transaction để bucket và dữ liệu nguồn được commit (hoặc rollback) cùng nhau.
+ * - rebuild() tính lại các bucket trong 1 khoảng ngày từ bảng nguồn (CourseStatsRollupJob gọi định kỳ).
+ *   Cột refunds không có nguồn để tính lại nên được giữ nguyên.
+ * - Các biểu đồ theo tháng / năm đọc qua monthlyTotals*() / sumRevenue().
+ * - Mỗi thay đổi publish StatsChangedEvent (snapshot dashboard admin làm mới sau khi commit).
+ */
+@Service
+public class CourseStatsRollupService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CourseDailyStatsRepository courseDailyStatsRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Tổng của các bucket trong 1 tháng
+     */
+    public record MonthlyTotals(long enrollments, long completions, double revenue,
+                                long successfulTransactions, double refunds) {
+        public static final MonthlyTotals EMPTY = new MonthlyTotals(0, 0, 0.0, 0, 0.0);
+    }
+
+    private static final String INCREMENT_SQL =
+            "INSERT INTO course_daily_stats (course_id, stat_date, enrollments, completions, revenue, successful_transactions, refunds) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "enrollments = enrollments + VALUES(enrollments), completions = completions + VALUES(completions), " +
+            "revenue = revenue + VALUES(revenue), successful_transactions = successful_transactions + VALUES(successful_transactions), " +
+            "refunds = refunds + VALUES(refunds)";
+
+    // --- Cập nhật tăng dần ---
+
+    @Transactional
+    public void onEnrollmentCreated(Long courseId, LocalDateTime enrolledAt) {
+        increment(courseId, enrolledAt, 1, 0, 0.0, 0, 0.0);
+        eventPublisher.publishEvent(new StatsChangedEvent(courseId, StatsChangedEvent.Type.ENROLLMENT));
+    }
+
+    @Transactional
+    public void onEnrollmentRemoved(Enrollment enrollment) {
+        Long courseId = enrollment.getCourse().getId();
+        increment(courseId, enrollment.getEnrolledAt(), -1, 0, 0.0, 0, 0.0);
+        if (enrollment.getStatus() == EEnrollmentStatus.COMPLETED && enrollment.getCompletedAt() != null) {
+            increment(courseId, enrollment.getCompletedAt(), 0, -1, 0.0, 0, 0.0);
+        }
+        eventPublisher.publishEvent(new StatsChangedEvent(courseId, StatsChangedEvent.Type.ENROLLMENT));
+    }
+
+    /**
+     * Gọi sau khi đổi status của enrollment (trước khi save): cập nhật completedAt và bucket completions.
+     */
+    @Transactional
+    public void onEnrollmentStatusChanged(Enrollment enrollment, EEnrollmentStatus previousStatus) {
+        boolean wasCompleted = previousStatus == EEnrollmentStatus.COMPLETED;
+        boolean isCompleted = enrollment.getStatus() == EEnrollmentStatus.COMPLETED;
+        if (wasCompleted == isCompleted) {
+            return;
+        }
+        Long courseId = enrollment.getCourse().getId();
+        if (isCompleted) {
+            enrollment.setCompletedAt(LocalDateTime.now());
+            increment(courseId, enrollment.getCompletedAt(), 0, 1, 0.0, 0, 0.0);
+        } else {
+            if (enrollment.getCompletedAt() != null) {
+                increment(courseId, enrollment.getCompletedAt(), 0, -1, 0.0, 0, 0.0);
+            }
+            enrollment.setCompletedAt(null);
+        }
+        eventPublisher.publishEvent(new StatsChangedEvent(courseId, StatsChangedEvent.Type.COMPLETION));
+    }
+
+    /**
+     * Gọi khi status của giao dịch thay đổi. Doanh thu được tính vào ngày tạo giao dịch;
+     * giao dịch SUCCESS bị chuyển sang trạng thái khác được ghi nhận là refund trong ngày hôm nay.
+     */
+    @Transactional
+    public void onTransactionStatusChanged(Transaction transaction, ETransactionStatus previousStatus) {
+        boolean wasSuccess = previousStatus == ETransactionStatus.SUCCESS;
+        boolean isSuccess = transaction.getStatus() == ETransactionStatus.SUCCESS;
+        if (wasSuccess == isSuccess) {
+            return;
+        }
+        Long courseId = transaction.getCourse().getId();
+        double amount = transaction.getAmount() != null ? transaction.getAmount() : 0.0;
+        if (isSuccess) {
+            increment(courseId, transaction.getCreatedAt(), 0, 0, amount, 1, 0.0);
+        } else {
+            increment(courseId, transaction.getCreatedAt(), 0, 0, -amount, -1, 0.0);
+            increment(courseId, LocalDateTime.now(), 0, 0, 0.0, 0, amount);
+        }
+        eventPublisher.publishEvent(new StatsChangedEvent(courseId, StatsChangedEvent.Type.TRANSACTION));
+    }
+
+    @Transactional
+    public void onCourseDeleted(Long courseId) {
+        courseDailyStatsRepository.deleteByCourseId(courseId);
+        eventPublisher.publishEvent(new StatsChangedEvent(courseId, StatsChangedEvent.Type.COURSE_DELETED));
+    }
+
+    private void increment(Long courseId, LocalDateTime at, long enrollments, long completions,
+                           double revenue, long successfulTransactions, double refunds) {
+        LocalDate day = at != null ? at.toLocalDate() : LocalDate.now();
+        jdbcTemplate.update(INCREMENT_SQL, courseId, day, enrollments, completions, revenue, successfulTransactions, refunds);
+    }
+
+    // --- Đọc ---
+
+    public Map<YearMonth, MonthlyTotals> monthlyTotals(LocalDate fromDate, LocalDate toDate) {
+        return toMonthlyMap(courseDailyStatsRepository.sumByMonth(fromDate, toDate));
+    }
+
+    public Map<YearMonth, MonthlyTotals> monthlyTotalsForCourse(Long courseId, LocalDate fromDate, LocalDate toDate) {
+        return toMonthlyMap(courseDailyStatsRepository.sumByMonthForCourse(courseId, fromDate, toDate));
+    }
+
+    public Map<YearMonth, MonthlyTotals> monthlyTotalsForInstructor(Long instructorId, LocalDate fromDate, LocalDate toDate) {
+        return toMonthlyMap(courseDailyStatsRepository.sumByMonthForInstructor(instructorId, fromDate, toDate));
+    }
+
+    public double sumRevenue(LocalDate fromDate, LocalDate toDate) {
+        Double revenue = courseDailyStatsRepository.sumRevenue(fromDate, toDate);
+        return revenue != null ? revenue : 0.0;
+    }
+
+    // Kết quả sắp xếp theo tháng tăng dần
+    private Map<YearMonth, MonthlyTotals> toMonthlyMap(List<Object[]> rows) {
+        Map<YearMonth, MonthlyTotals> totals = new TreeMap<>();
+        for (Object[] row : rows) {
+            YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            totals.put(month, new MonthlyTotals(
+                    toLong(row[2]), toLong(row[3]), toDouble(row[4]), toLong(row[5]), toDouble(row[6])));
+        }
+        return totals;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    // --- Tính lại từ bảng nguồn ---
+
+    private static final String RESET_SQL =
+            "UPDATE course_daily_stats SET enrollments = 0, completions = 0, revenue = 0, successful_transactions = 0 " +
+            "WHERE stat_date >= ? AND stat_date < ?";
+
+    private static final String SOURCE_ENROLLMENTS_SQL =
+            "SELECT course_id, CAST(enrolled_at AS DATE), COUNT(*) FROM enrollments " +
+            "WHERE enrolled_at >= ? AND enrolled_at < ? GROUP BY course_id, CAST(enrolled_at AS DATE)";
+
+    // Ghi danh cũ chưa có completed_at thì lấy ngày cấp chứng chỉ
+    private static final String SOURCE_COMPLETIONS_SQL =
+            "SELECT e.course_id, CAST(COALESCE(e.completed_at, c.issued_at) AS DATE), COUNT(*) " +
+            "FROM enrollments e LEFT JOIN certificates c ON c.enrollment_id = e.id " +
+            "WHERE e.status = 'COMPLETED' AND COALESCE(e.completed_at, c.issued_at) >= ? " +
+            "AND COALESCE(e.completed_at, c.issued_at) < ? " +
+            "GROUP BY e.course_id, CAST(COALESCE(e.completed_at, c.issued_at) AS DATE)";
+
+    private static final String SOURCE_TRANSACTIONS_SQL =
+            "SELECT course_id, CAST(created_at AS DATE), SUM(amount), COUNT(*) FROM transactions " +
+            "WHERE status = 'SUCCESS' AND created_at >= ? AND created_at < ? GROUP BY course_id, CAST(created_at AS DATE)";
+
+    private static final String SET_ENROLLMENTS_SQL =
+            "INSERT INTO course_daily_stats (course_id, stat_date, enrollments, completions, revenue, successful_transactions, refunds) " +
+            "VALUES (?, ?, ?, 0, 0, 0, 0) ON DUPLICATE KEY UPDATE enrollments = VALUES(enrollments)";
+
+    private static final String SET_COMPLETIONS_SQL =
+            "INSERT INTO course_daily_stats (course_id, stat_date, enrollments, completions, revenue, successful_transactions, refunds) " +
+            "VALUES (?, ?, 0, ?, 0, 0, 0) ON DUPLICATE KEY UPDATE completions = VALUES(completions)";
+
+    private static final String SET_TRANSACTIONS_SQL =
+            "INSERT INTO course_daily_stats (course_id, stat_date, enrollments, completions, revenue, successful_transactions, refunds) " +
+            "VALUES (?, ?, 0, 0, ?, ?, 0) ON DUPLICATE KEY UPDATE revenue = VALUES(revenue), " +
+            "successful_transactions = VALUES(successful_transactions)";
+
+    /**
+     * Tính lại enrollments / completions / revenue / successful_transactions cho các ngày trong [fromDate, toDate).
+     * @return số dòng nguồn (nhóm theo khóa học + ngày) đã ghi
+     */
+    @Transactional
+    public int rebuild(LocalDate fromDate, LocalDate toDate) {
+        LocalDateTime from = fromDate.atStartOfDay();
+        LocalDateTime to = toDate.atStartOfDay();
+        jdbcTemplate.update(RESET_SQL, fromDate, toDate);
+
+        int rows = 0;
+        rows += copy(SOURCE_ENROLLMENTS_SQL, SET_ENROLLMENTS_SQL, 3, from, to);
+        rows += copy(SOURCE_COMPLETIONS_SQL, SET_COMPLETIONS_SQL, 3, from, to);
+        rows += copy(SOURCE_TRANSACTIONS_SQL, SET_TRANSACTIONS_SQL, 4, from, to);
+        return rows;
+    }
+
+    private int copy(String sourceSql, String upsertSql, int columns, LocalDateTime from, LocalDateTime to) {
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(sourceSql, rs -> {
+            Object[] row = new Object[columns];
+            row[0] = rs.getLong(1);
+            row[1] = rs.getObject(2, LocalDate.class);
+            for (int i = 2; i < columns; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            rows.add(row);
+        }, from, to);
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(upsertSql, rows);
+        }
+        return rows.size();
+    }
+
+    /**
+     * Ngày sớm nhất có ghi danh hoặc giao dịch (null nếu chưa có dữ liệu)
+     */
+    public LocalDate findEarliestActivityDate() {
+        LocalDateTime firstEnrollment = jdbcTemplate.queryForObject(
+                "SELECT MIN(enrolled_at) FROM enrollments", LocalDateTime.class);
+        LocalDateTime firstTransaction = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM transactions", LocalDateTime.class);
+        if (firstEnrollment == null && firstTransaction == null) {
+            return null;
+        }
+        if (firstEnrollment == null || (firstTransaction != null && firstTransaction.isBefore(firstEnrollment))) {
+            return firstTransaction.toLocalDate();
+        }
+        return firstEnrollment.toLocalDate();
+    }
+}
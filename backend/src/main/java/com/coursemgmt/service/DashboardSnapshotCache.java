@@ -0,0 +1,223 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.DashboardStatsDTO;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.event.StatsChangedEvent;
+import com.coursemgmt.model.ETransactionStatus;
+import com.coursemgmt.repository.CertificateRepository;
+import com.coursemgmt.repository.CourseRepository;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.TransactionRepository;
+import com.coursemgmt.repository.UserRepository;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Snapshot tổng quan dashboard admin (StatisticsService.getDashboardStats), tính sẵn và phục vụ từ bộ nhớ.
+ *
+ * - Mỗi lần tính: 1 query aggregate cho mỗi bảng (courses, enrollments, transactions, users, certificates);
+ *   doanh thu tháng / năm đọc từ rollup theo ngày (CourseStatsRollupService.sumRevenue), không quét sổ giao dịch.
+ * - Làm mới khi khởi động, khi snapshot cũ hơn max-age-seconds, và trong vòng check-interval-ms
+ *   sau khi có thay đổi liên quan được commit (StatsChangedEvent, CourseChangedEvent).
+ * - Admin có thể ép làm mới ngay (refresh()); mỗi snapshot mang thời điểm tính (asOf).
+ */
+@Component
+public class DashboardSnapshotCache {
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CertificateRepository certificateRepository;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${dashboard.snapshot.max-age-seconds:60}")
+    private long maxAgeSeconds;
+
+    /**
+     * Snapshot bất biến: stats chỉ được đọc qua bản copy (DashboardSnapshotCache.getDashboardStats()).
+     */
+    public record DashboardSnapshot(DashboardStatsDTO stats, LocalDateTime asOf, long buildMillis) {
+    }
+
+    private static final Object[] EMPTY_STATUS_ROW = {null, 0L, 0.0};
+
+    private volatile DashboardSnapshot current;
+
+    // Có thay đổi được commit kể từ lần tính gần nhất
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failedRefreshes = new LongAdder();
+    private final LongAdder changeEvents = new LongAdder();
+    private final AtomicLong maxBuildMillis = new AtomicLong();
+
+    /**
+     * Số liệu dashboard từ snapshot hiện tại (bản copy, có asOf). Chỉ tính đồng bộ nếu chưa có snapshot nào.
+     */
+    public DashboardStatsDTO getDashboardStats() {
+        reads.increment();
+        DashboardSnapshot snapshot = current;
+        if (snapshot == null) {
+            snapshot = refresh();
+        }
+        DashboardStatsDTO copy = new DashboardStatsDTO();
+        BeanUtils.copyProperties(snapshot.stats(), copy);
+        return copy;
+    }
+
+    public DashboardSnapshot current() {
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshOnStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.snapshot.check-interval-ms:5000}")
+    public void refreshIfStale() {
+        DashboardSnapshot snapshot = current;
+        boolean expired = snapshot == null
+                || snapshot.asOf().isBefore(LocalDateTime.now().minusSeconds(maxAgeSeconds));
+        if (expired || dirty.get()) {
+            refresh();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatsChanged(StatsChangedEvent event) {
+        changeEvents.increment();
+        dirty.set(true);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourseChanged(CourseChangedEvent event) {
+        changeEvents.increment();
+        dirty.set(true);
+    }
+
+    /**
+     * Tính lại snapshot ngay. Nếu lỗi thì giữ snapshot cũ (và lần kiểm tra sau sẽ thử lại).
+     */
+    public synchronized DashboardSnapshot refresh() {
+        // Xóa cờ trước khi đọc: thay đổi commit trong lúc đang tính sẽ bật lại cờ cho lần kiểm tra sau
+        dirty.set(false);
+        long start = System.nanoTime();
+        try {
+            DashboardStatsDTO stats = new TransactionTemplate(transactionManager).execute(status -> compute());
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            current = new DashboardSnapshot(stats, stats.getAsOf(), buildMillis);
+            refreshes.increment();
+            maxBuildMillis.accumulateAndGet(buildMillis, Math::max);
+        } catch (RuntimeException e) {
+            failedRefreshes.increment();
+            dirty.set(true);
+            System.err.println("DashboardSnapshotCache: Failed to refresh dashboard snapshot: " + e.getMessage());
+            if (current == null) {
+                throw e;
+            }
+        }
+        return current;
+    }
+
+    private DashboardStatsDTO compute() {
+        LocalDateTime asOf = LocalDateTime.now();
+        LocalDate today = asOf.toLocalDate();
+
+        // [tổng, PUBLISHED, PENDING_APPROVAL, DRAFT, số giảng viên]
+        Object[] courses = courseRepository.aggregateDashboardStats().get(0);
+        // [tổng, COMPLETED]
+        Object[] enrollments = enrollmentRepository.aggregateDashboardStats().get(0);
+        // [status, số giao dịch, tổng tiền]
+        Map<ETransactionStatus, Object[]> transactions = new EnumMap<>(ETransactionStatus.class);
+        for (Object[] row : transactionRepository.aggregateDashboardStats()) {
+            transactions.put((ETransactionStatus) row[0], row);
+        }
+        Object[] successful = transactions.getOrDefault(ETransactionStatus.SUCCESS, EMPTY_STATUS_ROW);
+
+        DashboardStatsDTO stats = new DashboardStatsDTO();
+        stats.setTotalCourses(toLong(courses[0]));
+        // Simplified - tổng số user (chưa lọc theo role STUDENT)
+        stats.setTotalStudents(userRepository.count());
+        stats.setTotalInstructors(toLong(courses[4]));
+        stats.setTotalCertificates(certificateRepository.count());
+
+        stats.setActiveCourses(toLong(courses[1]));
+        stats.setPendingCourses(toLong(courses[2]));
+        stats.setDraftCourses(toLong(courses[3]));
+
+        stats.setSuccessfulTransactions(toLong(successful[1]));
+        stats.setPendingTransactions(toLong(transactions.getOrDefault(ETransactionStatus.PENDING, EMPTY_STATUS_ROW)[1]));
+        stats.setFailedTransactions(toLong(transactions.getOrDefault(ETransactionStatus.FAILED, EMPTY_STATUS_ROW)[1]));
+        stats.setTotalRevenue(toDouble(successful[2]));
+        stats.setMonthlyRevenue(courseStatsRollupService.sumRevenue(today.withDayOfMonth(1), today));
+        stats.setYearlyRevenue(courseStatsRollupService.sumRevenue(today.withDayOfYear(1), today));
+
+        long totalEnrollments = toLong(enrollments[0]);
+        long completedEnrollments = toLong(enrollments[1]);
+        stats.setTotalEnrollments(totalEnrollments);
+        stats.setCompletedEnrollments(completedEnrollments);
+        stats.setInProgressEnrollments(totalEnrollments - completedEnrollments);
+        stats.setAverageCompletionRate(totalEnrollments > 0 ? (completedEnrollments * 100.0) / totalEnrollments : null);
+
+        stats.setAsOf(asOf);
+        return stats;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    public Map<String, Object> getStats() {
+        DashboardSnapshot snapshot = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("asOf", snapshot != null ? snapshot.asOf() : null);
+        stats.put("lastBuildMillis", snapshot != null ? snapshot.buildMillis() : null);
+        stats.put("maxBuildMillis", maxBuildMillis.get());
+        stats.put("dirty", dirty.get());
+        stats.put("maxAgeSeconds", maxAgeSeconds);
+        stats.put("reads", reads.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("failedRefreshes", failedRefreshes.sum());
+        stats.put("changeEvents", changeEvents.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,62 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.repository.EnrollmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Tính lại bộ đếm completedLessons của Enrollment từ bảng user_progress.
+ * Chạy 1 lần khi khởi động (để điền giá trị cho DB cũ vừa thêm cột) và định kỳ theo cron,
+ * sửa các sai lệch do hoàn thành bài học đồng thời hoặc xóa dữ liệu trực tiếp trên DB.
+ * Mỗi khoảng id được xử lý trong 1 transaction riêng.
+ */
+@Component
+public class EnrollmentProgressRepairJob {
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Autowired
+    private CourseLessonCountCache courseLessonCountCache;
+
+    @Value("${enrollment.progress.repair-batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        repairAll();
+    }
+
+    @Scheduled(cron = "${enrollment.progress.repair-cron:0 45 3 * * *}")
+    public void repairAll() {
+        courseLessonCountCache.clear();
+        List<Object[]> range = enrollmentRepository.findIdRange();
+        if (range.isEmpty() || range.get(0)[0] == null) {
+            return;
+        }
+        long minId = ((Number) range.get(0)[0]).longValue();
+        long maxId = ((Number) range.get(0)[1]).longValue();
+
+        long start = System.currentTimeMillis();
+        int total = 0;
+        for (long from = minId; from <= maxId; from += batchSize) {
+            long to = Math.min(from + batchSize - 1, maxId);
+            try {
+                total += enrollmentService.recomputeCompletedLessons(from, to);
+            } catch (Exception e) {
+                System.err.println("EnrollmentProgressRepairJob: Failed to repair enrollments " + from + "-" + to + ": " + e.getMessage());
+            }
+        }
+        System.out.println("EnrollmentProgressRepairJob: Recomputed completed lessons for " + total + " enrollments in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -4,15 +4,22 @@ import com.coursemgmt.dto.*;
 import com.coursemgmt.model.*;
 import com.coursemgmt.model.EEnrollmentStatus;
 import com.coursemgmt.repository.*;
+import com.coursemgmt.security.services.CourseAccessCache;
+import com.coursemgmt.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.Month;
 import java.time.format.TextStyle;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -32,6 +39,21 @@ public class EnrollmentService {
     @Autowired
     private CertificateRepository certificateRepository;
 
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+
+    @Autowired
+    private CourseContentCache courseContentCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * Lấy danh sách enrollment theo course
      * Security: Double-check ownership - only Admin or Course Owner can access
@@ -56,6 +78,41 @@ public class EnrollmentService {
         return enrollments.map(this::convertToDTO);
     }
 
+    /**
+     * Lấy danh sách enrollment theo course bằng cursor (keyset trên enrolledAt, id - mới nhất trước)
+     * Security: giống getEnrollmentsByCourse - chỉ Admin hoặc giảng viên của khóa học
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<EnrollmentDTO> getEnrollmentsByCourseCursor(Long courseId, Long currentUserId, String cursor, int size, boolean includeTotal) {
+        Course course = courseRepository.findById(courseId)
+            .orElseThrow(() -> new RuntimeException("Course not found with id: " + courseId));
+
+        User currentUser = userRepository.findById(currentUserId)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+        boolean isAdmin = currentUser.getRoles().stream()
+            .anyMatch(role -> role.getName() == ERole.ROLE_ADMIN);
+
+        if (!isAdmin && (course.getInstructor() == null || !course.getInstructor().getId().equals(currentUserId))) {
+            throw new AccessDeniedException("You are not authorized to view enrollments for this course");
+        }
+
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        String jpql = "SELECT e FROM Enrollment e JOIN FETCH e.user WHERE e.course.id = :courseId"
+            + (after != null ? " AND " + after.seekCondition("e", "enrolledAt") : "")
+            + " ORDER BY e.enrolledAt DESC, e.id DESC";
+        TypedQuery<Enrollment> query = entityManager.createQuery(jpql, Enrollment.class);
+        query.setParameter("courseId", courseId);
+        if (after != null) {
+            after.bind(query);
+        }
+        query.setMaxResults(size + 1);
+
+        Long total = includeTotal ? enrollmentRepository.countByCourseId(courseId) : null;
+        return CursorPage.fromRows(query.getResultList(), size,
+            enrollment -> new KeysetCursor(enrollment.getEnrolledAt(), enrollment.getId()),
+            this::convertToDTO, total);
+    }
+
     /**
      * Lấy danh sách enrollment theo student
      * Security: Double-check identity - only Admin or the student themselves can access
@@ -115,6 +172,9 @@ public class EnrollmentService {
         enrollment.setEnrolledAt(LocalDateTime.now());
         
         Enrollment saved = enrollmentRepository.save(enrollment);
+        courseCounterService.onEnrollmentCreated(course.getId());
+        courseStatsRollupService.onEnrollmentCreated(course.getId(), saved.getEnrolledAt());
+        courseAccessCache.onEnrollmentChanged(student.getId(), course.getId());
         return convertToDTO(saved);
     }
 
@@ -126,6 +186,8 @@ public class EnrollmentService {
         Enrollment enrollment = enrollmentRepository.findById(enrollmentId)
             .orElseThrow(() -> new RuntimeException("Enrollment not found with id: " + enrollmentId));
         
+        EEnrollmentStatus previousStatus = enrollment.getStatus();
+        
         // Update status
         if (request.getStatus() != null) {
             try {
@@ -151,6 +213,8 @@ public class EnrollmentService {
             // Would update in actual implementation if field exists
         }
         
+        courseStatsRollupService.onEnrollmentStatusChanged(enrollment, previousStatus);
+        
         Enrollment updated = enrollmentRepository.save(enrollment);
         return convertToDTO(updated);
     }
@@ -164,7 +228,22 @@ public class EnrollmentService {
             .orElseThrow(() -> new RuntimeException("Enrollment not found with id: " + enrollmentId));
         
         // Can add business logic here (e.g., refund check)
+        Long courseId = enrollment.getCourse().getId();
+        Long userId = enrollment.getUser().getId();
+        courseStatsRollupService.onEnrollmentRemoved(enrollment);
         enrollmentRepository.delete(enrollment);
+        courseCounterService.onEnrollmentRemoved(courseId);
+        courseAccessCache.onEnrollmentChanged(userId, courseId);
+        courseContentCache.invalidateOverlay(userId, courseId);
+    }
+
+    /**
+     * Tính lại bộ đếm completedLessons từ bảng user_progress cho các enrollment có id trong [fromId, toId]
+     * @return số enrollment đã được cập nhật
+     */
+    @Transactional
+    public int recomputeCompletedLessons(Long fromId, Long toId) {
+        return enrollmentRepository.recomputeCompletedLessons(fromId, toId);
     }
 
     /**
@@ -244,48 +323,40 @@ public class EnrollmentService {
      * Thống kê học viên mới theo tháng
      */
     public MonthlyStudentStatsDTO getMonthlyStudentStats(int year) {
-        MonthlyStudentStatsDTO stats = new MonthlyStudentStatsDTO();
+        LocalDateTime startOfYear = LocalDateTime.of(year, 1, 1, 0, 0);
         
-        List<MonthlyStudentStatsDTO.MonthlyData> monthlyData = new ArrayList<>();
+        // 1 query GROUP BY tháng cho cả năm; tháng không có ghi danh không có dòng nào
+        Map<Integer, Object[]> rowsByMonth = new HashMap<>();
+        for (Object[] row : enrollmentRepository.aggregateMonthlyStats(startOfYear, startOfYear.plusYears(1))) {
+            rowsByMonth.put(((Number) row[0]).intValue(), row);
+        }
         
+        List<MonthlyStudentStatsDTO.MonthlyData> monthlyData = new ArrayList<>();
+        long totalEnrollments = 0;
+        long totalCompletions = 0;
         for (int month = 1; month <= 12; month++) {
-            LocalDateTime startOfMonth = LocalDateTime.of(year, month, 1, 0, 0);
-            LocalDateTime endOfMonth = startOfMonth.plusMonths(1).minusSeconds(1);
-            
-            // Count new enrollments in this month
-            // Note: This is simplified - in production, would use proper queries
-            List<Enrollment> enrollments = enrollmentRepository
-                .findByUserId(1L, Pageable.unpaged()) // Simplified
-                .getContent();
+            Object[] row = rowsByMonth.get(month);
+            long monthEnrollments = row != null ? ((Number) row[1]).longValue() : 0L;
+            long monthStudents = row != null ? ((Number) row[2]).longValue() : 0L;
+            long monthCompletions = row != null && row[3] != null ? ((Number) row[3]).longValue() : 0L;
             
-            long monthEnrollments = enrollments.stream()
-                .filter(e -> e.getEnrolledAt() != null)
-                .filter(e -> e.getEnrolledAt().isAfter(startOfMonth) && 
-                           e.getEnrolledAt().isBefore(endOfMonth))
-                .count();
-            
-            long monthCompletions = enrollments.stream()
-                .filter(e -> EEnrollmentStatus.COMPLETED.equals(e.getStatus()))
-                .filter(e -> e.getEnrolledAt() != null)
-                .filter(e -> e.getEnrolledAt().isAfter(startOfMonth) && 
-                           e.getEnrolledAt().isBefore(endOfMonth))
-                .count();
-            
-            String monthName = startOfMonth.getMonth()
-                .getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + year;
-            
-            MonthlyStudentStatsDTO.MonthlyData data = new MonthlyStudentStatsDTO.MonthlyData(
+            String monthName = Month.of(month).getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + year;
+            monthlyData.add(new MonthlyStudentStatsDTO.MonthlyData(
                 year,
                 month,
                 monthName,
-                monthEnrollments, // Simplified
+                monthStudents,
                 monthEnrollments,
                 monthCompletions
-            );
-            
-            monthlyData.add(data);
+            ));
+            totalEnrollments += monthEnrollments;
+            totalCompletions += monthCompletions;
         }
         
+        MonthlyStudentStatsDTO stats = new MonthlyStudentStatsDTO();
+        stats.setYear(year);
+        stats.setTotalEnrollments(totalEnrollments);
+        stats.setCompletedCourses(totalCompletions);
         stats.setMonthlyData(monthlyData);
         return stats;
     }
@@ -325,69 +396,40 @@ public class EnrollmentService {
         return dto;
     }
 
+    // Cột được phép sắp xếp trong My Students -> thuộc tính của Enrollment
+    private static final Map<String, String> MY_STUDENTS_SORT_PROPERTIES = Map.of(
+        "enrolledAt", "enrolledAt",
+        "progress", "progress",
+        "status", "status",
+        "studentName", "user.fullName",
+        "courseTitle", "course.title"
+    );
+
     /**
      * Lấy danh sách học viên của giảng viên hiện tại (My Students)
-     * Returns all students enrolled in ANY course owned by the current instructor
+     * Mỗi học viên 1 dòng (ghi danh mới nhất vào các khóa học của giảng viên); lọc, sắp xếp và phân trang trong SQL
      */
-    public Page<EnrollmentDTO> getMyStudents(Long instructorId, Long courseId, Pageable pageable) {
-        // Get all courses owned by this instructor
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        
-        if (instructorCourses.isEmpty()) {
-            return new PageImpl<>(Collections.emptyList(), pageable, 0);
-        }
-        
-        // Filter by specific course if provided
-        if (courseId != null) {
-            // Verify the course belongs to this instructor
-            boolean courseBelongsToInstructor = instructorCourses.stream()
-                .anyMatch(c -> c.getId().equals(courseId));
-            
-            if (!courseBelongsToInstructor) {
-                throw new AccessDeniedException("You are not authorized to view enrollments for this course");
-            }
-            
-            // Return enrollments for this specific course
-            Page<Enrollment> enrollments = enrollmentRepository.findByCourseId(courseId, pageable);
-            return enrollments.map(this::convertToDTO);
-        }
-        
-        // Get enrollments from all courses owned by this instructor
-        List<Long> courseIds = instructorCourses.stream()
-            .map(Course::getId)
-            .collect(Collectors.toList());
-        
-        // Fetch all enrollments for these courses
-        List<Enrollment> allEnrollments = new ArrayList<>();
-        for (Long cId : courseIds) {
-            List<Enrollment> enrollments = enrollmentRepository.findByCourseId(cId, Pageable.unpaged())
-                .getContent();
-            allEnrollments.addAll(enrollments);
-        }
-        
-        // Remove duplicates (same student in multiple courses)
-        Map<Long, Enrollment> uniqueEnrollments = new LinkedHashMap<>();
-        for (Enrollment enrollment : allEnrollments) {
-            Long studentId = enrollment.getUser().getId();
-            // Keep the most recent enrollment per student
-            if (!uniqueEnrollments.containsKey(studentId) || 
-                enrollment.getEnrolledAt().isAfter(uniqueEnrollments.get(studentId).getEnrolledAt())) {
-                uniqueEnrollments.put(studentId, enrollment);
-            }
+    @Transactional(readOnly = true)
+    public Page<EnrollmentDTO> getMyStudents(Long instructorId, Long courseId, String search,
+                                             int page, int size, String sortBy, String sortDir) {
+        // Filter by specific course if provided: verify the course belongs to this instructor
+        if (courseId != null && !courseRepository.existsByIdAndInstructorId(courseId, instructorId)) {
+            throw new AccessDeniedException("You are not authorized to view enrollments for this course");
         }
         
-        // Paginate manually
-        List<EnrollmentDTO> enrollmentDTOs = uniqueEnrollments.values().stream()
-            .map(this::convertToDTO)
-            .collect(Collectors.toList());
+        String property = MY_STUDENTS_SORT_PROPERTIES.getOrDefault(sortBy, "enrolledAt");
+        Sort.Direction direction = "ASC".equalsIgnoreCase(sortDir) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        // id làm tie-breaker để thứ tự giữa các trang ổn định
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, property).and(Sort.by(direction, "id")));
         
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), enrollmentDTOs.size());
-        List<EnrollmentDTO> pageContent = start < enrollmentDTOs.size() 
-            ? enrollmentDTOs.subList(start, end) 
-            : Collections.emptyList();
+        // Escape ký tự đại diện của LIKE trong từ khóa người dùng nhập (query dùng ESCAPE '!')
+        String searchPattern = search != null && !search.isBlank()
+            ? "%" + search.trim().toLowerCase(Locale.ROOT)
+                    .replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%"
+            : null;
         
-        return new PageImpl<>(pageContent, pageable, enrollmentDTOs.size());
+        return enrollmentRepository.findLatestByInstructorStudents(instructorId, courseId, searchPattern, pageable)
+            .map(this::convertToDTO);
     }
 }
 
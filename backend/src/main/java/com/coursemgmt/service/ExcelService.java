@@ -1,26 +1,47 @@
 package com.coursemgmt.service;
 
+import com.coursemgmt.dto.LessonImportResult;
 import com.coursemgmt.dto.RevenueStatsDTO;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.ChapterRepository;
 import com.coursemgmt.repository.CourseRepository;
 import com.coursemgmt.repository.LessonRepository;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
 public class ExcelService {
@@ -33,17 +54,31 @@ public class ExcelService {
     private LessonRepository lessonRepository;
     @Autowired
     private StatisticsService statisticsService;
+    @Autowired
+    private CourseLessonCountCache courseLessonCountCache;
+    @Autowired
+    private CourseContentCache courseContentCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${excel.import.batch-size:500}")
+    private int importBatchSize;
+
+    // Số dòng SXSSF giữ trong bộ nhớ khi export
+    private static final int EXPORT_WINDOW_SIZE = 100;
 
     /**
      * Chức năng EXPORT: Xuất dữ liệu Lessons ra file Excel
+     * Ghi thẳng vào out bằng SXSSFWorkbook (chỉ giữ EXPORT_WINDOW_SIZE dòng trong bộ nhớ), dữ liệu đọc dạng stream
      */
-    public ByteArrayInputStream exportLessons(Long courseId) throws IOException {
-        Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> new RuntimeException("Course not found!"));
-
-        try (XSSFWorkbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream();) {
+    @Transactional(readOnly = true)
+    public void exportLessons(Long courseId, OutputStream out) throws IOException {
+        if (!courseRepository.existsById(courseId)) {
+            throw new RuntimeException("Course not found!");
+        }
 
+        SXSSFWorkbook workbook = newStreamingWorkbook();
+        try (Stream<Object[]> rows = lessonRepository.streamExportRowsByCourseId(courseId)) {
             Sheet sheet = workbook.createSheet("Nội dung khóa học");
 
             // Tạo Header Row
@@ -62,130 +97,210 @@ public class ExcelService {
             }
 
             // Đổ dữ liệu
-            int rowIdx = 1;
-            List<Chapter> chapters = chapterRepository.findByCourseIdOrderByPositionAsc(courseId);
-
-            for (Chapter chapter : chapters) {
-                for (Lesson lesson : chapter.getLessons()) {
-                    Row row = sheet.createRow(rowIdx++);
-                    row.createCell(0).setCellValue(chapter.getTitle());
-                    row.createCell(1).setCellValue(lesson.getTitle());
-                    row.createCell(2).setCellValue(lesson.getPosition());
-                    row.createCell(3).setCellValue(lesson.getContentType().name());
-                    row.createCell(4).setCellValue(lesson.getDurationInMinutes());
-                    row.createCell(5).setCellValue(lesson.getVideoUrl());
-                    row.createCell(6).setCellValue(lesson.getContent());
-                }
-            }
+            int[] rowIdx = {1};
+            rows.forEach(values -> writeRow(sheet.createRow(rowIdx[0]++), values));
 
             workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            workbook.dispose();
+            workbook.close();
         }
     }
 
     /**
      * Chức năng IMPORT: Đọc file Excel và tạo Lessons
+     * - Đọc sheet đầu tiên theo kiểu streaming (SAX), không dựng cả workbook trong bộ nhớ
+     * - Chapter tra theo tên trong map nạp 1 lần; chapter mới được tạo ngay khi gặp lần đầu
+     * - Lesson được INSERT bằng JDBC batch; dòng lỗi được ghi lại, không làm dừng import
      */
     @Transactional
-    public void importLessons(Long courseId, MultipartFile file) throws IOException {
+    public LessonImportResult importLessons(Long courseId, MultipartFile file) throws IOException {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found!"));
 
-        List<Lesson> lessonsToSave = new ArrayList<>();
-        Chapter currentChapter = null;
-
-        try (InputStream is = file.getInputStream();
-             XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+        LessonImporter importer = new LessonImporter(course);
+        Path tempFile = Files.createTempFile("lesson-import-", ".xlsx");
+        try {
+            file.transferTo(tempFile);
+            try (OPCPackage pkg = OPCPackage.open(tempFile.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+                        importer, new DataFormatter(), false));
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (sheets.hasNext()) {
+                    // Chỉ đọc sheet đầu tiên (giống file export)
+                    try (InputStream sheet = sheets.next()) {
+                        parser.parse(new InputSource(sheet));
+                    }
+                }
+            } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+                throw new IOException("File Excel không hợp lệ: " + e.getMessage(), e);
+            }
+            importer.flush();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rows = sheet.iterator();
+        if (importer.importedLessons > 0) {
+            courseLessonCountCache.invalidate(courseId);
+            courseContentCache.bumpVersion(courseId);
+        }
+        String message = importer.errorRows == 0
+                ? "Import nội dung thành công!"
+                : "Import hoàn tất với " + importer.errorRows + " dòng lỗi";
+        return new LessonImportResult(message, importer.importedLessons, importer.createdChapters,
+                importer.skippedRows, importer.errorRows, importer.errors);
+    }
 
-            // Bỏ qua hàng header (hàng đầu tiên)
-            if (rows.hasNext()) {
-                rows.next();
+    /**
+     * Nhận từng dòng từ XSSFSheetXMLHandler, giữ lại tối đa importBatchSize lesson rồi ghi xuống DB.
+     */
+    private class LessonImporter implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Course course;
+        private final Map<String, Long> chapterIds = new HashMap<>();
+        private int nextChapterPosition;
+        private Long currentChapterId;
+
+        private final String[] values = new String[7];
+        private int currentCol;
+        private final List<Object[]> batch = new ArrayList<>();
+
+        private int importedLessons;
+        private int createdChapters;
+        private int skippedRows;
+        private int errorRows;
+        private final List<String> errors = new ArrayList<>();
+
+        LessonImporter(Course course) {
+            this.course = course;
+            int maxPosition = 0;
+            for (Chapter chapter : chapterRepository.findByCourseIdOrderByPositionAsc(course.getId())) {
+                chapterIds.putIfAbsent(chapter.getTitle(), chapter.getId());
+                if (chapter.getPosition() != null) {
+                    maxPosition = Math.max(maxPosition, chapter.getPosition());
+                }
             }
+            this.nextChapterPosition = maxPosition + 1;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(values, null);
+            currentCol = -1;
+        }
 
-            while (rows.hasNext()) {
-                Row currentRow = rows.next();
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            currentCol = cellReference != null ? new CellReference(cellReference).getCol() : currentCol + 1;
+            if (currentCol < values.length) {
+                values[currentCol] = formattedValue;
+            }
+        }
 
-                // Đọc dữ liệu từ các ô
-                String chapterTitle = getCellStringValue(currentRow.getCell(0));
-                String lessonTitle = getCellStringValue(currentRow.getCell(1));
+        @Override
+        public void endRow(int rowNum) {
+            // Bỏ qua hàng header (hàng đầu tiên)
+            if (rowNum == 0) {
+                return;
+            }
+            String chapterTitle = trimToNull(values[0]);
+            String lessonTitle = trimToNull(values[1]);
 
-                // Nếu không có tên bài học, bỏ qua dòng
-                if (lessonTitle == null || lessonTitle.isEmpty()) {
-                    continue;
+            // Nếu không có tên bài học, bỏ qua dòng
+            if (lessonTitle == null) {
+                skippedRows++;
+                return;
+            }
+            try {
+                EContentType contentType = parseContentType(values[3]);
+                Integer position = parseInteger(values[2], "Vị trí");
+                Integer duration = parseInteger(values[4], "Thời lượng");
+
+                // Chapter mới thì tạo, dòng không ghi chapter thì dùng chapter của dòng trước
+                if (chapterTitle != null) {
+                    currentChapterId = chapterIds.computeIfAbsent(chapterTitle, this::createChapter);
                 }
-
-                // Xử lý Chapter: Nếu chapter mới, tạo chapter. Nếu không, dùng chapter cũ.
-                if (chapterTitle != null && !chapterTitle.isEmpty() &&
-                        (currentChapter == null || !currentChapter.getTitle().equals(chapterTitle))) {
-
-                    // Tìm xem chapter này đã có trong CSDL chưa (theo tên và courseId)
-                    // (Đây là logic đơn giản, có thể tối ưu)
-                    currentChapter = chapterRepository.findByCourseIdOrderByPositionAsc(courseId).stream()
-                            .filter(c -> c.getTitle().equals(chapterTitle))
-                            .findFirst()
-                            .orElseGet(() -> {
-                                // Nếu chưa có, tạo chapter mới
-                                Chapter newChapter = new Chapter();
-                                newChapter.setTitle(chapterTitle);
-                                newChapter.setCourse(course);
-                                newChapter.setPosition((int) (chapterRepository.count() + 1)); // Vị trí tạm
-                                return chapterRepository.save(newChapter);
-                            });
+                if (currentChapterId == null) {
+                    throw new IllegalArgumentException("Lesson '" + lessonTitle + "' không có chapter");
                 }
 
-                if (currentChapter == null) {
-                    // Nếu không xác định được chapter, không thể tạo lesson
-                    throw new RuntimeException("Lỗi file Excel: Lesson '" + lessonTitle + "' không có chapter.");
+                batch.add(new Object[]{lessonTitle, contentType.name(), trimToNull(values[5]), values[6],
+                        position, duration, false, currentChapterId});
+                if (batch.size() >= importBatchSize) {
+                    flush();
+                }
+            } catch (IllegalArgumentException e) {
+                errorRows++;
+                if (errors.size() < MAX_IMPORT_ERRORS) {
+                    errors.add("Dòng " + (rowNum + 1) + ": " + e.getMessage());
                 }
-
-                // Tạo Lesson
-                Lesson lesson = new Lesson();
-                lesson.setChapter(currentChapter);
-                lesson.setTitle(lessonTitle);
-                lesson.setPosition((int) getCellNumericValue(currentRow.getCell(2)));
-                lesson.setContentType(EContentType.valueOf(getCellStringValue(currentRow.getCell(3))));
-                lesson.setDurationInMinutes((int) getCellNumericValue(currentRow.getCell(4)));
-                lesson.setVideoUrl(getCellStringValue(currentRow.getCell(5)));
-                lesson.setContent(getCellStringValue(currentRow.getCell(6)));
-
-                lessonsToSave.add(lesson);
             }
+        }
+
+        private Long createChapter(String title) {
+            Chapter chapter = new Chapter();
+            chapter.setTitle(title);
+            chapter.setCourse(course);
+            chapter.setPosition(nextChapterPosition++);
+            createdChapters++;
+            return chapterRepository.save(chapter).getId();
+        }
 
-            lessonRepository.saveAll(lessonsToSave);
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(INSERT_LESSON_SQL, batch);
+            importedLessons += batch.size();
+            batch.clear();
         }
     }
 
-    // --- Hàm tiện ích đọc Cell ---
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) return null;
-        if (cell.getCellType() == CellType.STRING) {
-            return cell.getStringCellValue();
-        } else if (cell.getCellType() == CellType.NUMERIC) {
-            return String.valueOf((int) cell.getNumericCellValue());
+    private static final String INSERT_LESSON_SQL =
+            "INSERT INTO lessons (title, content_type, video_url, content, position, duration_in_minutes, is_preview, chapter_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Số lỗi tối đa trả về cho client (tổng số dòng lỗi vẫn được đếm đủ)
+    private static final int MAX_IMPORT_ERRORS = 100;
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static EContentType parseContentType(String value) {
+        String type = trimToNull(value);
+        if (type == null) {
+            throw new IllegalArgumentException("Thiếu loại bài học");
+        }
+        try {
+            return EContentType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Loại bài học không hợp lệ: " + type);
         }
-        return null;
     }
 
-    private double getCellNumericValue(Cell cell) {
-        if (cell == null) return 0;
-        if (cell.getCellType() == CellType.NUMERIC) {
-            return cell.getNumericCellValue();
+    private static Integer parseInteger(String value, String column) {
+        String number = trimToNull(value);
+        if (number == null) return 0;
+        try {
+            return (int) Double.parseDouble(number.replace(",", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " không phải là số: " + number);
         }
-        return 0;
     }
 
     /**
      * Chức năng EXPORT: Xuất báo cáo doanh thu ra file Excel
      */
-    public ByteArrayInputStream exportRevenueReport(LocalDateTime startDate, LocalDateTime endDate) throws IOException {
+    public void exportRevenueReport(LocalDateTime startDate, LocalDateTime endDate, OutputStream out) throws IOException {
         RevenueStatsDTO report = statisticsService.getRevenueReport(startDate, endDate);
 
-        try (XSSFWorkbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-
+        SXSSFWorkbook workbook = newStreamingWorkbook();
+        try {
             // Sheet 1: Overview
             Sheet overviewSheet = workbook.createSheet("Tong quan doanh thu");
             Row headerRow = overviewSheet.createRow(0);
@@ -218,7 +333,33 @@ public class ExcelService {
             }
 
             workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    // Cửa sổ trượt: các dòng cũ hơn được xả xuống file tạm (nén), không giữ trong heap
+    private SXSSFWorkbook newStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    private static void writeRow(Row row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            if (value instanceof Number number) {
+                cell.setCellValue(number.doubleValue());
+            } else if (value instanceof Enum<?> enumValue) {
+                cell.setCellValue(enumValue.name());
+            } else {
+                cell.setCellValue(value.toString());
+            }
         }
     }
-}
\ No newline at end of file
+}
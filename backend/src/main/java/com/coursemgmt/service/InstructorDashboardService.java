@@ -17,15 +17,17 @@ import com.coursemgmt.repository.ReviewRepository;
 import com.coursemgmt.repository.TransactionRepository;
 import com.coursemgmt.repository.UserProgressRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -46,6 +48,9 @@ public class InstructorDashboardService {
     @Autowired
     private ReviewRepository reviewRepository;
 
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
     /**
      * Lấy thống kê tổng quan cho Instructor Dashboard
      */
@@ -120,47 +125,24 @@ public class InstructorDashboardService {
      */
     @Transactional(readOnly = true)
     public InstructorChartDataDTO getChartData(Long instructorId) {
-        LocalDateTime now = LocalDateTime.now();
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        
-        // Lấy danh sách course IDs
-        List<Long> courseIds = instructorCourses.stream()
-                .map(Course::getId)
-                .collect(Collectors.toList());
+        // Tạo dữ liệu cho 6 tháng gần nhất, đọc từ rollup theo ngày (course_daily_stats)
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth firstMonth = currentMonth.minusMonths(5);
+        Map<YearMonth, CourseStatsRollupService.MonthlyTotals> monthlyTotals = courseStatsRollupService
+                .monthlyTotalsForInstructor(instructorId, firstMonth.atDay(1), currentMonth.atEndOfMonth());
 
-        // Tạo dữ liệu cho 6 tháng gần nhất
         List<InstructorChartDataDTO.MonthlyData> earningsData = new ArrayList<>();
         List<InstructorChartDataDTO.MonthlyData> enrollmentsData = new ArrayList<>();
         
         DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("'Tháng' M", Locale.forLanguageTag("vi-VN"));
         
-        for (int i = 5; i >= 0; i--) {
-            LocalDateTime monthStart = now.minusMonths(i).with(TemporalAdjusters.firstDayOfMonth())
-                    .withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime monthEnd = monthStart.with(TemporalAdjusters.lastDayOfMonth())
-                    .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-            
-            String monthLabel = monthStart.format(monthFormatter);
-            
-            // Tính doanh thu trong tháng này (từ transactions thành công)
-            List<Transaction> monthlyTransactions = transactionRepository
-                    .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, monthStart, monthEnd);
-            
-            Double monthlyEarnings = monthlyTransactions.stream()
-                    .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                    .sum();
-            
-            earningsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, monthlyEarnings));
-            
-            // Tính số lượng đăng ký trong tháng này (sử dụng query tối ưu)
-            Long monthlyEnrollments = enrollmentRepository.countEnrollmentsByInstructorAndDateRange(
-                instructorId, monthStart, monthEnd
-            );
-            if (monthlyEnrollments == null) {
-                monthlyEnrollments = 0L;
-            }
+        for (YearMonth month = firstMonth; !month.isAfter(currentMonth); month = month.plusMonths(1)) {
+            String monthLabel = month.format(monthFormatter);
+            CourseStatsRollupService.MonthlyTotals totals =
+                    monthlyTotals.getOrDefault(month, CourseStatsRollupService.MonthlyTotals.EMPTY);
             
-            enrollmentsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, monthlyEnrollments.doubleValue()));
+            earningsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, totals.revenue()));
+            enrollmentsData.add(new InstructorChartDataDTO.MonthlyData(monthLabel, (double) totals.enrollments()));
         }
         
         return new InstructorChartDataDTO(earningsData, enrollmentsData);
@@ -178,23 +160,8 @@ public class InstructorDashboardService {
         }
         
         // 2. Đang chờ thanh toán (từ transactions PENDING)
-        List<Course> instructorCourses = courseRepository.findByInstructorId(instructorId);
-        List<Long> courseIds = instructorCourses.stream()
-                .map(Course::getId)
-                .collect(Collectors.toList());
-        
-        Double pendingBalance = 0.0;
-        if (!courseIds.isEmpty()) {
-            List<Transaction> pendingTransactions = transactionRepository.findAll()
-                    .stream()
-                    .filter(t -> t.getCourse() != null && courseIds.contains(t.getCourse().getId()))
-                    .filter(t -> t.getStatus() == ETransactionStatus.PENDING)
-                    .collect(Collectors.toList());
-            
-            pendingBalance = pendingTransactions.stream()
-                    .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                    .sum();
-        }
+        Double pendingBalance = transactionRepository.sumAmountByInstructorAndStatus(
+                instructorId, ETransactionStatus.PENDING);
         
         // 3. Có thể rút = Tổng doanh thu - Đang chờ
         Double availableBalance = totalRevenue - pendingBalance;
@@ -203,28 +170,12 @@ public class InstructorDashboardService {
         }
         
         // 4. Tính tăng trưởng (so sánh tháng đầu và tháng cuối trong 6 tháng gần nhất)
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime firstMonthStart = now.minusMonths(5).with(TemporalAdjusters.firstDayOfMonth())
-                .withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime firstMonthEnd = firstMonthStart.with(TemporalAdjusters.lastDayOfMonth())
-                .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-        
-        LocalDateTime lastMonthStart = now.minusMonths(0).with(TemporalAdjusters.firstDayOfMonth())
-                .withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime lastMonthEnd = lastMonthStart.with(TemporalAdjusters.lastDayOfMonth())
-                .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-        
-        List<Transaction> firstMonthTransactions = transactionRepository
-                .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, firstMonthStart, firstMonthEnd);
-        Double firstMonthRevenue = firstMonthTransactions.stream()
-                .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                .sum();
-        
-        List<Transaction> lastMonthTransactions = transactionRepository
-                .findSuccessfulTransactionsByInstructorAndDateRange(instructorId, lastMonthStart, lastMonthEnd);
-        Double lastMonthRevenue = lastMonthTransactions.stream()
-                .mapToDouble(t -> t.getAmount() != null ? t.getAmount() : 0.0)
-                .sum();
+        YearMonth lastMonth = YearMonth.now();
+        YearMonth firstMonth = lastMonth.minusMonths(5);
+        Map<YearMonth, CourseStatsRollupService.MonthlyTotals> monthlyTotals = courseStatsRollupService
+                .monthlyTotalsForInstructor(instructorId, firstMonth.atDay(1), lastMonth.atEndOfMonth());
+        Double firstMonthRevenue = monthlyTotals.getOrDefault(firstMonth, CourseStatsRollupService.MonthlyTotals.EMPTY).revenue();
+        Double lastMonthRevenue = monthlyTotals.getOrDefault(lastMonth, CourseStatsRollupService.MonthlyTotals.EMPTY).revenue();
         
         Double growthRate = 0.0;
         if (firstMonthRevenue > 0) {
@@ -234,13 +185,10 @@ public class InstructorDashboardService {
         }
         
         // 5. Lấy giao dịch gần đây (10 giao dịch mới nhất)
-        List<Transaction> allTransactions = transactionRepository
-                .findByInstructorIdOrderByCreatedAtDesc(instructorId)
-                .stream()
-                .limit(10)
-                .collect(Collectors.toList());
+        List<Transaction> latestTransactions = transactionRepository
+                .findByInstructorIdOrderByCreatedAtDesc(instructorId, PageRequest.of(0, 10));
         
-        List<InstructorEarningsDTO.TransactionDTO> recentTransactions = allTransactions.stream()
+        List<InstructorEarningsDTO.TransactionDTO> recentTransactions = latestTransactions.stream()
                 .map(t -> {
                     InstructorEarningsDTO.TransactionDTO dto = new InstructorEarningsDTO.TransactionDTO();
                     dto.setId(t.getId());
@@ -4,6 +4,7 @@ import com.coursemgmt.dto.*;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
 import com.coursemgmt.model.ERole;
+import com.coursemgmt.security.jwt.TokenVersionCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,9 +12,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 @Service
 public class InstructorService {
@@ -30,13 +32,18 @@ public class InstructorService {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
     /**
      * Lấy danh sách tất cả giảng viên
      */
     public Page<InstructorDTO> getAllInstructors(Pageable pageable) {
         // In production, would filter by role = INSTRUCTOR
         Page<User> instructors = userRepository.findAll(pageable);
-        return instructors.map(this::convertToDTO);
+        Map<Long, int[]> courseCounts = courseCountsByInstructor(
+            instructors.getContent().stream().map(User::getId).toList());
+        return instructors.map(user -> convertToDTO(user, courseCounts));
     }
 
     /**
@@ -145,7 +152,10 @@ public class InstructorService {
         }
         
         instructor.setIsEnabled(false);
+        // Tăng token version để thu hồi các JWT đã cấp
+        instructor.setTokenVersion(instructor.getTokenVersion() + 1);
         User updated = userRepository.save(instructor);
+        tokenVersionCache.versionBumped(updated.getId(), updated.getTokenVersion());
         return convertToDTO(updated);
     }
 
@@ -158,7 +168,9 @@ public class InstructorService {
             .orElseThrow(() -> new RuntimeException("Instructor not found with id: " + instructorId));
         
         instructor.setIsEnabled(true);
+        instructor.setTokenVersion(instructor.getTokenVersion() + 1);
         User updated = userRepository.save(instructor);
+        tokenVersionCache.versionBumped(updated.getId(), updated.getTokenVersion());
         return convertToDTO(updated);
     }
 
@@ -178,38 +190,13 @@ public class InstructorService {
         
         InstructorDTO dto = convertToDTO(instructor);
         
-        // Get courses
-        List<Course> courses = courseRepository.findByInstructorId(instructorId);
-        dto.setTotalCourses(courses.size());
-        
-        long published = courses.stream()
-            .filter(c -> "PUBLISHED".equals(c.getStatus()))
-            .count();
-        dto.setPublishedCourses((int) published);
-        
-        // Get total students (unique)
-        Set<Long> uniqueStudents = new HashSet<>();
-        for (Course course : courses) {
-            List<Enrollment> enrollments = enrollmentRepository
-                .findByCourseId(course.getId(), Pageable.unpaged())
-                .getContent();
-            enrollments.forEach(e -> uniqueStudents.add(e.getUser().getId()));
-        }
-        dto.setTotalStudents(uniqueStudents.size());
+        // Get total students (unique) trên tất cả khóa học, 1 câu COUNT(DISTINCT)
+        Object[] enrollmentStats = enrollmentRepository.aggregateStatsByInstructorId(instructorId).get(0);
+        dto.setTotalStudents(((Number) enrollmentStats[0]).intValue());
         
         // Calculate total revenue
-        double totalRevenue = 0.0;
-        for (Course course : courses) {
-            List<Transaction> transactions = transactionRepository
-                .findByCourseId(course.getId(), Pageable.unpaged())
-                .getContent();
-            
-            totalRevenue += transactions.stream()
-                .filter(t -> "SUCCESS".equals(t.getStatus()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        }
-        dto.setTotalRevenue((long) totalRevenue);
+        Double totalRevenue = transactionRepository.calculateRevenueByInstructor(instructorId);
+        dto.setTotalRevenue(totalRevenue != null ? totalRevenue.longValue() : 0L);
         
         return dto;
     }
@@ -218,6 +205,10 @@ public class InstructorService {
      * Convert User entity to InstructorDTO
      */
     private InstructorDTO convertToDTO(User user) {
+        return convertToDTO(user, courseCountsByInstructor(List.of(user.getId())));
+    }
+
+    private InstructorDTO convertToDTO(User user, Map<Long, int[]> courseCounts) {
         InstructorDTO dto = new InstructorDTO();
         dto.setId(user.getId());
         dto.setFullName(user.getFullName());
@@ -227,15 +218,24 @@ public class InstructorService {
         dto.setJoinedAt(user.getCreatedAt());
         
         // Get basic stats
-        List<Course> courses = courseRepository.findByInstructorId(user.getId());
-        dto.setTotalCourses(courses.size());
-        
-        long published = courses.stream()
-            .filter(c -> "PUBLISHED".equals(c.getStatus()))
-            .count();
-        dto.setPublishedCourses((int) published);
+        int[] counts = courseCounts.getOrDefault(user.getId(), new int[]{0, 0});
+        dto.setTotalCourses(counts[0]);
+        dto.setPublishedCourses(counts[1]);
         
         return dto;
     }
-}
 
+    /**
+     * Số khóa học / số khóa học PUBLISHED của nhiều giảng viên trong 1 câu GROUP BY
+     */
+    private Map<Long, int[]> courseCountsByInstructor(Collection<Long> instructorIds) {
+        Map<Long, int[]> counts = new HashMap<>();
+        if (instructorIds.isEmpty()) {
+            return counts;
+        }
+        for (Object[] row : courseRepository.countCoursesByInstructorIds(instructorIds)) {
+            counts.put((Long) row[0], new int[]{((Number) row[1]).intValue(), ((Number) row[2]).intValue()});
+        }
+        return counts;
+    }
+}
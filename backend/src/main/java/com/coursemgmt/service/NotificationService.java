@@ -1,11 +1,13 @@
 package com.coursemgmt.service;
 
+import com.coursemgmt.event.UnreadChangedEvent;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.NotificationRepository;
 import com.coursemgmt.repository.UserRepository;
 import com.coursemgmt.repository.CourseRepository;
 import com.coursemgmt.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -29,6 +31,12 @@ public class NotificationService {
     @Autowired
     private TransactionRepository transactionRepository;
     
+    @Autowired
+    private UnreadCounterStore unreadCounterStore;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
      * Tạo thông báo khi có học viên mua khóa học
      */
@@ -68,7 +76,7 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             notification.setActionUrl("/instructor/students");
             
-            notificationRepository.save(notification);
+            create(notification);
             System.out.println(">>> Notification created for instructor " + instructor.getId() + 
                              " about course purchase by student " + studentId);
         } catch (Exception e) {
@@ -91,8 +99,7 @@ public class NotificationService {
      */
     @Transactional(readOnly = true)
     public Long getUnreadCount(Long userId) {
-        Long count = notificationRepository.countByUserIdAndIsReadFalse(userId);
-        return count != null ? count : 0L;
+        return unreadCounterStore.getNotificationUnread(userId);
     }
     
     /**
@@ -108,8 +115,13 @@ public class NotificationService {
             throw new RuntimeException("Unauthorized to mark this notification as read");
         }
         
+        if (Boolean.TRUE.equals(notification.getIsRead())) {
+            return;
+        }
         notification.setIsRead(true);
         notificationRepository.save(notification);
+        eventPublisher.publishEvent(new UnreadChangedEvent(
+                UnreadChangedEvent.Type.NOTIFICATION_READ, userId, null));
     }
     
     /**
@@ -127,6 +139,18 @@ public class NotificationService {
         if (!unreadNotifications.isEmpty()) {
             notificationRepository.saveAll(unreadNotifications);
         }
+        eventPublisher.publishEvent(new UnreadChangedEvent(
+                UnreadChangedEvent.Type.NOTIFICATIONS_ALL_READ, userId, null));
+    }
+    
+    /**
+     * Lưu thông báo mới; bộ đếm chưa đọc của người nhận tăng sau khi commit
+     */
+    private Notification create(Notification notification) {
+        Notification saved = notificationRepository.save(notification);
+        eventPublisher.publishEvent(new UnreadChangedEvent(
+                UnreadChangedEvent.Type.NOTIFICATION_CREATED, saved.getUser().getId(), null));
+        return saved;
     }
 
     /**
@@ -168,7 +192,7 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             notification.setActionUrl("/instructor/reviews");
             
-            Notification saved = notificationRepository.save(notification);
+            Notification saved = create(notification);
             System.out.println(">>> Notification created successfully! ID: " + saved.getId() + 
                              " for instructor " + instructor.getId() + 
                              " about new review by student " + studentId);
@@ -218,7 +242,7 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             notification.setActionUrl("/instructor/reviews");
             
-            Notification saved = notificationRepository.save(notification);
+            Notification saved = create(notification);
             System.out.println(">>> Notification created successfully! ID: " + saved.getId() + 
                              " for instructor " + instructor.getId() + 
                              " about updated review by student " + studentId);
@@ -254,7 +278,7 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             notification.setActionUrl("/courses/" + courseId + "?tab=reviews");
             
-            notificationRepository.save(notification);
+            create(notification);
             System.out.println(">>> Notification created for student " + studentId + 
                              " about instructor reply");
         } catch (Exception e) {
@@ -302,7 +326,7 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             notification.setActionUrl(actionUrl);
             
-            notificationRepository.save(notification);
+            create(notification);
             System.out.println(">>> Notification created for user " + recipientId + 
                              " about new message from " + senderId);
         } catch (Exception e) {
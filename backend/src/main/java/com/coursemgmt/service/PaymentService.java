@@ -3,6 +3,7 @@ package com.coursemgmt.service;
 import com.coursemgmt.exception.ResourceNotFoundException;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
+import com.coursemgmt.security.services.CourseAccessCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -45,6 +46,15 @@ public class PaymentService {
     @Autowired
     private VNPayService vnPayService;
 
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+
     /**
      * Tạo payment URL cho việc mua khóa học
      * UC-PAY-01: Payment Module - Create Payment
@@ -181,8 +191,10 @@ public class PaymentService {
         
         // 4. Update ALL transaction statuses
         for (Transaction transaction : transactions) {
+            ETransactionStatus previousStatus = transaction.getStatus();
             transaction.setStatus(newStatus);
             transactionRepository.save(transaction);
+            courseStatsRollupService.onTransactionStatusChanged(transaction, previousStatus);
             System.out.println("Transaction " + transaction.getId() + " status updated to: " + newStatus);
         }
         
@@ -319,6 +331,9 @@ public class PaymentService {
         
         // Save enrollment
         Enrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        courseCounterService.onEnrollmentCreated(courseId);
+        courseStatsRollupService.onEnrollmentCreated(courseId, savedEnrollment.getEnrolledAt());
+        courseAccessCache.onEnrollmentChanged(userId, courseId);
         
         System.out.println(">>> SUCCESS: Enrollment created with ID: " + savedEnrollment.getId());
         System.out.println(">>> Enrollment saved for User " + userId + " in Course " + courseId);
@@ -40,11 +40,19 @@ public class ReviewService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private CourseCounterService courseCounterService;
+
     /**
      * Tạo hoặc cập nhật đánh giá
      */
     @Transactional
     public ReviewDTO createOrUpdateReview(Long userId, Long courseId, ReviewRequest request) {
+        // Kiểm tra cả ở service (không chỉ @Valid ở controller) vì bộ đếm rating của khóa học cần điểm hợp lệ
+        if (request.getRating() == null || request.getRating() < 1 || request.getRating() > 5) {
+            throw new RuntimeException("Điểm đánh giá phải từ 1 đến 5");
+        }
+
         // Kiểm tra user tồn tại
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
@@ -64,6 +72,7 @@ public class ReviewService {
         boolean isNewReview = existingReview.isEmpty();
         
         Review review = existingReview.orElse(new Review());
+        Integer oldRating = review.getRating();
 
         review.setUser(user);
         review.setCourse(course);
@@ -72,6 +81,13 @@ public class ReviewService {
 
         Review savedReview = reviewRepository.save(review);
         
+        // Cập nhật bộ đếm rating của khóa học (tăng/giảm, không tính lại từ đầu)
+        if (isNewReview) {
+            courseCounterService.onReviewCreated(courseId, request.getRating());
+        } else {
+            courseCounterService.onReviewUpdated(courseId, oldRating, request.getRating());
+        }
+        
         // Gửi thông báo cho giảng viên khi có đánh giá mới hoặc chỉnh sửa
         try {
             if (isNewReview) {
@@ -159,7 +175,10 @@ public class ReviewService {
             throw new RuntimeException("Bạn không có quyền xóa đánh giá này");
         }
 
+        Long courseId = review.getCourse().getId();
+        Integer rating = review.getRating();
         reviewRepository.delete(review);
+        courseCounterService.onReviewDeleted(courseId, rating);
     }
 
     /**
@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -29,54 +28,14 @@ public class StatisticsService {
     @Autowired
     private CertificateRepository certificateRepository;
 
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+
     /**
-     * Lấy tổng quan dashboard cho admin
+     * Lấy tổng quan dashboard cho admin (snapshot tính sẵn, kèm thời điểm tính asOf)
      */
     public DashboardStatsDTO getDashboardStats() {
-        // Đếm tổng số
-        Long totalCourses = courseRepository.count();
-        Long totalStudents = countStudents();
-        Long totalInstructors = countInstructors();
-        Long totalEnrollments = enrollmentRepository.count();
-        Long totalCertificates = certificateRepository.count();
-        
-        // Doanh thu - handle NULL values
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfMonth = now.with(TemporalAdjusters.firstDayOfMonth()).withHour(0).withMinute(0);
-        LocalDateTime startOfYear = now.with(TemporalAdjusters.firstDayOfYear()).withHour(0).withMinute(0);
-        
-        Double totalRevenue = calculateTotalRevenue();
-        Double monthlyRevenue = transactionRepository.calculateRevenueByDateRange(startOfMonth, now);
-        Double yearlyRevenue = transactionRepository.calculateRevenueByDateRange(startOfYear, now);
-        
-        // Khóa học theo status
-        Long activeCourses = courseRepository.countByStatus(ECourseStatus.PUBLISHED);
-        Long pendingCourses = courseRepository.countByStatus(ECourseStatus.PENDING_APPROVAL);
-        Long draftCourses = courseRepository.countByStatus(ECourseStatus.DRAFT);
-        
-        // Giao dịch theo status
-        Long successfulTransactions = transactionRepository.countByStatus(ETransactionStatus.SUCCESS);
-        Long pendingTransactions = transactionRepository.countByStatus(ETransactionStatus.PENDING);
-        Long failedTransactions = transactionRepository.countByStatus(ETransactionStatus.FAILED);
-        
-        // Tỷ lệ hoàn thành
-        Long completedEnrollments = enrollmentRepository.countByStatus(EEnrollmentStatus.COMPLETED);
-        Long inProgressEnrollments = totalEnrollments - completedEnrollments;
-        
-        Double averageCompletionRate = null;
-        if (totalEnrollments > 0) {
-            averageCompletionRate = (completedEnrollments * 100.0) / totalEnrollments;
-        }
-        
-        return new DashboardStatsDTO(
-            totalCourses, totalStudents, totalInstructors, totalEnrollments, totalCertificates,
-            totalRevenue != null ? totalRevenue : 0.0,
-            monthlyRevenue != null ? monthlyRevenue : 0.0,
-            yearlyRevenue != null ? yearlyRevenue : 0.0,
-            activeCourses, pendingCourses, draftCourses,
-            successfulTransactions, pendingTransactions, failedTransactions,
-            averageCompletionRate, completedEnrollments, inProgressEnrollments
-        );
+        return dashboardSnapshotCache.getDashboardStats();
     }
 
     /**
@@ -86,64 +45,51 @@ public class StatisticsService {
         CourseStatsDTO stats = new CourseStatsDTO();
         
         // Basic info
-        courseRepository.findById(courseId).ifPresent(course -> {
-            stats.setCourseId(course.getId());
-            stats.setCourseTitle(course.getTitle());
-            if (course.getInstructor() != null) {
-                stats.setInstructorName(course.getInstructor().getFullName());
-            }
-        });
+        List<Object[]> info = courseRepository.findTitleAndInstructorNameById(courseId);
+        if (!info.isEmpty()) {
+            stats.setCourseId((Long) info.get(0)[0]);
+            stats.setCourseTitle((String) info.get(0)[1]);
+            stats.setInstructorName((String) info.get(0)[2]);
+        }
         
-        // Enrollments
-        Long totalEnrollments = enrollmentRepository.countByCourseId(courseId);
+        // Enrollments + certificates: tính bằng 1 câu aggregate, không load danh sách enrollment
+        Object[] enrollmentStats = enrollmentRepository.aggregateStatsByCourseId(courseId).get(0);
+        long totalEnrollments = toLong(enrollmentStats[0]);
+        long completed = toLong(enrollmentStats[1]);
         stats.setTotalEnrollments(totalEnrollments);
-        
-        // Get all enrollments for this course
-        List<Enrollment> enrollments = enrollmentRepository
-            .findByCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        long completed = enrollments.stream()
-            .filter(e -> e.getProgress() >= 100.0)
-            .count();
-        
         stats.setCompletedStudents(completed);
         stats.setActiveStudents(totalEnrollments - completed);
         
         // Completion rate
         if (totalEnrollments > 0) {
             stats.setCompletionRate((completed * 100.0) / totalEnrollments);
-            
-            // Average progress
-            double avgProgress = enrollments.stream()
-                .mapToDouble(Enrollment::getProgress)
-                .average()
-                .orElse(0.0);
-            stats.setAverageProgress(avgProgress);
+            stats.setAverageProgress(enrollmentStats[2] != null ? ((Number) enrollmentStats[2]).doubleValue() : 0.0);
         }
         
         // Certificates
-        Long certificates = certificateRepository
-            .findByEnrollmentCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getTotalElements();
-        stats.setCertificatesIssued(certificates);
+        stats.setCertificatesIssued(toLong(enrollmentStats[3]));
         
         // Revenue
-        List<Transaction> transactions = transactionRepository
-            .findByCourseId(courseId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        double revenue = transactions.stream()
-            .filter(t -> "SUCCESS".equals(t.getStatus().toString()))
-            .mapToDouble(Transaction::getAmount)
-            .sum();
-        
-        stats.setTotalRevenue(revenue);
-        stats.setTotalTransactions((long) transactions.size());
+        Object[] transactionStats = transactionRepository.aggregateStatsByCourseId(courseId).get(0);
+        stats.setTotalRevenue(((Number) transactionStats[0]).doubleValue());
+        stats.setTotalTransactions(toLong(transactionStats[1]));
         
         return stats;
     }
 
+    // [tổng số khóa học, số khóa học PUBLISHED] của giảng viên
+    private long[] countCourses(Long instructorId) {
+        List<Object[]> rows = courseRepository.countCoursesByInstructorIds(List.of(instructorId));
+        if (rows.isEmpty()) {
+            return new long[]{0L, 0L};
+        }
+        return new long[]{toLong(rows.get(0)[1]), toLong(rows.get(0)[2])};
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
     /**
      * Thống kê giảng viên
      */
@@ -158,48 +104,21 @@ public class StatisticsService {
         });
         
         // Courses
-        List<Course> courses = courseRepository.findByInstructorId(instructorId);
-        stats.setTotalCourses((long) courses.size());
-        
-        long published = courses.stream()
-            .filter(c -> "PUBLISHED".equals(c.getStatus().toString()))
-            .count();
-        stats.setPublishedCourses(published);
-        stats.setDraftCourses(courses.size() - published);
-        
-        // Students & Revenue
-        Set<Long> uniqueStudents = new HashSet<>();
-        double totalRevenue = 0.0;
-        long totalCertificates = 0;
-        
-        for (Course course : courses) {
-            // Students
-            List<Enrollment> enrollments = enrollmentRepository
-                .findByCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getContent();
-            
-            enrollments.forEach(e -> uniqueStudents.add(e.getUser().getId()));
-            
-            // Revenue
-            List<Transaction> transactions = transactionRepository
-                .findByCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getContent();
-            
-            totalRevenue += transactions.stream()
-                .filter(t -> "SUCCESS".equals(t.getStatus().toString()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-            
-            // Certificates
-            totalCertificates += certificateRepository
-                .findByEnrollmentCourseId(course.getId(), org.springframework.data.domain.Pageable.unpaged())
-                .getTotalElements();
-        }
+        long[] courseCounts = countCourses(instructorId);
+        stats.setTotalCourses(courseCounts[0]);
+        stats.setPublishedCourses(courseCounts[1]);
+        stats.setDraftCourses(courseCounts[0] - courseCounts[1]);
+        
+        // Students & Certificates: gộp trên tất cả khóa học của giảng viên (COUNT DISTINCT học viên)
+        Object[] enrollmentStats = enrollmentRepository.aggregateStatsByInstructorId(instructorId).get(0);
+        long uniqueStudents = toLong(enrollmentStats[0]);
+        stats.setTotalStudents(uniqueStudents);
+        stats.setActiveStudents(uniqueStudents); // Simplified
+        stats.setCertificatesIssued(toLong(enrollmentStats[1]));
         
-        stats.setTotalStudents((long) uniqueStudents.size());
-        stats.setActiveStudents((long) uniqueStudents.size()); // Simplified
-        stats.setTotalRevenue(totalRevenue);
-        stats.setCertificatesIssued(totalCertificates);
+        // Revenue
+        Double totalRevenue = transactionRepository.calculateRevenueByInstructor(instructorId);
+        stats.setTotalRevenue(totalRevenue != null ? totalRevenue : 0.0);
         
         return stats;
     }
@@ -348,25 +267,5 @@ public class StatisticsService {
         
         return report;
     }
-
-    // Helper methods
-    
-    private Long countStudents() {
-        // Count users with STUDENT role
-        // Simplified - would need Role join
-        return userRepository.count();
-    }
-    
-    private Long countInstructors() {
-        // Count users with INSTRUCTOR role
-        // Simplified - would need Role join
-        return courseRepository.countDistinctInstructors();
-    }
-    
-    private Double calculateTotalRevenue() {
-        LocalDateTime beginning = LocalDateTime.of(2020, 1, 1, 0, 0);
-        LocalDateTime now = LocalDateTime.now();
-        return transactionRepository.calculateRevenueByDateRange(beginning, now);
-    }
 }
 
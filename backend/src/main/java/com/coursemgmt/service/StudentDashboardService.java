@@ -8,137 +8,96 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 @Service
 public class StudentDashboardService {
 
     @Autowired
     private EnrollmentRepository enrollmentRepository;
-    
-    @Autowired
-    private UserProgressRepository userProgressRepository;
-    
-    @Autowired
-    private CertificateRepository certificateRepository;
+
+    /**
+     * Tiến độ của 1 enrollment, tính sẵn trong SQL (EnrollmentRepository.aggregateProgressByUserId)
+     */
+    public record EnrollmentActivity(Long enrollmentId, EEnrollmentStatus status, Double progress,
+                                     long completedLessons, long watchedSeconds, long weeklyWatchedSeconds,
+                                     LocalDateTime lastActivityAt, boolean hasCertificate) {
+    }
 
     /**
      * Lấy thống kê tổng quan cho Student Dashboard
      */
     @Transactional(readOnly = true)
     public StudentDashboardStatsDTO getDashboardStats(Long studentId) {
-        // 1. Lấy tất cả enrollments của student
-        List<Enrollment> enrollments = enrollmentRepository
-            .findByUserId(studentId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        // 2. Khóa học đang học (IN_PROGRESS và progress < 100%)
-        long activeCourses = enrollments.stream()
-            .filter(e -> e.getStatus() == EEnrollmentStatus.IN_PROGRESS || 
-                        (e.getProgress() != null && e.getProgress() < 100.0))
-            .count();
-        
-        // 3. Tính tổng giờ học
-        double totalStudyHours = calculateTotalStudyHours(studentId);
-        
-        // 4. Tính giờ học tuần này
         LocalDateTime startOfWeek = LocalDateTime.now()
             .with(java.time.DayOfWeek.MONDAY)
             .withHour(0).withMinute(0).withSecond(0);
-        double weeklyStudyHours = calculateWeeklyStudyHours(studentId, startOfWeek);
         
-        // 5. Tiến độ trung bình
-        double averageProgress = 0.0;
-        if (!enrollments.isEmpty()) {
-            double totalProgress = enrollments.stream()
-                .mapToDouble(e -> e.getProgress() != null ? e.getProgress() : 0.0)
-                .sum();
-            averageProgress = totalProgress / enrollments.size();
-        }
+        // 1. Lấy tiến độ tổng hợp của tất cả enrollments của student (1 query)
+        List<EnrollmentActivity> activities = getEnrollmentActivities(studentId, startOfWeek);
         
-        // 6. Số chứng chỉ
-        Long totalCertificates = certificateRepository
-            .findByEnrollmentUserId(studentId, org.springframework.data.domain.Pageable.unpaged())
-            .getTotalElements();
+        long activeCourses = 0;
+        long totalSeconds = 0;
+        long weeklySeconds = 0;
+        double totalProgress = 0.0;
+        long totalCertificates = 0;
+        for (EnrollmentActivity activity : activities) {
+            // 2. Khóa học đang học (IN_PROGRESS và progress < 100%)
+            if (activity.status() == EEnrollmentStatus.IN_PROGRESS ||
+                (activity.progress() != null && activity.progress() < 100.0)) {
+                activeCourses++;
+            }
+            // 3, 4. Tổng giờ học / giờ học tuần này
+            totalSeconds += activity.watchedSeconds();
+            weeklySeconds += activity.weeklyWatchedSeconds();
+            // 5. Tiến độ trung bình
+            totalProgress += activity.progress() != null ? activity.progress() : 0.0;
+            // 6. Số chứng chỉ
+            if (activity.hasCertificate()) {
+                totalCertificates++;
+            }
+        }
+        double averageProgress = activities.isEmpty() ? 0.0 : totalProgress / activities.size();
         
         return new StudentDashboardStatsDTO(
             activeCourses,
-            totalStudyHours,
-            weeklyStudyHours,
+            toHours(totalSeconds),
+            toHours(weeklySeconds),
             averageProgress,
-            totalCertificates != null ? totalCertificates : 0L
+            totalCertificates
         );
     }
 
     /**
-     * Tính tổng giờ học từ User_Progress
-     * Sử dụng lastWatchedTime nếu có, nếu không thì dùng durationInMinutes của lesson
+     * Số bài hoàn thành, thời gian đã học (tổng và từ weekStart) và lần hoạt động cuối của từng enrollment.
+     * Thời gian học của 1 bài: lastWatchedTime nếu có, nếu không thì durationInMinutes của lesson
+     * (tổng: chỉ bài đã hoàn thành; tuần này: bài được hoàn thành từ weekStart).
      */
-    private double calculateTotalStudyHours(Long studentId) {
-        // Lấy tất cả enrollments của student
-        List<Enrollment> enrollments = enrollmentRepository
-            .findByUserId(studentId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        double totalMinutes = 0.0;
-        
-        for (Enrollment enrollment : enrollments) {
-            // Lấy tất cả progress của enrollment này
-            Set<User_Progress> progresses = userProgressRepository.findByEnrollmentWithLesson(enrollment);
-            
-            for (User_Progress progress : progresses) {
-                if (progress.getLesson() != null) {
-                    // Ưu tiên sử dụng lastWatchedTime nếu có
-                    if (progress.getLastWatchedTime() != null && progress.getLastWatchedTime() > 0) {
-                        // Convert seconds to minutes
-                        totalMinutes += progress.getLastWatchedTime() / 60.0;
-                    } else if (progress.getIsCompleted() != null && progress.getIsCompleted()) {
-                        // Nếu đã hoàn thành, dùng durationInMinutes của lesson
-                        if (progress.getLesson().getDurationInMinutes() != null) {
-                            totalMinutes += progress.getLesson().getDurationInMinutes();
-                        }
-                    }
-                }
-            }
+    @Transactional(readOnly = true)
+    public List<EnrollmentActivity> getEnrollmentActivities(Long studentId, LocalDateTime weekStart) {
+        List<EnrollmentActivity> activities = new ArrayList<>();
+        for (Object[] row : enrollmentRepository.aggregateProgressByUserId(studentId, weekStart)) {
+            activities.add(new EnrollmentActivity(
+                (Long) row[0],
+                (EEnrollmentStatus) row[1],
+                (Double) row[2],
+                toLong(row[3]),
+                toLong(row[4]),
+                toLong(row[5]),
+                (LocalDateTime) row[6],
+                toLong(row[7]) > 0
+            ));
         }
-        
-        // Convert minutes to hours
-        return Math.round((totalMinutes / 60.0) * 10.0) / 10.0; // Round to 1 decimal place
+        return activities;
     }
 
-    /**
-     * Tính giờ học trong tuần này
-     */
-    private double calculateWeeklyStudyHours(Long studentId, LocalDateTime startOfWeek) {
-        // Lấy tất cả enrollments của student
-        List<Enrollment> enrollments = enrollmentRepository
-            .findByUserId(studentId, org.springframework.data.domain.Pageable.unpaged())
-            .getContent();
-        
-        double totalMinutes = 0.0;
-        
-        for (Enrollment enrollment : enrollments) {
-            // Lấy tất cả progress của enrollment này
-            Set<User_Progress> progresses = userProgressRepository.findByEnrollmentWithLesson(enrollment);
-            
-            for (User_Progress progress : progresses) {
-                // Chỉ tính progress được completed trong tuần này
-                if (progress.getCompletedAt() != null && 
-                    progress.getCompletedAt().isAfter(startOfWeek)) {
-                    if (progress.getLesson() != null) {
-                        if (progress.getLastWatchedTime() != null && progress.getLastWatchedTime() > 0) {
-                            totalMinutes += progress.getLastWatchedTime() / 60.0;
-                        } else if (progress.getLesson().getDurationInMinutes() != null) {
-                            totalMinutes += progress.getLesson().getDurationInMinutes();
-                        }
-                    }
-                }
-            }
-        }
-        
-        // Convert minutes to hours
-        return Math.round((totalMinutes / 60.0) * 10.0) / 10.0; // Round to 1 decimal place
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
     }
-}
 
+    // Giây -> giờ, làm tròn 1 chữ số thập phân
+    private static double toHours(long seconds) {
+        return Math.round((seconds / 3600.0) * 10.0) / 10.0;
+    }
+}
@@ -4,6 +4,11 @@ import com.coursemgmt.dto.*;
 import com.coursemgmt.exception.ResourceNotFoundException;
 import com.coursemgmt.model.*;
 import com.coursemgmt.repository.*;
+import com.coursemgmt.security.services.CourseAccessCache;
+import com.coursemgmt.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -31,6 +36,18 @@ public class TransactionService {
     @Autowired
     private VNPayService vnPayService; // Service tích hợp VNPay
 
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * Tạo giao dịch mới và generate payment URL
      */
@@ -131,6 +148,7 @@ public class TransactionService {
         boolean isValid = vnPayService.verifyPaymentSignature(params);
         String responseCode = params.get("vnp_ResponseCode");
         
+        ETransactionStatus previousStatus = transaction.getStatus();
         if (isValid && "00".equals(responseCode)) {
             // Payment success
             transaction.setStatus(ETransactionStatus.SUCCESS);
@@ -143,6 +161,8 @@ public class TransactionService {
             transaction.setStatus(ETransactionStatus.FAILED);
         }
         
+        courseStatsRollupService.onTransactionStatusChanged(transaction, previousStatus);
+        
         Transaction updated = transactionRepository.save(transaction);
         return convertToDTO(updated);
     }
@@ -159,6 +179,9 @@ public class TransactionService {
         enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
         
         enrollmentRepository.save(enrollment);
+        courseCounterService.onEnrollmentCreated(transaction.getCourse().getId());
+        courseStatsRollupService.onEnrollmentCreated(transaction.getCourse().getId(), enrollment.getEnrolledAt());
+        courseAccessCache.onEnrollmentChanged(transaction.getUser().getId(), transaction.getCourse().getId());
     }
 
     /**
@@ -169,6 +192,27 @@ public class TransactionService {
                 .map(this::convertToDTO);
     }
 
+    /**
+     * Lấy tất cả giao dịch theo cursor (keyset trên createdAt, id - mới nhất trước)
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionDTO> getAllTransactionsByCursor(String cursor, int size, boolean includeTotal) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        String jpql = "SELECT t FROM Transaction t JOIN FETCH t.user JOIN FETCH t.course"
+                + (after != null ? " WHERE " + after.seekCondition("t", "createdAt") : "")
+                + " ORDER BY t.createdAt DESC, t.id DESC";
+        TypedQuery<Transaction> query = entityManager.createQuery(jpql, Transaction.class);
+        if (after != null) {
+            after.bind(query);
+        }
+        query.setMaxResults(size + 1);
+
+        Long total = includeTotal ? transactionRepository.count() : null;
+        return CursorPage.fromRows(query.getResultList(), size,
+                transaction -> new KeysetCursor(transaction.getCreatedAt(), transaction.getId()),
+                this::convertToDTO, total);
+    }
+
     /**
      * Lấy giao dịch theo ID
      */
@@ -0,0 +1,290 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.event.UnreadChangedEvent;
+import com.coursemgmt.repository.MessageRepository;
+import com.coursemgmt.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm chưa đọc theo user (thông báo và tin nhắn theo từng hội thoại), để badge không truy vấn DB mỗi lần poll.
+ *
+ * - Lazy: lần đọc đầu (hoặc khi entry quá hạn ttlMs) đếm từ DB rồi giữ trong bộ nhớ. Trước khi đếm, đặt 1 entry
+ *   "đang nạp" dưới khóa; thay đổi đến trong lúc đếm sẽ bỏ entry đó, và kết quả đếm chỉ được lưu nếu entry
+ *   vẫn còn nguyên (không làm mất thay đổi commit giữa lúc đếm và lúc lưu, không ghi đè bộ đếm mới hơn).
+ * - Tăng / giảm / reset theo UnreadChangedEvent sau khi commit; chỉ cập nhật entry đã có
+ *   (user chưa từng đọc bộ đếm sẽ được đếm từ DB ở lần đọc sau). Mỗi thay đổi đẩy số mới tới /user/{id}/queue/unread.
+ * - Đánh dấu đã đọc hội thoại thì đếm lại từ DB (mốc đã đọc có thể chưa tới tin nhắn vừa gửi song song).
+ * - Chia thành STRIPES phần theo userId, mỗi phần 1 LinkedHashMap LRU có khóa riêng; TTL giới hạn sai lệch
+ *   từ các thay đổi không qua service (xóa thông báo theo khóa học, sửa trực tiếp DB...).
+ */
+@Component
+public class UnreadCounterStore {
+
+    private static final int STRIPES = 16;
+
+    public static final String DESTINATION = "/queue/unread";
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${unread.counters.max-users:20000}")
+    private int maxUsers;
+
+    @Value("${unread.counters.ttl-ms:300000}")
+    private long ttlMs;
+
+    private static final class Counter {
+        long count;
+        long loadedAt;
+        // Đang đếm từ DB: chưa dùng được; thay đổi đến trong lúc này sẽ bỏ entry để kết quả đếm không được lưu
+        boolean loading;
+
+        Counter(long count, long loadedAt) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+        }
+
+        static Counter loading() {
+            Counter counter = new Counter(0, 0);
+            counter.loading = true;
+            return counter;
+        }
+    }
+
+    private static final class UserCounters {
+        Counter notifications;
+        final Map<Long, Counter> conversations = new HashMap<>();
+    }
+
+    private final class Stripe extends LinkedHashMap<Long, UserCounters> {
+        Stripe() {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, UserCounters> eldest) {
+            return size() > Math.max(1, maxUsers / STRIPES);
+        }
+    }
+
+    private final Stripe[] stripes = newStripes();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder discardedLoads = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder pushes = new LongAdder();
+    private final LongAdder failedPushes = new LongAdder();
+
+    private Stripe[] newStripes() {
+        Stripe[] created = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            created[i] = new Stripe();
+        }
+        return created;
+    }
+
+    private Stripe stripeFor(Long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 60) & (STRIPES - 1)];
+    }
+
+    private boolean isFresh(Counter counter, long now) {
+        return counter != null && !counter.loading && now - counter.loadedAt < ttlMs;
+    }
+
+    // Lưu kết quả đếm vào entry "đang nạp" nếu entry đó chưa bị thay đổi / thay thế trong lúc đếm
+    private void completeLoad(Counter placeholder, Counter current, long loaded) {
+        if (current == placeholder) {
+            placeholder.count = loaded;
+            placeholder.loadedAt = System.currentTimeMillis();
+            placeholder.loading = false;
+        } else {
+            discardedLoads.increment();
+        }
+    }
+
+    /**
+     * Số thông báo chưa đọc của user
+     */
+    public long getNotificationUnread(Long userId) {
+        Stripe stripe = stripeFor(userId);
+        Counter placeholder = Counter.loading();
+        synchronized (stripe) {
+            UserCounters user = stripe.computeIfAbsent(userId, id -> new UserCounters());
+            if (isFresh(user.notifications, System.currentTimeMillis())) {
+                hits.increment();
+                return user.notifications.count;
+            }
+            user.notifications = placeholder;
+        }
+        loads.increment();
+        Long count = notificationRepository.countByUserIdAndIsReadFalse(userId);
+        long loaded = count != null ? count : 0L;
+        synchronized (stripe) {
+            UserCounters user = stripe.get(userId);
+            completeLoad(placeholder, user != null ? user.notifications : null, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Số tin nhắn chưa đọc của user trong 1 hội thoại
+     */
+    public long getChatUnread(Long conversationId, Long userId) {
+        Stripe stripe = stripeFor(userId);
+        Counter placeholder = Counter.loading();
+        synchronized (stripe) {
+            UserCounters user = stripe.computeIfAbsent(userId, id -> new UserCounters());
+            Counter counter = user.conversations.get(conversationId);
+            if (isFresh(counter, System.currentTimeMillis())) {
+                hits.increment();
+                return counter.count;
+            }
+            user.conversations.put(conversationId, placeholder);
+        }
+        loads.increment();
+        Long count = messageRepository.countUnreadMessages(conversationId, userId);
+        long loaded = count != null ? count : 0L;
+        synchronized (stripe) {
+            UserCounters user = stripe.get(userId);
+            completeLoad(placeholder, user != null ? user.conversations.get(conversationId) : null, loaded);
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUnreadChanged(UnreadChangedEvent event) {
+        Long userId = event.getUserId();
+        Long conversationId = event.getConversationId();
+        Long count;
+        switch (event.getType()) {
+            case CHAT_MESSAGE -> count = adjustChat(userId, conversationId, 1);
+            case CHAT_READ -> {
+                evictChat(userId, conversationId);
+                count = getChatUnread(conversationId, userId);
+            }
+            case NOTIFICATION_CREATED -> count = adjustNotifications(userId, 1);
+            case NOTIFICATION_READ -> count = adjustNotifications(userId, -1);
+            case NOTIFICATIONS_ALL_READ -> count = resetNotifications(userId);
+            default -> count = null;
+        }
+        if (count != null) {
+            updates.increment();
+            push(userId, event.getType(), conversationId, count);
+        }
+    }
+
+    // null nếu chưa có bộ đếm cho user / hội thoại (không cần đẩy)
+    private Long adjustChat(Long userId, Long conversationId, long delta) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            UserCounters user = stripe.get(userId);
+            Counter counter = user != null ? user.conversations.get(conversationId) : null;
+            if (counter == null) {
+                return null;
+            }
+            if (counter.loading) {
+                // Đang đếm song song: kết quả có thể chưa gồm thay đổi này -> bỏ, lần đọc sau đếm lại
+                user.conversations.remove(conversationId);
+                return null;
+            }
+            counter.count = Math.max(0, counter.count + delta);
+            return counter.count;
+        }
+    }
+
+    private Long adjustNotifications(Long userId, long delta) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            UserCounters user = stripe.get(userId);
+            if (user == null || user.notifications == null) {
+                return null;
+            }
+            if (user.notifications.loading) {
+                user.notifications = null;
+                return null;
+            }
+            user.notifications.count = Math.max(0, user.notifications.count + delta);
+            return user.notifications.count;
+        }
+    }
+
+    private Long resetNotifications(Long userId) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            stripe.computeIfAbsent(userId, id -> new UserCounters()).notifications =
+                    new Counter(0, System.currentTimeMillis());
+        }
+        return 0L;
+    }
+
+    private void evictChat(Long userId, Long conversationId) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            UserCounters user = stripe.get(userId);
+            if (user != null) {
+                user.conversations.remove(conversationId);
+            }
+        }
+    }
+
+    private void push(Long userId, UnreadChangedEvent.Type type, Long conversationId, long count) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", type.name());
+            payload.put("conversationId", conversationId);
+            payload.put("count", count);
+            messagingTemplate.convertAndSendToUser(userId.toString(), DESTINATION, payload);
+            pushes.increment();
+        } catch (Exception e) {
+            failedPushes.increment();
+            System.err.println("UnreadCounterStore: Failed to push unread count to user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int users = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                users += stripe.size();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", users);
+        stats.put("maxUsers", maxUsers);
+        stats.put("stripes", STRIPES);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        stats.put("discardedLoads", discardedLoads.sum());
+        stats.put("updates", updates.sum());
+        stats.put("pushes", pushes.sum());
+        stats.put("failedPushes", failedPushes.sum());
+        return stats;
+    }
+}
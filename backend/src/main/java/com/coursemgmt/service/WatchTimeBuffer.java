@@ -0,0 +1,193 @@
+package com.coursemgmt.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đệm ghi trễ (write-behind) cho heartbeat xem video (ContentService.updateLessonWatchTime).
+ *
+ * - Gộp theo (enrollmentId, lessonId): chỉ giữ vị trí xem mới nhất, heartbeat cũ hơn bị thay thế (coalesced).
+ * - Định kỳ ghi xuống bảng user_progress bằng 1 câu upsert theo JDBC batch (unique (enrollment_id, lesson_id)):
+ *   chưa có dòng thì tạo, đã có thì chỉ cập nhật vị trí xem. Không dựa vào số dòng bị ảnh hưởng của batch
+ *   (Connector/J với rewriteBatchedStatements trả về SUCCESS_NO_INFO cho mọi dòng).
+ *   Chỉ ghi last_watched_time / total_duration, không đụng tới trạng thái hoàn thành.
+ * - Việc tự hoàn thành bài học (>= 90%) và cấp chứng chỉ không đi qua bộ đệm: ContentService xử lý ngay
+ *   và gọi discard() để bỏ vị trí đang chờ của bài học đó.
+ * - Ghi nốt khi tắt ứng dụng; khi số entry chờ vượt quá max-pending thì đẩy 1 lần flush sang luồng riêng
+ *   (không flush ngay trong request: sẽ nhập vào transaction của ContentService và giữ khóa của cả batch).
+ */
+@Component
+public class WatchTimeBuffer {
+
+    // Tham số: last_watched_time, total_duration, enrollment_id, lesson_id; bỏ qua nếu enrollment/lesson đã bị xóa
+    // trong lúc chờ flush. Trùng khóa (dòng đã có) thì chỉ cập nhật vị trí xem, giữ nguyên is_completed
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_progress (enrollment_id, lesson_id, last_watched_time, total_duration, is_completed) "
+                    + "SELECT e.id, l.id, ?, ?, false FROM enrollments e, lessons l WHERE e.id = ? AND l.id = ? "
+                    + "ON DUPLICATE KEY UPDATE last_watched_time = VALUES(last_watched_time), "
+                    + "total_duration = VALUES(total_duration)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${watch-time.buffer.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${watch-time.buffer.batch-size:500}")
+    private int batchSize;
+
+    private record Key(Long enrollmentId, Long lessonId) {
+    }
+
+    private record Position(Integer watchedTime, Integer totalDuration) {
+    }
+
+    private final ConcurrentHashMap<Key, Position> pending = new ConcurrentHashMap<>();
+
+    // Luồng riêng cho flush khi đầy: không có transaction của request, TransactionTemplate mở transaction mới
+    private final ExecutorService overflowExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "watch-time-overflow-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean overflowFlushQueued = new AtomicBoolean();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder overflowFlushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+
+    /**
+     * Ghi nhận vị trí xem mới nhất (chỉ lưu trong bộ nhớ cho tới lần flush kế tiếp).
+     */
+    public void record(Long enrollmentId, Long lessonId, Integer watchedTime, Integer totalDuration) {
+        received.increment();
+        if (pending.put(new Key(enrollmentId, lessonId), new Position(watchedTime, totalDuration)) != null) {
+            coalesced.increment();
+        }
+        if (pending.size() >= maxPending && overflowFlushQueued.compareAndSet(false, true)) {
+            overflowFlushes.increment();
+            overflowExecutor.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    overflowFlushQueued.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bỏ vị trí đang chờ (khi bài học vừa được ghi trực tiếp, ví dụ lúc tự hoàn thành).
+     */
+    public void discard(Long enrollmentId, Long lessonId) {
+        pending.remove(new Key(enrollmentId, lessonId));
+    }
+
+    public int getDepth() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${watch-time.buffer.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() throws InterruptedException {
+        overflowExecutor.shutdown();
+        overflowExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        int depth = pending.size();
+        flush();
+        System.out.println("WatchTimeBuffer: Flushed " + depth + " pending watch positions on shutdown");
+    }
+
+    /**
+     * Lấy toàn bộ entry đang chờ ra khỏi bộ đệm và ghi xuống DB.
+     * Nếu ghi lỗi thì trả các entry chưa bị heartbeat mới hơn thay thế về lại bộ đệm.
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Map<Key, Position> drained = new LinkedHashMap<>();
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            Position position = pending.remove(key);
+            if (position != null) {
+                drained.put(key, position);
+            }
+        }
+        if (drained.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> write(drained));
+            flushedRows.add(drained.size());
+            return drained.size();
+        } catch (Exception e) {
+            failedFlushes.increment();
+            drained.forEach(pending::putIfAbsent);
+            System.err.println("WatchTimeBuffer: Failed to flush " + drained.size() + " watch positions: " + e.getMessage());
+            return 0;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            flushes.increment();
+            flushNanos.add(nanos);
+            lastFlushMillis.set(nanos / 1_000_000);
+            maxFlushMillis.accumulateAndGet(nanos / 1_000_000, Math::max);
+        }
+    }
+
+    private void write(Map<Key, Position> drained) {
+        List<Object[]> rows = new ArrayList<>(drained.size());
+        for (Map.Entry<Key, Position> entry : drained.entrySet()) {
+            rows.add(new Object[]{entry.getValue().watchedTime(), entry.getValue().totalDuration(),
+                    entry.getKey().enrollmentId(), entry.getKey().lessonId()});
+        }
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows.subList(from, Math.min(from + batchSize, rows.size())));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long flushCount = flushes.sum();
+        stats.put("depth", pending.size());
+        stats.put("maxPending", maxPending);
+        stats.put("received", received.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushes", flushCount);
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("overflowFlushes", overflowFlushes.sum());
+        stats.put("avgFlushMillis", flushCount > 0 ? flushNanos.sum() / 1_000_000.0 / flushCount : 0.0);
+        stats.put("lastFlushMillis", lastFlushMillis.get());
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        return stats;
+    }
+}
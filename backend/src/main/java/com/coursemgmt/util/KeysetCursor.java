@@ -0,0 +1,74 @@
+package com.coursemgmt.util;
+
+import jakarta.persistence.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Cursor cho phân trang keyset theo (createdAt DESC, id DESC).
+ *
+ * Cursor là vị trí của bản ghi cuối cùng của trang trước, được mã hóa base64 để client gửi lại nguyên vẹn.
+ * Thay vì OFFSET (DB phải đọc và bỏ qua toàn bộ các dòng phía trước), trang tiếp theo được lấy bằng
+ * điều kiện "sau vị trí này" nên chi phí không tăng theo độ sâu của trang.
+ *
+ * Bản ghi có createdAt = NULL được xếp cuối cùng (giống thứ tự DESC mặc định của MySQL).
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String NULL_MARKER = "-";
+
+    public String encode() {
+        String raw = (createdAt != null ? createdAt.toString() : NULL_MARKER) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null nếu cursor rỗng (trang đầu tiên)
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            LocalDateTime createdAt = NULL_MARKER.equals(parts[0]) ? null : LocalDateTime.parse(parts[0]);
+            return new KeysetCursor(createdAt, Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Điều kiện JPQL lấy các bản ghi nằm sau cursor, VD: seekCondition("t", "createdAt").
+     * Tham số cần bind bằng bind(query).
+     */
+    public String seekCondition(String alias, String createdAtField) {
+        String field = alias + "." + createdAtField;
+        if (createdAt == null) {
+            return "(" + field + " IS NULL AND " + alias + ".id < :cursorId)";
+        }
+        return "(" + field + " < :cursorCreatedAt OR (" + field + " = :cursorCreatedAt AND " + alias + ".id < :cursorId) OR "
+                + field + " IS NULL)";
+    }
+
+    /**
+     * Bản ghi (createdAt, id) có nằm sau cursor hay không - cùng điều kiện với seekCondition, dùng khi lọc trong bộ nhớ
+     */
+    public boolean isFollowedBy(LocalDateTime recordCreatedAt, long recordId) {
+        if (createdAt == null) {
+            return recordCreatedAt == null && recordId < id;
+        }
+        return recordCreatedAt == null || recordCreatedAt.isBefore(createdAt)
+                || (recordCreatedAt.isEqual(createdAt) && recordId < id);
+    }
+
+    public void bind(Query query) {
+        if (createdAt != null) {
+            query.setParameter("cursorCreatedAt", createdAt);
+        }
+        query.setParameter("cursorId", id);
+    }
+}
@@ -0,0 +1,131 @@
+package com.coursemgmt.controller;
+
+import com.coursemgmt.dto.LoginRequest;
+import com.coursemgmt.dto.RegisterRequest;
+import com.coursemgmt.model.ERole;
+import com.coursemgmt.model.Role;
+import com.coursemgmt.repository.RoleRepository;
+import com.coursemgmt.repository.UserRepository;
+import com.coursemgmt.security.jwt.JwtUtils;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import com.coursemgmt.service.AdminUserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests cho JWT stateless: principal dựng từ claims, thu hồi token qua token version
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuthTokenRevocationTest {
+
+    private static final String TEST_USERNAME = "revoke_user";
+    private static final String TEST_EMAIL = "revoke_user@test.com";
+    private static final String TEST_PASSWORD = "Test123!@#";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdminUserService adminUserService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setup() throws Exception {
+        userRepository.findByEmail(TEST_EMAIL).ifPresent(userRepository::delete);
+        if (roleRepository.findByName(ERole.ROLE_STUDENT).isEmpty()) {
+            Role role = new Role();
+            role.setName(ERole.ROLE_STUDENT);
+            roleRepository.save(role);
+        }
+
+        RegisterRequest register = new RegisterRequest();
+        register.setUsername(TEST_USERNAME);
+        register.setFullName("Revoke User");
+        register.setEmail(TEST_EMAIL);
+        register.setPassword(TEST_PASSWORD);
+        register.setRoles(Set.of("student"));
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(register)));
+    }
+
+    @Test
+    @DisplayName("Claims cua JWT chua uid, roles va token version")
+    void tokenCarriesPrincipalClaims() throws Exception {
+        JsonNode login = login();
+        String token = login.get("token").asText();
+
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromClaims(jwtUtils.parseClaims(token));
+        assertNotNull(principal);
+        assertEquals(login.get("id").asLong(), principal.getId());
+        assertEquals(TEST_USERNAME, principal.getUsername());
+        assertEquals(0, principal.getTokenVersion());
+        assertTrue(principal.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_STUDENT")));
+    }
+
+    @Test
+    @DisplayName("Khoa tai khoan thu hoi token da cap, ke ca sau khi mo khoa")
+    void lockingUserRevokesIssuedTokens() throws Exception {
+        JsonNode login = login();
+        String token = login.get("token").asText();
+        Long userId = login.get("id").asLong();
+
+        mockMvc.perform(get("/api/v1/enrollments/student/" + userId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        adminUserService.updateUserStatus(userId, false, "test");
+        mockMvc.perform(get("/api/v1/enrollments/student/" + userId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        adminUserService.updateUserStatus(userId, true, null);
+        mockMvc.perform(get("/api/v1/enrollments/student/" + userId)
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        // Đăng nhập lại sau khi mở khóa -> token mới hợp lệ
+        String freshToken = login().get("token").asText();
+        mockMvc.perform(get("/api/v1/enrollments/student/" + userId)
+                .header("Authorization", "Bearer " + freshToken))
+                .andExpect(status().isOk());
+    }
+
+    private JsonNode login() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsernameOrEmail(TEST_EMAIL);
+        loginRequest.setPassword(TEST_PASSWORD);
+        String response = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+}
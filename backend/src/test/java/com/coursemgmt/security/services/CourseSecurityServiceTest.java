@@ -0,0 +1,205 @@
+package com.coursemgmt.security.services;
+
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.*;
+import com.coursemgmt.repository.EnrollmentRepository;
+import com.coursemgmt.repository.LessonRepository;
+import com.coursemgmt.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho cache quyết định phân quyền của CourseSecurityService (+ so sánh độ trễ trước/sau)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class CourseSecurityServiceTest {
+
+    private static final int ROUNDS = 2000;
+
+    @Autowired
+    private CourseSecurityService courseSecurityService;
+
+    @Autowired
+    private CourseAccessCache courseAccessCache;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User instructor;
+    private User otherInstructor;
+    private User student;
+    private Course course;
+    private Chapter chapter;
+    private Lesson lesson;
+
+    @BeforeEach
+    void setupContent() {
+        courseAccessCache.clear();
+        instructor = persistUser("access_instructor");
+        otherInstructor = persistUser("access_other_instructor");
+        student = persistUser("access_student");
+
+        course = new Course();
+        course.setTitle("Access Cache Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setInstructor(instructor);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        chapter = new Chapter();
+        chapter.setTitle("Chapter 1");
+        chapter.setPosition(1);
+        chapter.setCourse(course);
+        entityManager.persist(chapter);
+
+        lesson = new Lesson();
+        lesson.setTitle("Lesson 1");
+        lesson.setPosition(1);
+        lesson.setChapter(chapter);
+        entityManager.persist(lesson);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Quyet dinh dung va duoc cache (khong truy van DB khi hit)")
+    void decisionsAreCorrectAndCached() {
+        Authentication owner = auth(instructor);
+        Authentication other = auth(otherInstructor);
+
+        assertTrue(courseSecurityService.isInstructor(owner, course.getId()));
+        assertTrue(courseSecurityService.isInstructorOfChapter(owner, chapter.getId()));
+        assertTrue(courseSecurityService.isInstructorOfLesson(owner, lesson.getId()));
+        assertFalse(courseSecurityService.isInstructor(other, course.getId()));
+        assertFalse(courseSecurityService.isInstructorOfLesson(other, lesson.getId()));
+        assertFalse(courseSecurityService.isEnrolled(auth(student), lesson.getId()));
+        // Tài nguyên không tồn tại
+        assertFalse(courseSecurityService.isInstructorOfLesson(owner, -1L));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertTrue(courseSecurityService.isInstructorOfLesson(owner, lesson.getId()));
+        assertFalse(courseSecurityService.isInstructor(other, course.getId()));
+        assertFalse(courseSecurityService.isEnrolled(auth(student), lesson.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Ghi danh, chuyen quyen so huu va xoa noi dung vo hieu hoa cache")
+    void invalidatesOnEnrollmentOwnershipAndStructureChanges() {
+        Authentication studentAuth = auth(student);
+        assertFalse(courseSecurityService.isEnrolled(studentAuth, lesson.getId()));
+
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(userRepository.getReferenceById(student.getId()));
+        enrollment.setCourse(entityManager.getReference(Course.class, course.getId()));
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        enrollment.setProgress(0.0);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        enrollmentRepository.saveAndFlush(enrollment);
+        courseAccessCache.onEnrollmentChanged(student.getId(), course.getId());
+        assertTrue(courseSecurityService.isEnrolled(studentAuth, lesson.getId()));
+
+        // Chuyển quyền sở hữu (test rollback nên gọi listener thủ công)
+        assertTrue(courseSecurityService.isInstructorOfChapter(auth(instructor), chapter.getId()));
+        entityManager.createQuery("UPDATE Course c SET c.instructor = :instructor WHERE c.id = :id")
+                .setParameter("instructor", entityManager.getReference(User.class, otherInstructor.getId()))
+                .setParameter("id", course.getId())
+                .executeUpdate();
+        courseAccessCache.onCourseChanged(new CourseChangedEvent(course.getId(),
+                CourseChangedEvent.Type.OWNERSHIP_TRANSFERRED, null, null));
+        assertFalse(courseSecurityService.isInstructorOfChapter(auth(instructor), chapter.getId()));
+        assertTrue(courseSecurityService.isInstructorOfChapter(auth(otherInstructor), chapter.getId()));
+
+        // Xóa bài học
+        assertTrue(courseSecurityService.isInstructorOfLesson(auth(otherInstructor), lesson.getId()));
+        lessonRepository.deleteById(lesson.getId());
+        lessonRepository.flush();
+        courseAccessCache.evictCourse(course.getId());
+        assertFalse(courseSecurityService.isInstructorOfLesson(auth(otherInstructor), lesson.getId()));
+    }
+
+    @Test
+    @DisplayName("Benchmark: do tre moi lan kiem tra truoc/sau khi co cache")
+    void reportsPerCheckLatency() {
+        Authentication studentAuth = auth(student);
+
+        // Trước: đi lesson -> chapter -> course bằng entity rồi tìm enrollment (cách cũ)
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            entityManager.clear();
+            User user = userRepository.findById(student.getId()).orElseThrow();
+            Lesson loaded = lessonRepository.findById(lesson.getId()).orElseThrow();
+            enrollmentRepository.findByUserAndCourse(user, loaded.getChapter().getCourse());
+        }
+        double legacyMicros = (System.nanoTime() - legacyStart) / 1000.0 / ROUNDS;
+
+        // Cache miss: chỉ truy vấn id
+        long missStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            courseAccessCache.clear();
+            courseSecurityService.isEnrolled(studentAuth, lesson.getId());
+        }
+        double missMicros = (System.nanoTime() - missStart) / 1000.0 / ROUNDS;
+
+        // Cache hit
+        long hitStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            courseSecurityService.isEnrolled(studentAuth, lesson.getId());
+        }
+        double hitMicros = (System.nanoTime() - hitStart) / 1000.0 / ROUNDS;
+
+        System.out.println("CourseSecurityServiceTest: isEnrolled legacy=" + String.format("%.1f", legacyMicros)
+                + "us miss=" + String.format("%.1f", missMicros) + "us hit=" + String.format("%.1f", hitMicros)
+                + "us stats=" + courseAccessCache.getStats());
+        assertTrue(hitMicros < legacyMicros, "Cached check should be faster than the entity walk");
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("password");
+        user.setFullName(username);
+        user.setIsEnabled(true);
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Authentication auth(User user) {
+        UserDetailsImpl principal = new UserDetailsImpl(user.getId(), user.getUsername(), user.getEmail(),
+                null, true, 0, List.of());
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,116 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.Course;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.transaction.AfterTransaction;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kiểm tra getAllCoursesForAdmin phân trang trong SQL (2 pha: id trước, entity sau)
+ * và số entity được load không phụ thuộc số khóa học trong DB (200k).
+ * Từ khóa đi qua CourseSearchIndex: tập khớp nhỏ lọc bằng IN + LIMIT trong SQL,
+ * tập khớp lớn được index cắt đúng trang rồi SQL chỉ đọc id của trang đó (vẫn có LIMIT).
+ */
+public class AdminCourseListingPagingTest extends ServiceTestSupport {
+
+    private static final int COURSE_COUNT = 200_000;
+    private static final String SEARCH = "AdminPagingBench";
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    @BeforeEach
+    void setupCourses() {
+        // Insert hàng loạt bằng SQL thuần cho nhanh
+        entityManager.createNativeQuery(
+                "INSERT INTO courses (title, price, status, created_at, is_featured, is_published) " +
+                "SELECT CONCAT('" + SEARCH + " ', X), 0, 'PUBLISHED', DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), FALSE, TRUE " +
+                "FROM SYSTEM_RANGE(1, " + COURSE_COUNT + ")")
+                .executeUpdate();
+        entityManager.clear();
+        // Dòng insert bằng SQL không phát sự kiện -> build lại index (đọc được dữ liệu chưa commit của test)
+        courseSearchIndex.rebuild();
+    }
+
+    @AfterTransaction
+    void restoreIndex() {
+        // Transaction của test đã rollback: bỏ các khóa học giả khỏi index
+        courseSearchIndex.rebuild();
+    }
+
+    @Test
+    @DisplayName("getAllCoursesForAdmin - LIMIT trong SQL, chi load dung so entity cua trang")
+    void pagesInSqlWithBoundedMemory() {
+        Statistics statistics = statistics();
+        int pageSize = 20;
+
+        for (int pageNumber : new int[]{0, 5_000, 9_999}) {
+            entityManager.clear();
+            statistics.clear();
+            CapturingStatementInspector.start();
+            long start = System.nanoTime();
+
+            Page<Course> page = courseService.getAllCoursesForAdmin(PageRequest.of(pageNumber, pageSize), SEARCH, null);
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            List<String> statements = CapturingStatementInspector.stop();
+            long entitiesLoaded = statistics.getEntityLoadCount();
+            System.out.println("AdminCourseListingPagingTest: page=" + pageNumber + " statements=" + statements.size()
+                    + " entitiesLoaded=" + entitiesLoaded
+                    + " time=" + elapsedMillis + "ms");
+
+            assertEquals(COURSE_COUNT, page.getTotalElements());
+            assertEquals(pageSize, page.getContent().size());
+            // Thứ tự createdAt DESC: trang p bắt đầu từ khóa học thứ (COURSE_COUNT - p * size)
+            assertEquals(SEARCH + " " + (COURSE_COUNT - pageNumber * pageSize), page.getContent().get(0).getTitle());
+
+            // Câu query lấy id phải được phân trang trong SQL, không có query nào đọc toàn bộ id khớp
+            List<String> idQueries = statements.stream()
+                    .map(sql -> sql.toLowerCase(Locale.ROOT))
+                    .filter(sql -> sql.startsWith("select") && sql.contains("order by") && !sql.contains("count("))
+                    .toList();
+            assertFalse(idQueries.isEmpty(), "Paged id query not found in " + statements);
+            for (String idQuery : idQueries) {
+                assertTrue(idQuery.contains("limit") || idQuery.contains("fetch first"),
+                        "Expected SQL-level pagination but got: " + idQuery);
+            }
+
+            // Bộ nhớ giới hạn: chỉ các khóa học của trang được load thành entity, dù có 200k dòng khớp
+            assertTrue(entitiesLoaded <= pageSize, "Loaded " + entitiesLoaded + " entities for a page of " + pageSize);
+        }
+    }
+
+    @Test
+    @DisplayName("getAllCoursesForAdmin - tap khop tu khoa nho: IN + LIMIT trong SQL")
+    void smallKeywordMatchPagesInSql() {
+        // Từ cuối match theo tiền tố: "19999" -> 19999, 199990..199999
+        CapturingStatementInspector.start();
+        Page<Course> page = courseService.getAllCoursesForAdmin(PageRequest.of(0, 5), SEARCH + " 19999", null);
+        List<String> statements = CapturingStatementInspector.stop();
+
+        assertEquals(11, page.getTotalElements());
+        assertEquals(SEARCH + " 199999", page.getContent().get(0).getTitle());
+
+        // Câu query lấy id phải được phân trang trong SQL
+        String idQuery = statements.stream()
+                .map(sql -> sql.toLowerCase(Locale.ROOT))
+                .filter(sql -> sql.startsWith("select") && sql.contains("order by") && !sql.contains("count("))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Paged id query not found in " + statements));
+        assertTrue(idQuery.contains("limit") || idQuery.contains("fetch first"),
+                "Expected SQL-level pagination but got: " + idQuery);
+    }
+}
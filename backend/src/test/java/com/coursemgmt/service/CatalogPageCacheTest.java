@@ -0,0 +1,107 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.ECourseStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho cache trang catalog: hit/miss, overlay không sửa bản gốc, vô hiệu hóa theo CourseChangedEvent
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CatalogPageCacheTest {
+
+    private static final long CATEGORY_ID = 7L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private CatalogPageCache catalogPageCache;
+
+    private CatalogPageCache.CatalogQuery categoryQuery;
+
+    @BeforeEach
+    void setupCache() {
+        catalogPageCache.clear();
+        categoryQuery = new CatalogPageCache.CatalogQuery(
+                null, CATEGORY_ID, null, null, null, null, null, "createdAt,desc", 0, 10);
+        catalogPageCache.put(categoryQuery, List.of(dto(1L)), 1, catalogPageCache.currentGeneration());
+    }
+
+    @Test
+    @DisplayName("Hit tra ve ban copy, overlay khong sua ban trong cache")
+    void hitReturnsIndependentCopies() {
+        long hitsBefore = (long) catalogPageCache.getStats().get("hits");
+        CatalogPageCache.CachedPage page = catalogPageCache.get(categoryQuery);
+        assertNotNull(page);
+        page.copyContent().get(0).setIsEnrolled(true);
+
+        CourseResponse again = catalogPageCache.get(categoryQuery).copyContent().get(0);
+        assertNull(again.getIsEnrolled());
+        assertEquals("Course 1", again.getTitle());
+        assertEquals(hitsBefore + 2, catalogPageCache.getStats().get("hits"));
+    }
+
+    @Test
+    @DisplayName("Chi xoa cac trang bi anh huong boi thay doi")
+    void invalidatesOnlyAffectedPages() {
+        long invalidationsBefore = (long) catalogPageCache.getStats().get("invalidations");
+        // Khóa học thuộc danh mục khác -> giữ nguyên
+        catalogPageCache.onCourseChanged(new CourseChangedEvent(2L, CourseChangedEvent.Type.PUBLISHED,
+                snapshot(2L, 99L, ECourseStatus.DRAFT, "Other"), snapshot(2L, 99L, ECourseStatus.PUBLISHED, "Other")));
+        // Khóa học DRAFT cùng danh mục được sửa -> không thuộc kết quả trước/sau -> giữ nguyên
+        catalogPageCache.onCourseChanged(new CourseChangedEvent(3L, CourseChangedEvent.Type.UPDATED,
+                snapshot(3L, CATEGORY_ID, ECourseStatus.DRAFT, "A"), snapshot(3L, CATEGORY_ID, ECourseStatus.DRAFT, "B")));
+        // Bộ đếm thay đổi của khóa học khác, trang sắp xếp theo createdAt -> giữ nguyên
+        catalogPageCache.onCourseChanged(CourseChangedEvent.stats(4L));
+        assertNotNull(catalogPageCache.get(categoryQuery));
+
+        // Khóa học cùng danh mục được publish -> tập kết quả đổi -> xóa
+        catalogPageCache.onCourseChanged(new CourseChangedEvent(5L, CourseChangedEvent.Type.PUBLISHED,
+                snapshot(5L, CATEGORY_ID, ECourseStatus.DRAFT, "New"), snapshot(5L, CATEGORY_ID, ECourseStatus.PUBLISHED, "New")));
+        assertNull(catalogPageCache.get(categoryQuery));
+        assertEquals(invalidationsBefore + 1, catalogPageCache.getStats().get("invalidations"));
+    }
+
+    @Test
+    @DisplayName("Sua khoa hoc nam trong trang thi xoa trang do")
+    void invalidatesPageContainingCourse() {
+        catalogPageCache.onCourseChanged(new CourseChangedEvent(1L, CourseChangedEvent.Type.UPDATED,
+                snapshot(1L, CATEGORY_ID, ECourseStatus.PUBLISHED, "Course 1"),
+                snapshot(1L, CATEGORY_ID, ECourseStatus.PUBLISHED, "Course 1 (edited)")));
+        assertNull(catalogPageCache.get(categoryQuery));
+    }
+
+    @Test
+    @DisplayName("Khong luu trang duoc build truoc khi co vo hieu hoa")
+    void stalePutIsDiscarded() {
+        CatalogPageCache.CatalogQuery query = new CatalogPageCache.CatalogQuery(
+                null, null, null, null, null, null, null, "createdAt,desc", 1, 10);
+        long generation = catalogPageCache.currentGeneration();
+        catalogPageCache.onCourseChanged(CourseChangedEvent.stats(42L));
+        catalogPageCache.put(query, List.of(dto(1L)), 1, generation);
+        assertNull(catalogPageCache.get(query));
+    }
+
+    private CourseResponse dto(Long id) {
+        CourseResponse dto = new CourseResponse();
+        dto.setId(id);
+        dto.setTitle("Course " + id);
+        return dto;
+    }
+
+    private CourseChangedEvent.Snapshot snapshot(Long id, Long categoryId, ECourseStatus status, String title) {
+        return new CourseChangedEvent.Snapshot(id, title, null, 0.0, status, categoryId, "Category", "Instructor",
+                0.0, CREATED_AT, CREATED_AT);
+    }
+}
@@ -0,0 +1,182 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChatMessageResponse;
+import com.coursemgmt.dto.SendMessageRequest;
+import com.coursemgmt.model.*;
+import com.coursemgmt.repository.ConversationParticipantRepository;
+import com.coursemgmt.repository.MessageRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Trạng thái đọc chat theo mốc ConversationParticipant.lastReadMessageId
+ * (ChatService.markAsRead / getMessages, MessageRepository.countUnreadMessages)
+ */
+public class ChatReadWatermarkTest extends ServiceTestSupport {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatReadWatermarkMigration chatReadWatermarkMigration;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationParticipantRepository participantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("markAsRead - so statement co dinh, khong ghi tung tin nhan")
+    void markAsReadMovesWatermarkWithFixedStatements() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statementsByMessages = new LinkedHashMap<>();
+
+        for (int messages : new int[]{5, 50}) {
+            User me = newUser("watermark_" + messages + "_me");
+            User other = newUser("watermark_" + messages + "_other");
+            Conversation conversation = newConversation(me, other);
+            List<Long> messageIds = send(conversation, other, messages);
+            entityManager.flush();
+            entityManager.clear();
+
+            assertEquals((long) messages, messageRepository.countUnreadMessages(conversation.getId(), me.getId()));
+            entityManager.clear();
+
+            statistics.clear();
+            Long watermark = chatService.markAsRead(conversation.getId(), me.getId());
+            entityManager.flush();
+            statementsByMessages.put(messages, statistics.getPrepareStatementCount());
+            assertEquals(0L, statistics.getEntityStatistics(MessageRead.class.getName()).getInsertCount());
+
+            assertEquals(messageIds.get(messageIds.size() - 1), watermark);
+            assertEquals(0L, messageRepository.countUnreadMessages(conversation.getId(), me.getId()));
+
+            // Tin mới sau mốc -> chưa đọc
+            send(conversation, other, 1);
+            assertEquals(1L, messageRepository.countUnreadMessages(conversation.getId(), me.getId()));
+        }
+
+        System.out.println("ChatReadWatermarkTest: statements=" + statementsByMessages);
+        // participant + conversation (tin nhắn cuối) + update mốc
+        assertEquals(3L, statementsByMessages.get(5));
+        assertEquals(statementsByMessages.get(5), statementsByMessages.get(50),
+                "Statement count must not grow with message count: " + statementsByMessages);
+    }
+
+    @Test
+    @DisplayName("getMessages - isRead suy ra tu moc cua minh (tin nguoi khac) va cua nguoi con lai (tin minh gui)")
+    void messagesDeriveReadFlagsFromWatermarks() {
+        User me = newUser("watermark_flags_me");
+        User other = newUser("watermark_flags_other");
+        Conversation conversation = newConversation(me, other);
+
+        Long received = send(conversation, other, 1).get(0);
+        chatService.markAsRead(conversation.getId(), me.getId());
+        Long sent = send(conversation, me, 1).get(0);
+        Long receivedLater = send(conversation, other, 1).get(0);
+
+        Map<Long, ChatMessageResponse> byId = messagesById(conversation, me);
+        assertTrue(byId.get(received).getIsRead());
+        assertNotNull(byId.get(received).getReadAt());
+        assertFalse(byId.get(sent).getIsRead());
+        assertFalse(byId.get(receivedLater).getIsRead());
+
+        // Người kia đọc -> tin "me" gửi có read receipt
+        chatService.markAsRead(conversation.getId(), other.getId());
+        byId = messagesById(conversation, me);
+        assertTrue(byId.get(sent).getIsRead());
+        assertFalse(byId.get(receivedLater).getIsRead());
+
+        assertThrows(RuntimeException.class, () -> chatService.getMessages(
+                conversation.getId(), newUser("watermark_flags_stranger").getId(), 0, 20));
+    }
+
+    @Test
+    @DisplayName("Moc da doc chi tang: markAsRead den muon voi tin cu hon khong keo moc lui")
+    void watermarkOnlyMovesForward() {
+        User me = newUser("watermark_forward_me");
+        User other = newUser("watermark_forward_other");
+        Conversation conversation = newConversation(me, other);
+        List<Long> messageIds = send(conversation, other, 3);
+
+        assertEquals(messageIds.get(2), chatService.markAsRead(conversation.getId(), me.getId()));
+        Long participantId = participantRepository.findByConversationIdAndUserId(conversation.getId(), me.getId())
+                .orElseThrow().getId();
+
+        // Giả lập markAsRead song song đọc lastMessageId cũ hơn
+        assertEquals(0, participantRepository.advanceReadWatermark(participantId, messageIds.get(0), LocalDateTime.now()));
+        assertEquals(messageIds.get(2), participantRepository.findById(participantId).orElseThrow().getLastReadMessageId());
+        assertEquals(0L, messageRepository.countUnreadMessages(conversation.getId(), me.getId()));
+
+        // Đọc lại khi không có tin mới: không cập nhật, vẫn trả về mốc hiện tại
+        assertEquals(messageIds.get(2), chatService.markAsRead(conversation.getId(), me.getId()));
+    }
+
+    @Test
+    @DisplayName("Migration - mốc lấy từ message_reads va last_read_at cu")
+    void migrationBuildsWatermarkFromLegacyReads() {
+        User me = newUser("watermark_migrate_me");
+        User other = newUser("watermark_migrate_other");
+        Conversation conversation = newConversation(me, other);
+        List<Long> messageIds = send(conversation, other, 4);
+        entityManager.flush();
+
+        // Dữ liệu cũ: đã có bản ghi đọc cho 2 tin đầu, chưa có mốc
+        for (Long messageId : messageIds.subList(0, 2)) {
+            MessageRead read = new MessageRead();
+            read.setMessage(entityManager.getReference(Message.class, messageId));
+            read.setUser(me);
+            entityManager.persist(read);
+        }
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE conversation_participants SET last_read_message_id = NULL, last_read_at = NULL " +
+                "WHERE conversation_id = ?", conversation.getId());
+        entityManager.clear();
+
+        assertTrue(chatReadWatermarkMigration.migrate() >= 2);
+
+        assertEquals(2L, messageRepository.countUnreadMessages(conversation.getId(), me.getId()));
+        Long otherWatermark = jdbcTemplate.queryForObject("SELECT last_read_message_id FROM conversation_participants " +
+                "WHERE conversation_id = ? AND user_id = ?", Long.class, conversation.getId(), other.getId());
+        assertEquals(0L, otherWatermark);
+        // Đã có mốc -> không chạy lại
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM conversation_participants " +
+                "WHERE conversation_id = ? AND last_read_message_id IS NULL", Integer.class, conversation.getId()));
+    }
+
+    private Map<Long, ChatMessageResponse> messagesById(Conversation conversation, User user) {
+        entityManager.flush();
+        entityManager.clear();
+        Map<Long, ChatMessageResponse> byId = new LinkedHashMap<>();
+        for (ChatMessageResponse message : chatService.getMessages(conversation.getId(), user.getId(), 0, 50)) {
+            byId.put(message.getId(), message);
+        }
+        return byId;
+    }
+
+    private List<Long> send(Conversation conversation, User sender, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SendMessageRequest request = new SendMessageRequest();
+            request.setConversationId(conversation.getId());
+            request.setContent("message " + i + " at " + LocalDateTime.now());
+            ids.add(chatService.sendMessage(sender.getId(), request).getId());
+        }
+        return ids;
+    }
+}
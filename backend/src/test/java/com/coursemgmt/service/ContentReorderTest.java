@@ -0,0 +1,130 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho reorder chapter/lesson hàng loạt (ContentService.reorderChapters / reorderLessons)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ContentReorderTest {
+
+    private static final int LESSON_COUNT = 200;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private CourseContentCache courseContentCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Course course;
+    private Chapter chapter;
+    private Chapter secondChapter;
+    private final List<Lesson> lessons = new ArrayList<>();
+
+    @BeforeEach
+    void setupCourse() {
+        course = new Course();
+        course.setTitle("Reorder Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        chapter = persistChapter("Chapter 1", 1);
+        secondChapter = persistChapter("Chapter 2", 2);
+
+        lessons.clear();
+        for (int i = 1; i <= LESSON_COUNT; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTitle("Lesson " + i);
+            lesson.setPosition(i);
+            lesson.setChapter(chapter);
+            entityManager.persist(lesson);
+            lessons.add(lesson);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Dao nguoc 200 lesson chi ton so cau lenh co dinh va tang version 1 lan")
+    void reorderLessonsUsesConstantStatements() {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < LESSON_COUNT; i++) {
+            positions.put(lessons.get(i).getId(), LESSON_COUNT - i);
+        }
+        long version = courseContentCache.currentVersion(course.getId());
+
+        CapturingStatementInspector.start();
+        contentService.reorderLessons(chapter.getId(), positions);
+        List<String> statements = CapturingStatementInspector.stop();
+
+        // Lấy courseId + thứ tự hiện tại + 1 câu UPDATE
+        assertEquals(3, statements.size(), statements.toString());
+        assertTrue(courseContentCache.currentVersion(course.getId()) > version);
+
+        entityManager.clear();
+        assertEquals(LESSON_COUNT, entityManager.find(Lesson.class, lessons.get(0).getId()).getPosition());
+        assertEquals(1, entityManager.find(Lesson.class, lessons.get(LESSON_COUNT - 1).getId()).getPosition());
+    }
+
+    @Test
+    @DisplayName("Hoan doi thu tu chapter")
+    void reorderChaptersSwapsPositions() {
+        contentService.reorderChapters(course.getId(), Map.of(chapter.getId(), 2, secondChapter.getId(), 1));
+
+        entityManager.clear();
+        assertEquals(2, entityManager.find(Chapter.class, chapter.getId()).getPosition());
+        assertEquals(1, entityManager.find(Chapter.class, secondChapter.getId()).getPosition());
+    }
+
+    @Test
+    @DisplayName("Tu choi thu tu trung lap va id khong thuoc chapter")
+    void invalidReorderIsRejected() {
+        // Trùng với nhau
+        assertThrows(RuntimeException.class, () -> contentService.reorderLessons(chapter.getId(),
+                Map.of(lessons.get(0).getId(), 500, lessons.get(1).getId(), 500)));
+        // Trùng với lesson không đổi thứ tự
+        assertThrows(RuntimeException.class, () -> contentService.reorderLessons(chapter.getId(),
+                Map.of(lessons.get(0).getId(), 2)));
+        // Chapter không thuộc khóa học / lesson không thuộc chapter
+        assertThrows(RuntimeException.class, () -> contentService.reorderChapters(course.getId() + 1000,
+                Map.of(chapter.getId(), 3)));
+        assertThrows(RuntimeException.class, () -> contentService.reorderLessons(secondChapter.getId(),
+                Map.of(lessons.get(0).getId(), 1)));
+
+        entityManager.clear();
+        assertEquals(1, entityManager.find(Lesson.class, lessons.get(0).getId()).getPosition());
+        assertEquals(1, entityManager.find(Chapter.class, chapter.getId()).getPosition());
+    }
+
+    private Chapter persistChapter(String title, int position) {
+        Chapter newChapter = new Chapter();
+        newChapter.setTitle(title);
+        newChapter.setPosition(position);
+        newChapter.setCourse(course);
+        entityManager.persist(newChapter);
+        return newChapter;
+    }
+}
@@ -0,0 +1,189 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChatMessageResponse;
+import com.coursemgmt.dto.ConversationResponse;
+import com.coursemgmt.dto.SendMessageRequest;
+import com.coursemgmt.dto.UpdateMessageRequest;
+import com.coursemgmt.model.*;
+import com.coursemgmt.repository.ConversationRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Danh sách hội thoại (ChatService.getUserConversations) dựng từ preview tin nhắn cuối trên Conversation:
+ * số statement cố định, không đọc lịch sử tin nhắn.
+ */
+public class ConversationListQueryCountTest extends ServiceTestSupport {
+
+    private static final int MESSAGES_PER_CONVERSATION = 5;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationPreviewBackfill conversationPreviewBackfill;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Danh sach hoi thoai - so query co dinh, khong doc bang messages")
+    void conversationListUsesFixedNumberOfQueries() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statementsByConversations = new LinkedHashMap<>();
+
+        for (int count : new int[]{2, 20}) {
+            User me = newUser("convlist_" + count + "_me");
+            List<Conversation> conversations = setupConversations(me, "convlist_" + count, count);
+            // Hội thoại đã đọc: không còn tin chưa đọc, tin nhắn cuối đã đọc
+            chatService.markAsRead(conversations.get(0).getId(), me.getId());
+            entityManager.flush();
+            entityManager.clear();
+
+            statistics.clear();
+            List<ConversationResponse> responses = chatService.getUserConversations(me.getId());
+            statementsByConversations.put(count, statistics.getPrepareStatementCount());
+            // Không nạp entity Message nào (chỉ đếm tin chưa đọc bằng GROUP BY)
+            assertEquals(0L, statistics.getEntityStatistics(Message.class.getName()).getLoadCount());
+
+            assertEquals(count, responses.size());
+            Map<Long, ConversationResponse> byId = responses.stream()
+                    .collect(Collectors.toMap(ConversationResponse::getId, Function.identity()));
+            for (int i = 0; i < count; i++) {
+                ConversationResponse response = byId.get(conversations.get(i).getId());
+                ChatMessageResponse last = response.getLastMessage();
+                assertNotNull(last);
+                assertEquals("reply " + i + "-" + (MESSAGES_PER_CONVERSATION - 1), last.getContent());
+                assertEquals("convlist_" + count + "_other" + i, response.getOtherParticipant().getFullName());
+                assertEquals(response.getOtherParticipant().getId(), last.getSenderId());
+                assertFalse(last.getIsDeleted());
+                if (i == 0) {
+                    assertEquals(0L, response.getUnreadCount());
+                    assertTrue(last.getIsRead());
+                } else {
+                    // Tin đầu do "me" gửi, các tin còn lại của người kia
+                    assertEquals(MESSAGES_PER_CONVERSATION - 1L, response.getUnreadCount());
+                    assertFalse(last.getIsRead());
+                }
+            }
+        }
+
+        System.out.println("ConversationListQueryCountTest: statements=" + statementsByConversations);
+        // conversations (kèm người gửi tin cuối) + participants (kèm mốc đã đọc) + số tin chưa đọc
+        assertEquals(3L, statementsByConversations.get(2));
+        assertEquals(statementsByConversations.get(2), statementsByConversations.get(20),
+                "Query count must not grow with conversation count: " + statementsByConversations);
+    }
+
+    @Test
+    @DisplayName("Sua / xoa tin nhan cuoi cap nhat preview; tin dai bi cat")
+    void editingLastMessageRefreshesPreview() {
+        User me = newUser("convpreview_me");
+        Conversation conversation = setupConversations(me, "convpreview", 1).get(0);
+
+        SendMessageRequest longMessage = new SendMessageRequest();
+        longMessage.setConversationId(conversation.getId());
+        longMessage.setContent("x".repeat(Conversation.LAST_MESSAGE_PREVIEW_LENGTH + 100));
+        ChatMessageResponse sent = chatService.sendMessage(me.getId(), longMessage);
+
+        ChatMessageResponse last = chatService.getConversation(conversation.getId(), me.getId()).getLastMessage();
+        assertEquals(sent.getId(), last.getId());
+        assertEquals(Conversation.LAST_MESSAGE_PREVIEW_LENGTH, last.getContent().length());
+
+        UpdateMessageRequest update = new UpdateMessageRequest();
+        update.setContent("edited");
+        chatService.updateMessage(sent.getId(), me.getId(), update);
+        ChatMessageResponse edited = chatService.getConversation(conversation.getId(), me.getId()).getLastMessage();
+        assertEquals("edited", edited.getContent());
+        assertTrue(edited.getIsEdited());
+
+        chatService.deleteMessage(sent.getId(), me.getId());
+        assertTrue(chatService.getConversation(conversation.getId(), me.getId()).getLastMessage().getIsDeleted());
+
+        // Tin file: preview có tên file (không có link tải)
+        SendMessageRequest file = new SendMessageRequest();
+        file.setConversationId(conversation.getId());
+        file.setContent("slides.pdf");
+        file.setMessageType(Message.MessageType.FILE);
+        file.setFileUrl("/uploads/chat/slides.pdf");
+        file.setFileName("slides.pdf");
+        chatService.sendMessage(me.getId(), file);
+        ChatMessageResponse fileMessage = chatService.getConversation(conversation.getId(), me.getId()).getLastMessage();
+        assertEquals("FILE", fileMessage.getMessageType());
+        assertEquals("slides.pdf", fileMessage.getFileName());
+        assertFalse(fileMessage.getIsEdited());
+    }
+
+    @Test
+    @DisplayName("Tin cu hon ghi sau (gui song song) khong ghi de tin nhan cuoi")
+    void olderMessageDoesNotOverwriteLastMessage() {
+        User me = newUser("convrace_me");
+        Conversation conversation = setupConversations(me, "convrace", 1).get(0);
+        ChatMessageResponse last = chatService.getConversation(conversation.getId(), me.getId()).getLastMessage();
+
+        // Giả lập transaction của tin đầu tiên commit sau tin cuối
+        Message older = entityManager.createQuery(
+                        "SELECT m FROM Message m WHERE m.conversation.id = :id ORDER BY m.id", Message.class)
+                .setParameter("id", conversation.getId()).setMaxResults(1).getSingleResult();
+        assertEquals(0, conversationRepository.applyLastMessage(conversation.getId(), older.getId(),
+                Conversation.previewOf(older.getContent()), older.getMessageType(), false, false, null,
+                older.getSender(), older.getCreatedAt(), LocalDateTime.now()));
+
+        ChatMessageResponse after = chatService.getConversation(conversation.getId(), me.getId()).getLastMessage();
+        assertEquals(last.getId(), after.getId());
+        assertEquals(last.getContent(), after.getContent());
+    }
+
+    @Test
+    @DisplayName("Backfill dien preview cho hoi thoai cu")
+    void backfillFillsPreviewForExistingConversations() {
+        User me = newUser("convbackfill_me");
+        Conversation conversation = setupConversations(me, "convbackfill", 1).get(0);
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE conversations SET last_message_id = NULL, last_message_preview = NULL, " +
+                "last_message_type = NULL, last_message_edited = NULL, last_message_sender_id = NULL WHERE id = ?", conversation.getId());
+        entityManager.clear();
+
+        assertTrue(conversationPreviewBackfill.backfill() >= 1);
+
+        ConversationResponse response = chatService.getConversation(conversation.getId(), me.getId());
+        assertEquals("reply 0-" + (MESSAGES_PER_CONVERSATION - 1), response.getLastMessage().getContent());
+        assertEquals("TEXT", response.getLastMessage().getMessageType());
+        assertEquals(response.getOtherParticipant().getId(), response.getLastMessage().getSenderId());
+        assertFalse(response.getLastMessage().getIsEdited());
+    }
+
+    private List<Conversation> setupConversations(User me, String prefix, int count) {
+        List<Conversation> conversations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User other = newUser(prefix + "_other" + i);
+            Conversation conversation = newConversation(me, other);
+
+            for (int m = 0; m < MESSAGES_PER_CONVERSATION; m++) {
+                SendMessageRequest request = new SendMessageRequest();
+                request.setConversationId(conversation.getId());
+                request.setContent("reply " + i + "-" + m);
+                chatService.sendMessage(m == 0 ? me.getId() : other.getId(), request);
+            }
+            conversations.add(conversation);
+        }
+        entityManager.flush();
+        return conversations;
+    }
+}
@@ -0,0 +1,139 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.ChapterRequest;
+import com.coursemgmt.dto.ChapterResponse;
+import com.coursemgmt.model.*;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho cache nội dung khóa học (snapshot theo version + lớp phủ trạng thái hoàn thành)
+ */
+public class CourseContentCacheTest extends ServiceTestSupport {
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private CourseContentCache courseContentCache;
+
+    private UserDetailsImpl student;
+    private UserDetailsImpl outsider;
+    private Course course;
+    private Chapter chapter;
+    private final List<Lesson> lessons = new ArrayList<>();
+
+    @BeforeEach
+    void setupCourse() {
+        courseContentCache.clear();
+
+        User user = newUser("content_cache_student");
+        User other = newUser("content_cache_outsider");
+
+        course = new Course();
+        course.setTitle("Content Cache Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        chapter = new Chapter();
+        chapter.setTitle("Chapter 1");
+        chapter.setPosition(1);
+        chapter.setCourse(course);
+        entityManager.persist(chapter);
+
+        lessons.clear();
+        for (int i = 1; i <= 3; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTitle("Lesson " + i);
+            lesson.setPosition(i);
+            lesson.setChapter(chapter);
+            entityManager.persist(lesson);
+            lessons.add(lesson);
+        }
+
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(user);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        enrollment.setProgress(0.0);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        entityManager.persist(enrollment);
+        entityManager.flush();
+        entityManager.clear();
+
+        student = new UserDetailsImpl(user.getId(), user.getUsername(), user.getEmail(), null, true, 0, List.of());
+        outsider = new UserDetailsImpl(other.getId(), other.getUsername(), other.getEmail(), null, true, 0, List.of());
+    }
+
+    @Test
+    @DisplayName("Cache hit tra ve noi dung ma khong truy van DB")
+    void cacheHitIssuesNoQueries() {
+        List<ChapterResponse> first = contentService.getCourseContent(course.getId(), student);
+        assertEquals(3, first.get(0).getLessons().size());
+
+        CapturingStatementInspector.start();
+        List<ChapterResponse> second = contentService.getCourseContent(course.getId(), student);
+        List<String> statements = CapturingStatementInspector.stop();
+
+        assertTrue(statements.isEmpty(), "Unexpected queries on cache hit: " + statements);
+        assertEquals(first.get(0).getTitle(), second.get(0).getTitle());
+        assertEquals(3, second.get(0).getLessons().size());
+        // DTO được dựng mới cho mỗi request, snapshot dùng chung không bị lộ ra ngoài
+        assertNotSame(first.get(0), second.get(0));
+    }
+
+    @Test
+    @DisplayName("Hoan thanh bai hoc cap nhat lop phu cua user")
+    void completionIsReflectedInOverlay() {
+        contentService.getCourseContent(course.getId(), student);
+        contentService.markLessonAsCompleted(lessons.get(1).getId(), student);
+
+        List<ChapterResponse> content = contentService.getCourseContent(course.getId(), student);
+        assertFalse(content.get(0).getLessons().get(0).isCompleted());
+        assertTrue(content.get(0).getLessons().get(1).isCompleted());
+        assertFalse(content.get(0).getLessons().get(2).isCompleted());
+    }
+
+    @Test
+    @DisplayName("Cap nhat/sap xep lai noi dung tang version va dung lai snapshot")
+    void contentChangesBumpVersion() {
+        contentService.getCourseContent(course.getId(), student);
+        long version = courseContentCache.currentVersion(course.getId());
+
+        ChapterRequest request = new ChapterRequest();
+        request.setTitle("Chapter 1 (updated)");
+        request.setPosition(1);
+        contentService.updateChapter(chapter.getId(), request);
+        assertTrue(courseContentCache.currentVersion(course.getId()) > version);
+        assertEquals("Chapter 1 (updated)",
+                contentService.getCourseContent(course.getId(), student).get(0).getTitle());
+
+        contentService.reorderLessons(chapter.getId(), Map.of(lessons.get(0).getId(), 10));
+        entityManager.flush();
+        entityManager.clear();
+        List<ChapterResponse> content = contentService.getCourseContent(course.getId(), student);
+        assertEquals(10, content.get(0).getLessons().stream()
+                .filter(lesson -> lesson.getId().equals(lessons.get(0).getId()))
+                .findFirst().orElseThrow().getPosition());
+    }
+
+    @Test
+    @DisplayName("User chua ghi danh khong doc duoc noi dung tu cache")
+    void notEnrolledUserIsDenied() {
+        contentService.getCourseContent(course.getId(), student);
+        assertThrows(AccessDeniedException.class, () -> contentService.getCourseContent(course.getId(), outsider));
+    }
+}
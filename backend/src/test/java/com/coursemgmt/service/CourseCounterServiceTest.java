@@ -0,0 +1,125 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.model.Category;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho bộ đếm denormalized trên Course (enrollmentCount, ratingSum, reviewCount, averageRating)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class CourseCounterServiceTest {
+
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long courseId;
+    private Long categoryId;
+
+    @BeforeEach
+    void setupCourse() {
+        Category category = new Category();
+        category.setName("Counter Test Category");
+        entityManager.persist(category);
+        categoryId = category.getId();
+
+        Course course = new Course();
+        course.setTitle("Counter Test Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCategory(category);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+        entityManager.flush();
+        entityManager.clear();
+        courseId = course.getId();
+    }
+
+    @Test
+    @DisplayName("Bo dem tang/giam dung khi tao/sua/xoa enrollment va review")
+    void countersFollowIncrementalChanges() {
+        courseCounterService.onEnrollmentCreated(courseId);
+        courseCounterService.onEnrollmentCreated(courseId);
+        courseCounterService.onEnrollmentCreated(courseId);
+        courseCounterService.onEnrollmentRemoved(courseId);
+
+        courseCounterService.onReviewCreated(courseId, 5);
+        courseCounterService.onReviewCreated(courseId, 3);
+        courseCounterService.onReviewUpdated(courseId, 3, 4);
+        courseCounterService.onReviewDeleted(courseId, 5);
+
+        entityManager.clear();
+        Course course = entityManager.find(Course.class, courseId);
+        assertEquals(2L, course.getEnrollmentCount());
+        assertEquals(4L, course.getRatingSum());
+        assertEquals(1L, course.getReviewCount());
+        assertEquals(4.0, course.getAverageRating(), 0.0001);
+    }
+
+    @Test
+    @DisplayName("Rating null (du lieu cu) khong gay NPE, tinh 0 diem nhu reconcile")
+    void nullRatingCountsAsZeroPoints() {
+        courseCounterService.onReviewCreated(courseId, null);
+        courseCounterService.onReviewCreated(courseId, 4);
+        courseCounterService.onReviewUpdated(courseId, null, 2);
+        courseCounterService.onReviewDeleted(courseId, 4);
+
+        entityManager.clear();
+        Course course = entityManager.find(Course.class, courseId);
+        assertEquals(2L, course.getRatingSum());
+        assertEquals(1L, course.getReviewCount());
+    }
+
+    @Test
+    @DisplayName("Save entity cu khong ghi de len bo dem")
+    void staleEntitySaveDoesNotOverwriteCounters() {
+        Course stale = entityManager.find(Course.class, courseId);
+
+        courseCounterService.onEnrollmentCreated(courseId);
+        stale.setTitle("Counter Test Course (edited)");
+        entityManager.flush();
+        entityManager.clear();
+
+        Course course = entityManager.find(Course.class, courseId);
+        assertEquals("Counter Test Course (edited)", course.getTitle());
+        assertEquals(1L, course.getEnrollmentCount());
+    }
+
+    @Test
+    @DisplayName("Loc minRating dung cot averageRating")
+    void minRatingFilterUsesDenormalizedAverage() {
+        courseCounterService.onReviewCreated(courseId, 4);
+        entityManager.clear();
+
+        Page<CourseResponse> matching = courseService.getAllPublishedCourses(
+                null, categoryId, null, null, null, null, null, 4.0, 0, 10, "createdAt,desc");
+        Page<CourseResponse> tooHigh = courseService.getAllPublishedCourses(
+                null, categoryId, null, null, null, null, null, 4.5, 0, 10, "createdAt,desc");
+
+        assertEquals(1, matching.getTotalElements());
+        assertEquals(4.0, matching.getContent().get(0).getRating(), 0.0001);
+        assertEquals(0, tooHigh.getTotalElements());
+    }
+}
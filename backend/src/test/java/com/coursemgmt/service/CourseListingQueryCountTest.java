@@ -0,0 +1,115 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark số query của trang danh sách khóa học:
+ * số statement phải giữ nguyên khi kích thước trang tăng (không còn N+1 cho enrollmentCount/rating).
+ */
+public class CourseListingQueryCountTest extends ServiceTestSupport {
+
+    private static final int COURSE_COUNT = 60;
+    private static final String KEYWORD = "QueryCountBench";
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseCounterService courseCounterService;
+
+    private Long categoryId;
+
+    @BeforeEach
+    void setupCourses() {
+        Category category = new Category();
+        category.setName(KEYWORD + " Category");
+        entityManager.persist(category);
+        categoryId = category.getId();
+
+        List<User> students = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            students.add(newUser("qc_student_" + i));
+        }
+
+        for (int i = 0; i < COURSE_COUNT; i++) {
+            // Mỗi khóa học 1 giảng viên riêng để kiểm tra cả việc load instructor
+            User instructor = newUser("qc_instructor_" + i);
+
+            Course course = new Course();
+            course.setTitle(KEYWORD + " " + i);
+            course.setPrice(i * 1000.0);
+            course.setStatus(ECourseStatus.PUBLISHED);
+            course.setCategory(category);
+            course.setInstructor(instructor);
+            course.setCreatedAt(LocalDateTime.now().minusMinutes(i));
+            entityManager.persist(course);
+
+            for (User student : students) {
+                Enrollment enrollment = new Enrollment();
+                enrollment.setUser(student);
+                enrollment.setCourse(course);
+                enrollment.setEnrolledAt(LocalDateTime.now());
+                enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+                entityManager.persist(enrollment);
+
+                Review review = new Review();
+                review.setUser(student);
+                review.setCourse(course);
+                review.setRating(1 + (i % 5));
+                entityManager.persist(review);
+            }
+        }
+        entityManager.flush();
+        // Dữ liệu được insert trực tiếp (không qua service) nên cần đối soát bộ đếm denormalized
+        courseCounterService.reconcileRange(0L, Long.MAX_VALUE);
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("getAllPublishedCourses - So query khong tang theo kich thuoc trang")
+    void queryCountStaysFlatAsPageSizeGrows() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statementsByPageSize = new LinkedHashMap<>();
+
+        for (int size : new int[]{5, 20, 50}) {
+            entityManager.clear();
+            statistics.clear();
+            long start = System.nanoTime();
+
+            Page<CourseResponse> page = courseService.getAllPublishedCourses(
+                    null, categoryId, null, null, null, null, null, null, 0, size, "createdAt,desc");
+
+            long elapsedMicros = (System.nanoTime() - start) / 1_000;
+            long statements = statistics.getPrepareStatementCount();
+            statementsByPageSize.put(size, statements);
+            System.out.println("CourseListingQueryCountTest: pageSize=" + size + " statements=" + statements
+                    + " time=" + elapsedMicros + "us");
+
+            assertEquals(size, page.getContent().size());
+            for (CourseResponse dto : page.getContent()) {
+                assertEquals(3L, dto.getEnrollmentCount());
+                assertEquals(3L, dto.getReviewCount());
+                assertTrue(dto.getRating() >= 1.0 && dto.getRating() <= 5.0);
+            }
+        }
+
+        long first = statementsByPageSize.get(5);
+        statementsByPageSize.values().forEach(count -> assertEquals(first, count,
+                "Query count must not grow with page size: " + statementsByPageSize));
+    }
+}
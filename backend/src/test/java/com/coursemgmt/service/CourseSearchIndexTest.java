@@ -0,0 +1,234 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.Category;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests + benchmark cho CourseSearchIndex (bỏ dấu tiếng Việt, BM25, cập nhật tăng dần)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CourseSearchIndexTest {
+
+    private static final int BENCH_COURSES = 100_000;
+    private static final String[] WORDS = {
+            "lập", "trình", "java", "spring", "boot", "cơ", "bản", "nâng", "cao", "thiết", "kế", "web",
+            "dữ", "liệu", "phân", "tích", "python", "học", "máy", "react", "giao", "diện", "đồ", "họa",
+            "kinh", "doanh", "marketing", "tiếng", "anh", "giao", "tiếp", "mạng", "bảo", "mật", "docker"
+    };
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CatalogPageCache catalogPageCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Bo dau tieng Viet khi tokenize")
+    void foldsVietnameseDiacritics() {
+        assertEquals("lap trinh da nen tang", CourseSearchIndex.fold("Lập Trình Đa Nền Tảng"));
+        assertEquals(List.of("lap", "trinh", "java"), CourseSearchIndex.tokenize("Lập trình: Java!"));
+    }
+
+    @Test
+    @DisplayName("Tim theo khong dau, tien to, xep hang BM25 va cap nhat tang dan")
+    void searchRanksAndUpdatesIncrementally() {
+        CourseSearchIndex index = new CourseSearchIndex();
+        index.index(snapshot(1L, "Lập trình Java cơ bản", "Khóa học nhập môn", ECourseStatus.PUBLISHED));
+        index.index(snapshot(2L, "Thiết kế web", "Có một chút lập trình JavaScript", ECourseStatus.PUBLISHED));
+        index.index(snapshot(3L, "Lập trình Python", "Phân tích dữ liệu", ECourseStatus.DRAFT));
+
+        // Title có trọng số cao hơn description
+        assertEquals(List.of(1L, 2L), index.search("lap trinh java", true, 10));
+        // Từ cuối match theo tiền tố
+        assertEquals(List.of(1L), index.search("lap trinh jav", true, 10).subList(0, 1));
+        // Khóa học chưa publish chỉ xuất hiện khi publishedOnly = false
+        assertEquals(List.of(3L), index.search("python", false, 10));
+        assertTrue(index.search("python", true, 10).isEmpty());
+
+        // Cập nhật và xóa
+        index.index(snapshot(3L, "Lập trình Python", "Phân tích dữ liệu", ECourseStatus.PUBLISHED));
+        index.index(snapshot(1L, "Spring Boot", "Khóa học nhập môn", ECourseStatus.PUBLISHED));
+        assertEquals(List.of(3L), index.search("python", true, 10));
+        assertEquals(List.of(1L), index.search("spring", true, 10));
+        assertTrue(index.search("lap trinh java", true, 10).stream().noneMatch(id -> id == 1L));
+        index.remove(2L);
+        assertTrue(index.search("web", true, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("idf BM25 chi dem doc con song, khong dem tombstone")
+    void idfIgnoresTombstonedPostings() {
+        CourseSearchIndex index = new CourseSearchIndex();
+        // Hai doc đối xứng: từ hiếm hơn nằm ở title (x3) thì doc đó xếp trên
+        index.index(snapshot(1L, "alpha", "beta", ECourseStatus.PUBLISHED));
+        index.index(snapshot(2L, "beta", "alpha", ECourseStatus.PUBLISHED));
+        for (long id = 100; id < 120; id++) {
+            index.index(snapshot(id, "alpha", "filler", ECourseStatus.PUBLISHED));
+        }
+        for (long id = 200; id < 210; id++) {
+            index.index(snapshot(id, "beta", "filler", ECourseStatus.PUBLISHED));
+        }
+        assertEquals(List.of(2L, 1L), index.search("alpha beta", true, 2));
+
+        // Xóa các doc chứa alpha (dưới ngưỡng nén nên vẫn là tombstone): alpha giờ hiếm hơn beta
+        for (long id = 100; id < 120; id++) {
+            index.remove(id);
+        }
+        assertEquals(20, index.getStats().get("tombstones"));
+        assertEquals(List.of(1L, 2L), index.search("alpha beta", true, 2));
+    }
+
+    @Test
+    @Transactional
+    @DisplayName("getAllPublishedCourses dung index cho keyword")
+    void publishedCourseSearchUsesIndex() {
+        Category category = new Category();
+        category.setName("Search Index Category");
+        entityManager.persist(category);
+        Course match = persistCourse("Lập trình Spring nâng cao", category, 100.0);
+        Course descriptionMatch = persistCourse("Khóa học backend", category, 0.0);
+        descriptionMatch.setDescription("Xây dựng API với lập trình Spring");
+        persistCourse("Thiết kế đồ họa", category, 0.0);
+        entityManager.flush();
+
+        // Test chạy trong transaction (rollback) nên sự kiện AFTER_COMMIT không chạy -> index thủ công
+        for (Course course : List.of(match, descriptionMatch)) {
+            courseSearchIndex.index(CourseChangedEvent.Snapshot.of(course));
+        }
+
+        Page<CourseResponse> relevance = courseService.getAllPublishedCourses(
+                "lap trinh spring", category.getId(), null, null, null, null, null, null, 0, 10, "relevance,desc");
+        assertEquals(List.of(match.getId(), descriptionMatch.getId()),
+                relevance.getContent().stream().map(CourseResponse::getId).toList());
+
+        Page<CourseResponse> freeOnly = courseService.getAllPublishedCourses(
+                "lap trinh spring", category.getId(), null, null, true, null, null, null, 0, 10, "price,asc");
+        assertEquals(1, freeOnly.getTotalElements());
+        assertEquals(descriptionMatch.getId(), freeOnly.getContent().get(0).getId());
+
+        courseSearchIndex.remove(match.getId());
+        courseSearchIndex.remove(descriptionMatch.getId());
+    }
+
+    @Test
+    @Transactional
+    @DisplayName("Keyword + bo loc / sap xep dung toan bo tap khop, tong so la so khoa hoc khop that")
+    void keywordSearchIsNotCappedWhenFilteredOrSorted() {
+        Category category = new Category();
+        category.setName("Search Exhaustive Category");
+        entityManager.persist(category);
+        List<Course> courses = List.of(
+                persistCourse("Zyqxcourse nhập môn", category, 300.0),
+                persistCourse("Zyqxcourse thực hành", category, 0.0),
+                persistCourse("Zyqxcourse nâng cao", category, 100.0));
+        entityManager.flush();
+        courses.forEach(course -> courseSearchIndex.index(CourseChangedEvent.Snapshot.of(course)));
+
+        try {
+            // Chỉ xếp theo độ liên quan: trang lấy từ index, tổng = số khóa học khớp
+            Page<CourseResponse> relevance = courseService.getAllPublishedCourses(
+                    "zyqxcourse", null, null, null, null, null, null, null, 0, 1, "relevance,desc");
+            assertEquals(3, relevance.getTotalElements());
+            assertEquals(1, relevance.getContent().size());
+            assertEquals(3, courseSearchIndex.searchTop("zyqxcourse", true, 1).total());
+
+            // Tập khớp lớn hơn ngưỡng IN: lọc trong bộ nhớ, vẫn đủ khóa học và đúng thứ tự
+            ReflectionTestUtils.setField(courseService, "maxSearchIdsInQuery", 1);
+            catalogPageCache.clear();
+            Page<CourseResponse> byPrice = courseService.getAllPublishedCourses(
+                    "zyqxcourse", category.getId(), null, null, null, null, null, null, 0, 2, "price,asc");
+            assertEquals(3, byPrice.getTotalElements());
+            assertEquals(List.of(courses.get(1).getId(), courses.get(2).getId()),
+                    byPrice.getContent().stream().map(CourseResponse::getId).toList());
+
+            Page<CourseResponse> paidByRelevance = courseService.getAllPublishedCourses(
+                    "zyqxcourse", null, null, null, null, true, null, null, 0, 10, "relevance,desc");
+            assertEquals(2, paidByRelevance.getTotalElements());
+            assertTrue(paidByRelevance.getContent().stream().noneMatch(dto -> dto.getId().equals(courses.get(1).getId())));
+        } finally {
+            ReflectionTestUtils.setField(courseService, "maxSearchIdsInQuery", 1000);
+            catalogPageCache.clear();
+            courses.forEach(course -> courseSearchIndex.remove(course.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("Benchmark: index 100k khoa hoc")
+    void benchmarkHundredThousandCourses() {
+        CourseSearchIndex index = new CourseSearchIndex();
+        Random random = new Random(42);
+
+        long buildStart = System.nanoTime();
+        for (long id = 1; id <= BENCH_COURSES; id++) {
+            index.index(snapshot(id, randomText(random, 5), randomText(random, 30), ECourseStatus.PUBLISHED));
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        List<String> queries = Arrays.asList("lập trình java", "lap trinh", "phan tich du lieu", "docker",
+                "giao dien react", "kinh doanh mar", "hoc may python", "bao mat mang");
+        int rounds = 20;
+        long searchStart = System.nanoTime();
+        int results = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String query : queries) {
+                results += index.search(query, true, 1000).size();
+            }
+        }
+        double avgMillis = (System.nanoTime() - searchStart) / 1_000_000.0 / (rounds * queries.size());
+
+        System.out.println("CourseSearchIndexTest: courses=" + BENCH_COURSES + " build=" + buildMillis + "ms"
+                + " avgQuery=" + String.format("%.2f", avgMillis) + "ms stats=" + index.getStats());
+        assertTrue(results > 0);
+        assertTrue(avgMillis < 200, "Average query latency too high: " + avgMillis + "ms");
+    }
+
+    private Course persistCourse(String title, Category category, double price) {
+        Course course = new Course();
+        course.setTitle(title);
+        course.setPrice(price);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCategory(category);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+        return course;
+    }
+
+    private String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private CourseChangedEvent.Snapshot snapshot(Long id, String title, String description, ECourseStatus status) {
+        return new CourseChangedEvent.Snapshot(id, title, description, 0.0, status, 1L, "Công nghệ thông tin",
+                "Nguyễn Văn A", 0.0, null, null);
+    }
+}
@@ -0,0 +1,98 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseStatsDTO;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thống kê 1 khóa học (StatisticsService.getCourseStats) phải tính bằng aggregate SQL:
+ * số statement và số entity được load không tăng theo số ghi danh / giao dịch.
+ */
+public class CourseStatsQueryCountTest extends ServiceTestSupport {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Test
+    @DisplayName("getCourseStats - So query va so entity load khong doi khi so ghi danh tang")
+    void courseStatsUseConstantQueries() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statementsByVolume = new LinkedHashMap<>();
+
+        for (int students : new int[]{12, 200}) {
+            Course course = setupCourse("cs_" + students, students);
+
+            entityManager.clear();
+            statistics.clear();
+            CourseStatsDTO stats = statisticsService.getCourseStats(course.getId());
+            long statements = statistics.getPrepareStatementCount();
+            statementsByVolume.put(students, statements);
+            System.out.println("CourseStatsQueryCountTest: enrollments=" + students + " statements=" + statements
+                    + " entitiesLoaded=" + statistics.getEntityLoadCount());
+
+            // Không load entity nào: chỉ đọc kết quả aggregate
+            assertEquals(0, statistics.getEntityLoadCount());
+
+            // Cứ 4 học viên thì 1 người hoàn thành (có chứng chỉ), progress còn lại = 50
+            long completed = students / 4;
+            assertEquals(course.getTitle(), stats.getCourseTitle());
+            assertEquals("Instructor cs_" + students, stats.getInstructorName());
+            assertEquals(students, stats.getTotalEnrollments());
+            assertEquals(completed, stats.getCompletedStudents());
+            assertEquals(students - completed, stats.getActiveStudents());
+            assertEquals(completed, stats.getCertificatesIssued());
+            assertEquals(25.0, stats.getCompletionRate(), 0.001);
+            assertEquals((completed * 100.0 + (students - completed) * 50.0) / students,
+                    stats.getAverageProgress(), 0.001);
+            // Mỗi học viên 1 giao dịch SUCCESS + cứ 2 học viên thêm 1 giao dịch FAILED
+            assertEquals(students * 1000.0, stats.getTotalRevenue(), 0.001);
+            assertEquals(students + students / 2, stats.getTotalTransactions());
+        }
+
+        assertEquals(statementsByVolume.get(12), statementsByVolume.get(200),
+                "Query count must not grow with enrollment volume: " + statementsByVolume);
+    }
+
+    private Course setupCourse(String prefix, int students) {
+        User instructor = newUser(prefix + "_instructor", "Instructor " + prefix);
+
+        Course course = newCourse("Course Stats " + prefix, instructor, 1000.0, ECourseStatus.PUBLISHED);
+
+        for (int i = 0; i < students; i++) {
+            User student = newUser(prefix + "_student_" + i, prefix + " student " + i);
+            boolean completed = i % 4 == 0;
+
+            Enrollment enrollment = new Enrollment();
+            enrollment.setUser(student);
+            enrollment.setCourse(course);
+            enrollment.setEnrolledAt(LocalDateTime.now());
+            enrollment.setProgress(completed ? 100.0 : 50.0);
+            enrollment.setStatus(completed ? EEnrollmentStatus.COMPLETED : EEnrollmentStatus.IN_PROGRESS);
+            entityManager.persist(enrollment);
+
+            if (completed) {
+                Certificate certificate = new Certificate();
+                certificate.setCertificateCode(prefix + "-CERT-" + i);
+                certificate.setIssuedAt(LocalDateTime.now());
+                certificate.setEnrollment(enrollment);
+                entityManager.persist(certificate);
+            }
+
+            newTransaction(student, course, ETransactionStatus.SUCCESS, 1000.0, LocalDateTime.now(), prefix + "-TX-" + i);
+            if (i % 2 == 1) {
+                newTransaction(student, course, ETransactionStatus.FAILED, 1000.0, LocalDateTime.now(), prefix + "-TX-F-" + i);
+            }
+        }
+        entityManager.flush();
+        return course;
+    }
+}
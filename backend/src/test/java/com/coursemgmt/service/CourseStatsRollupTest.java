@@ -0,0 +1,127 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho rollup thống kê theo ngày (CourseStatsRollupService):
+ * bucket cập nhật tăng dần phải khớp với kết quả rebuild() từ bảng nguồn.
+ */
+public class CourseStatsRollupTest extends ServiceTestSupport {
+
+    private static final String BUCKETS_SQL =
+            "SELECT stat_date, enrollments, completions, revenue, successful_transactions FROM course_daily_stats " +
+            "WHERE course_id = ? ORDER BY stat_date";
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Course course;
+    private YearMonth firstMonth;
+    private YearMonth secondMonth;
+    private Transaction refundedTransaction;
+
+    @BeforeEach
+    void setupActivity() {
+        firstMonth = YearMonth.now().minusMonths(2);
+        secondMonth = YearMonth.now().minusMonths(1);
+
+        User instructor = newUser("rollup_instructor");
+        course = newCourse("Rollup Course", instructor, 1000.0, ECourseStatus.PUBLISHED);
+
+        // 2 ghi danh tháng đầu, 1 ghi danh tháng sau; học viên đầu tiên hoàn thành khóa học
+        LocalDateTime[] enrolledAt = {
+                firstMonth.atDay(10).atTime(9, 0),
+                firstMonth.atDay(10).atTime(21, 30),
+                secondMonth.atDay(5).atTime(8, 15)
+        };
+        for (int i = 0; i < enrolledAt.length; i++) {
+            User student = newUser("rollup_student_" + i);
+
+            Enrollment enrollment = new Enrollment();
+            enrollment.setUser(student);
+            enrollment.setCourse(course);
+            enrollment.setEnrolledAt(enrolledAt[i]);
+            enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+            entityManager.persist(enrollment);
+            courseStatsRollupService.onEnrollmentCreated(course.getId(), enrollment.getEnrolledAt());
+
+            Transaction transaction = new Transaction();
+            transaction.setAmount(1000.0);
+            transaction.setStatus(ETransactionStatus.SUCCESS);
+            transaction.setPaymentGateway(EPaymentGateway.VNPAY);
+            transaction.setTransactionCode("ROLLUP-TX-" + i);
+            transaction.setCreatedAt(enrolledAt[i]);
+            transaction.setUser(student);
+            transaction.setCourse(course);
+            entityManager.persist(transaction);
+            courseStatsRollupService.onTransactionStatusChanged(transaction, ETransactionStatus.PENDING);
+
+            if (i == 0) {
+                enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+                courseStatsRollupService.onEnrollmentStatusChanged(enrollment, EEnrollmentStatus.IN_PROGRESS);
+            }
+            if (i == 1) {
+                refundedTransaction = transaction;
+            }
+        }
+
+        // Hoàn tiền giao dịch thứ 2: doanh thu tháng đầu giảm, refund ghi vào hôm nay
+        refundedTransaction.setStatus(ETransactionStatus.FAILED);
+        courseStatsRollupService.onTransactionStatusChanged(refundedTransaction, ETransactionStatus.SUCCESS);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Tong theo thang doc tu bucket theo ngay")
+    void monthlyTotalsReflectIncrementalUpdates() {
+        Map<YearMonth, CourseStatsRollupService.MonthlyTotals> totals = courseStatsRollupService
+                .monthlyTotalsForCourse(course.getId(), firstMonth.atDay(1), LocalDate.now());
+
+        CourseStatsRollupService.MonthlyTotals first = totals.get(firstMonth);
+        assertEquals(2, first.enrollments());
+        assertEquals(1000.0, first.revenue(), 0.001);
+        assertEquals(1, first.successfulTransactions());
+
+        CourseStatsRollupService.MonthlyTotals second = totals.get(secondMonth);
+        assertEquals(1, second.enrollments());
+        assertEquals(1000.0, second.revenue(), 0.001);
+
+        CourseStatsRollupService.MonthlyTotals current = totals.get(YearMonth.now());
+        assertEquals(1, current.completions());
+        assertEquals(1000.0, current.refunds(), 0.001);
+        assertEquals(2000.0, courseStatsRollupService.sumRevenue(firstMonth.atDay(1), LocalDate.now()), 0.001);
+    }
+
+    @Test
+    @DisplayName("Rebuild tu bang nguon cho ket qua giong cap nhat tang dan, giu nguyen refunds")
+    void rebuildMatchesIncrementalBuckets() {
+        List<Map<String, Object>> incremental = jdbcTemplate.queryForList(BUCKETS_SQL, course.getId());
+        assertFalse(incremental.isEmpty());
+
+        // Làm sai lệch bucket rồi tính lại
+        jdbcTemplate.update("UPDATE course_daily_stats SET enrollments = 99, revenue = 0, completions = 7 WHERE course_id = ?",
+                course.getId());
+        courseStatsRollupService.rebuild(firstMonth.atDay(1), LocalDate.now().plusDays(1));
+
+        assertEquals(incremental, jdbcTemplate.queryForList(BUCKETS_SQL, course.getId()));
+        Double refunds = jdbcTemplate.queryForObject(
+                "SELECT SUM(refunds) FROM course_daily_stats WHERE course_id = ?", Double.class, course.getId());
+        assertEquals(1000.0, refunds, 0.001);
+    }
+}
@@ -0,0 +1,124 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.DashboardStatsDTO;
+import com.coursemgmt.event.StatsChangedEvent;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho snapshot dashboard admin (DashboardSnapshotCache / StatisticsService.getDashboardStats)
+ */
+public class DashboardSnapshotCacheTest extends ServiceTestSupport {
+
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private CourseStatsRollupService courseStatsRollupService;
+
+    @Test
+    @DisplayName("Doc dashboard tu bo nho (0 query), refresh tinh lai bang 1 query / bang")
+    void servesFromMemoryAndRefreshesWithAggregates() {
+        Statistics statistics = statistics();
+        DashboardStatsDTO before = dashboardSnapshotCache.refresh().stats();
+
+        setupActivity();
+
+        statistics.clear();
+        DashboardStatsDTO cached = statisticsService.getDashboardStats();
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(before.getTotalCourses(), cached.getTotalCourses());
+        assertEquals(before.getAsOf(), cached.getAsOf());
+
+        statistics.clear();
+        DashboardStatsDTO after = dashboardSnapshotCache.refresh().stats();
+        // courses, enrollments, transactions (theo status), users, certificates + doanh thu tháng / năm từ rollup
+        assertEquals(7, statistics.getPrepareStatementCount());
+        assertFalse(after.getAsOf().isBefore(before.getAsOf()));
+
+        assertEquals(before.getTotalCourses() + 2, after.getTotalCourses());
+        assertEquals(before.getActiveCourses() + 1, after.getActiveCourses());
+        assertEquals(before.getDraftCourses() + 1, after.getDraftCourses());
+        assertEquals(before.getTotalInstructors() + 1, after.getTotalInstructors());
+        assertEquals(before.getTotalStudents() + 2, after.getTotalStudents());
+        assertEquals(before.getTotalEnrollments() + 1, after.getTotalEnrollments());
+        assertEquals(before.getCompletedEnrollments() + 1, after.getCompletedEnrollments());
+        assertEquals(before.getTotalCertificates() + 1, after.getTotalCertificates());
+        assertEquals(before.getSuccessfulTransactions() + 2, after.getSuccessfulTransactions());
+        assertEquals(before.getPendingTransactions() + 1, after.getPendingTransactions());
+        assertEquals(before.getTotalRevenue() + 800.0, after.getTotalRevenue(), 0.001);
+        assertEquals(before.getMonthlyRevenue() + 500.0, after.getMonthlyRevenue(), 0.001);
+        assertEquals(before.getYearlyRevenue() + 500.0, after.getYearlyRevenue(), 0.001);
+
+        // Bản trả về là copy: sửa không ảnh hưởng snapshot
+        DashboardStatsDTO copy = statisticsService.getDashboardStats();
+        copy.setTotalCourses(-1L);
+        assertEquals(after.getTotalCourses(), statisticsService.getDashboardStats().getTotalCourses());
+    }
+
+    @Test
+    @DisplayName("Thay doi da commit danh dau snapshot can tinh lai o lan kiem tra sau")
+    void changeEventMarksSnapshotDirty() {
+        dashboardSnapshotCache.refresh();
+        assertEquals(false, dashboardSnapshotCache.getStats().get("dirty"));
+
+        dashboardSnapshotCache.onStatsChanged(new StatsChangedEvent(1L, StatsChangedEvent.Type.TRANSACTION));
+        assertEquals(true, dashboardSnapshotCache.getStats().get("dirty"));
+
+        long refreshes = (Long) dashboardSnapshotCache.getStats().get("refreshes");
+        dashboardSnapshotCache.refreshIfStale();
+        assertEquals(refreshes + 1, dashboardSnapshotCache.getStats().get("refreshes"));
+        assertEquals(false, dashboardSnapshotCache.getStats().get("dirty"));
+
+        // Không có thay đổi và snapshot còn mới -> không tính lại
+        dashboardSnapshotCache.refreshIfStale();
+        assertEquals(refreshes + 1, dashboardSnapshotCache.getStats().get("refreshes"));
+    }
+
+    private void setupActivity() {
+        User instructor = newUser("snapshot_instructor");
+        User student = newUser("snapshot_student");
+
+        Course published = newCourse("Snapshot Published", instructor, 500.0, ECourseStatus.PUBLISHED);
+        newCourse("Snapshot Draft", instructor, 500.0, ECourseStatus.DRAFT);
+
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(student);
+        enrollment.setCourse(published);
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        enrollment.setStatus(EEnrollmentStatus.COMPLETED);
+        entityManager.persist(enrollment);
+
+        Certificate certificate = new Certificate();
+        certificate.setCertificateCode("SNAPSHOT-CERT");
+        certificate.setIssuedAt(LocalDateTime.now());
+        certificate.setEnrollment(enrollment);
+        entityManager.persist(certificate);
+
+        LocalDateTime lastYear = LocalDateTime.now().minusYears(1);
+        persistTransaction(student, published, ETransactionStatus.SUCCESS, 500.0, LocalDateTime.now(), "SNAPSHOT-1");
+        persistTransaction(student, published, ETransactionStatus.SUCCESS, 300.0, lastYear, "SNAPSHOT-2");
+        persistTransaction(student, published, ETransactionStatus.PENDING, 999.0, LocalDateTime.now(), "SNAPSHOT-3");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void persistTransaction(User user, Course course, ETransactionStatus status, double amount,
+                                    LocalDateTime createdAt, String code) {
+        Transaction transaction = newTransaction(user, course, status, amount, createdAt, code);
+        // Như luồng thanh toán thật: giao dịch thành công được cộng vào rollup theo ngày
+        if (status == ETransactionStatus.SUCCESS) {
+            courseStatsRollupService.onTransactionStatusChanged(transaction, ETransactionStatus.PENDING);
+        }
+    }
+}
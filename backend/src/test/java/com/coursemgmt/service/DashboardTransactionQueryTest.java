@@ -0,0 +1,94 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.InstructorEarningsDTO;
+import com.coursemgmt.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Các dashboard (admin, instructor, thống kê) không được quét toàn bộ bảng transactions:
+ * mọi câu SQL đụng tới bảng transactions phải có điều kiện WHERE.
+ */
+public class DashboardTransactionQueryTest extends ServiceTestSupport {
+
+    @Autowired
+    private AdminDashboardService adminDashboardService;
+
+    @Autowired
+    private InstructorDashboardService instructorDashboardService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private DashboardSnapshotCache dashboardSnapshotCache;
+
+    private User instructor;
+    private long successThisMonthBefore;
+
+    @BeforeEach
+    void setupLedger() {
+        successThisMonthBefore = ((Number) adminDashboardService.getSummaryStats().get("monthlyTransactions")).longValue();
+
+        instructor = newUser("dash_instructor");
+        User otherInstructor = newUser("dash_other_instructor");
+        User student = newUser("dash_student");
+        Course course = newCourse("Dashboard Course", instructor, 100.0, ECourseStatus.PUBLISHED);
+        Course otherCourse = newCourse("Other Dashboard Course", otherInstructor, 100.0, ECourseStatus.PUBLISHED);
+
+        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+        // Tháng này: 3 SUCCESS, 2 PENDING (1 của giảng viên khác), 1 FAILED; tháng trước: 1 SUCCESS
+        newTransaction(student, course, ETransactionStatus.SUCCESS, 100.0, startOfMonth, "DASH-1");
+        newTransaction(student, course, ETransactionStatus.SUCCESS, 100.0, startOfMonth.plusHours(5), "DASH-2");
+        newTransaction(student, otherCourse, ETransactionStatus.SUCCESS, 100.0, startOfMonth.plusHours(6), "DASH-3");
+        newTransaction(student, course, ETransactionStatus.PENDING, 250.0, startOfMonth.plusHours(7), "DASH-4");
+        newTransaction(student, otherCourse, ETransactionStatus.PENDING, 900.0, startOfMonth.plusHours(8), "DASH-5");
+        newTransaction(student, course, ETransactionStatus.FAILED, 100.0, startOfMonth.plusHours(9), "DASH-6");
+        newTransaction(student, course, ETransactionStatus.SUCCESS, 100.0, startOfMonth.minusSeconds(1), "DASH-7");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Dashboard dem / tinh tong giao dich bang query co dieu kien, khong findAll")
+    void dashboardsDoNotScanTransactionTable() {
+        CapturingStatementInspector.start();
+        Map<String, Object> summary;
+        InstructorEarningsDTO earnings;
+        try {
+            summary = adminDashboardService.getSummaryStats();
+            adminDashboardService.getRevenueChart();
+            adminDashboardService.getTopSellingCourses();
+            instructorDashboardService.getDashboardStats(instructor.getId());
+            instructorDashboardService.getChartData(instructor.getId());
+            earnings = instructorDashboardService.getEarnings(instructor.getId());
+            statisticsService.getDashboardStats();
+            // Snapshot dashboard admin có thể đã được tính trước đó: ép tính lại để kiểm tra câu SQL của nó
+            dashboardSnapshotCache.refresh();
+        } finally {
+            List<String> statements = CapturingStatementInspector.stop();
+            for (String sql : statements) {
+                String normalized = sql.toLowerCase(Locale.ROOT);
+                if (normalized.matches("(?s).*\\bfrom transactions\\b.*")) {
+                    assertTrue(normalized.contains(" where "), "Full scan of transactions: " + sql);
+                }
+            }
+        }
+
+        assertEquals(successThisMonthBefore + 3, ((Number) summary.get("monthlyTransactions")).longValue());
+        assertEquals(250.0, earnings.getPendingBalance(), 0.001);
+        assertEquals(300.0, earnings.getTotalRevenue(), 0.001);
+        assertEquals(5, earnings.getRecentTransactions().size());
+        assertEquals("pending", earnings.getRecentTransactions().get(1).getStatus());
+    }
+}
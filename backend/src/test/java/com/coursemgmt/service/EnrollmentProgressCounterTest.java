@@ -0,0 +1,157 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.LessonRequest;
+import com.coursemgmt.model.*;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho bộ đếm completedLessons của Enrollment và cache tổng số bài học của khóa học
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class EnrollmentProgressCounterTest {
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Autowired
+    private CourseLessonCountCache courseLessonCountCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private UserDetailsImpl student;
+    private Course course;
+    private Chapter chapter;
+    private Enrollment enrollment;
+    private final List<Lesson> lessons = new ArrayList<>();
+
+    @BeforeEach
+    void setupEnrollment() {
+        User user = new User();
+        user.setUsername("progress_counter_student");
+        user.setEmail("progress_counter_student@test.com");
+        user.setPassword("password");
+        user.setFullName("Progress Counter Student");
+        user.setIsEnabled(true);
+        entityManager.persist(user);
+
+        course = new Course();
+        course.setTitle("Progress Counter Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        chapter = new Chapter();
+        chapter.setTitle("Chapter 1");
+        chapter.setPosition(1);
+        chapter.setCourse(course);
+        entityManager.persist(chapter);
+
+        lessons.clear();
+        for (int i = 1; i <= 4; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTitle("Lesson " + i);
+            lesson.setPosition(i);
+            lesson.setChapter(chapter);
+            entityManager.persist(lesson);
+            lessons.add(lesson);
+        }
+
+        enrollment = new Enrollment();
+        enrollment.setUser(user);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        enrollment.setProgress(0.0);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        entityManager.persist(enrollment);
+        entityManager.flush();
+        entityManager.clear();
+
+        student = new UserDetailsImpl(user.getId(), user.getUsername(), user.getEmail(), null, true, 0, List.of());
+    }
+
+    @Test
+    @DisplayName("Hoan thanh bai hoc tang bo dem, khong COUNT lai lessons/user_progress")
+    void completingLessonUpdatesCounterWithoutCountQueries() {
+        contentService.markLessonAsCompleted(lessons.get(0).getId(), student);
+        // Hoàn thành lại cùng 1 bài không tăng bộ đếm
+        contentService.markLessonAsCompleted(lessons.get(0).getId(), student);
+        assertEquals(1L, reloadEnrollment().getCompletedLessons());
+        assertEquals(25.0, reloadEnrollment().getProgress(), 0.001);
+
+        // Tổng số bài học đã được cache -> lần hoàn thành sau không còn câu COUNT nào
+        CapturingStatementInspector.start();
+        contentService.markLessonAsCompleted(lessons.get(1).getId(), student);
+        entityManager.flush();
+        List<String> statements = CapturingStatementInspector.stop();
+        assertTrue(statements.stream().noneMatch(sql -> sql.toLowerCase().contains("count(")),
+                "Unexpected COUNT query: " + statements);
+
+        Enrollment reloaded = reloadEnrollment();
+        assertEquals(2L, reloaded.getCompletedLessons());
+        assertEquals(50.0, reloaded.getProgress(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Tao/xoa lesson vo hieu hoa tong so bai hoc va dieu chinh bo dem")
+    void lessonCountCacheIsInvalidatedByCreateAndDelete() {
+        assertEquals(4, courseLessonCountCache.getLessonCount(course.getId()));
+
+        LessonRequest request = new LessonRequest();
+        request.setTitle("Lesson 5");
+        request.setContentType(EContentType.TEXT);
+        request.setPosition(5);
+        contentService.createLesson(chapter.getId(), request);
+        assertEquals(5, courseLessonCountCache.getLessonCount(course.getId()));
+
+        Lesson extra = new Lesson();
+        extra.setTitle("Lesson 6");
+        extra.setPosition(6);
+        extra.setChapter(entityManager.find(Chapter.class, chapter.getId()));
+        entityManager.persist(extra);
+        entityManager.flush();
+        contentService.deleteLesson(extra.getId());
+        entityManager.flush();
+        assertEquals(5, courseLessonCountCache.getLessonCount(course.getId()));
+    }
+
+    @Test
+    @DisplayName("Repair tinh lai bo dem tu user_progress")
+    void repairRecomputesCounters() {
+        contentService.markLessonAsCompleted(lessons.get(0).getId(), student);
+        contentService.markLessonAsCompleted(lessons.get(2).getId(), student);
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Enrollment e SET e.completedLessons = 42 WHERE e.id = :id")
+                .setParameter("id", enrollment.getId())
+                .executeUpdate();
+
+        assertEquals(1, enrollmentService.recomputeCompletedLessons(enrollment.getId(), enrollment.getId()));
+        assertEquals(2L, reloadEnrollment().getCompletedLessons());
+    }
+
+    private Enrollment reloadEnrollment() {
+        entityManager.flush();
+        entityManager.clear();
+        return entityManager.find(Enrollment.class, enrollment.getId());
+    }
+}
@@ -0,0 +1,131 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.*;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho export Excel dạng streaming (ExcelService.exportLessons / exportRevenueReport)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ExcelExportTest {
+
+    private static final int TRANSACTION_COUNT = 300;
+
+    @Autowired
+    private ExcelService excelService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Course course;
+
+    @BeforeEach
+    void setupData() {
+        User buyer = new User();
+        buyer.setUsername("excel_export_buyer");
+        buyer.setEmail("excel_export_buyer@test.com");
+        buyer.setPassword("password");
+        buyer.setFullName("Excel Export Buyer");
+        buyer.setIsEnabled(true);
+        entityManager.persist(buyer);
+
+        course = new Course();
+        course.setTitle("Export Course");
+        course.setPrice(100000.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        // Chapter 2 tạo trước nhưng có position lớn hơn: export phải theo position
+        Chapter second = persistChapter("Chapter 2", 2);
+        Chapter first = persistChapter("Chapter 1", 1);
+        persistLesson(second, "Bai 2.1", 1, null);
+        persistLesson(first, "Bai 1.2", 2, EContentType.TEXT);
+        persistLesson(first, "Bai 1.1", 1, EContentType.VIDEO);
+
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 8, 0);
+        for (int i = 0; i < TRANSACTION_COUNT; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(100000.0);
+            transaction.setStatus(i % 10 == 0 ? ETransactionStatus.FAILED : ETransactionStatus.SUCCESS);
+            transaction.setPaymentGateway(EPaymentGateway.VNPAY);
+            transaction.setTransactionCode("EXPORT-" + i);
+            transaction.setCreatedAt(base.plusMinutes(i));
+            transaction.setUser(buyer);
+            transaction.setCourse(course);
+            entityManager.persist(transaction);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Export lessons theo thu tu chapter/lesson, cho phep contentType null")
+    void exportLessonsStreamsRowsInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelService.exportLessons(course.getId(), out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(3, sheet.getLastRowNum());
+            assertEquals("Bai 1.1", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("VIDEO", sheet.getRow(1).getCell(3).getStringCellValue());
+            assertEquals("Bai 1.2", sheet.getRow(2).getCell(1).getStringCellValue());
+            assertEquals("Chapter 2", sheet.getRow(3).getCell(0).getStringCellValue());
+            assertNull(sheet.getRow(3).getCell(3));
+        }
+    }
+
+    @Test
+    @DisplayName("Export doanh thu chi gom sheet tong quan va top khoa hoc, khong xuat du lieu nguoi mua")
+    void exportRevenueReportWritesSummarySheetsOnly() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelService.exportRevenueReport(LocalDateTime.of(2026, 1, 1, 0, 0),
+                LocalDateTime.of(2026, 1, 1, 9, 39), out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet overview = workbook.getSheet("Tong quan doanh thu");
+            assertNotNull(overview);
+            assertEquals("Tong doanh thu", overview.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("Tong so giao dich", overview.getRow(2).getCell(0).getStringCellValue());
+            assertNull(workbook.getSheet("Chi tiet giao dich"));
+            assertTrue(workbook.getNumberOfSheets() <= 2);
+        }
+    }
+
+    private Chapter persistChapter(String title, int position) {
+        Chapter chapter = new Chapter();
+        chapter.setTitle(title);
+        chapter.setPosition(position);
+        chapter.setCourse(course);
+        entityManager.persist(chapter);
+        return chapter;
+    }
+
+    private void persistLesson(Chapter chapter, String title, int position, EContentType type) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle(title);
+        lesson.setPosition(position);
+        lesson.setContentType(type);
+        lesson.setChapter(chapter);
+        entityManager.persist(lesson);
+    }
+}
@@ -0,0 +1,148 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.LessonImportResult;
+import com.coursemgmt.model.*;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho import lessons từ Excel theo kiểu streaming (ExcelService.importLessons)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ExcelLessonImportTest {
+
+    private static final int BENCH_ROWS = 50_000;
+
+    @Autowired
+    private ExcelService excelService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Course course;
+    private Chapter existingChapter;
+
+    @BeforeEach
+    void setupCourse() {
+        course = new Course();
+        course.setTitle("Import Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        existingChapter = new Chapter();
+        existingChapter.setTitle("Chapter 1");
+        existingChapter.setPosition(1);
+        existingChapter.setCourse(course);
+        entityManager.persist(existingChapter);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Dung lai chapter da co, tao chapter moi, bao loi tung dong ma khong dung import")
+    void importsRowsAndReportsErrors() throws IOException {
+        MockMultipartFile file = workbook(sheet -> {
+            addRow(sheet, 1, "Chapter 1", "Bai 1", 1, "VIDEO");
+            addRow(sheet, 2, null, "Bai 2", 2, "TEXT");
+            addRow(sheet, 3, "Chapter 2", "Bai 3", 1, "KHONG_CO");
+            addRow(sheet, 4, "Chapter 2", "Bai 4", 2, "document");
+            addRow(sheet, 5, "Chapter 2", null, 3, "VIDEO");
+        });
+
+        LessonImportResult result = excelService.importLessons(course.getId(), file);
+
+        assertEquals(3, result.getImportedLessons());
+        assertEquals(1, result.getCreatedChapters());
+        assertEquals(1, result.getSkippedRows());
+        assertEquals(1, result.getErrorRows());
+        assertTrue(result.getErrors().get(0).startsWith("Dòng 4"), result.getErrors().toString());
+
+        entityManager.clear();
+        List<Chapter> chapters = entityManager.createQuery(
+                "SELECT c FROM Chapter c WHERE c.course.id = :courseId ORDER BY c.position", Chapter.class)
+                .setParameter("courseId", course.getId())
+                .getResultList();
+        assertEquals(2, chapters.size());
+        assertEquals("Chapter 2", chapters.get(1).getTitle());
+        assertEquals(2, chapters.get(1).getPosition());
+        assertEquals(2L, countLessons(existingChapter.getId()));
+        assertEquals(1L, countLessons(chapters.get(1).getId()));
+    }
+
+    @Test
+    @DisplayName("Benchmark: import 50k dong")
+    void benchmarkFiftyThousandRows() throws IOException {
+        MockMultipartFile file = workbook(sheet -> {
+            for (int i = 1; i <= BENCH_ROWS; i++) {
+                addRow(sheet, i, "Chapter " + (1 + (i - 1) / 1000), "Bai " + i, i, "VIDEO");
+            }
+        });
+
+        long start = System.nanoTime();
+        LessonImportResult result = excelService.importLessons(course.getId(), file);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("ExcelLessonImportTest: rows=" + BENCH_ROWS + " fileSize=" + file.getSize() / 1024 + "KB"
+                + " time=" + elapsedMillis + "ms chapters=" + result.getCreatedChapters());
+        assertEquals(BENCH_ROWS, result.getImportedLessons());
+        assertEquals(0, result.getErrorRows());
+        assertEquals(BENCH_ROWS / 1000 - 1, result.getCreatedChapters());
+    }
+
+    private long countLessons(Long chapterId) {
+        return entityManager.createQuery("SELECT COUNT(l) FROM Lesson l WHERE l.chapter.id = :chapterId", Long.class)
+                .setParameter("chapterId", chapterId)
+                .getSingleResult();
+    }
+
+    private interface SheetWriter {
+        void write(Sheet sheet);
+    }
+
+    private MockMultipartFile workbook(SheetWriter writer) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Nội dung khóa học");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Chapter (Tên chương)");
+            header.createCell(1).setCellValue("Lesson (Tên bài)");
+            writer.write(sheet);
+            workbook.write(out);
+            workbook.dispose();
+            return new MockMultipartFile("file", "lessons.xlsx",
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", out.toByteArray());
+        }
+    }
+
+    private void addRow(Sheet sheet, int rowIdx, String chapter, String lesson, int position, String type) {
+        Row row = sheet.createRow(rowIdx);
+        if (chapter != null) row.createCell(0).setCellValue(chapter);
+        if (lesson != null) row.createCell(1).setCellValue(lesson);
+        row.createCell(2).setCellValue(position);
+        row.createCell(3).setCellValue(type);
+        row.createCell(4).setCellValue(10);
+        row.createCell(5).setCellValue("https://video.test/" + rowIdx);
+        row.createCell(6).setCellValue("Noi dung " + rowIdx);
+    }
+}
@@ -0,0 +1,119 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.InstructorDTO;
+import com.coursemgmt.dto.InstructorStatsDTO;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thống kê giảng viên (StatisticsService.getInstructorStats / InstructorService.getInstructorWithStats)
+ * dùng query gộp trên tất cả khóa học: số statement không tăng theo số khóa học.
+ */
+public class InstructorStatsQueryCountTest extends ServiceTestSupport {
+
+    private static final int STUDENT_COUNT = 5;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private InstructorService instructorService;
+
+    @Test
+    @DisplayName("Thong ke giang vien - So query khong tang theo so khoa hoc, hoc vien duoc dem khong trung")
+    void instructorStatsUseConstantQueries() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statsStatements = new LinkedHashMap<>();
+        Map<Integer, Long> dtoStatements = new LinkedHashMap<>();
+
+        for (int courses : new int[]{4, 40}) {
+            User instructor = setupInstructor("is_" + courses, courses);
+            int published = courses / 2;
+
+            entityManager.clear();
+            statistics.clear();
+            InstructorStatsDTO stats = statisticsService.getInstructorStats(instructor.getId());
+            statsStatements.put(courses, statistics.getPrepareStatementCount());
+
+            assertEquals(courses, stats.getTotalCourses());
+            assertEquals(published, stats.getPublishedCourses());
+            assertEquals(courses - published, stats.getDraftCourses());
+            // Cùng 5 học viên ghi danh mọi khóa học -> chỉ đếm 5
+            assertEquals(STUDENT_COUNT, stats.getTotalStudents());
+            assertEquals(courses, stats.getCertificatesIssued());
+            assertEquals(courses * STUDENT_COUNT * 1000.0, stats.getTotalRevenue(), 0.001);
+
+            entityManager.clear();
+            statistics.clear();
+            InstructorDTO dto = instructorService.getInstructorWithStats(instructor.getId());
+            dtoStatements.put(courses, statistics.getPrepareStatementCount());
+
+            assertEquals(courses, dto.getTotalCourses());
+            assertEquals(published, dto.getPublishedCourses());
+            assertEquals(STUDENT_COUNT, dto.getTotalStudents());
+            assertEquals(courses * STUDENT_COUNT * 1000L, dto.getTotalRevenue());
+        }
+
+        System.out.println("InstructorStatsQueryCountTest: getInstructorStats=" + statsStatements
+                + " getInstructorWithStats=" + dtoStatements);
+        assertEquals(statsStatements.get(4), statsStatements.get(40),
+                "Query count must not grow with course count: " + statsStatements);
+        assertEquals(dtoStatements.get(4), dtoStatements.get(40),
+                "Query count must not grow with course count: " + dtoStatements);
+    }
+
+    private User setupInstructor(String prefix, int courseCount) {
+        User instructor = newUser(prefix + "_instructor");
+        List<User> students = new ArrayList<>();
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            students.add(newUser(prefix + "_student_" + i));
+        }
+
+        for (int c = 0; c < courseCount; c++) {
+            Course course = newCourse(prefix + " course " + c, instructor, 1000.0,
+                    c % 2 == 0 ? ECourseStatus.PUBLISHED : ECourseStatus.DRAFT);
+
+            for (int i = 0; i < students.size(); i++) {
+                User student = students.get(i);
+                Enrollment enrollment = new Enrollment();
+                enrollment.setUser(student);
+                enrollment.setCourse(course);
+                enrollment.setEnrolledAt(LocalDateTime.now());
+                enrollment.setStatus(i == 0 ? EEnrollmentStatus.COMPLETED : EEnrollmentStatus.IN_PROGRESS);
+                entityManager.persist(enrollment);
+
+                // Học viên đầu tiên hoàn thành mọi khóa học -> 1 chứng chỉ / khóa học
+                if (i == 0) {
+                    Certificate certificate = new Certificate();
+                    certificate.setCertificateCode(prefix + "-CERT-" + c);
+                    certificate.setIssuedAt(LocalDateTime.now());
+                    certificate.setEnrollment(enrollment);
+                    entityManager.persist(certificate);
+                }
+
+                Transaction transaction = new Transaction();
+                transaction.setAmount(1000.0);
+                transaction.setStatus(ETransactionStatus.SUCCESS);
+                transaction.setPaymentGateway(EPaymentGateway.MOMO);
+                transaction.setTransactionCode(prefix + "-TX-" + c + "-" + i);
+                transaction.setCreatedAt(LocalDateTime.now());
+                transaction.setUser(student);
+                transaction.setCourse(course);
+                entityManager.persist(transaction);
+            }
+        }
+        entityManager.flush();
+        return instructor;
+    }
+}
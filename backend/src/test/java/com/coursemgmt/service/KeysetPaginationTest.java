@@ -0,0 +1,144 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.CourseResponse;
+import com.coursemgmt.dto.CursorPage;
+import com.coursemgmt.event.CourseChangedEvent;
+import com.coursemgmt.model.Course;
+import com.coursemgmt.model.ECourseStatus;
+import com.coursemgmt.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho phân trang keyset (cursor) theo (createdAt DESC, id DESC)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class KeysetPaginationTest {
+
+    private static final String SEARCH = "KeysetPagingCourse";
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseSearchIndex courseSearchIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> expectedOrder = new ArrayList<>();
+
+    @BeforeEach
+    void setupCourses() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Course> courses = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            Course course = new Course();
+            course.setTitle(SEARCH + " " + i);
+            course.setPrice(0.0);
+            course.setStatus(ECourseStatus.PUBLISHED);
+            // Nhiều khóa học trùng createdAt để kiểm tra thứ tự phụ theo id; 2 khóa học không có createdAt
+            course.setCreatedAt(i < 21 ? base.plusDays(i / 3) : null);
+            entityManager.persist(course);
+            courses.add(course);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        // Test chạy trong transaction (rollback) nên sự kiện AFTER_COMMIT không chạy -> index thủ công
+        courses.forEach(course -> courseSearchIndex.index(CourseChangedEvent.Snapshot.of(course)));
+
+        courses.stream()
+                .sorted((a, b) -> {
+                    if (a.getCreatedAt() == null || b.getCreatedAt() == null) {
+                        if (a.getCreatedAt() != b.getCreatedAt()) {
+                            return a.getCreatedAt() == null ? 1 : -1;
+                        }
+                    } else if (!a.getCreatedAt().equals(b.getCreatedAt())) {
+                        return b.getCreatedAt().compareTo(a.getCreatedAt());
+                    }
+                    return b.getId().compareTo(a.getId());
+                })
+                .forEach(course -> expectedOrder.add(course.getId()));
+    }
+
+    @AfterEach
+    void removeFromIndex() {
+        expectedOrder.forEach(courseSearchIndex::remove);
+    }
+
+    @Test
+    @DisplayName("Duyet het cac trang bang cursor: dung thu tu, khong trung, khong sot")
+    void walksAllPagesInOrder() {
+        walkAllPages();
+    }
+
+    @Test
+    @DisplayName("Tap khop tu khoa lon hon nguong IN: index cat trang, van dung thu tu, tong so va loc status")
+    void walksAllPagesWhenKeywordMatchesExceedInLimit() {
+        ReflectionTestUtils.setField(courseService, "maxSearchIdsInQuery", 5);
+        try {
+            walkAllPages();
+            assertEquals(23L, courseService.getAllCoursesForAdmin(PageRequest.of(1, 10), SEARCH, null).getTotalElements());
+            assertEquals(expectedOrder.subList(10, 20), courseService.getAllCoursesForAdmin(PageRequest.of(1, 10), SEARCH, null)
+                    .getContent().stream().map(Course::getId).toList());
+
+            // Lọc status trên index: tổng số và trang phải theo status
+            assertEquals(0L, courseService.getAllCoursesForAdmin(PageRequest.of(0, 10), SEARCH, "DRAFT").getTotalElements());
+            CursorPage<CourseResponse> published = courseService.getCoursesForAdminByCursor(null, 5, SEARCH, "PUBLISHED", true);
+            assertEquals(23L, published.getTotalElements());
+            assertEquals(expectedOrder.subList(0, 5), published.getContent().stream().map(CourseResponse::getId).toList());
+        } finally {
+            ReflectionTestUtils.setField(courseService, "maxSearchIdsInQuery", 1000);
+        }
+    }
+
+    private void walkAllPages() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<CourseResponse> page = courseService.getCoursesForAdminByCursor(cursor, 5, SEARCH, null, pages == 0);
+            if (pages == 0) {
+                assertEquals(23L, page.getTotalElements());
+            } else {
+                assertNull(page.getTotalElements());
+            }
+            page.getContent().forEach(dto -> seen.add(dto.getId()));
+            cursor = page.getNextCursor();
+            assertEquals(cursor != null, page.isHasNext());
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(expectedOrder, seen);
+        assertEquals(seen.size(), new HashSet<>(seen).size());
+    }
+
+    @Test
+    @DisplayName("Cursor ma hoa/giai ma dung, cursor sai tra ve loi")
+    void cursorRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2024, 5, 6, 7, 8, 9), 42L);
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+        assertEquals(new KeysetCursor(null, 7L), KeysetCursor.decode(new KeysetCursor(null, 7L).encode()));
+        assertNull(KeysetCursor.decode(""));
+        assertThrows(RuntimeException.class, () -> KeysetCursor.decode("not-a-cursor"));
+    }
+}
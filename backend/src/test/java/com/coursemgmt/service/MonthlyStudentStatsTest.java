@@ -0,0 +1,82 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.MonthlyStudentStatsDTO;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thống kê học viên theo tháng (EnrollmentService.getMonthlyStudentStats):
+ * số liệu toàn hệ thống, tính bằng 1 query GROUP BY, tháng không có dữ liệu trả về 0.
+ */
+public class MonthlyStudentStatsTest extends ServiceTestSupport {
+
+    // Năm không có dữ liệu seed
+    private static final int YEAR = 2031;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Test
+    @DisplayName("Thong ke theo thang - 1 query, dem moi hoc vien, dien 0 cho thang trong")
+    void monthlyStatsUseSingleGroupedQuery() {
+        User alice = newUser("monthly_alice");
+        User bob = newUser("monthly_bob");
+        Course java = newCourse("Monthly Java", null);
+        Course sql = newCourse("Monthly SQL", null);
+
+        // Tháng 1: alice ghi danh 2 khóa, bob 1 khóa (bob hoàn thành)
+        enroll(alice, java, LocalDateTime.of(YEAR, 1, 1, 0, 0), EEnrollmentStatus.IN_PROGRESS);
+        enroll(alice, sql, LocalDateTime.of(YEAR, 1, 20, 10, 0), EEnrollmentStatus.IN_PROGRESS);
+        enroll(bob, java, LocalDateTime.of(YEAR, 1, 31, 23, 59), EEnrollmentStatus.COMPLETED);
+        // Tháng 12: bob hoàn thành khóa SQL
+        enroll(bob, sql, LocalDateTime.of(YEAR, 12, 31, 23, 59, 59), EEnrollmentStatus.COMPLETED);
+        // Ngoài năm được hỏi
+        User carol = newUser("monthly_carol");
+        enroll(carol, java, LocalDateTime.of(YEAR + 1, 1, 1, 0, 0), EEnrollmentStatus.COMPLETED);
+        enroll(carol, sql, LocalDateTime.of(YEAR - 1, 12, 31, 23, 59), EEnrollmentStatus.IN_PROGRESS);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        MonthlyStudentStatsDTO stats = enrollmentService.getMonthlyStudentStats(YEAR);
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        assertEquals(YEAR, stats.getYear());
+        assertEquals(4L, stats.getTotalEnrollments());
+        assertEquals(2L, stats.getCompletedCourses());
+        assertEquals(12, stats.getMonthlyData().size());
+
+        MonthlyStudentStatsDTO.MonthlyData january = stats.getMonthlyData().get(0);
+        assertEquals("Jan " + YEAR, january.getMonthName());
+        assertEquals(3L, january.getEnrollments());
+        assertEquals(2L, january.getNewStudents());
+        assertEquals(1L, january.getCompletions());
+
+        MonthlyStudentStatsDTO.MonthlyData june = stats.getMonthlyData().get(5);
+        assertEquals(6, june.getMonth());
+        assertEquals(0L, june.getEnrollments());
+        assertEquals(0L, june.getNewStudents());
+        assertEquals(0L, june.getCompletions());
+
+        MonthlyStudentStatsDTO.MonthlyData december = stats.getMonthlyData().get(11);
+        assertEquals(1L, december.getEnrollments());
+        assertEquals(1L, december.getCompletions());
+    }
+
+    private void enroll(User user, Course course, LocalDateTime enrolledAt, EEnrollmentStatus status) {
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(user);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(enrolledAt);
+        enrollment.setStatus(status);
+        entityManager.persist(enrollment);
+    }
+}
@@ -0,0 +1,134 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.EnrollmentDTO;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * My Students (EnrollmentService.getMyStudents): 1 dòng / học viên, lọc - sắp xếp - phân trang trong SQL,
+ * số statement không phụ thuộc số học viên.
+ */
+public class MyStudentsPagingTest extends ServiceTestSupport {
+
+    private static final int STUDENT_COUNT = 300;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    private User instructor;
+    private Course java;
+    private Course sql;
+    private Course foreignCourse;
+
+    @BeforeEach
+    void setupStudents() {
+        instructor = newUser("mystudents_instructor", "Instructor");
+        User otherInstructor = newUser("mystudents_other", "Other Instructor");
+        java = newCourse("MyStudents Java", instructor);
+        sql = newCourse("MyStudents SQL", instructor);
+        foreignCourse = newCourse("MyStudents Foreign", otherInstructor);
+
+        LocalDateTime base = LocalDateTime.of(2026, 3, 1, 8, 0);
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            User student = newUser(String.format("mystudents_s%03d", i), String.format("Student %03d", i));
+            enroll(student, java, base.plusMinutes(i));
+            // Học viên chẵn ghi danh thêm khóa SQL sau đó -> chỉ hiện ghi danh SQL (mới nhất)
+            if (i % 2 == 0) {
+                enroll(student, sql, base.plusDays(1).plusMinutes(i));
+            }
+            // Ghi danh khóa của giảng viên khác không được tính
+            if (i % 3 == 0) {
+                enroll(student, foreignCourse, base.plusDays(2).plusMinutes(i));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Moi hoc vien 1 dong (ghi danh moi nhat), LIMIT trong SQL, so query khong doi")
+    void pagesDistinctStudentsInSql() {
+        Statistics statistics = statistics();
+        statistics.clear();
+        CapturingStatementInspector.start();
+
+        Page<EnrollmentDTO> first = enrollmentService.getMyStudents(
+                instructor.getId(), null, null, 0, 20, "enrolledAt", "DESC");
+
+        List<String> statements = CapturingStatementInspector.stop();
+        assertEquals(STUDENT_COUNT, first.getTotalElements());
+        assertEquals(20, first.getContent().size());
+        // Mới nhất: ghi danh SQL của học viên chẵn lớn nhất
+        assertEquals("Student 298", first.getContent().get(0).getStudentName());
+        assertEquals("MyStudents SQL", first.getContent().get(0).getCourseTitle());
+        assertEquals("Instructor", first.getContent().get(0).getInstructorName());
+        // 1 query trang (kèm user, course, instructor) + 1 query đếm
+        assertEquals(2, statistics.getPrepareStatementCount(), statements.toString());
+        String pageQuery = statements.stream()
+                .map(s -> s.toLowerCase(Locale.ROOT))
+                .filter(s -> s.contains("order by"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Paged query not found in " + statements));
+        assertTrue(pageQuery.contains("limit") || pageQuery.contains("fetch first"), pageQuery);
+
+        // Trang cuối
+        Page<EnrollmentDTO> last = enrollmentService.getMyStudents(
+                instructor.getId(), null, null, 14, 20, "enrolledAt", "DESC");
+        assertEquals(20, last.getContent().size());
+        assertEquals("Student 001", last.getContent().get(19).getStudentName());
+        assertEquals("MyStudents Java", last.getContent().get(19).getCourseTitle());
+    }
+
+    @Test
+    @DisplayName("Loc theo khoa hoc, tim theo ten, sap xep theo ten hoc vien")
+    void filtersAndSortsInSql() {
+        Page<EnrollmentDTO> sqlOnly = enrollmentService.getMyStudents(
+                instructor.getId(), sql.getId(), null, 0, 10, "studentName", "ASC");
+        assertEquals(STUDENT_COUNT / 2, sqlOnly.getTotalElements());
+        assertEquals("Student 000", sqlOnly.getContent().get(0).getStudentName());
+        assertEquals("Student 002", sqlOnly.getContent().get(1).getStudentName());
+
+        // "student 01" khớp Student 010 - 019
+        Page<EnrollmentDTO> searched = enrollmentService.getMyStudents(
+                instructor.getId(), null, "  student 01", 0, 50, "studentName", "DESC");
+        assertEquals(10, searched.getTotalElements());
+        assertEquals("Student 019", searched.getContent().get(0).getStudentName());
+
+        // Ký tự đại diện của LIKE được tìm theo nghĩa đen
+        assertEquals(0, enrollmentService.getMyStudents(
+                instructor.getId(), null, "student_0", 0, 10, "studentName", "ASC").getTotalElements());
+        assertEquals(0, enrollmentService.getMyStudents(
+                instructor.getId(), null, "100%", 0, 10, "studentName", "ASC").getTotalElements());
+        enroll(newUser("mystudents_literal", "Student a_b 100%"), sql, LocalDateTime.now());
+        entityManager.flush();
+        entityManager.clear();
+        Page<EnrollmentDTO> literal = enrollmentService.getMyStudents(
+                instructor.getId(), null, "a_b 100%", 0, 10, "studentName", "ASC");
+        assertEquals(1, literal.getTotalElements());
+        assertEquals("Student a_b 100%", literal.getContent().get(0).getStudentName());
+
+        assertThrows(AccessDeniedException.class, () -> enrollmentService.getMyStudents(
+                instructor.getId(), foreignCourse.getId(), null, 0, 10, "enrolledAt", "DESC"));
+    }
+
+    private void enroll(User student, Course course, LocalDateTime enrolledAt) {
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(student);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(enrolledAt);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        entityManager.persist(enrollment);
+    }
+}
@@ -0,0 +1,95 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Nền chung cho test tầng service: Spring context profile "test", mỗi test chạy trong 1 transaction (rollback),
+ * kèm Hibernate Statistics để đếm statement và các hàm tạo dữ liệu mẫu.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public abstract class ServiceTestSupport {
+
+    @Autowired
+    protected EntityManager entityManager;
+
+    @Autowired
+    protected EntityManagerFactory entityManagerFactory;
+
+    protected Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    protected User newUser(String username) {
+        return newUser(username, username);
+    }
+
+    protected User newUser(String username, String fullName) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@service.test");
+        user.setFullName(fullName);
+        user.setPassword("x");
+        user.setIsEnabled(true);
+        entityManager.persist(user);
+        return user;
+    }
+
+    // Khóa học miễn phí, đã publish
+    protected Course newCourse(String title, User instructor) {
+        return newCourse(title, instructor, 0.0, ECourseStatus.PUBLISHED);
+    }
+
+    protected Course newCourse(String title, User instructor, double price, ECourseStatus status) {
+        Course course = new Course();
+        course.setTitle(title);
+        course.setPrice(price);
+        course.setStatus(status);
+        course.setInstructor(instructor);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+        return course;
+    }
+
+    // Hội thoại 1-1 giữa 2 user (đã flush để có id)
+    protected Conversation newConversation(User first, User second) {
+        Conversation conversation = new Conversation();
+        conversation.setType(Conversation.ConversationType.DIRECT);
+        entityManager.persist(conversation);
+        for (User user : List.of(first, second)) {
+            ConversationParticipant participant = new ConversationParticipant();
+            participant.setConversation(conversation);
+            participant.setUser(user);
+            participant.setRole(ConversationParticipant.ParticipantRole.STUDENT);
+            entityManager.persist(participant);
+        }
+        entityManager.flush();
+        return conversation;
+    }
+
+    protected Transaction newTransaction(User user, Course course, ETransactionStatus status, double amount,
+                                         LocalDateTime createdAt, String code) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(amount);
+        transaction.setStatus(status);
+        transaction.setPaymentGateway(EPaymentGateway.VNPAY);
+        transaction.setTransactionCode(code);
+        transaction.setCreatedAt(createdAt);
+        transaction.setUser(user);
+        transaction.setCourse(course);
+        entityManager.persist(transaction);
+        return transaction;
+    }
+}
@@ -0,0 +1,138 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.StudentDashboardStatsDTO;
+import com.coursemgmt.model.*;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dashboard học viên (StudentDashboardService.getDashboardStats) tổng hợp tiến độ bằng 1 query GROUP BY:
+ * số statement không tăng theo số khóa học của học viên.
+ */
+public class StudentDashboardQueryCountTest extends ServiceTestSupport {
+
+    private static final int LESSONS_PER_COURSE = 3;
+
+    @Autowired
+    private StudentDashboardService studentDashboardService;
+
+    @Test
+    @DisplayName("Dashboard hoc vien - 1 query, ket qua dung voi moi so khoa hoc")
+    void dashboardUsesSingleGroupedQuery() {
+        Statistics statistics = statistics();
+        Map<Integer, Long> statementsByCourses = new LinkedHashMap<>();
+
+        for (int courses : new int[]{2, 20}) {
+            User student = setupStudent("sd_" + courses, courses);
+
+            entityManager.clear();
+            statistics.clear();
+            StudentDashboardStatsDTO stats = studentDashboardService.getDashboardStats(student.getId());
+            statementsByCourses.put(courses, statistics.getPrepareStatementCount());
+
+            // Khóa chẵn: hoàn thành (100%, có chứng chỉ); khóa lẻ: đang học 50%
+            int completedCourses = (courses + 1) / 2;
+            assertEquals(courses - completedCourses, stats.getActiveCourses());
+            assertEquals(completedCourses, stats.getTotalCertificates());
+            assertEquals((completedCourses * 100.0 + (courses - completedCourses) * 50.0) / courses,
+                    stats.getAverageProgress(), 0.001);
+            // Mỗi khóa: bài 1 xem 1800s (hoàn thành hôm nay), bài 2 hoàn thành tuần trước không có lastWatchedTime (10 phút),
+            // bài 3 chưa hoàn thành, xem 600s
+            long totalSeconds = courses * (1800L + 600L + 600L);
+            long weeklySeconds = courses * 1800L;
+            assertEquals(Math.round(totalSeconds / 360.0) / 10.0, stats.getTotalStudyHours(), 0.001);
+            assertEquals(Math.round(weeklySeconds / 360.0) / 10.0, stats.getWeeklyStudyHours(), 0.001);
+
+            List<StudentDashboardService.EnrollmentActivity> activities = studentDashboardService
+                    .getEnrollmentActivities(student.getId(), LocalDateTime.now().minusDays(1));
+            assertEquals(courses, activities.size());
+            assertEquals(2, activities.get(0).completedLessons());
+            assertEquals(3000, activities.get(0).watchedSeconds());
+            assertNotNull(activities.get(0).lastActivityAt());
+        }
+
+        System.out.println("StudentDashboardQueryCountTest: statements=" + statementsByCourses);
+        assertEquals(1L, statementsByCourses.get(2));
+        assertEquals(statementsByCourses.get(2), statementsByCourses.get(20),
+                "Query count must not grow with course count: " + statementsByCourses);
+    }
+
+    private User setupStudent(String prefix, int courseCount) {
+        User student = new User();
+        student.setUsername(prefix + "_student");
+        student.setEmail(prefix + "_student@dashboard.test");
+        student.setFullName(prefix + " student");
+        student.setPassword("x");
+        entityManager.persist(student);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int c = 0; c < courseCount; c++) {
+            boolean completed = c % 2 == 0;
+
+            Course course = new Course();
+            course.setTitle(prefix + " course " + c);
+            course.setPrice(0.0);
+            course.setStatus(ECourseStatus.PUBLISHED);
+            course.setCreatedAt(now);
+            entityManager.persist(course);
+
+            Chapter chapter = new Chapter();
+            chapter.setTitle("Chapter");
+            chapter.setPosition(1);
+            chapter.setCourse(course);
+            entityManager.persist(chapter);
+
+            Enrollment enrollment = new Enrollment();
+            enrollment.setUser(student);
+            enrollment.setCourse(course);
+            enrollment.setEnrolledAt(now.minusDays(30));
+            enrollment.setProgress(completed ? 100.0 : 50.0);
+            enrollment.setStatus(completed ? EEnrollmentStatus.COMPLETED : EEnrollmentStatus.IN_PROGRESS);
+            entityManager.persist(enrollment);
+
+            if (completed) {
+                Certificate certificate = new Certificate();
+                certificate.setCertificateCode(prefix + "-CERT-" + c);
+                certificate.setIssuedAt(now);
+                certificate.setEnrollment(enrollment);
+                entityManager.persist(certificate);
+            }
+
+            for (int l = 1; l <= LESSONS_PER_COURSE; l++) {
+                Lesson lesson = new Lesson();
+                lesson.setTitle("Lesson " + l);
+                lesson.setPosition(l);
+                lesson.setDurationInMinutes(10);
+                lesson.setChapter(chapter);
+                entityManager.persist(lesson);
+
+                User_Progress progress = new User_Progress();
+                progress.setEnrollment(enrollment);
+                progress.setLesson(lesson);
+                if (l == 1) {
+                    progress.setIsCompleted(true);
+                    progress.setCompletedAt(now);
+                    progress.setLastWatchedTime(1800);
+                } else if (l == 2) {
+                    progress.setIsCompleted(true);
+                    progress.setCompletedAt(now.minusDays(8));
+                } else {
+                    progress.setIsCompleted(false);
+                    progress.setLastWatchedTime(600);
+                }
+                entityManager.persist(progress);
+            }
+        }
+        entityManager.flush();
+        return student;
+    }
+}
@@ -0,0 +1,145 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.dto.SendMessageRequest;
+import com.coursemgmt.event.UnreadChangedEvent;
+import com.coursemgmt.model.*;
+import com.coursemgmt.repository.NotificationRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bộ đếm chưa đọc trong bộ nhớ (UnreadCounterStore) cho badge thông báo và chat.
+ * Test gọi trực tiếp onUnreadChanged vì transaction của test bị rollback (không có AFTER_COMMIT).
+ */
+public class UnreadCounterStoreTest extends ServiceTestSupport {
+
+    @Autowired
+    private UnreadCounterStore unreadCounterStore;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Test
+    @DisplayName("Badge thong bao - dem tu DB 1 lan, sau do cap nhat trong bo nho va day so moi")
+    void notificationCounterIsLoadedOnceThenUpdatedInMemory() {
+        User user = newUser("unread_notify_user");
+        User other = newUser("unread_notify_other");
+        newNotification(user, false);
+        newNotification(user, false);
+        newNotification(user, true);
+        entityManager.flush();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        assertEquals(2L, notificationService.getUnreadCount(user.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        assertEquals(2L, notificationService.getUnreadCount(user.getId()));
+        long pushes = (Long) unreadCounterStore.getStats().get("pushes");
+
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATION_CREATED, user, null));
+        assertEquals(3L, notificationService.getUnreadCount(user.getId()));
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATION_READ, user, null));
+        assertEquals(2L, notificationService.getUnreadCount(user.getId()));
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATIONS_ALL_READ, user, null));
+        assertEquals(0L, notificationService.getUnreadCount(user.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(pushes + 3, unreadCounterStore.getStats().get("pushes"));
+
+        // User chưa từng đọc bộ đếm: không tạo entry, không đẩy
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATION_CREATED, other, null));
+        assertEquals(pushes + 3, unreadCounterStore.getStats().get("pushes"));
+    }
+
+    @Test
+    @DisplayName("Badge chat - tang khi co tin moi, dem lai tu moc da doc khi markAsRead")
+    void chatCounterFollowsMessagesAndReads() {
+        User me = newUser("unread_chat_me");
+        User other = newUser("unread_chat_other");
+        Conversation conversation = newConversation(me, other);
+        for (int i = 0; i < 3; i++) {
+            SendMessageRequest request = new SendMessageRequest();
+            request.setConversationId(conversation.getId());
+            request.setContent("unread " + i);
+            chatService.sendMessage(other.getId(), request);
+        }
+        entityManager.flush();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        assertEquals(3L, chatService.getUnreadCount(conversation.getId(), me.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.CHAT_MESSAGE, me, conversation));
+        assertEquals(4L, chatService.getUnreadCount(conversation.getId(), me.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        chatService.markAsRead(conversation.getId(), me.getId());
+        entityManager.flush();
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.CHAT_READ, me, conversation));
+
+        statistics.clear();
+        assertEquals(0L, chatService.getUnreadCount(conversation.getId(), me.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Thay doi den trong luc dem tu DB - ket qua dem khong duoc luu, lan doc sau dem lai")
+    void changeDuringLoadDiscardsLoadedValue() {
+        User user = newUser("unread_race_user");
+        newNotification(user, false);
+        entityManager.flush();
+
+        NotificationRepository repository = (NotificationRepository) ReflectionTestUtils.getField(
+                unreadCounterStore, "notificationRepository");
+        NotificationRepository racing = mock(NotificationRepository.class);
+        // Giả lập thông báo mới commit (và sự kiện đến) khi COUNT đã đọc xong số cũ
+        when(racing.countByUserIdAndIsReadFalse(user.getId())).thenAnswer(invocation -> {
+            newNotification(user, false);
+            entityManager.flush();
+            unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATION_CREATED, user, null));
+            return 1L;
+        });
+        long discarded = (Long) unreadCounterStore.getStats().get("discardedLoads");
+        ReflectionTestUtils.setField(unreadCounterStore, "notificationRepository", racing);
+        try {
+            assertEquals(1L, unreadCounterStore.getNotificationUnread(user.getId()));
+        } finally {
+            ReflectionTestUtils.setField(unreadCounterStore, "notificationRepository", repository);
+        }
+        assertEquals(discarded + 1, unreadCounterStore.getStats().get("discardedLoads"));
+
+        // Số cũ không bị giữ lại: lần đọc sau đếm lại và thấy cả thông báo mới
+        assertEquals(2L, unreadCounterStore.getNotificationUnread(user.getId()));
+        unreadCounterStore.onUnreadChanged(event(UnreadChangedEvent.Type.NOTIFICATION_CREATED, user, null));
+        assertEquals(3L, unreadCounterStore.getNotificationUnread(user.getId()));
+    }
+
+    private UnreadChangedEvent event(UnreadChangedEvent.Type type, User user, Conversation conversation) {
+        return new UnreadChangedEvent(type, user.getId(), conversation != null ? conversation.getId() : null);
+    }
+
+    private void newNotification(User user, boolean read) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setMessage("unread counter test");
+        notification.setType("TEST");
+        notification.setIsRead(read);
+        notification.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(notification);
+    }
+}
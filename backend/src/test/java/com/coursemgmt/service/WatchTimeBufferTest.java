@@ -0,0 +1,173 @@
+package com.coursemgmt.service;
+
+import com.coursemgmt.model.*;
+import com.coursemgmt.security.services.UserDetailsImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho bộ đệm ghi trễ heartbeat xem video (WatchTimeBuffer + ContentService.updateLessonWatchTime)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class WatchTimeBufferTest {
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private WatchTimeBuffer watchTimeBuffer;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private UserDetailsImpl student;
+    private Enrollment enrollment;
+    private Lesson firstLesson;
+    private Lesson secondLesson;
+
+    @BeforeEach
+    void setupEnrollment() {
+        watchTimeBuffer.flush();
+
+        User user = new User();
+        user.setUsername("watch_time_student");
+        user.setEmail("watch_time_student@test.com");
+        user.setPassword("password");
+        user.setFullName("Watch Time Student");
+        user.setIsEnabled(true);
+        entityManager.persist(user);
+
+        Course course = new Course();
+        course.setTitle("Watch Time Course");
+        course.setPrice(0.0);
+        course.setStatus(ECourseStatus.PUBLISHED);
+        course.setCreatedAt(LocalDateTime.now());
+        entityManager.persist(course);
+
+        Chapter chapter = new Chapter();
+        chapter.setTitle("Chapter 1");
+        chapter.setPosition(1);
+        chapter.setCourse(course);
+        entityManager.persist(chapter);
+
+        firstLesson = persistLesson(chapter, 1);
+        secondLesson = persistLesson(chapter, 2);
+
+        enrollment = new Enrollment();
+        enrollment.setUser(user);
+        enrollment.setCourse(course);
+        enrollment.setEnrolledAt(LocalDateTime.now());
+        enrollment.setProgress(0.0);
+        enrollment.setStatus(EEnrollmentStatus.IN_PROGRESS);
+        entityManager.persist(enrollment);
+        entityManager.flush();
+        entityManager.clear();
+
+        student = new UserDetailsImpl(user.getId(), user.getUsername(), user.getEmail(), null, true, 0, List.of());
+    }
+
+    @Test
+    @DisplayName("Heartbeat duoc gop theo (enrollment, lesson) va ghi batch khi flush")
+    void heartbeatsAreCoalescedAndFlushedInBatch() {
+        Map<String, Object> before = watchTimeBuffer.getStats();
+        for (int second = 10; second <= 100; second += 10) {
+            contentService.updateLessonWatchTime(firstLesson.getId(), second, 600, student);
+        }
+        contentService.updateLessonWatchTime(secondLesson.getId(), 30, 600, student);
+
+        // Chưa ghi gì xuống DB cho tới khi flush
+        assertEquals(2, watchTimeBuffer.getDepth());
+        assertNull(findProgress(firstLesson));
+        Map<String, Object> buffered = watchTimeBuffer.getStats();
+        assertEquals(9L, (Long) buffered.get("coalesced") - (Long) before.get("coalesced"));
+
+        assertEquals(2, watchTimeBuffer.flush());
+        assertEquals(0, watchTimeBuffer.getDepth());
+        User_Progress first = findProgress(firstLesson);
+        assertEquals(100, first.getLastWatchedTime());
+        assertEquals(600, first.getTotalDuration());
+        assertFalse(first.getIsCompleted());
+
+        // Lần flush sau cập nhật dòng đã có thay vì tạo mới
+        contentService.updateLessonWatchTime(firstLesson.getId(), 200, 600, student);
+        watchTimeBuffer.flush();
+        assertEquals(200, findProgress(firstLesson).getLastWatchedTime());
+        assertEquals(1L, entityManager.createQuery(
+                        "SELECT COUNT(up) FROM User_Progress up WHERE up.lesson.id = :lessonId", Long.class)
+                .setParameter("lessonId", firstLesson.getId()).getSingleResult());
+    }
+
+    @Test
+    @DisplayName("Dat 90% thi hoan thanh bai hoc ngay, khong cho flush")
+    void autoCompleteIsWrittenImmediately() {
+        contentService.updateLessonWatchTime(firstLesson.getId(), 100, 600, student);
+        contentService.updateLessonWatchTime(firstLesson.getId(), 560, 600, student);
+
+        // Vị trí đang chờ của bài đã bị thay bằng lần ghi trực tiếp
+        assertEquals(0, watchTimeBuffer.getDepth());
+        entityManager.flush();
+        entityManager.clear();
+        User_Progress progress = findProgress(firstLesson);
+        assertTrue(progress.getIsCompleted());
+        assertEquals(560, progress.getLastWatchedTime());
+        assertEquals(50.0, entityManager.find(Enrollment.class, enrollment.getId()).getProgress(), 0.001);
+
+        // Heartbeat sau khi đã hoàn thành lại đi qua bộ đệm
+        contentService.updateLessonWatchTime(firstLesson.getId(), 590, 600, student);
+        assertEquals(1, watchTimeBuffer.getDepth());
+        watchTimeBuffer.flush();
+        entityManager.clear();
+        assertEquals(590, findProgress(firstLesson).getLastWatchedTime());
+        assertTrue(findProgress(firstLesson).getIsCompleted());
+    }
+
+    @Test
+    @DisplayName("Moi (enrollment, lesson) chi co 1 dong user_progress")
+    void progressIsUniquePerEnrollmentAndLesson() {
+        contentService.updateLessonWatchTime(firstLesson.getId(), 100, 600, student);
+        watchTimeBuffer.flush();
+
+        User_Progress duplicate = new User_Progress();
+        duplicate.setEnrollment(entityManager.getReference(Enrollment.class, enrollment.getId()));
+        duplicate.setLesson(entityManager.getReference(Lesson.class, firstLesson.getId()));
+        // id IDENTITY -> persist insert ngay, vi phạm unique ném ra từ persist (hoặc flush)
+        assertThrows(PersistenceException.class, () -> {
+            entityManager.persist(duplicate);
+            entityManager.flush();
+        });
+    }
+
+    private Lesson persistLesson(Chapter chapter, int position) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle("Lesson " + position);
+        lesson.setPosition(position);
+        lesson.setChapter(chapter);
+        entityManager.persist(lesson);
+        return lesson;
+    }
+
+    private User_Progress findProgress(Lesson lesson) {
+        entityManager.clear();
+        return entityManager.createQuery(
+                        "SELECT up FROM User_Progress up WHERE up.enrollment.id = :enrollmentId AND up.lesson.id = :lessonId",
+                        User_Progress.class)
+                .setParameter("enrollmentId", enrollment.getId())
+                .setParameter("lessonId", lesson.getId())
+                .getResultStream().findFirst().orElse(null);
+    }
+}
@@ -402,7 +402,14 @@ export const importCourseContent = async (
   courseId: number,
   file: File,
   onProgress?: (progress: number) => void
-): Promise<{ message: string }> => {
+): Promise<{
+  message: string;
+  importedLessons?: number;
+  createdChapters?: number;
+  skippedRows?: number;
+  errorRows?: number;
+  errors?: string[];
+}> => {
   const formData = new FormData();
   formData.append('file', file);
 
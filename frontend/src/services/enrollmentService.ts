@@ -50,9 +50,14 @@ export interface StudentLearningHistory {
 
 export interface MonthlyStudentStats {
   year: number;
+  totalEnrollments: number;
+  completedCourses: number;
   monthlyData: Array<{
+    year: number;
     month: number;
-    newEnrollments: number;
+    monthName: string;
+    newStudents: number;
+    enrollments: number;
     completions: number;
   }>;
 }
@@ -237,6 +237,7 @@ export interface DashboardStats {
   newEnrollmentsThisMonth: number;
   averageCompletionRate: number;
   pendingApprovals?: number;
+  asOf?: string;
 }
 
 export interface RevenueData {